@@ -20,6 +20,7 @@ import org.junit.runner.RunWith;
 import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import com.imaginit.hyperplux.database.AppDatabase;
 
@@ -66,12 +67,147 @@ public class DatabaseMigrationTest {
         cursor.close();
     }
 
+    @Test
+    public void migrate2To3() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 2);
+
+        db.execSQL("INSERT INTO users (uid, email, displayName, followers, totalAssets, totalLikes, totalViews, " +
+                "overallEngagementScore, publicProfile, showAssetsPublicly, allowMessages, notificationsEnabled, " +
+                "willActivated) VALUES ('u1', 'jane.doe@example.com', 'Jane Doe', '[\"a\",\"b\"]', " +
+                "0, 0, 0, 0, 1, 0, 1, 1, 0)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 3, true, AppDatabase.MIGRATION_2_3);
+
+        // Follower count backfilled from the JSON list
+        Cursor cursor = db.query("SELECT followerCount FROM users WHERE uid = 'u1'");
+        cursor.moveToFirst();
+        assertEquals(2, cursor.getInt(0));
+        cursor.close();
+
+        String search = "SELECT users.uid FROM users_fts " +
+                "JOIN user_search_keys ON user_search_keys.id = users_fts.rowid " +
+                "JOIN users ON users.uid = user_search_keys.uid WHERE users_fts MATCH ?";
+
+        // Existing users are searchable by email local-part prefix
+        cursor = db.query(search, new Object[]{"doe*"});
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
+        // The domain is not indexed
+        cursor = db.query("SELECT rowid FROM users_fts WHERE users_fts MATCH 'example*'");
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+
+        // Replacing a user keeps exactly one index row for it
+        db.execSQL("INSERT OR REPLACE INTO users (uid, email, displayName, followers, totalAssets, totalLikes, " +
+                "totalViews, overallEngagementScore, publicProfile, showAssetsPublicly, allowMessages, " +
+                "notificationsEnabled, willActivated, followerCount) VALUES ('u1', 'jane.doe@example.com', " +
+                "'Janet Doe', '[]', 0, 0, 0, 0, 1, 0, 1, 1, 0, 0)");
+        cursor = db.query(search, new Object[]{"janet*"});
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+        cursor = db.query("SELECT rowid FROM users_fts");
+        assertEquals(1, cursor.getCount());
+        cursor.close();
+
+        // Deleting a user drops its index row and key
+        db.execSQL("DELETE FROM users WHERE uid = 'u1'");
+        cursor = db.query("SELECT rowid FROM users_fts");
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+        cursor = db.query("SELECT id FROM user_search_keys");
+        assertEquals(0, cursor.getCount());
+        cursor.close();
+    }
+
+    @Test
+    public void migrate3To4() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 3);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 4, true, AppDatabase.MIGRATION_3_4);
+
+        // Feed rows are unique per user and listing
+        db.execSQL("INSERT INTO feed_items (userId, docId, score, source, scoredAt) VALUES ('u1', 'd1', 2.5, 'top', 0)");
+        db.execSQL("INSERT OR REPLACE INTO feed_items (userId, docId, score, source, scoredAt) VALUES ('u1', 'd1', 4.0, 'top', 1)");
+        Cursor cursor = db.query("SELECT score FROM feed_items WHERE userId = 'u1'");
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(4.0, cursor.getDouble(0), 0.0);
+        cursor.close();
+    }
+
+    @Test
+    public void migrate6To7() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 6);
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 7, true, AppDatabase.MIGRATION_6_7);
+
+        // A re-view replaces the row rather than adding a second one
+        db.execSQL("INSERT INTO view_history (userId, assetId, viewedAt) VALUES ('u1', 1, 100)");
+        db.execSQL("INSERT OR REPLACE INTO view_history (userId, assetId, viewedAt) VALUES ('u1', 1, 200)");
+        Cursor cursor = db.query("SELECT viewedAt FROM view_history WHERE userId = 'u1'");
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertEquals(200, cursor.getLong(0));
+        cursor.close();
+    }
+
+    @Test
+    public void migrate12To13() throws IOException {
+        SupportSQLiteDatabase db = helper.createDatabase(TEST_DB, 12);
+        db.execSQL("INSERT INTO assets (id, name, quantity, userId, views, likes, dislikes) " +
+                "VALUES (1, 'Test Asset', 1, 'testUser', 10, 5, 1)");
+        db.close();
+
+        db = helper.runMigrationsAndValidate(TEST_DB, 13, true, AppDatabase.MIGRATION_12_13);
+
+        // Existing assets are logged as changed
+        Cursor cursor = db.query("SELECT seq, deleted FROM asset_changes WHERE assetId = 1");
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        long seededSeq = cursor.getLong(0);
+        assertEquals(0, cursor.getInt(1));
+        cursor.close();
+
+        // Counter updates are not changes
+        db.execSQL("UPDATE assets SET views = views + 1, engagementScore = 2.5 WHERE id = 1");
+        cursor = db.query("SELECT seq FROM asset_changes WHERE assetId = 1");
+        cursor.moveToFirst();
+        assertEquals(seededSeq, cursor.getLong(0));
+        cursor.close();
+
+        // Query updates of edited columns move the asset forward in the log
+        db.execSQL("UPDATE assets SET name = 'Renamed Asset' WHERE id = 1");
+        cursor = db.query("SELECT seq FROM asset_changes WHERE assetId = 1");
+        cursor.moveToFirst();
+        long updatedSeq = cursor.getLong(0);
+        assertTrue(updatedSeq > seededSeq);
+        cursor.close();
+
+        // Deletes are kept as tombstones
+        db.execSQL("DELETE FROM assets WHERE id = 1");
+        cursor = db.query("SELECT seq, deleted, userId FROM asset_changes WHERE assetId = 1");
+        assertEquals(1, cursor.getCount());
+        cursor.moveToFirst();
+        assertTrue(cursor.getLong(0) > updatedSeq);
+        assertEquals(1, cursor.getInt(1));
+        assertEquals("testUser", cursor.getString(2));
+        cursor.close();
+    }
+
     @Test
     public void testAllMigrations() throws IOException {
         // Test all migrations from first version to latest
         Context context = ApplicationProvider.getApplicationContext();
         AppDatabase db = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
-                .addMigrations(AppDatabase.MIGRATION_1_2)
+                .addMigrations(AppDatabase.MIGRATION_1_2, AppDatabase.MIGRATION_2_3, AppDatabase.MIGRATION_3_4,
+                        AppDatabase.MIGRATION_4_5, AppDatabase.MIGRATION_5_6, AppDatabase.MIGRATION_6_7,
+                        AppDatabase.MIGRATION_7_8, AppDatabase.MIGRATION_8_9, AppDatabase.MIGRATION_9_10,
+                        AppDatabase.MIGRATION_10_11,
+                        AppDatabase.MIGRATION_11_12, AppDatabase.MIGRATION_12_13)
                 .build();
 
         // Verify database is successfully created after all migrations
@@ -13,12 +13,20 @@ import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.crashlytics.FirebaseCrashlytics;
 import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.FirebaseFirestoreSettings;
 import com.google.firebase.messaging.FirebaseMessaging;
 import com.google.firebase.storage.FirebaseStorage;
 import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.utils.AnalyticsTracker;
+import com.imaginit.hyperplux.utils.FeedMaterializer;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
+import com.imaginit.hyperplux.utils.ImageCacheStats;
+import com.imaginit.hyperplux.utils.TrendingTracker;
+import com.imaginit.hyperplux.utils.UploadQueue;
+import com.imaginit.hyperplux.utils.ViewHistory;
 
 /**
  * Main Application class for initializing app-wide components and configurations
@@ -39,6 +47,9 @@ public class HyperPlux extends Application {
     private FirebaseStorage storage;
     private FirebaseAuth auth;
 
+    // User the per-user caches currently hold data for
+    private String signedInUid;
+
     @Override
     public void onCreate() {
         super.onCreate();
@@ -62,6 +73,9 @@ public class HyperPlux extends Application {
         // Initialize Room database
         AppDatabase.getDatabase(this);
 
+        // Drop per-user caches when the user signs out or switches account
+        watchAccountChanges();
+
         Log.d(TAG, "HyperPlux Application initialized successfully");
     }
 
@@ -121,6 +135,38 @@ public class HyperPlux extends Application {
         }
     }
 
+    /**
+     * Watch auth state for the whole process, so caches are cleared however
+     * the sign-out happens
+     */
+    private void watchAccountChanges() {
+        if (auth == null) {
+            return;
+        }
+        auth.addAuthStateListener(firebaseAuth -> {
+            FirebaseUser user = firebaseAuth.getCurrentUser();
+            String uid = user != null ? user.getUid() : null;
+            if (signedInUid != null && !signedInUid.equals(uid)) {
+                onAccountChanged(signedInUid);
+            }
+            if (uid != null && !uid.equals(signedInUid)) {
+                // Chat images this user queued before signing out can go out now
+                UploadQueue.getInstance(this).resume();
+            }
+            signedInUid = uid;
+        });
+    }
+
+    /**
+     * Clear everything cached for a user who is no longer signed in
+     * @param previousUid The user who signed out
+     */
+    private void onAccountChanged(String previousUid) {
+        Log.d(TAG, "Clearing cached data for signed-out user");
+        FeedMaterializer.getInstance(this).clear(previousUid);
+        ViewHistory.getInstance(this).clear(previousUid);
+    }
+
     /**
      * Initialize Firebase Cloud Messaging
      */
@@ -224,5 +270,19 @@ public class HyperPlux extends Application {
         if (level >= TRIM_MEMORY_MODERATE) {
             Log.w(TAG, "Trimming memory to level: " + level);
         }
+
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            // Share buffered interactions before the process may be killed
+            TrendingTracker.getInstance().flush();
+
+            // The user left the app: report this session's image cache figures
+            ImageCacheStats stats = ImageCacheStats.getInstance();
+            if (stats.hasData()) {
+                AnalyticsTracker.getInstance(this).trackEvent(
+                        ImageCacheStats.EVENT_IMAGE_CACHE_STATS, ImageCacheManager.bitmapMemoryReport(this));
+                stats.reset();
+            }
+        }
+        ImageCacheManager.onTrimMemory(this, level);
     }
 }
\ No newline at end of file
@@ -18,6 +18,7 @@ import com.imaginit.hyperplux.database.AppDatabase;
 import com.imaginit.hyperplux.databinding.ActivityMainBinding;
 import com.imaginit.hyperplux.repositories.AssetRepository;
 import com.imaginit.hyperplux.repositories.UserRepository;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
 import com.imaginit.hyperplux.viewmodels.AssetViewModel;
 import com.imaginit.hyperplux.viewmodels.UserViewModel;
 import com.imaginit.hyperplux.viewmodels.ViewModelFactory;
@@ -189,6 +190,7 @@ public class MainActivity extends AppCompatActivity {
     protected void onStart() {
         super.onStart();
         auth.addAuthStateListener(authListener);
+        ImageCacheManager.restoreCacheBudget(getApplicationContext());
     }
 
     @Override
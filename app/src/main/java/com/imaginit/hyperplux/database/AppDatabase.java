@@ -11,8 +11,19 @@ import android.content.Context;
 import android.util.Log;
 
 import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.AssetChange;
+import com.imaginit.hyperplux.models.AssetCoView;
 import com.imaginit.hyperplux.models.AssetTransaction;
+import com.imaginit.hyperplux.models.FeedItem;
+import com.imaginit.hyperplux.models.MarketplaceListing;
+import com.imaginit.hyperplux.models.OwnerAuthority;
+import com.imaginit.hyperplux.models.PendingUpload;
+import com.imaginit.hyperplux.models.RemoteKey;
+import com.imaginit.hyperplux.models.UploadedImage;
 import com.imaginit.hyperplux.models.User;
+import com.imaginit.hyperplux.models.UserFts;
+import com.imaginit.hyperplux.models.UserSearchKey;
+import com.imaginit.hyperplux.models.ViewHistoryEntry;
 
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -21,15 +32,28 @@ import java.util.concurrent.Executors;
         entities = {
                 Asset.class,
                 User.class,
-                AssetTransaction.class
+                AssetTransaction.class,
+                UserFts.class,
+                FeedItem.class,
+                OwnerAuthority.class,
+                AssetCoView.class,
+                ViewHistoryEntry.class,
+                RemoteKey.class,
+                PendingUpload.class,
+                UploadedImage.class,
+                AssetChange.class,
+                UserSearchKey.class,
+                MarketplaceListing.class
         },
-        version = 2,
+        version = 13,
         exportSchema = true
 )
 @TypeConverters({DateConverter.class, StringListConverter.class})
 public abstract class AppDatabase extends RoomDatabase {
     private static final String TAG = "AppDatabase";
 
+    public static final String DATABASE_NAME = "hyperplux_database";
+
     // Number of threads for database operations
     private static final int NUMBER_OF_THREADS = 4;
 
@@ -41,6 +65,15 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract AssetDao assetDao();
     public abstract UserDao userDao();
     public abstract AssetTransactionDao assetTransactionDao();
+    public abstract FeedDao feedDao();
+    public abstract OwnerAuthorityDao ownerAuthorityDao();
+    public abstract CoViewDao coViewDao();
+    public abstract ViewHistoryDao viewHistoryDao();
+    public abstract RemoteKeyDao remoteKeyDao();
+    public abstract PendingUploadDao pendingUploadDao();
+    public abstract UploadedImageDao uploadedImageDao();
+    public abstract AssetChangeDao assetChangeDao();
+    public abstract MarketplaceListingDao marketplaceListingDao();
 
     // Database singleton instance
     private static volatile AppDatabase INSTANCE;
@@ -65,11 +98,269 @@ public abstract class AppDatabase extends RoomDatabase {
         }
     };
 
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Denormalized follower count used to rank search results
+            database.execSQL("ALTER TABLE users ADD COLUMN followerCount INTEGER NOT NULL DEFAULT 0");
+            // followers is a JSON array of uids, so commas + 1 gives the count
+            database.execSQL("UPDATE users SET followerCount = " +
+                    "length(followers) - length(replace(followers, ',', '')) + 1 " +
+                    "WHERE followers IS NOT NULL AND followers != '[]'");
+
+            // Full-text index for user search, keyed on a stable id per user (see createUserSearchTriggers)
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `users_fts` USING FTS4(" +
+                    "`displayName` TEXT, `emailLocalPart` TEXT, tokenize=unicode61)");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `user_search_keys` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `uid` TEXT NOT NULL)");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_user_search_keys_uid` " +
+                    "ON `user_search_keys` (`uid`)");
+            database.execSQL("INSERT OR IGNORE INTO user_search_keys (uid) SELECT uid FROM users");
+            database.execSQL("INSERT INTO users_fts(rowid, displayName, emailLocalPart) " +
+                    "SELECT user_search_keys.id, users.displayName, " + emailLocalPartOf("users.email") + " " +
+                    "FROM users JOIN user_search_keys ON user_search_keys.uid = users.uid");
+            createUserSearchTriggers(database);
+
+            Log.d(TAG, "Migration from version 2 to 3 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Materialized home feed of marketplace listings, filled in the background by FeedMaterializer
+            database.execSQL("CREATE TABLE IF NOT EXISTS `feed_items` (" +
+                    "`userId` TEXT NOT NULL, `docId` TEXT NOT NULL, `score` REAL NOT NULL, " +
+                    "`source` TEXT, `scoredAt` INTEGER NOT NULL, PRIMARY KEY(`userId`, `docId`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_feed_items_userId_score` " +
+                    "ON `feed_items` (`userId`, `score`)");
+
+            Log.d(TAG, "Migration from version 3 to 4 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Cached owner authority used by feed ranking
+            database.execSQL("CREATE TABLE IF NOT EXISTS `owner_authority` (" +
+                    "`userId` TEXT NOT NULL, `score` REAL NOT NULL, `computedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`userId`))");
+
+            Log.d(TAG, "Migration from version 4 to 5 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Co-view pairs behind "related assets"
+            database.execSQL("CREATE TABLE IF NOT EXISTS `asset_coviews` (" +
+                    "`assetId` INTEGER NOT NULL, `relatedAssetId` INTEGER NOT NULL, `weight` REAL NOT NULL, " +
+                    "`updatedAt` INTEGER NOT NULL, PRIMARY KEY(`assetId`, `relatedAssetId`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_asset_coviews_assetId_weight` " +
+                    "ON `asset_coviews` (`assetId`, `weight`)");
+
+            Log.d(TAG, "Migration from version 5 to 6 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Recently-viewed history, kept across launches
+            database.execSQL("CREATE TABLE IF NOT EXISTS `view_history` (" +
+                    "`userId` TEXT NOT NULL, `assetId` INTEGER NOT NULL, `viewedAt` INTEGER NOT NULL, " +
+                    "PRIMARY KEY(`userId`, `assetId`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_view_history_userId_viewedAt` " +
+                    "ON `view_history` (`userId`, `viewedAt`)");
+
+            Log.d(TAG, "Migration from version 6 to 7 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Paging cursors for Firestore queries cached in Room
+            database.execSQL("CREATE TABLE IF NOT EXISTS `remote_keys` (" +
+                    "`label` TEXT NOT NULL, `cursorTime` INTEGER, `cursorId` TEXT, " +
+                    "`endReached` INTEGER NOT NULL, `updatedAt` INTEGER NOT NULL, PRIMARY KEY(`label`))");
+            // Marketplace pages, cached by Firestore document ID outside the assets table
+            database.execSQL("CREATE TABLE IF NOT EXISTS `marketplace_listings` (" +
+                    "`docId` TEXT NOT NULL, `sortTime` INTEGER NOT NULL, `assetJson` TEXT NOT NULL, " +
+                    "`cachedAt` INTEGER NOT NULL, PRIMARY KEY(`docId`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_marketplace_listings_sortTime_docId` " +
+                    "ON `marketplace_listings` (`sortTime`, `docId`)");
+
+            Log.d(TAG, "Migration from version 7 to 8 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Thumbnail and medium image variants; existing rows keep only imageUri
+            database.execSQL("ALTER TABLE assets ADD COLUMN imageThumbUri TEXT");
+            database.execSQL("ALTER TABLE assets ADD COLUMN imageMediumUri TEXT");
+
+            Log.d(TAG, "Migration from version 8 to 9 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Persistent queue of image uploads and their resumable sessions
+            database.execSQL("CREATE TABLE IF NOT EXISTS `upload_queue` (" +
+                    "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `groupId` TEXT NOT NULL, " +
+                    "`ownerType` TEXT NOT NULL, `ownerId` TEXT NOT NULL, `variant` TEXT NOT NULL, " +
+                    "`localPath` TEXT NOT NULL, `storagePath` TEXT NOT NULL, `userId` TEXT, `sessionUri` TEXT, " +
+                    "`downloadUrl` TEXT, `applied` INTEGER NOT NULL, `bytesUploaded` INTEGER NOT NULL, `totalBytes` INTEGER NOT NULL, " +
+                    "`state` INTEGER NOT NULL, `attempts` INTEGER NOT NULL, `createdAt` INTEGER NOT NULL)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_upload_queue_ownerType_ownerId` " +
+                    "ON `upload_queue` (`ownerType`, `ownerId`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_upload_queue_groupId` " +
+                    "ON `upload_queue` (`groupId`)");
+
+            Log.d(TAG, "Migration from version 9 to 10 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Index of each user's uploaded images by content hash, for reuse instead of re-upload
+            database.execSQL("CREATE TABLE IF NOT EXISTS `uploaded_images` (" +
+                    "`userId` TEXT NOT NULL, `contentHash` TEXT NOT NULL, `thumbUrl` TEXT, `mediumUrl` TEXT, " +
+                    "`fullUrl` TEXT, `uploadedAt` INTEGER NOT NULL, PRIMARY KEY(`userId`, `contentHash`))");
+            database.execSQL("ALTER TABLE upload_queue ADD COLUMN contentHash TEXT");
+
+            Log.d(TAG, "Migration from version 10 to 11 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_11_12 = new Migration(11, 12) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // BlurHash placeholders, kept with the image until its upload is applied
+            database.execSQL("ALTER TABLE assets ADD COLUMN imageBlurHash TEXT");
+            database.execSQL("ALTER TABLE upload_queue ADD COLUMN blurHash TEXT");
+
+            Log.d(TAG, "Migration from version 11 to 12 completed");
+        }
+    };
+
+    public static final Migration MIGRATION_12_13 = new Migration(12, 13) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            // Change log for incremental cloud backup
+            database.execSQL("CREATE TABLE IF NOT EXISTS `asset_changes` (" +
+                    "`assetId` INTEGER NOT NULL, `userId` TEXT, `deleted` INTEGER NOT NULL, " +
+                    "`seq` INTEGER NOT NULL, PRIMARY KEY(`assetId`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_asset_changes_userId_seq` " +
+                    "ON `asset_changes` (`userId`, `seq`)");
+            // Existing assets have never been backed up incrementally, so all of them start dirty
+            database.execSQL("INSERT OR REPLACE INTO asset_changes (assetId, userId, deleted, seq) " +
+                    "SELECT id, userId, 0, id FROM assets");
+            createAssetChangeTriggers(database);
+
+            Log.d(TAG, "Migration from version 12 to 13 completed");
+        }
+    };
+
     // Array of all migrations for easier management
     private static final Migration[] ALL_MIGRATIONS = new Migration[]{
-            MIGRATION_1_2
+            MIGRATION_1_2,
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11,
+            MIGRATION_11_12,
+            MIGRATION_12_13
     };
 
+    /**
+     * Keep users_fts in sync with the users table. Index rows are keyed by
+     * the user's id in user_search_keys, which VACUUM cannot renumber. The
+     * BEFORE INSERT trigger covers INSERT OR REPLACE, which removes the old
+     * row without firing delete triggers.
+     */
+    static void createUserSearchTriggers(SupportSQLiteDatabase db) {
+        String keyOf = "(SELECT id FROM user_search_keys WHERE uid = %s)";
+        String newKey = String.format(keyOf, "new.uid");
+        String oldKey = String.format(keyOf, "old.uid");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_fts_before_insert BEFORE INSERT ON users BEGIN " +
+                "DELETE FROM users_fts WHERE rowid = " + newKey + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_fts_before_update BEFORE UPDATE ON users BEGIN " +
+                "DELETE FROM users_fts WHERE rowid = " + oldKey + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_fts_before_delete BEFORE DELETE ON users BEGIN " +
+                "DELETE FROM users_fts WHERE rowid = " + oldKey + "; END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_fts_after_insert AFTER INSERT ON users BEGIN " +
+                "INSERT OR IGNORE INTO user_search_keys (uid) VALUES (new.uid); " +
+                "INSERT INTO users_fts(rowid, displayName, emailLocalPart) " +
+                "VALUES (" + newKey + ", new.displayName, " + emailLocalPartOf("new.email") + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_fts_after_update AFTER UPDATE ON users BEGIN " +
+                "INSERT OR IGNORE INTO user_search_keys (uid) VALUES (new.uid); " +
+                "INSERT INTO users_fts(rowid, displayName, emailLocalPart) " +
+                "VALUES (" + newKey + ", new.displayName, " + emailLocalPartOf("new.email") + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS users_fts_after_delete AFTER DELETE ON users BEGIN " +
+                "DELETE FROM user_search_keys WHERE uid = old.uid; END");
+    }
+
+    // Columns the owner edits. Engagement counters and the score derived from them change on
+    // every view elsewhere and are not backed up per change
+    private static final String[] ASSET_EDITABLE_COLUMNS = {
+            "id", "name", "quantity", "description", "category", "brand", "model", "serialNumber",
+            "cost", "currency", "currentValue", "purchaseDate", "purchaseLocation", "receiptImageUri",
+            "currentLocation", "latitude", "longitude", "isShared",
+            "condition", "isForSale", "askingPrice", "isHidden", "isLoanedOut", "loanedTo", "loanDate",
+            "returnDate", "imageUri", "imageThumbUri", "imageMediumUri", "imageBlurHash",
+            "additionalImageUris", "documentUri", "userId",
+            "warrantyExpiration", "warrantyInfo", "lastMaintenance", "nextMaintenance",
+            "heirId", "willInstructions", "isBequest"
+    };
+
+    /**
+     * Log every insert, delete and edit of an asset into asset_changes,
+     * one row per asset carrying the next sequence number. Covers the DAO's
+     * UPDATE queries as well as entity writes, which a dirty flag set in
+     * Java would miss. Updates that only touch engagement counters are not
+     * logged.
+     */
+    static void createAssetChangeTriggers(SupportSQLiteDatabase db) {
+        String nextSeq = "(SELECT IFNULL(MAX(seq), 0) + 1 FROM asset_changes)";
+        StringBuilder edited = new StringBuilder();
+        for (String column : ASSET_EDITABLE_COLUMNS) {
+            if (edited.length() > 0) {
+                edited.append(" OR ");
+            }
+            edited.append("new.`").append(column).append("` IS NOT old.`").append(column).append('`');
+        }
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS asset_changes_after_insert AFTER INSERT ON assets BEGIN " +
+                "INSERT OR REPLACE INTO asset_changes (assetId, userId, deleted, seq) " +
+                "VALUES (new.id, new.userId, 0, " + nextSeq + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS asset_changes_after_update AFTER UPDATE ON assets " +
+                "WHEN " + edited + " BEGIN " +
+                "INSERT OR REPLACE INTO asset_changes (assetId, userId, deleted, seq) " +
+                "VALUES (new.id, new.userId, 0, " + nextSeq + "); END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS asset_changes_after_delete AFTER DELETE ON assets BEGIN " +
+                "INSERT OR REPLACE INTO asset_changes (assetId, userId, deleted, seq) " +
+                "VALUES (old.id, old.userId, 1, " + nextSeq + "); END");
+    }
+
+    // SQL expression for the part of an email address before the '@'
+    private static String emailLocalPartOf(String column) {
+        return "CASE WHEN instr(" + column + ", '@') > 0 " +
+                "THEN substr(" + column + ", 1, instr(" + column + ", '@') - 1) " +
+                "ELSE " + column + " END";
+    }
+
     public static AppDatabase getDatabase(Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
@@ -77,7 +368,7 @@ public abstract class AppDatabase extends RoomDatabase {
                     INSTANCE = Room.databaseBuilder(
                                     context.getApplicationContext(),
                                     AppDatabase.class,
-                                    "hyperplux_database")
+                                    DATABASE_NAME)
                             // Add all migrations
                             .addMigrations(ALL_MIGRATIONS)
                             // Fallback to destructive migration as last resort
@@ -87,6 +378,8 @@ public abstract class AppDatabase extends RoomDatabase {
                                 @Override
                                 public void onCreate(@NonNull SupportSQLiteDatabase db) {
                                     super.onCreate(db);
+                                    createUserSearchTriggers(db);
+                                    createAssetChangeTriggers(db);
                                     Log.d(TAG, "Database created");
 
                                     // You could prepopulate the database here if needed
@@ -108,6 +401,14 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 
+    /**
+     * Oldest schema version that migrates to the current one; anything
+     * older falls back to a destructive migration
+     */
+    public static int getOldestMigratableVersion() {
+        return ALL_MIGRATIONS[0].startVersion;
+    }
+
     /**
      * Close database and clear instance
      * (useful for testing and account switching)
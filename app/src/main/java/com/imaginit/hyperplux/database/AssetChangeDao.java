@@ -0,0 +1,25 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import com.imaginit.hyperplux.models.AssetChange;
+
+import java.util.List;
+
+@Dao
+public interface AssetChangeDao {
+    @Query("SELECT * FROM asset_changes WHERE userId = :userId AND seq > :afterSeq ORDER BY seq ASC LIMIT :limit")
+    List<AssetChange> getChangesSinceSync(String userId, long afterSeq, int limit);
+
+    @Query("SELECT COUNT(*) FROM asset_changes WHERE userId = :userId AND seq > :afterSeq")
+    int countChangesSinceSync(String userId, long afterSeq);
+
+    @Query("SELECT IFNULL(MAX(seq), 0) FROM asset_changes")
+    long getMaxSeqSync();
+
+    // The newest row is kept so seq never goes backwards
+    @Query("DELETE FROM asset_changes WHERE userId = :userId AND deleted = 1 AND seq <= :checkpoint " +
+            "AND seq < (SELECT MAX(seq) FROM asset_changes)")
+    void pruneDeletedSync(String userId, long checkpoint);
+}
@@ -39,6 +39,10 @@ public interface AssetDao {
     @Query("SELECT * FROM assets WHERE id = :id")
     Asset getAssetByIdSync(int id);
 
+    // Hidden assets included, for backup
+    @Query("SELECT * FROM assets WHERE id IN (:ids)")
+    List<Asset> getAssetsByIdsForBackupSync(List<Integer> ids);
+
     @Query("SELECT EXISTS(SELECT 1 FROM assets WHERE id = :id)")
     boolean assetExists(int id);
 
@@ -52,6 +56,10 @@ public interface AssetDao {
     @Query("SELECT * FROM assets WHERE userId = :userId")
     List<Asset> getAllAssetsByUserSync(String userId);
 
+    // Keyset page for streaming a user's assets: pass the last id seen, starting from 0
+    @Query("SELECT * FROM assets WHERE userId = :userId AND id > :afterId ORDER BY id ASC LIMIT :limit")
+    List<Asset> getAssetsByUserPageSync(String userId, int afterId, int limit);
+
     @Query("SELECT * FROM assets WHERE userId = :userId AND isHidden = 1")
     LiveData<List<Asset>> getHiddenAssetsByUser(String userId);
 
@@ -62,6 +70,10 @@ public interface AssetDao {
     @Query("SELECT * FROM assets WHERE userId IN (:userIds) AND isHidden = 0 AND isShared = 1 ORDER BY lastInteractionDate DESC LIMIT 100")
     LiveData<List<Asset>> getAssetsFromFollowing(List<String> userIds);
 
+    // Trending lookup; callers reorder by their own ranking
+    @Query("SELECT * FROM assets WHERE id IN (:ids) AND isHidden = 0 AND isShared = 1")
+    List<Asset> getAssetsByIdsSync(List<Integer> ids);
+
     @Query("SELECT * FROM assets WHERE userId = :userId AND isForSale = 1 AND isHidden = 0")
     LiveData<List<Asset>> getAssetsForSale(String userId);
 
@@ -94,21 +106,29 @@ public interface AssetDao {
     LiveData<List<Asset>> getAssetsInArea(double minLat, double maxLat, double minLong, double maxLong);
 
     // Increment metrics
-    @Query("UPDATE assets SET views = views + 1, lastInteractionDate = CURRENT_TIMESTAMP WHERE id = :assetId")
+    @Query("UPDATE assets SET views = views + 1, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id = :assetId")
     void incrementViews(int assetId);
 
-    @Query("UPDATE assets SET likes = likes + 1, lastInteractionDate = CURRENT_TIMESTAMP WHERE id = :assetId")
+    // Batched impressions: each asset counts at most once per session, so +1 each
+    @Query("UPDATE assets SET views = views + 1, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id IN (:assetIds)")
+    void incrementViewsBatch(List<Integer> assetIds);
+
+    @Query("UPDATE assets SET likes = likes + 1, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id = :assetId")
     void incrementLikes(int assetId);
 
-    @Query("UPDATE assets SET dislikes = dislikes + 1, lastInteractionDate = CURRENT_TIMESTAMP WHERE id = :assetId")
+    @Query("UPDATE assets SET dislikes = dislikes + 1, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id = :assetId")
     void incrementDislikes(int assetId);
 
-    @Query("UPDATE assets SET shares = shares + 1, lastInteractionDate = CURRENT_TIMESTAMP WHERE id = :assetId")
+    @Query("UPDATE assets SET shares = shares + 1, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id = :assetId")
     void incrementShares(int assetId);
 
-    @Query("UPDATE assets SET comments = comments + 1, lastInteractionDate = CURRENT_TIMESTAMP WHERE id = :assetId")
+    @Query("UPDATE assets SET comments = comments + 1, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id = :assetId")
     void incrementComments(int assetId);
 
+    // Overwrite counts with totals aggregated from sharded counters, with the score recomputed from them
+    @Query("UPDATE assets SET views = :views, likes = :likes, engagementScore = :engagementScore WHERE id = :assetId")
+    void setEngagementCounts(int assetId, int views, int likes, double engagementScore);
+
     // Bulk operations
     @Transaction
     @Query("UPDATE assets SET engagementScore = (views * 0.5 + likes * 2 + comments * 3 + shares * 5 - dislikes) WHERE userId = :userId")
@@ -119,13 +139,22 @@ public interface AssetDao {
     void deleteAllUserAssets(String userId);
 
     // Sale status operations
-    @Query("UPDATE assets SET isForSale = :isForSale, price = :price, currency = :currency, lastInteractionDate = CURRENT_TIMESTAMP WHERE id = :assetId")
+    @Query("UPDATE assets SET isForSale = :isForSale, price = :price, currency = :currency, lastInteractionDate = strftime('%s', 'now') * 1000 WHERE id = :assetId")
     void updateSaleStatus(int assetId, boolean isForSale, double price, String currency);
 
     // Location updates
     @Query("UPDATE assets SET latitude = :latitude, longitude = :longitude, locationName = :locationName WHERE id = :assetId")
     void updateLocation(int assetId, double latitude, double longitude, String locationName);
 
+    // Image variants once their uploads finish
+    @Query("UPDATE assets SET imageThumbUri = :thumbUri, imageMediumUri = :mediumUri, imageUri = :imageUri, " +
+            "imageBlurHash = :blurHash WHERE id = :assetId")
+    void updateImages(int assetId, String thumbUri, String mediumUri, String imageUri, String blurHash);
+
+    // Full-size image uploaded after the smaller variants were applied
+    @Query("UPDATE assets SET imageUri = :imageUri WHERE id = :assetId")
+    void updateFullImage(int assetId, String imageUri);
+
     // Return count for pagination
     @Query("SELECT COUNT(*) FROM assets WHERE userId = :userId AND isHidden = 0")
     int getVisibleAssetCount(String userId);
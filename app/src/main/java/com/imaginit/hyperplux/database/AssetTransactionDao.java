@@ -55,6 +55,14 @@ public interface AssetTransactionDao {
     @Query("SELECT * FROM asset_transactions WHERE fromUserId = :userId OR toUserId = :userId ORDER BY transactionDate DESC")
     List<AssetTransaction> getAllTransactionsForUserSync(String userId);
 
+    // Keyset page for streaming a user's transactions: pass the last id seen, starting from 0
+    @Query("SELECT * FROM asset_transactions WHERE (fromUserId = :userId OR toUserId = :userId) AND id > :afterId " +
+            "ORDER BY id ASC LIMIT :limit")
+    List<AssetTransaction> getTransactionsForUserPageSync(String userId, int afterId, int limit);
+
+    @Query("SELECT COUNT(*) FROM asset_transactions WHERE fromUserId = :userId OR toUserId = :userId")
+    int getTransactionCountForUser(String userId);
+
     // Transactions by status
     @Query("SELECT * FROM asset_transactions WHERE (fromUserId = :userId OR toUserId = :userId) AND status = :status ORDER BY transactionDate DESC")
     LiveData<List<AssetTransaction>> getTransactionsByStatus(String userId, String status);
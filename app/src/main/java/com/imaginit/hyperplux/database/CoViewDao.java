@@ -0,0 +1,83 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.imaginit.hyperplux.models.Asset;
+
+import java.util.Collections;
+import java.util.List;
+
+@Dao
+public interface CoViewDao {
+    // UPSERT needs SQLite 3.24 (API 30), so insert-if-missing then add
+    @Query("INSERT OR IGNORE INTO asset_coviews (assetId, relatedAssetId, weight, updatedAt) " +
+            "VALUES (:assetId, :relatedAssetId, 0, :now)")
+    void ensurePair(int assetId, int relatedAssetId, long now);
+
+    @Query("UPDATE asset_coviews SET weight = weight + :amount, updatedAt = :now " +
+            "WHERE assetId = :assetId AND relatedAssetId = :relatedAssetId")
+    void addWeight(int assetId, int relatedAssetId, double amount, long now);
+
+    // Keep an asset's strongest pairs. Just-recorded pairs are always kept and evict the
+    // weakest (then stalest) others; otherwise a new pair could never enter a full list.
+    @Query("DELETE FROM asset_coviews WHERE assetId = :assetId AND relatedAssetId NOT IN " +
+            "(SELECT relatedAssetId FROM asset_coviews WHERE assetId = :assetId " +
+            "ORDER BY relatedAssetId IN (:admitted) DESC, weight DESC, updatedAt DESC LIMIT :keep)")
+    void trimRelated(int assetId, List<Integer> admitted, int keep);
+
+    /**
+     * Count one co-view in both directions and re-apply the per-asset cap
+     */
+    @Transaction
+    default void recordPairs(int assetId, List<Integer> sessionAssetIds, int keepPerAsset, long now) {
+        for (int other : sessionAssetIds) {
+            ensurePair(assetId, other, now);
+            addWeight(assetId, other, 1.0, now);
+            ensurePair(other, assetId, now);
+            addWeight(other, assetId, 1.0, now);
+            trimRelated(other, Collections.singletonList(assetId), keepPerAsset);
+        }
+        // The session is no longer than the cap, so all of its pairs fit
+        trimRelated(assetId, sessionAssetIds, keepPerAsset);
+    }
+
+    @Query("UPDATE asset_coviews SET weight = weight * :factor")
+    void decayAll(double factor);
+
+    @Query("DELETE FROM asset_coviews WHERE weight < :minWeight")
+    void deleteWeakerThan(double minWeight);
+
+    @Query("DELETE FROM asset_coviews WHERE assetId = :assetId OR relatedAssetId = :assetId")
+    void deleteForAsset(int assetId);
+
+    /**
+     * Age out old co-views so the model follows current behaviour
+     */
+    @Transaction
+    default void prune(double decayFactor, double minWeight) {
+        decayAll(decayFactor);
+        deleteWeakerThan(minWeight);
+    }
+
+    // Assets co-viewed with assetId, strongest first. Co-views with the rest of the session
+    // (which must include assetId) count at half weight, so they break near-ties.
+    @Query("SELECT assets.* FROM asset_coviews INNER JOIN assets ON assets.id = asset_coviews.relatedAssetId " +
+            "WHERE asset_coviews.assetId IN (:sessionAssetIds) AND asset_coviews.relatedAssetId != :assetId " +
+            "AND assets.isHidden = 0 AND assets.isShared = 1 " +
+            "GROUP BY asset_coviews.relatedAssetId " +
+            "HAVING SUM(asset_coviews.assetId = :assetId) > 0 " +
+            "ORDER BY SUM(CASE WHEN asset_coviews.assetId = :assetId THEN asset_coviews.weight " +
+            "ELSE asset_coviews.weight * 0.5 END) DESC LIMIT :limit")
+    LiveData<List<Asset>> getRelatedAssets(int assetId, List<Integer> sessionAssetIds, int limit);
+
+    // Assets co-viewed with any of the given ones, not counting those themselves
+    @Query("SELECT assets.* FROM asset_coviews INNER JOIN assets ON assets.id = asset_coviews.relatedAssetId " +
+            "WHERE asset_coviews.assetId IN (:assetIds) AND asset_coviews.relatedAssetId NOT IN (:assetIds) " +
+            "AND assets.isHidden = 0 AND assets.isShared = 1 " +
+            "GROUP BY asset_coviews.relatedAssetId " +
+            "ORDER BY SUM(asset_coviews.weight) DESC LIMIT :limit")
+    List<Asset> getRelatedToAnySync(List<Integer> assetIds, int limit);
+}
@@ -0,0 +1,70 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.imaginit.hyperplux.models.FeedItem;
+import com.imaginit.hyperplux.models.MarketplaceListing;
+
+import java.util.List;
+
+@Dao
+public interface FeedDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<FeedItem> items);
+
+    @Query("DELETE FROM feed_items WHERE userId = :userId")
+    void deleteFeed(String userId);
+
+    @Query("DELETE FROM feed_items WHERE userId = :userId AND docId IN (:docIds)")
+    void deleteItems(String userId, List<String> docIds);
+
+    // Drop rows whose listing a marketplace refresh removed
+    @Query("DELETE FROM feed_items WHERE userId = :userId AND docId NOT IN " +
+            "(SELECT docId FROM marketplace_listings)")
+    void deleteUnlisted(String userId);
+
+    // Keep only the best-ranked rows for a user
+    @Query("DELETE FROM feed_items WHERE userId = :userId AND docId NOT IN " +
+            "(SELECT docId FROM feed_items WHERE userId = :userId ORDER BY score DESC LIMIT :keep)")
+    void trimFeed(String userId, int keep);
+
+    @Query("SELECT COUNT(*) FROM feed_items WHERE userId = :userId")
+    int getFeedSize(String userId);
+
+    /**
+     * Swap in a freshly ranked feed so readers never see a half-written one
+     */
+    @Transaction
+    default void replaceFeed(String userId, List<FeedItem> items) {
+        deleteFeed(userId);
+        insertAll(items);
+    }
+
+    /**
+     * Apply a batch of rescored and removed rows, drop rows whose listing
+     * is gone, then trim to size
+     */
+    @Transaction
+    default void applyUpdate(String userId, List<FeedItem> upserts, List<String> removedDocIds, int keep) {
+        if (!removedDocIds.isEmpty()) {
+            deleteItems(userId, removedDocIds);
+        }
+        deleteUnlisted(userId);
+        if (!upserts.isEmpty()) {
+            insertAll(upserts);
+        }
+        trimFeed(userId, keep);
+    }
+
+    // First page of the ranked feed; listings that left the cache since scoring are skipped
+    @Query("SELECT marketplace_listings.* FROM feed_items " +
+            "INNER JOIN marketplace_listings ON marketplace_listings.docId = feed_items.docId " +
+            "WHERE feed_items.userId = :userId " +
+            "ORDER BY feed_items.score DESC LIMIT :limit")
+    LiveData<List<MarketplaceListing>> getFeedListings(String userId, int limit);
+}
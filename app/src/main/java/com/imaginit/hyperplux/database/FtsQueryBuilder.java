@@ -0,0 +1,43 @@
+package com.imaginit.hyperplux.database;
+
+import java.util.Locale;
+
+/**
+ * Builds safe FTS MATCH expressions from raw user input
+ */
+public final class FtsQueryBuilder {
+    // Cap the number of terms so a pasted paragraph doesn't become a huge query
+    private static final int MAX_TERMS = 5;
+
+    private FtsQueryBuilder() {
+    }
+
+    /**
+     * Convert free text into a prefix query, e.g. "jo sm" -> "jo* sm*".
+     * Every term must match (FTS implicit AND). Operators and quotes are
+     * stripped so user input can't change the query syntax.
+     * @param raw The text typed by the user
+     * @return MATCH expression, or null if the input has no searchable terms
+     */
+    public static String prefixQuery(String raw) {
+        if (raw == null) {
+            return null;
+        }
+
+        StringBuilder match = new StringBuilder();
+        int terms = 0;
+        for (String token : raw.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append(token).append('*');
+            if (++terms == MAX_TERMS) {
+                break;
+            }
+        }
+        return terms == 0 ? null : match.toString();
+    }
+}
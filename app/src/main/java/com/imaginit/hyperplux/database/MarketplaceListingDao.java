@@ -0,0 +1,41 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.imaginit.hyperplux.models.MarketplaceListing;
+
+import java.util.List;
+
+@Dao
+public interface MarketplaceListingDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<MarketplaceListing> listings);
+
+    // Marketplace page window; same order as the Firestore query that fills it
+    @Query("SELECT * FROM marketplace_listings ORDER BY sortTime DESC, docId DESC LIMIT :limit")
+    LiveData<List<MarketplaceListing>> getPage(int limit);
+
+    @Query("SELECT COUNT(*) FROM marketplace_listings")
+    int getCountSync();
+
+    // Feed candidates, newest first (run off the main thread by FeedMaterializer)
+    @Query("SELECT * FROM marketplace_listings ORDER BY sortTime DESC, docId DESC LIMIT :limit")
+    List<MarketplaceListing> getRecentSync(int limit);
+
+    // Listings fetched since the last feed update. Keyed on (cachedAt, docId) because a
+    // whole page is saved with one timestamp and a batch can end partway through it.
+    @Query("SELECT * FROM marketplace_listings WHERE cachedAt > :sinceTime " +
+            "OR (cachedAt = :sinceTime AND docId > :sinceDocId) " +
+            "ORDER BY cachedAt ASC, docId ASC LIMIT :limit")
+    List<MarketplaceListing> getCachedSinceSync(long sinceTime, String sinceDocId, int limit);
+
+    @Query("SELECT * FROM marketplace_listings WHERE docId = :docId")
+    LiveData<MarketplaceListing> getByDocId(String docId);
+
+    @Query("DELETE FROM marketplace_listings")
+    void clear();
+}
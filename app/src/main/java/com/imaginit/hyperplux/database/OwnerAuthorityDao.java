@@ -0,0 +1,39 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.imaginit.hyperplux.models.OwnerAuthority;
+
+import java.util.List;
+
+@Dao
+public interface OwnerAuthorityDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<OwnerAuthority> scores);
+
+    @Query("SELECT * FROM owner_authority WHERE userId IN (:userIds)")
+    List<OwnerAuthority> getScoresSync(List<String> userIds);
+
+    // Inputs for the authority score, gathered for a batch of owners in one query
+    @Query("SELECT uid AS userId, followerCount, overallEngagementScore, " +
+            "(SELECT COUNT(*) FROM asset_transactions t WHERE t.status = 'COMPLETED' " +
+            "AND (t.fromUserId = users.uid OR t.toUserId = users.uid)) AS completedTransactions " +
+            "FROM users WHERE uid IN (:userIds)")
+    List<OwnerStats> getOwnerStatsSync(List<String> userIds);
+
+    @Query("DELETE FROM owner_authority WHERE computedAt < :before")
+    void deleteOlderThan(long before);
+
+    /**
+     * Row type for getOwnerStatsSync
+     */
+    class OwnerStats {
+        public String userId;
+        public int followerCount;
+        public double overallEngagementScore;
+        public int completedTransactions;
+    }
+}
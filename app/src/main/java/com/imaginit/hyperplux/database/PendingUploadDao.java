@@ -0,0 +1,65 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.Query;
+
+import com.imaginit.hyperplux.models.PendingUpload;
+
+import java.util.List;
+
+@Dao
+public interface PendingUploadDao {
+    @Insert
+    void insertAll(List<PendingUpload> uploads);
+
+    // Oldest first, so images finish in the order they were added
+    @Query("SELECT * FROM upload_queue WHERE state = 0 AND variant != 'link' ORDER BY createdAt ASC, id ASC")
+    List<PendingUpload> getPendingSync();
+
+    @Query("SELECT * FROM upload_queue WHERE groupId = :groupId")
+    List<PendingUpload> getGroupSync(String groupId);
+
+    // A group already uploading this user's image, if any
+    @Query("SELECT groupId FROM upload_queue WHERE userId = :userId AND contentHash = :contentHash " +
+            "AND variant != 'link' LIMIT 1")
+    String getGroupIdForHashSync(String userId, String contentHash);
+
+    // Groups with a finished upload, which may still have owners to apply it to
+    @Query("SELECT DISTINCT groupId FROM upload_queue WHERE state = 1 AND variant != 'link'")
+    List<String> getGroupIdsWithUploadsSync();
+
+    @Query("UPDATE upload_queue SET applied = 1 WHERE groupId = :groupId " +
+            "AND ownerType = :ownerType AND ownerId = :ownerId")
+    void markApplied(String groupId, String ownerType, String ownerId);
+
+    @Query("UPDATE upload_queue SET state = 2 WHERE groupId = :groupId AND variant = 'link'")
+    void failLinks(String groupId);
+
+    @Query("SELECT * FROM upload_queue WHERE ownerType = :ownerType AND ownerId = :ownerId")
+    LiveData<List<PendingUpload>> observeOwner(String ownerType, String ownerId);
+
+    @Query("UPDATE upload_queue SET sessionUri = :sessionUri WHERE id = :id")
+    void updateSession(long id, String sessionUri);
+
+    @Query("UPDATE upload_queue SET bytesUploaded = :bytesUploaded, totalBytes = :totalBytes WHERE id = :id")
+    void updateProgress(long id, long bytesUploaded, long totalBytes);
+
+    @Query("UPDATE upload_queue SET state = 1, downloadUrl = :downloadUrl, bytesUploaded = totalBytes WHERE id = :id")
+    void markDone(long id, String downloadUrl);
+
+    @Query("UPDATE upload_queue SET state = :state, attempts = :attempts, sessionUri = :sessionUri WHERE id = :id")
+    void updateAttempt(long id, int state, int attempts, String sessionUri);
+
+    @Query("SELECT * FROM upload_queue WHERE ownerType = :ownerType AND ownerId = :ownerId AND state = 2")
+    List<PendingUpload> getFailedSync(String ownerType, String ownerId);
+
+    // Give the owner's failed images a fresh set of attempts, including groups it is linked to
+    @Query("UPDATE upload_queue SET state = 0, attempts = 0 WHERE state = 2 AND groupId IN " +
+            "(SELECT groupId FROM upload_queue WHERE ownerType = :ownerType AND ownerId = :ownerId AND state = 2)")
+    int resetFailed(String ownerType, String ownerId);
+
+    @Query("DELETE FROM upload_queue WHERE groupId = :groupId")
+    void deleteGroup(String groupId);
+}
@@ -0,0 +1,20 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.imaginit.hyperplux.models.RemoteKey;
+
+@Dao
+public interface RemoteKeyDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(RemoteKey key);
+
+    @Query("SELECT * FROM remote_keys WHERE label = :label")
+    RemoteKey getKeySync(String label);
+
+    @Query("DELETE FROM remote_keys WHERE label = :label")
+    void delete(String label);
+}
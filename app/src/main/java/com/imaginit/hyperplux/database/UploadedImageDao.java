@@ -0,0 +1,17 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.imaginit.hyperplux.models.UploadedImage;
+
+@Dao
+public interface UploadedImageDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insert(UploadedImage image);
+
+    @Query("SELECT * FROM uploaded_images WHERE userId = :userId AND contentHash = :contentHash")
+    UploadedImage getSync(String userId, String contentHash);
+}
@@ -34,8 +34,14 @@ public interface UserDao {
     @Query("SELECT * FROM users")
     LiveData<List<User>> getAllUsers();
 
-    @Query("SELECT * FROM users WHERE displayName LIKE '%' || :query || '%' OR email LIKE '%' || :query || '%'")
-    LiveData<List<User>> searchUsers(String query);
+    // Full-text search; build matchQuery with FtsQueryBuilder.prefixQuery
+    @Query("SELECT users.* FROM users_fts " +
+            "JOIN user_search_keys ON user_search_keys.id = users_fts.rowid " +
+            "JOIN users ON users.uid = user_search_keys.uid " +
+            "WHERE users_fts MATCH :matchQuery " +
+            "ORDER BY users.followerCount DESC, users.overallEngagementScore DESC " +
+            "LIMIT :limit OFFSET :offset")
+    List<User> searchUsersSync(String matchQuery, int limit, int offset);
 
     @Query("SELECT * FROM users WHERE uid IN (:userIds)")
     LiveData<List<User>> getUsersByIds(List<String> userIds);
@@ -61,6 +67,12 @@ public interface UserDao {
     @Query("UPDATE users SET totalViews = totalViews + :amount WHERE uid = :userId")
     void incrementViews(String userId, int amount);
 
+    // Same formula as User.recalculateEngagementScore
+    @Query("UPDATE users SET totalLikes = :totalLikes, totalViews = :totalViews, " +
+            "overallEngagementScore = (:totalLikes * 2 + :totalViews * 0.5) * (1 + followerCount * 0.1) " +
+            "WHERE uid = :userId")
+    void setEngagementTotals(String userId, int totalLikes, int totalViews);
+
     @Query("UPDATE users SET overallEngagementScore = :score WHERE uid = :userId")
     void updateEngagementScore(String userId, double score);
 
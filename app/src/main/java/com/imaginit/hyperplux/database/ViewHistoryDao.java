@@ -0,0 +1,48 @@
+package com.imaginit.hyperplux.database;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+import androidx.room.Transaction;
+
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.ViewHistoryEntry;
+
+import java.util.List;
+
+@Dao
+public interface ViewHistoryDao {
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertAll(List<ViewHistoryEntry> entries);
+
+    // Keep only a user's newest entries
+    @Query("DELETE FROM view_history WHERE userId = :userId AND assetId NOT IN " +
+            "(SELECT assetId FROM view_history WHERE userId = :userId ORDER BY viewedAt DESC LIMIT :keep)")
+    void trimHistory(String userId, int keep);
+
+    /**
+     * Write a batch of views and re-apply the cap in one transaction
+     */
+    @Transaction
+    default void recordViews(String userId, List<ViewHistoryEntry> entries, int keep) {
+        insertAll(entries);
+        trimHistory(userId, keep);
+    }
+
+    // Newest first; used to warm the in-memory history
+    @Query("SELECT * FROM view_history WHERE userId = :userId ORDER BY viewedAt DESC LIMIT :limit")
+    List<ViewHistoryEntry> getHistorySync(String userId, int limit);
+
+    @Query("SELECT assets.* FROM view_history INNER JOIN assets ON assets.id = view_history.assetId " +
+            "WHERE view_history.userId = :userId AND assets.isHidden = 0 " +
+            "ORDER BY view_history.viewedAt DESC LIMIT :limit")
+    LiveData<List<Asset>> getRecentlyViewed(String userId, int limit);
+
+    @Query("DELETE FROM view_history WHERE assetId = :assetId")
+    void deleteForAsset(int assetId);
+
+    @Query("DELETE FROM view_history WHERE userId = :userId")
+    void clearHistory(String userId);
+}
@@ -1,11 +1,13 @@
 package com.imaginit.hyperplux.models;
 
 import androidx.room.Entity;
+import androidx.room.Ignore;
 import androidx.room.PrimaryKey;
 import androidx.room.TypeConverters;
 import android.os.Parcel;
 import android.os.Parcelable;
 
+import com.google.firebase.firestore.Exclude;
 import com.imaginit.hyperplux.database.DateConverter;
 
 import java.util.Date;
@@ -53,6 +55,10 @@ public class Asset implements Parcelable {
 
     // Media
     private String imageUri;
+    // Smaller variants of imageUri for lists; null for images uploaded before they existed
+    private String imageThumbUri;
+    private String imageMediumUri;
+    private String imageBlurHash; // BlurHash of imageUri, drawn while it loads
     private List<String> additionalImageUris; // Will be converted using JSON
     private String documentUri;
 
@@ -77,6 +83,11 @@ public class Asset implements Parcelable {
     private String willInstructions;
     private boolean isBequest;
 
+    // Firestore document ID when read from the marketplace cache; null for
+    // the user's own assets, whose id is only meaningful on this device
+    @Ignore
+    private transient String listingId;
+
     // Constructor with minimum required fields
     public Asset(String name, int quantity, String userId) {
         this.name = name;
@@ -208,6 +219,9 @@ public class Asset implements Parcelable {
         heirId = in.readString();
         willInstructions = in.readString();
         isBequest = in.readByte() != 0;
+        imageThumbUri = in.readString();
+        imageMediumUri = in.readString();
+        imageBlurHash = in.readString();
     }
 
     public static final Creator<Asset> CREATOR = new Creator<Asset>() {
@@ -273,6 +287,9 @@ public class Asset implements Parcelable {
         dest.writeString(heirId);
         dest.writeString(willInstructions);
         dest.writeByte((byte) (isBequest ? 1 : 0));
+        dest.writeString(imageThumbUri);
+        dest.writeString(imageMediumUri);
+        dest.writeString(imageBlurHash);
     }
 
     // Calculate engagement score based on user interactions
@@ -382,6 +399,15 @@ public class Asset implements Parcelable {
     public String getImageUri() { return imageUri; }
     public void setImageUri(String imageUri) { this.imageUri = imageUri; }
 
+    public String getImageThumbUri() { return imageThumbUri; }
+    public void setImageThumbUri(String imageThumbUri) { this.imageThumbUri = imageThumbUri; }
+
+    public String getImageMediumUri() { return imageMediumUri; }
+    public void setImageMediumUri(String imageMediumUri) { this.imageMediumUri = imageMediumUri; }
+
+    public String getImageBlurHash() { return imageBlurHash; }
+    public void setImageBlurHash(String imageBlurHash) { this.imageBlurHash = imageBlurHash; }
+
     public List<String> getAdditionalImageUris() { return additionalImageUris; }
     public void setAdditionalImageUris(List<String> additionalImageUris) { this.additionalImageUris = additionalImageUris; }
 
@@ -455,6 +481,11 @@ public class Asset implements Parcelable {
     public boolean isBequest() { return isBequest; }
     public void setBequest(boolean bequest) { isBequest = bequest; }
 
+    @Exclude
+    public String getListingId() { return listingId; }
+    @Exclude
+    public void setListingId(String listingId) { this.listingId = listingId; }
+
     // Custom equals method for proper comparison
     @Override
     public boolean equals(Object o) {
@@ -470,7 +501,5 @@ public class Asset implements Parcelable {
         return id;
     }
 
-    public void setEngagementScore(double personalizedScore) {
-
-    }
+    public void setEngagementScore(double engagementScore) { this.engagementScore = engagementScore; }
 }
\ No newline at end of file
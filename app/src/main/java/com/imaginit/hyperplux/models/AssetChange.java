@@ -0,0 +1,38 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Latest local change to an asset, written by triggers on the assets table
+ * so every write path is covered. seq only grows; a cloud backup uploads
+ * the rows past its last checkpoint and moves the checkpoint forward.
+ */
+@Entity(tableName = "asset_changes", indices = {@Index(value = {"userId", "seq"})})
+public class AssetChange {
+    @PrimaryKey
+    private int assetId;
+    private String userId;
+    private boolean deleted;
+    private long seq;
+
+    public AssetChange(int assetId, String userId, boolean deleted, long seq) {
+        this.assetId = assetId;
+        this.userId = userId;
+        this.deleted = deleted;
+        this.seq = seq;
+    }
+
+    public int getAssetId() { return assetId; }
+    public void setAssetId(int assetId) { this.assetId = assetId; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public boolean isDeleted() { return deleted; }
+    public void setDeleted(boolean deleted) { this.deleted = deleted; }
+
+    public long getSeq() { return seq; }
+    public void setSeq(long seq) { this.seq = seq; }
+}
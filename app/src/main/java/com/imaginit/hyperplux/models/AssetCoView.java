@@ -0,0 +1,37 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * How often two assets were viewed in the same session. Stored in both
+ * directions and capped to the top rows per asset by CoViewRecommender.
+ */
+@Entity(tableName = "asset_coviews",
+        primaryKeys = {"assetId", "relatedAssetId"},
+        indices = {@Index({"assetId", "weight"})})
+public class AssetCoView {
+    private int assetId;
+    private int relatedAssetId;
+    private double weight; // Decayed co-view count
+    private long updatedAt;
+
+    public AssetCoView(int assetId, int relatedAssetId, double weight, long updatedAt) {
+        this.assetId = assetId;
+        this.relatedAssetId = relatedAssetId;
+        this.weight = weight;
+        this.updatedAt = updatedAt;
+    }
+
+    public int getAssetId() { return assetId; }
+    public void setAssetId(int assetId) { this.assetId = assetId; }
+
+    public int getRelatedAssetId() { return relatedAssetId; }
+    public void setRelatedAssetId(int relatedAssetId) { this.relatedAssetId = relatedAssetId; }
+
+    public double getWeight() { return weight; }
+    public void setWeight(double weight) { this.weight = weight; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+}
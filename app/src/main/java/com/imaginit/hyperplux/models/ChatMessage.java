@@ -17,6 +17,10 @@ public class ChatMessage {
     private String type;
     private String text;
     private String imageUrl;
+    // Smaller variants of imageUrl; null for images sent before they existed
+    private String imageThumbUrl;
+    private String imageMediumUrl;
+    private String imageBlurHash; // BlurHash of imageUrl, drawn while it loads
     private String assetId;
     private Date timestamp;
     private boolean read;
@@ -73,6 +77,30 @@ public class ChatMessage {
         this.imageUrl = imageUrl;
     }
 
+    public String getImageThumbUrl() {
+        return imageThumbUrl;
+    }
+
+    public void setImageThumbUrl(String imageThumbUrl) {
+        this.imageThumbUrl = imageThumbUrl;
+    }
+
+    public String getImageMediumUrl() {
+        return imageMediumUrl;
+    }
+
+    public void setImageMediumUrl(String imageMediumUrl) {
+        this.imageMediumUrl = imageMediumUrl;
+    }
+
+    public String getImageBlurHash() {
+        return imageBlurHash;
+    }
+
+    public void setImageBlurHash(String imageBlurHash) {
+        this.imageBlurHash = imageBlurHash;
+    }
+
     public String getAssetId() {
         return assetId;
     }
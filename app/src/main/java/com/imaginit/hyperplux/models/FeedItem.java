@@ -0,0 +1,54 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * One ranked row of a user's materialized home feed, pointing at a cached
+ * marketplace listing by its Firestore document ID.
+ * Written in the background by FeedMaterializer; the feed screen only reads it.
+ */
+@Entity(tableName = "feed_items",
+        primaryKeys = {"userId", "docId"},
+        indices = {@Index({"userId", "score"})})
+public class FeedItem {
+    public static final String SOURCE_FOLLOWING = "following";
+    public static final String SOURCE_RELATED = "related";
+    public static final String SOURCE_CATEGORY = "category";
+    public static final String SOURCE_NEARBY = "nearby";
+    public static final String SOURCE_TOP = "top";
+
+    @NonNull
+    private String userId;
+    @NonNull
+    private String docId;
+    private double score;
+    private String source; // Candidate source that first surfaced the asset
+    private long scoredAt;
+
+    public FeedItem(@NonNull String userId, @NonNull String docId, double score, String source, long scoredAt) {
+        this.userId = userId;
+        this.docId = docId;
+        this.score = score;
+        this.source = source;
+        this.scoredAt = scoredAt;
+    }
+
+    @NonNull
+    public String getUserId() { return userId; }
+    public void setUserId(@NonNull String userId) { this.userId = userId; }
+
+    @NonNull
+    public String getDocId() { return docId; }
+    public void setDocId(@NonNull String docId) { this.docId = docId; }
+
+    public double getScore() { return score; }
+    public void setScore(double score) { this.score = score; }
+
+    public String getSource() { return source; }
+    public void setSource(String source) { this.source = source; }
+
+    public long getScoredAt() { return scoredAt; }
+    public void setScoredAt(long scoredAt) { this.scoredAt = scoredAt; }
+}
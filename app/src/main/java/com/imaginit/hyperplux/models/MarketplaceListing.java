@@ -0,0 +1,81 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A marketplace asset cached from Firestore. Listings are keyed by their
+ * Firestore document ID and kept apart from the assets table, whose local
+ * IDs belong to the signed-in user's own assets. Rows sort by
+ * (sortTime, docId), the same key as the remote query that fills them.
+ */
+@Entity(tableName = "marketplace_listings",
+        indices = {@Index({"sortTime", "docId"})})
+public class MarketplaceListing {
+    private static final Gson gson = new GsonBuilder()
+            .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ")
+            .create();
+
+    @PrimaryKey
+    @NonNull
+    private String docId;
+    private long sortTime; // lastInteractionDate in millis
+    @NonNull
+    private String assetJson;
+    private long cachedAt;
+
+    public MarketplaceListing(@NonNull String docId, long sortTime, @NonNull String assetJson, long cachedAt) {
+        this.docId = docId;
+        this.sortTime = sortTime;
+        this.assetJson = assetJson;
+        this.cachedAt = cachedAt;
+    }
+
+    public static MarketplaceListing fromAsset(@NonNull String docId, long sortTime, Asset asset, long cachedAt) {
+        return new MarketplaceListing(docId, sortTime, gson.toJson(asset), cachedAt);
+    }
+
+    public Asset toAsset() {
+        Asset asset = gson.fromJson(assetJson, Asset.class);
+        if (asset != null) {
+            asset.setListingId(docId);
+        }
+        return asset;
+    }
+
+    /**
+     * The assets of several listings, in order, skipping unreadable ones
+     */
+    public static List<Asset> toAssets(List<MarketplaceListing> listings) {
+        List<Asset> assets = new ArrayList<>(listings.size());
+        for (MarketplaceListing listing : listings) {
+            Asset asset = listing.toAsset();
+            if (asset != null) {
+                assets.add(asset);
+            }
+        }
+        return assets;
+    }
+
+    @NonNull
+    public String getDocId() { return docId; }
+    public void setDocId(@NonNull String docId) { this.docId = docId; }
+
+    public long getSortTime() { return sortTime; }
+    public void setSortTime(long sortTime) { this.sortTime = sortTime; }
+
+    @NonNull
+    public String getAssetJson() { return assetJson; }
+    public void setAssetJson(@NonNull String assetJson) { this.assetJson = assetJson; }
+
+    public long getCachedAt() { return cachedAt; }
+    public void setCachedAt(long cachedAt) { this.cachedAt = cachedAt; }
+}
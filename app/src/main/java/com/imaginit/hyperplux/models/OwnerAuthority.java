@@ -0,0 +1,34 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Precomputed ranking multiplier for an asset owner, refreshed by
+ * OwnerAuthorityCache once computedAt is older than its TTL
+ */
+@Entity(tableName = "owner_authority")
+public class OwnerAuthority {
+    @PrimaryKey
+    @NonNull
+    private String userId;
+    private double score;
+    private long computedAt;
+
+    public OwnerAuthority(@NonNull String userId, double score, long computedAt) {
+        this.userId = userId;
+        this.score = score;
+        this.computedAt = computedAt;
+    }
+
+    @NonNull
+    public String getUserId() { return userId; }
+    public void setUserId(@NonNull String userId) { this.userId = userId; }
+
+    public double getScore() { return score; }
+    public void setScore(double score) { this.score = score; }
+
+    public long getComputedAt() { return computedAt; }
+    public void setComputedAt(long computedAt) { this.computedAt = computedAt; }
+}
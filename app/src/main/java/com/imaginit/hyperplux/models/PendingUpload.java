@@ -0,0 +1,133 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * One file waiting to go up to Firebase Storage. The variants of one image
+ * share a groupId. They are applied to their owner (an asset or a chat
+ * room) as soon as the thumb and medium are done, and the full image is
+ * patched in when it follows; applied records that the first step
+ * happened. sessionUri is the resumable upload session, kept so an
+ * interrupted upload continues where it stopped.
+ * <p>
+ * A LINK row carries no file: it attaches another owner to a group that is
+ * already uploading the same image, and that owner gets the URLs too.
+ */
+@Entity(tableName = "upload_queue",
+        indices = {@Index(value = {"ownerType", "ownerId"}), @Index(value = {"groupId"})})
+public class PendingUpload {
+    public static final String OWNER_ASSET = "asset";
+    public static final String OWNER_CHAT = "chat";
+
+    public static final String VARIANT_THUMB = "thumb";
+    public static final String VARIANT_MEDIUM = "medium";
+    public static final String VARIANT_FULL = "full";
+    public static final String VARIANT_LINK = "link";
+
+    public static final int STATE_PENDING = 0;
+    public static final int STATE_DONE = 1;
+    public static final int STATE_FAILED = 2;
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    @NonNull
+    private String groupId;
+    @NonNull
+    private String ownerType;
+    @NonNull
+    private String ownerId;
+    @NonNull
+    private String variant;
+    @NonNull
+    private String localPath;
+    @NonNull
+    private String storagePath;
+    private String userId; // uploader, whose image index the result goes in
+    private String contentHash; // SHA-256 of the full-size image, or null
+    private String blurHash; // placeholder applied to the owner with the URLs, or null
+    private String sessionUri; // null until the session has been created
+    private String downloadUrl; // set once done
+    private boolean applied; // set on an owner's rows once it has the thumb and medium
+    private long bytesUploaded;
+    private long totalBytes;
+    private int state;
+    private int attempts;
+    private long createdAt;
+
+    public PendingUpload(@NonNull String groupId, @NonNull String ownerType, @NonNull String ownerId,
+                         @NonNull String variant, @NonNull String localPath, @NonNull String storagePath,
+                         long totalBytes, long createdAt) {
+        this.groupId = groupId;
+        this.ownerType = ownerType;
+        this.ownerId = ownerId;
+        this.variant = variant;
+        this.localPath = localPath;
+        this.storagePath = storagePath;
+        this.totalBytes = totalBytes;
+        this.createdAt = createdAt;
+        this.state = STATE_PENDING;
+    }
+
+    public long getId() { return id; }
+    public void setId(long id) { this.id = id; }
+
+    @NonNull
+    public String getGroupId() { return groupId; }
+    public void setGroupId(@NonNull String groupId) { this.groupId = groupId; }
+
+    @NonNull
+    public String getOwnerType() { return ownerType; }
+    public void setOwnerType(@NonNull String ownerType) { this.ownerType = ownerType; }
+
+    @NonNull
+    public String getOwnerId() { return ownerId; }
+    public void setOwnerId(@NonNull String ownerId) { this.ownerId = ownerId; }
+
+    @NonNull
+    public String getVariant() { return variant; }
+    public void setVariant(@NonNull String variant) { this.variant = variant; }
+
+    @NonNull
+    public String getLocalPath() { return localPath; }
+    public void setLocalPath(@NonNull String localPath) { this.localPath = localPath; }
+
+    @NonNull
+    public String getStoragePath() { return storagePath; }
+    public void setStoragePath(@NonNull String storagePath) { this.storagePath = storagePath; }
+
+    public String getUserId() { return userId; }
+    public void setUserId(String userId) { this.userId = userId; }
+
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(String contentHash) { this.contentHash = contentHash; }
+
+    public String getBlurHash() { return blurHash; }
+    public void setBlurHash(String blurHash) { this.blurHash = blurHash; }
+
+    public String getSessionUri() { return sessionUri; }
+    public void setSessionUri(String sessionUri) { this.sessionUri = sessionUri; }
+
+    public String getDownloadUrl() { return downloadUrl; }
+    public void setDownloadUrl(String downloadUrl) { this.downloadUrl = downloadUrl; }
+
+    public boolean isApplied() { return applied; }
+    public void setApplied(boolean applied) { this.applied = applied; }
+
+    public long getBytesUploaded() { return bytesUploaded; }
+    public void setBytesUploaded(long bytesUploaded) { this.bytesUploaded = bytesUploaded; }
+
+    public long getTotalBytes() { return totalBytes; }
+    public void setTotalBytes(long totalBytes) { this.totalBytes = totalBytes; }
+
+    public int getState() { return state; }
+    public void setState(int state) { this.state = state; }
+
+    public int getAttempts() { return attempts; }
+    public void setAttempts(int attempts) { this.attempts = attempts; }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+}
@@ -0,0 +1,47 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Where a remote paged query left off, so paging resumes from Room after
+ * a restart instead of refetching from the first page. The cursor is the
+ * last fetched document's sort key (lastInteractionDate, document ID).
+ */
+@Entity(tableName = "remote_keys")
+public class RemoteKey {
+    public static final String LABEL_MARKETPLACE = "marketplace";
+
+    @PrimaryKey
+    @NonNull
+    private String label;
+    private Long cursorTime; // null before the first page
+    private String cursorId;
+    private boolean endReached;
+    private long updatedAt;
+
+    public RemoteKey(@NonNull String label, Long cursorTime, String cursorId, boolean endReached, long updatedAt) {
+        this.label = label;
+        this.cursorTime = cursorTime;
+        this.cursorId = cursorId;
+        this.endReached = endReached;
+        this.updatedAt = updatedAt;
+    }
+
+    @NonNull
+    public String getLabel() { return label; }
+    public void setLabel(@NonNull String label) { this.label = label; }
+
+    public Long getCursorTime() { return cursorTime; }
+    public void setCursorTime(Long cursorTime) { this.cursorTime = cursorTime; }
+
+    public String getCursorId() { return cursorId; }
+    public void setCursorId(String cursorId) { this.cursorId = cursorId; }
+
+    public boolean isEndReached() { return endReached; }
+    public void setEndReached(boolean endReached) { this.endReached = endReached; }
+
+    public long getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+}
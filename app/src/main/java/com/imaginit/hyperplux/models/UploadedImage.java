@@ -0,0 +1,58 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+import com.imaginit.hyperplux.utils.ImageVariants;
+
+/**
+ * An image already in Firebase Storage, keyed by the uploading user and the
+ * SHA-256 of its full-size JPEG. Attaching the same photo again reuses
+ * these URLs instead of uploading it a second time; another account on the
+ * same device never sees them.
+ */
+@Entity(tableName = "uploaded_images", primaryKeys = {"userId", "contentHash"})
+public class UploadedImage {
+    @NonNull
+    private String userId;
+    @NonNull
+    private String contentHash;
+    private String thumbUrl;
+    private String mediumUrl;
+    private String fullUrl;
+    private long uploadedAt;
+
+    public UploadedImage(@NonNull String userId, @NonNull String contentHash, String thumbUrl,
+                         String mediumUrl, String fullUrl, long uploadedAt) {
+        this.userId = userId;
+        this.contentHash = contentHash;
+        this.thumbUrl = thumbUrl;
+        this.mediumUrl = mediumUrl;
+        this.fullUrl = fullUrl;
+        this.uploadedAt = uploadedAt;
+    }
+
+    public ImageVariants toVariants() {
+        return new ImageVariants(thumbUrl, mediumUrl, fullUrl, contentHash);
+    }
+
+    @NonNull
+    public String getUserId() { return userId; }
+    public void setUserId(@NonNull String userId) { this.userId = userId; }
+
+    @NonNull
+    public String getContentHash() { return contentHash; }
+    public void setContentHash(@NonNull String contentHash) { this.contentHash = contentHash; }
+
+    public String getThumbUrl() { return thumbUrl; }
+    public void setThumbUrl(String thumbUrl) { this.thumbUrl = thumbUrl; }
+
+    public String getMediumUrl() { return mediumUrl; }
+    public void setMediumUrl(String mediumUrl) { this.mediumUrl = mediumUrl; }
+
+    public String getFullUrl() { return fullUrl; }
+    public void setFullUrl(String fullUrl) { this.fullUrl = fullUrl; }
+
+    public long getUploadedAt() { return uploadedAt; }
+    public void setUploadedAt(long uploadedAt) { this.uploadedAt = uploadedAt; }
+}
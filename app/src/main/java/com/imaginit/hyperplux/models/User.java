@@ -33,6 +33,7 @@ public class User implements Parcelable {
     // Social Information
     private List<String> followers;
     private List<String> following;
+    private int followerCount; // Denormalized from followers for indexed ranking
     private int totalAssets;
     private int totalLikes;
     private int totalViews;
@@ -88,6 +89,7 @@ public class User implements Parcelable {
         lastLoginDate = new Date(in.readLong());
         followers = in.createStringArrayList();
         following = in.createStringArrayList();
+        followerCount = in.readInt();
         totalAssets = in.readInt();
         totalLikes = in.readInt();
         totalViews = in.readInt();
@@ -136,6 +138,7 @@ public class User implements Parcelable {
         dest.writeLong(lastLoginDate != null ? lastLoginDate.getTime() : 0);
         dest.writeStringList(followers);
         dest.writeStringList(following);
+        dest.writeInt(followerCount);
         dest.writeInt(totalAssets);
         dest.writeInt(totalLikes);
         dest.writeInt(totalViews);
@@ -190,9 +193,13 @@ public class User implements Parcelable {
     public List<String> getFollowers() { return followers; }
     public void setFollowers(List<String> followers) {
         this.followers = followers;
+        this.followerCount = followers != null ? followers.size() : 0;
         recalculateEngagementScore();
     }
 
+    public int getFollowerCount() { return followerCount; }
+    public void setFollowerCount(int followerCount) { this.followerCount = followerCount; }
+
     public List<String> getFollowing() { return following; }
     public void setFollowing(List<String> following) { this.following = following; }
 
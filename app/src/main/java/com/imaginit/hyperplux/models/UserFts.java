@@ -0,0 +1,38 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text index over user display names and email local-parts.
+ * Each row's rowid is the user's id in user_search_keys. Rows are maintained
+ * by triggers (see AppDatabase.createUserSearchTriggers), never written directly.
+ */
+@Fts4(tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "users_fts")
+public class UserFts {
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+
+    private String displayName;
+    private String emailLocalPart;
+
+    public UserFts(int rowId, String displayName, String emailLocalPart) {
+        this.rowId = rowId;
+        this.displayName = displayName;
+        this.emailLocalPart = emailLocalPart;
+    }
+
+    public int getRowId() { return rowId; }
+    public void setRowId(int rowId) { this.rowId = rowId; }
+
+    public String getDisplayName() { return displayName; }
+    public void setDisplayName(String displayName) { this.displayName = displayName; }
+
+    public String getEmailLocalPart() { return emailLocalPart; }
+    public void setEmailLocalPart(String emailLocalPart) { this.emailLocalPart = emailLocalPart; }
+}
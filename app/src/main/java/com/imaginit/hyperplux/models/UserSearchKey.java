@@ -0,0 +1,30 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Stable integer key for each user in the search index. users has a TEXT
+ * primary key, so its implicit rowid can be renumbered by VACUUM; users_fts
+ * rows use this id instead. Maintained by the user search triggers.
+ */
+@Entity(tableName = "user_search_keys", indices = {@Index(value = {"uid"}, unique = true)})
+public class UserSearchKey {
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    @NonNull
+    private String uid;
+
+    public UserSearchKey(@NonNull String uid) {
+        this.uid = uid;
+    }
+
+    public int getId() { return id; }
+    public void setId(int id) { this.id = id; }
+
+    @NonNull
+    public String getUid() { return uid; }
+    public void setUid(@NonNull String uid) { this.uid = uid; }
+}
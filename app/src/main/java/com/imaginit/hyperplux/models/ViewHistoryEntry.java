@@ -0,0 +1,35 @@
+package com.imaginit.hyperplux.models;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * One asset in a user's recently-viewed history. A re-view updates viewedAt
+ * in place, and ViewHistory caps the number of rows per user.
+ */
+@Entity(tableName = "view_history",
+        primaryKeys = {"userId", "assetId"},
+        indices = {@Index({"userId", "viewedAt"})})
+public class ViewHistoryEntry {
+    @NonNull
+    private String userId;
+    private int assetId;
+    private long viewedAt;
+
+    public ViewHistoryEntry(@NonNull String userId, int assetId, long viewedAt) {
+        this.userId = userId;
+        this.assetId = assetId;
+        this.viewedAt = viewedAt;
+    }
+
+    @NonNull
+    public String getUserId() { return userId; }
+    public void setUserId(@NonNull String userId) { this.userId = userId; }
+
+    public int getAssetId() { return assetId; }
+    public void setAssetId(int assetId) { this.assetId = assetId; }
+
+    public long getViewedAt() { return viewedAt; }
+    public void setViewedAt(long viewedAt) { this.viewedAt = viewedAt; }
+}
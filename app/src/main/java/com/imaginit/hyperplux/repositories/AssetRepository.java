@@ -2,29 +2,53 @@ package com.imaginit.hyperplux.repositories;
 
 import android.util.Log;
 import androidx.lifecycle.LiveData;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
+import com.imaginit.hyperplux.HyperPlux;
+import com.imaginit.hyperplux.database.AssetDao;
+import com.imaginit.hyperplux.database.AssetTransactionDao;
+import com.imaginit.hyperplux.database.UserDao;
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.AssetTransaction;
+import com.imaginit.hyperplux.utils.OwnerAuthorityCache;
+import com.imaginit.hyperplux.utils.ShardedCounter;
+import com.imaginit.hyperplux.utils.TrendingTracker;
 
 public class AssetRepository {
     private static final String TAG = "AssetRepository";
 
+    // Counts go to sharded counters; the score on the asset doc is refreshed at most this often
+    private static final long SCORE_SYNC_INTERVAL_MS = 60 * 1000;
+    private static final Map<Integer, Long> lastScoreSync = new ConcurrentHashMap<>();
+
     private AssetDao assetDao;
     private UserDao userDao;
     private AssetTransactionDao transactionDao;
     private ExecutorService executor;
     private FirebaseFirestore firestore;
+    private ShardedCounter counters;
+    private TrendingTracker trending;
+    private OwnerAuthorityCache authorityCache;
 
     // Constructor with only AssetDao (for backward compatibility)
     public AssetRepository(AssetDao assetDao) {
         this.assetDao = assetDao;
         this.executor = Executors.newFixedThreadPool(4);
         this.firestore = FirebaseFirestore.getInstance();
+        this.counters = ShardedCounter.getInstance();
+        this.trending = TrendingTracker.getInstance();
+        this.authorityCache = OwnerAuthorityCache.getInstance(HyperPlux.getInstance());
     }
 
     // Full constructor with all DAOs
@@ -34,6 +58,9 @@ public class AssetRepository {
         this.transactionDao = transactionDao;
         this.executor = Executors.newFixedThreadPool(4);
         this.firestore = FirebaseFirestore.getInstance();
+        this.counters = ShardedCounter.getInstance();
+        this.trending = TrendingTracker.getInstance();
+        this.authorityCache = OwnerAuthorityCache.getInstance(HyperPlux.getInstance());
     }
 
     // Get assets for current user
@@ -72,6 +99,11 @@ public class AssetRepository {
         return null;
     }
 
+    // Get a single asset
+    public LiveData<Asset> getAssetById(int assetId) {
+        return assetDao.getAssetById(assetId);
+    }
+
     // Get all assets for sale on the marketplace
     public LiveData<List<Asset>> getAllAssetsForSale() {
         return assetDao.getAllAssetsForSale();
@@ -130,10 +162,18 @@ public class AssetRepository {
 
     // Add new asset
     public void addAsset(Asset asset) {
+        addAsset(asset, null);
+    }
+
+    // Add new asset; the callback gets it, with its ID, once it is in Room
+    public void addAsset(Asset asset, Callback<Asset> onSaved) {
         executor.execute(() -> {
             // Save to Room
             long id = assetDao.insert(asset);
             asset.setId((int) id);
+            if (onSaved != null) {
+                onSaved.onResult(asset);
+            }
 
             // Increment user's asset count
             if (userDao != null) {
@@ -143,7 +183,7 @@ public class AssetRepository {
             // Save to Firestore for cloud backup
             firestore.collection("assets")
                     .document(String.valueOf(id))
-                    .set(asset)
+                    .set(asset, ShardedCounter.mergeExcept(Asset.class, ShardedCounter.ASSET_COUNTER_FIELDS))
                     .addOnSuccessListener(aVoid -> Log.d(TAG, "Asset document saved to Firestore"))
                     .addOnFailureListener(e -> Log.e(TAG, "Error saving asset document", e));
         });
@@ -161,7 +201,7 @@ public class AssetRepository {
             // Save to Firestore
             firestore.collection("assets")
                     .document(String.valueOf(asset.getId()))
-                    .set(asset)
+                    .set(asset, ShardedCounter.mergeExcept(Asset.class, ShardedCounter.ASSET_COUNTER_FIELDS))
                     .addOnSuccessListener(aVoid -> Log.d(TAG, "Asset document updated in Firestore"))
                     .addOnFailureListener(e -> Log.e(TAG, "Error updating asset document", e));
         });
@@ -192,6 +232,7 @@ public class AssetRepository {
         executor.execute(() -> {
             // Increment in Room
             assetDao.incrementViews(asset.getId());
+            trending.record(asset.getId(), TrendingTracker.VIEW_WEIGHT);
 
             // Update asset object
             asset.setViews(asset.getViews() + 1);
@@ -201,20 +242,27 @@ public class AssetRepository {
                 userDao.incrementViews(asset.getUserId(), 1);
             }
 
-            // Update in Firestore
-            firestore.collection("assets")
-                    .document(String.valueOf(asset.getId()))
-                    .update("views", asset.getViews(),
-                            "engagementScore", asset.getEngagementScore(),
-                            "lastInteractionDate", asset.getLastInteractionDate());
+            // Update in Firestore via sharded counters so popular assets don't hotspot
+            counters.increment(ShardedCounter.assetCounter(asset.getId(), "views"), 1);
+            counters.increment(ShardedCounter.userCounter(asset.getUserId(), "totalViews"), 1);
+            syncEngagementScore(asset);
         });
     }
 
     // Increment like count
     public void incrementLikes(Asset asset) {
         executor.execute(() -> {
+            if (asset.getListingId() != null) {
+                // Another user's listing; only the remote counters know it
+                asset.setLikes(asset.getLikes() + 1);
+                counters.increment(ShardedCounter.assetCounter(asset.getListingId(), "likes"), 1);
+                counters.increment(ShardedCounter.userCounter(asset.getUserId(), "totalLikes"), 1);
+                return;
+            }
+
             // Increment in Room
             assetDao.incrementLikes(asset.getId());
+            trending.record(asset.getId(), TrendingTracker.LIKE_WEIGHT);
 
             // Update asset object
             asset.setLikes(asset.getLikes() + 1);
@@ -224,27 +272,47 @@ public class AssetRepository {
                 userDao.incrementLikes(asset.getUserId(), 1);
             }
 
-            // Update in Firestore
-            firestore.collection("assets")
-                    .document(String.valueOf(asset.getId()))
-                    .update("likes", asset.getLikes(),
-                            "engagementScore", asset.getEngagementScore(),
-                            "lastInteractionDate", asset.getLastInteractionDate());
+            // Update in Firestore via sharded counters so popular assets don't hotspot
+            counters.increment(ShardedCounter.assetCounter(asset.getId(), "likes"), 1);
+            counters.increment(ShardedCounter.userCounter(asset.getUserId(), "totalLikes"), 1);
+            syncEngagementScore(asset);
         });
     }
 
+    // Push the recomputed score to the asset doc, throttled per asset
+    private void syncEngagementScore(Asset asset) {
+        long now = System.currentTimeMillis();
+        Long last = lastScoreSync.get(asset.getId());
+        if (last != null && now - last < SCORE_SYNC_INTERVAL_MS) {
+            return;
+        }
+        lastScoreSync.put(asset.getId(), now);
+
+        firestore.collection("assets")
+                .document(String.valueOf(asset.getId()))
+                .update("engagementScore", asset.getEngagementScore(),
+                        "lastInteractionDate", asset.getLastInteractionDate())
+                .addOnFailureListener(e -> {
+                    // Let the next interaction retry
+                    lastScoreSync.remove(asset.getId());
+                    Log.e(TAG, "Error syncing engagement score", e);
+                });
+    }
+
     // Increment dislike count
     public void incrementDislikes(Asset asset) {
         executor.execute(() -> {
             // Increment in Room
-            assetDao.incrementDislikes(asset.getId());
+            if (asset.getListingId() == null) {
+                assetDao.incrementDislikes(asset.getId());
+            }
 
             // Update asset object
             asset.setDislikes(asset.getDislikes() + 1);
 
             // Update in Firestore
             firestore.collection("assets")
-                    .document(String.valueOf(asset.getId()))
+                    .document(documentId(asset))
                     .update("dislikes", asset.getDislikes(),
                             "engagementScore", asset.getEngagementScore(),
                             "lastInteractionDate", asset.getLastInteractionDate());
@@ -255,25 +323,34 @@ public class AssetRepository {
     public void incrementShares(Asset asset) {
         executor.execute(() -> {
             // Increment in Room
-            assetDao.incrementShares(asset.getId());
+            if (asset.getListingId() == null) {
+                assetDao.incrementShares(asset.getId());
+                trending.record(asset.getId(), TrendingTracker.SHARE_WEIGHT);
+            }
 
             // Update asset object
             asset.setShares(asset.getShares() + 1);
 
             // Update in Firestore
             firestore.collection("assets")
-                    .document(String.valueOf(asset.getId()))
+                    .document(documentId(asset))
                     .update("shares", asset.getShares(),
                             "engagementScore", asset.getEngagementScore(),
                             "lastInteractionDate", asset.getLastInteractionDate());
         });
     }
 
+    // Firestore document of an asset; marketplace listings carry their own
+    private static String documentId(Asset asset) {
+        return asset.getListingId() != null ? asset.getListingId() : String.valueOf(asset.getId());
+    }
+
     // Increment comment count
     public void incrementComments(Asset asset) {
         executor.execute(() -> {
             // Increment in Room
             assetDao.incrementComments(asset.getId());
+            trending.record(asset.getId(), TrendingTracker.COMMENT_WEIGHT);
 
             // Update asset object
             asset.setComments(asset.getComments() + 1);
@@ -287,6 +364,68 @@ public class AssetRepository {
         });
     }
 
+    // Get assets trending now across all users, most trending first
+    public void getTrendingAssets(int limit, Callback<List<Asset>> callback) {
+        trending.getGlobalTrending(limit, ids -> executor.execute(() -> {
+            List<Asset> result = new ArrayList<>();
+            if (!ids.isEmpty()) {
+                Map<Integer, Asset> byId = new HashMap<>();
+                for (Asset asset : assetDao.getAssetsByIdsSync(ids)) {
+                    byId.put(asset.getId(), asset);
+                }
+                // Keep trending order; hidden or unshared assets drop out
+                for (int id : ids) {
+                    Asset asset = byId.get(id);
+                    if (asset != null) {
+                        result.add(asset);
+                    }
+                }
+            }
+            callback.onResult(result);
+        }));
+    }
+
+    // Refresh local view and like counts from the asset document plus its sharded counters
+    public void syncEngagementCounts(int assetId) {
+        firestore.collection("assets")
+                .document(String.valueOf(assetId))
+                .get()
+                .addOnSuccessListener(document -> {
+                    if (!document.exists()) {
+                        return;
+                    }
+                    Long baseViews = document.getLong("views");
+                    Long baseLikes = document.getLong("likes");
+
+                    String viewsPath = ShardedCounter.assetCounter(assetId, "views");
+                    String likesPath = ShardedCounter.assetCounter(assetId, "likes");
+                    counters.getCounts(Arrays.asList(viewsPath, likesPath), totals -> {
+                        if (!totals.containsKey(viewsPath) || !totals.containsKey(likesPath)) {
+                            Log.w(TAG, "Counter read failed for asset " + assetId);
+                            return;
+                        }
+                        long views = (baseViews != null ? baseViews : 0) + totals.get(viewsPath);
+                        long likes = (baseLikes != null ? baseLikes : 0) + totals.get(likesPath);
+                        executor.execute(() -> {
+                            Asset asset = assetDao.getAssetByIdSync(assetId);
+                            if (asset == null) {
+                                return;
+                            }
+                            // Recompute the score from the new totals, keeping the last interaction time
+                            Date lastInteraction = asset.getLastInteractionDate();
+                            asset.setViews((int) views);
+                            asset.setLikes((int) likes);
+                            if (lastInteraction != null) {
+                                asset.setLastInteractionDate(lastInteraction);
+                            }
+                            assetDao.setEngagementCounts(assetId, asset.getViews(), asset.getLikes(),
+                                    asset.getEngagementScore());
+                        });
+                    });
+                })
+                .addOnFailureListener(e -> Log.e(TAG, "Error fetching asset document", e));
+    }
+
     // Create a transaction between users
     public void createTransaction(int assetId, String fromUserId, String toUserId,
                                   String transactionType, double amount, String currency) {
@@ -364,7 +503,11 @@ public class AssetRepository {
                         .set(transaction);
                 firestore.collection("assets")
                         .document(String.valueOf(asset.getId()))
-                        .set(asset);
+                        .set(asset, ShardedCounter.mergeExcept(Asset.class, ShardedCounter.ASSET_COUNTER_FIELDS));
+
+                // Completed trades count towards both parties' authority
+                authorityCache.invalidate(transaction.getFromUserId());
+                authorityCache.invalidate(transaction.getToUserId());
 
                 callback.onResult(true);
             } catch (Exception e) {
@@ -4,6 +4,7 @@ import android.util.Log;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -11,9 +12,13 @@ import java.util.concurrent.Executors;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.SetOptions;
+import com.imaginit.hyperplux.HyperPlux;
+import com.imaginit.hyperplux.database.FtsQueryBuilder;
 import com.imaginit.hyperplux.database.UserDao;
 import com.imaginit.hyperplux.models.User;
+import com.imaginit.hyperplux.utils.FirebaseErrorHandler;
+import com.imaginit.hyperplux.utils.OwnerAuthorityCache;
+import com.imaginit.hyperplux.utils.ShardedCounter;
 
 public class UserRepository {
     private static final String TAG = "UserRepository";
@@ -21,11 +26,15 @@ public class UserRepository {
     private UserDao userDao;
     private ExecutorService executor;
     private FirebaseFirestore firestore;
+    private ShardedCounter counters;
+    private OwnerAuthorityCache authorityCache;
 
     public UserRepository(UserDao userDao) {
         this.userDao = userDao;
         this.executor = Executors.newFixedThreadPool(4);
         this.firestore = FirebaseFirestore.getInstance();
+        this.counters = ShardedCounter.getInstance();
+        this.authorityCache = OwnerAuthorityCache.getInstance(HyperPlux.getInstance());
     }
 
     /**
@@ -77,7 +86,7 @@ public class UserRepository {
                     FirebaseErrorHandler.executeWithRetry(() -> {
                         firestore.collection("users")
                                 .document(uid)
-                                .set(newUser, SetOptions.merge());
+                                .set(newUser, ShardedCounter.mergeExcept(User.class, ShardedCounter.USER_COUNTER_FIELDS));
                     }, 3, null);
                 } else {
                     // Update last login date
@@ -103,6 +112,10 @@ public class UserRepository {
                                             // Update local database with Firestore data
                                             userDao.update(firestoreUser);
                                             Log.d(TAG, "User synced from Firestore");
+
+                                            // Document totals are only the baseline; add sharded increments
+                                            syncEngagementTotals(uid, firestoreUser.getTotalLikes(),
+                                                    firestoreUser.getTotalViews());
                                         });
                                     }
                                 }
@@ -161,16 +174,27 @@ public class UserRepository {
     }
 
     /**
-     * Search users by query string
-     * @param query The search query
-     * @return LiveData list of matching users
+     * Search users by name or email prefix, ranked by followers then engagement
+     * @param query The search query as typed
+     * @param page Zero-based page index
+     * @param pageSize Number of users per page
+     * @param callback Callback with the page of matching users (empty when none)
      */
-    public LiveData<List<User>> searchUsers(String query) {
-        if (query == null) {
-            Log.e(TAG, "searchUsers: Query is null");
-            return new MutableLiveData<>(new ArrayList<>());
+    public void searchUsers(String query, int page, int pageSize, final Callback<List<User>> callback) {
+        String matchQuery = FtsQueryBuilder.prefixQuery(query);
+        if (matchQuery == null || page < 0 || pageSize <= 0) {
+            callback.onResult(new ArrayList<>());
+            return;
         }
-        return userDao.searchUsers(query);
+
+        executor.execute(() -> {
+            try {
+                callback.onResult(userDao.searchUsersSync(matchQuery, pageSize, page * pageSize));
+            } catch (Exception e) {
+                Log.e(TAG, "Error searching users", e);
+                callback.onResult(new ArrayList<>());
+            }
+        });
     }
 
     /**
@@ -218,7 +242,7 @@ public class UserRepository {
                 FirebaseErrorHandler.executeWithRetry(() -> {
                     firestore.collection("users")
                             .document(user.getUid())
-                            .set(user, SetOptions.merge());
+                            .set(user, ShardedCounter.mergeExcept(User.class, ShardedCounter.USER_COUNTER_FIELDS));
                 }, 3, new FirebaseErrorHandler.Callback() {
                     @Override
                     public void onSuccess() {
@@ -279,6 +303,7 @@ public class UserRepository {
                         targetUser.setFollowers(followers);
                         targetUser.recalculateEngagementScore();
                         userDao.update(targetUser);
+                        authorityCache.invalidate(targetUserId);
                     }
 
                     // Update in Firestore with retry logic
@@ -339,6 +364,7 @@ public class UserRepository {
                         targetUser.setFollowers(followers);
                         targetUser.recalculateEngagementScore();
                         userDao.update(targetUser);
+                        authorityCache.invalidate(targetUserId);
                     }
 
                     // Update in Firestore with retry logic
@@ -416,18 +442,8 @@ public class UserRepository {
             try {
                 userDao.incrementLikes(userId, amount);
 
-                // Update in Firestore
-                User user = userDao.getUserByIdSync(userId);
-                if (user != null) {
-                    final int totalLikes = user.getTotalLikes();
-                    final double engagementScore = user.getOverallEngagementScore();
-
-                    FirebaseErrorHandler.executeWithRetry(() -> {
-                        firestore.collection("users").document(userId)
-                                .update("totalLikes", totalLikes,
-                                        "overallEngagementScore", engagementScore);
-                    }, 3, null);
-                }
+                // Update in Firestore via a random shard to avoid a hot user document
+                counters.increment(ShardedCounter.userCounter(userId, "totalLikes"), amount);
             } catch (Exception e) {
                 Log.e(TAG, "Error incrementing likes", e);
             }
@@ -449,24 +465,47 @@ public class UserRepository {
             try {
                 userDao.incrementViews(userId, amount);
 
-                // Update in Firestore
-                User user = userDao.getUserByIdSync(userId);
-                if (user != null) {
-                    final int totalViews = user.getTotalViews();
-                    final double engagementScore = user.getOverallEngagementScore();
-
-                    FirebaseErrorHandler.executeWithRetry(() -> {
-                        firestore.collection("users").document(userId)
-                                .update("totalViews", totalViews,
-                                        "overallEngagementScore", engagementScore);
-                    }, 3, null);
-                }
+                // Update in Firestore via a random shard to avoid a hot user document
+                counters.increment(ShardedCounter.userCounter(userId, "totalViews"), amount);
             } catch (Exception e) {
                 Log.e(TAG, "Error incrementing views", e);
             }
         });
     }
 
+    /**
+     * Combine a user's document totals with their sharded counters and store
+     * the result locally
+     * @param userId ID of the user
+     * @param baselineLikes totalLikes stored on the user document
+     * @param baselineViews totalViews stored on the user document
+     */
+    public void syncEngagementTotals(String userId, int baselineLikes, int baselineViews) {
+        if (userId == null || userId.isEmpty()) {
+            Log.e(TAG, "syncEngagementTotals: Invalid user ID");
+            return;
+        }
+
+        String likesPath = ShardedCounter.userCounter(userId, "totalLikes");
+        String viewsPath = ShardedCounter.userCounter(userId, "totalViews");
+        counters.getCounts(Arrays.asList(likesPath, viewsPath), totals -> {
+            // Skip the update if either read failed rather than writing a partial total
+            if (!totals.containsKey(likesPath) || !totals.containsKey(viewsPath)) {
+                Log.w(TAG, "syncEngagementTotals: Counter read failed");
+                return;
+            }
+            executor.execute(() -> {
+                try {
+                    userDao.setEngagementTotals(userId,
+                            (int) (baselineLikes + totals.get(likesPath)),
+                            (int) (baselineViews + totals.get(viewsPath)));
+                } catch (Exception e) {
+                    Log.e(TAG, "Error storing engagement totals", e);
+                }
+            });
+        });
+    }
+
     /**
      * Increment asset count for a user
      * @param userId ID of the user
@@ -9,19 +9,29 @@ import android.view.ViewGroup;
 import android.widget.PopupMenu;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.drawable.DrawableTransitionOptions;
 import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.util.ViewPreloadSizeProvider;
 import com.imaginit.hyperplux.R;
 import com.imaginit.hyperplux.databinding.ItemAssetBinding;
 import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
+import com.imaginit.hyperplux.utils.ImageVariants;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.function.Consumer;
 
 public class AssetAdapter extends ListAdapter<Asset, AssetAdapter.AssetViewHolder> {
@@ -30,6 +40,7 @@ public class AssetAdapter extends ListAdapter<Asset, AssetAdapter.AssetViewHolde
     private final Consumer<Asset> onDislikeClick;
     private final Consumer<Asset> onShareClick;
     private final Consumer<Pair<Asset, View>> onOptionMenuClick;
+    private final ViewPreloadSizeProvider<Asset> preloadSizeProvider = new ViewPreloadSizeProvider<>();
 
     public AssetAdapter(Consumer<Asset> onAssetClick, Consumer<Asset> onLikeClick,
                         Consumer<Asset> onDislikeClick) {
@@ -52,9 +63,68 @@ public class AssetAdapter extends ListAdapter<Asset, AssetAdapter.AssetViewHolde
     public AssetViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         ItemAssetBinding binding = ItemAssetBinding.inflate(
                 LayoutInflater.from(parent.getContext()), parent, false);
+        // Preloads are decoded at the size of the first laid-out image view
+        preloadSizeProvider.setView(binding.assetImage);
         return new AssetViewHolder(binding);
     }
 
+    /**
+     * Start preloading images for the items just past the visible ones, in
+     * the scroll direction, so cells scroll in already decoded. Preloads
+     * that fall out of the window are cancelled.
+     * @param recyclerView List showing this adapter
+     * @param lookahead Number of items to preload ahead
+     */
+    public void attachPreloader(RecyclerView recyclerView, int lookahead) {
+        RequestManager requests = Glide.with(recyclerView);
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(requests,
+                new AssetPreloadProvider(requests), preloadSizeProvider, lookahead));
+    }
+
+    // Same request as bind() minus the target and transition, so preloads share its cache key
+    private static RequestBuilder<Drawable> imageRequest(RequestManager requests, String url) {
+        return requests.load(url)
+                .apply(new RequestOptions()
+                        .placeholder(R.drawable.ic_image_placeholder)
+                        .error(R.drawable.ic_image_placeholder))
+                .apply(ImageCacheManager.decodeOptions(ImageCacheManager.ImageUse.THUMBNAIL))
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .centerCrop();
+    }
+
+    private static String imageUrl(Asset asset, int targetSize) {
+        return ImageVariants.pick(targetSize,
+                asset.getImageThumbUri(), asset.getImageMediumUri(), asset.getImageUri());
+    }
+
+    private class AssetPreloadProvider implements ListPreloader.PreloadModelProvider<Asset> {
+        private final RequestManager requests;
+
+        AssetPreloadProvider(RequestManager requests) {
+            this.requests = requests;
+        }
+
+        @NonNull
+        @Override
+        public List<Asset> getPreloadItems(int position) {
+            if (position < 0 || position >= getItemCount()) {
+                return Collections.emptyList();
+            }
+            Asset asset = getItem(position);
+            return asset != null && !TextUtils.isEmpty(asset.getImageUri())
+                    ? Collections.singletonList(asset)
+                    : Collections.emptyList();
+        }
+
+        @Nullable
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull Asset asset) {
+            int[] size = preloadSizeProvider.getPreloadSize(asset, 0, 0);
+            int targetSize = size != null ? Math.max(size[0], size[1]) : 0;
+            return imageRequest(requests, imageUrl(asset, targetSize));
+        }
+    }
+
     @Override
     public void onBindViewHolder(@NonNull AssetViewHolder holder, int position) {
         Asset asset = getItem(position);
@@ -87,17 +157,17 @@ public class AssetAdapter extends ListAdapter<Asset, AssetAdapter.AssetViewHolde
                 binding.assetViews.setText(context.getString(R.string.views_likes_dislikes_format,
                         asset.getViews(), asset.getLikes(), asset.getDislikes()));
 
-                // Load image with error handling
-                String imageUri = asset.getImageUri();
+                // Load the smallest image variant that covers the view
+                String imageUri = imageUrl(asset, ImageVariants.targetSize(binding.assetImage));
                 if (!TextUtils.isEmpty(imageUri)) {
-                    Glide.with(context.getApplicationContext())
-                            .load(imageUri)
-                            .apply(new RequestOptions()
-                                    .placeholder(R.drawable.ic_image_placeholder)
-                                    .error(R.drawable.ic_image_placeholder))
-                            .diskCacheStrategy(DiskCacheStrategy.ALL)
-                            .transition(DrawableTransitionOptions.withCrossFade())
-                            .centerCrop()
+                    RequestBuilder<Drawable> request =
+                            imageRequest(Glide.with(context.getApplicationContext()), imageUri);
+                    // Blurred preview of the image itself while it loads
+                    Drawable blur = ImageCacheManager.blurPlaceholder(context, asset.getImageBlurHash());
+                    if (blur != null) {
+                        request = request.placeholder(blur);
+                    }
+                    request.transition(DrawableTransitionOptions.withCrossFade())
                             .into(binding.assetImage);
                 } else {
                     binding.assetImage.setImageResource(R.drawable.ic_image_placeholder);
@@ -228,7 +298,9 @@ public class AssetAdapter extends ListAdapter<Asset, AssetAdapter.AssetViewHolde
     private static final DiffUtil.ItemCallback<Asset> DIFF_CALLBACK = new DiffUtil.ItemCallback<Asset>() {
         @Override
         public boolean areItemsTheSame(@NonNull Asset oldItem, @NonNull Asset newItem) {
-            return oldItem.getId() == newItem.getId();
+            // Marketplace listings from different owners can share a local id
+            return oldItem.getId() == newItem.getId() &&
+                    TextUtils.equals(oldItem.getListingId(), newItem.getListingId());
         }
 
         @Override
@@ -1,6 +1,8 @@
 package com.imaginit.hyperplux.ui.adapters;
 
 import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.drawable.Drawable;
 import android.text.TextUtils;
 import android.text.format.DateUtils;
 import android.view.LayoutInflater;
@@ -8,6 +10,7 @@ import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.LifecycleOwner;
 import androidx.recyclerview.widget.DiffUtil;
@@ -15,8 +18,13 @@ import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 import com.imaginit.hyperplux.R;
 import com.imaginit.hyperplux.databinding.ItemMessageAssetBinding;
 import com.imaginit.hyperplux.databinding.ItemMessageCallBinding;
@@ -26,8 +34,12 @@ import com.imaginit.hyperplux.databinding.ItemMessageTextOutgoingBinding;
 import com.imaginit.hyperplux.models.Asset;
 import com.imaginit.hyperplux.models.ChatMessage;
 import com.imaginit.hyperplux.repositories.AssetRepository;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
+import com.imaginit.hyperplux.utils.ImageVariants;
 
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.function.Consumer;
 
 /**
@@ -47,6 +59,10 @@ public class ChatMessageAdapter extends ListAdapter<ChatMessage, RecyclerView.Vi
     private final Consumer<Asset> onAssetClick;
     private final Consumer<String> onImageClick;
 
+    // Image bubbles have a fixed box, so every message image is requested at that size
+    private int imageWidth;
+    private int imageHeight;
+
     public ChatMessageAdapter(String currentUserId, AssetRepository assetRepository,
                               LifecycleOwner lifecycleOwner,
                               Consumer<Asset> onAssetClick,
@@ -162,6 +178,44 @@ public class ChatMessageAdapter extends ListAdapter<ChatMessage, RecyclerView.Vi
         return message.getSenderId().equals(currentUserId);
     }
 
+    /**
+     * Starts loading image messages before they scroll into view. Requests are
+     * made at the bubble size, the same as bind(), so they land in the memory
+     * cache under the key the bound view will ask for. Preloads that fall
+     * behind the scroll direction are cancelled by Glide.
+     * @param lookahead Number of items ahead of the visible range to preload
+     */
+    public void attachPreloader(RecyclerView recyclerView, int lookahead) {
+        measureImageBox(recyclerView.getResources());
+        RequestManager requests = Glide.with(recyclerView);
+        recyclerView.addOnScrollListener(new RecyclerViewPreloader<>(requests,
+                new ImagePreloadProvider(requests),
+                new FixedPreloadSizeProvider<>(imageWidth, imageHeight), lookahead));
+    }
+
+    private void measureImageBox(Resources resources) {
+        if (imageWidth == 0) {
+            imageWidth = resources.getDimensionPixelSize(R.dimen.chat_image_width);
+            imageHeight = resources.getDimensionPixelSize(R.dimen.chat_image_max_height);
+        }
+    }
+
+    private String imageUrl(ChatMessage message) {
+        return ImageVariants.pick(Math.max(imageWidth, imageHeight),
+                message.getImageThumbUrl(), message.getImageMediumUrl(), message.getImageUrl());
+    }
+
+    private RequestBuilder<Drawable> imageRequest(RequestManager requests, String url) {
+        return requests.load(url)
+                .apply(new RequestOptions()
+                        .placeholder(R.drawable.ic_image_placeholder)
+                        .error(R.drawable.ic_image_placeholder))
+                .apply(ImageCacheManager.decodeOptions(ImageCacheManager.ImageUse.THUMBNAIL))
+                .diskCacheStrategy(DiskCacheStrategy.ALL)
+                .override(imageWidth, imageHeight)
+                .fitCenter();
+    }
+
     private String formatTimestamp(Date timestamp) {
         if (timestamp == null) return "";
 
@@ -234,16 +288,18 @@ public class ChatMessageAdapter extends ListAdapter<ChatMessage, RecyclerView.Vi
                 binding.messageContainer.setBackgroundResource(
                         isOutgoing ? R.drawable.bg_message_outgoing : R.drawable.bg_message_incoming);
 
-                // Load image
+                // Load the smallest variant that covers the bubble; the viewer gets the full image
                 String imageUrl = message.getImageUrl();
-                if (!TextUtils.isEmpty(imageUrl)) {
-                    Glide.with(context.getApplicationContext())
-                            .load(imageUrl)
-                            .apply(new RequestOptions()
-                                    .placeholder(R.drawable.ic_image_placeholder)
-                                    .error(R.drawable.ic_image_placeholder))
-                            .diskCacheStrategy(DiskCacheStrategy.ALL)
-                            .into(binding.messageImage);
+                measureImageBox(context.getResources());
+                String displayUrl = imageUrl(message);
+                if (!TextUtils.isEmpty(displayUrl)) {
+                    RequestBuilder<Drawable> request =
+                            imageRequest(Glide.with(context.getApplicationContext()), displayUrl);
+                    Drawable blur = ImageCacheManager.blurPlaceholder(context, message.getImageBlurHash());
+                    if (blur != null) {
+                        request = request.placeholder(blur);
+                    }
+                    request.into(binding.messageImage);
                 } else {
                     binding.messageImage.setImageResource(R.drawable.ic_image_placeholder);
                 }
@@ -327,13 +383,17 @@ public class ChatMessageAdapter extends ListAdapter<ChatMessage, RecyclerView.Vi
                             }
 
                             // Load asset image
-                            String imageUri = asset.getImageUri();
+                            String imageUri = ImageVariants.pick(
+                                    ImageVariants.targetSize(binding.assetImage),
+                                    asset.getImageThumbUri(), asset.getImageMediumUri(), asset.getImageUri());
                             if (!TextUtils.isEmpty(imageUri)) {
                                 Glide.with(context.getApplicationContext())
                                         .load(imageUri)
                                         .apply(new RequestOptions()
                                                 .placeholder(R.drawable.ic_image_placeholder)
                                                 .error(R.drawable.ic_image_placeholder))
+                                        .apply(ImageCacheManager.decodeOptions(
+                                                ImageCacheManager.ImageUse.THUMBNAIL))
                                         .diskCacheStrategy(DiskCacheStrategy.ALL)
                                         .into(binding.assetImage);
                             } else {
@@ -434,6 +494,37 @@ public class ChatMessageAdapter extends ListAdapter<ChatMessage, RecyclerView.Vi
         }
     }
 
+    /**
+     * Supplies the image messages near the visible range to the preloader
+     */
+    private class ImagePreloadProvider implements ListPreloader.PreloadModelProvider<ChatMessage> {
+        private final RequestManager requests;
+
+        ImagePreloadProvider(RequestManager requests) {
+            this.requests = requests;
+        }
+
+        @NonNull
+        @Override
+        public List<ChatMessage> getPreloadItems(int position) {
+            if (position < 0 || position >= getItemCount()) {
+                return Collections.emptyList();
+            }
+            ChatMessage message = getItem(position);
+            if (message == null || !ChatMessage.TYPE_IMAGE.equals(message.getType())
+                    || TextUtils.isEmpty(imageUrl(message))) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(message);
+        }
+
+        @Nullable
+        @Override
+        public RequestBuilder<?> getPreloadRequestBuilder(@NonNull ChatMessage message) {
+            return imageRequest(requests, imageUrl(message));
+        }
+    }
+
     /**
      * DiffCallback for chat messages
      */
@@ -0,0 +1,125 @@
+package com.imaginit.hyperplux.ui.adapters;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.request.RequestOptions;
+import com.imaginit.hyperplux.R;
+import com.imaginit.hyperplux.databinding.ItemAssetHorizontalBinding;
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
+import com.imaginit.hyperplux.utils.ImageVariants;
+
+import java.util.function.Consumer;
+
+/**
+ * Horizontal strip of compact asset cards, used for "viewed together" and trending
+ */
+public class RelatedAssetAdapter extends ListAdapter<Asset, RelatedAssetAdapter.RelatedAssetViewHolder> {
+    private final Consumer<Asset> onAssetClick;
+
+    public RelatedAssetAdapter(Consumer<Asset> onAssetClick) {
+        super(DIFF_CALLBACK);
+        this.onAssetClick = onAssetClick;
+    }
+
+    @NonNull
+    @Override
+    public RelatedAssetViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        ItemAssetHorizontalBinding binding = ItemAssetHorizontalBinding.inflate(
+                LayoutInflater.from(parent.getContext()), parent, false);
+        return new RelatedAssetViewHolder(binding);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RelatedAssetViewHolder holder, int position) {
+        Asset asset = getItem(position);
+        if (asset != null) {
+            holder.bind(asset);
+        }
+    }
+
+    class RelatedAssetViewHolder extends RecyclerView.ViewHolder {
+        private final ItemAssetHorizontalBinding binding;
+
+        RelatedAssetViewHolder(ItemAssetHorizontalBinding binding) {
+            super(binding.getRoot());
+            this.binding = binding;
+        }
+
+        void bind(Asset asset) {
+            try {
+                Context context = binding.getRoot().getContext();
+
+                binding.assetName.setText(asset.getName() != null ? asset.getName() : "");
+                binding.assetMetrics.setText(context.getString(R.string.views_likes_format,
+                        asset.getViews(), asset.getLikes()));
+
+                // Show the category as the badge, if there is one
+                if (!TextUtils.isEmpty(asset.getCategory())) {
+                    binding.assetEngagement.setText(asset.getCategory());
+                    binding.assetEngagement.setVisibility(View.VISIBLE);
+                } else {
+                    binding.assetEngagement.setVisibility(View.GONE);
+                }
+
+                String imageUri = ImageVariants.pick(ImageVariants.targetSize(binding.assetImage),
+                        asset.getImageThumbUri(), asset.getImageMediumUri(), asset.getImageUri());
+                if (!TextUtils.isEmpty(imageUri)) {
+                    RequestOptions options = new RequestOptions()
+                            .placeholder(R.drawable.ic_image_placeholder)
+                            .error(R.drawable.ic_image_placeholder);
+                    Drawable blur = ImageCacheManager.blurPlaceholder(context, asset.getImageBlurHash());
+                    if (blur != null) {
+                        options = options.placeholder(blur);
+                    }
+                    Glide.with(context.getApplicationContext())
+                            .load(imageUri)
+                            .apply(options)
+                            .apply(ImageCacheManager.decodeOptions(ImageCacheManager.ImageUse.THUMBNAIL))
+                            .diskCacheStrategy(DiskCacheStrategy.ALL)
+                            .centerCrop()
+                            .into(binding.assetImage);
+                } else {
+                    binding.assetImage.setImageResource(R.drawable.ic_image_placeholder);
+                }
+
+                binding.getRoot().setOnClickListener(v -> {
+                    if (onAssetClick != null) {
+                        onAssetClick.accept(asset);
+                    }
+                });
+            } catch (Exception e) {
+                // Log exception to prevent crashes
+                android.util.Log.e("RelatedAssetAdapter", "Error binding asset: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final DiffUtil.ItemCallback<Asset> DIFF_CALLBACK = new DiffUtil.ItemCallback<Asset>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Asset oldItem, @NonNull Asset newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Asset oldItem, @NonNull Asset newItem) {
+            return TextUtils.equals(oldItem.getName(), newItem.getName()) &&
+                    TextUtils.equals(oldItem.getCategory(), newItem.getCategory()) &&
+                    TextUtils.equals(oldItem.getImageUri(), newItem.getImageUri()) &&
+                    oldItem.getViews() == newItem.getViews() &&
+                    oldItem.getLikes() == newItem.getLikes();
+        }
+    };
+}
@@ -440,34 +440,22 @@ public class AddEditAssetFragment extends Fragment {
             assetToSave.setWillInstructions(binding.willInstructionsEditText.getText().toString().trim());
             assetToSave.setBequest(binding.bequestCheckbox.isChecked());
 
-            // Upload image if selected
-            if (selectedImageUri != null) {
-                viewModel.uploadAssetImage(selectedImageUri, imageUrl -> {
-                    if (imageUrl != null) {
-                        assetToSave.setImageUri(imageUrl);
-                        saveAssetToDatabase(assetToSave);
-                    } else {
-                        // Still save if image upload fails
-                        saveAssetToDatabase(assetToSave);
-                    }
-                });
-            } else {
-                saveAssetToDatabase(assetToSave);
-            }
+            // Save now; a selected image is compressed and uploaded in the background
+            saveAssetToDatabase(assetToSave, selectedImageUri);
         } catch (Exception e) {
             Log.e(TAG, "Error saving asset: " + e.getMessage());
             Toast.makeText(getContext(), "Error saving asset: " + e.getMessage(), Toast.LENGTH_SHORT).show();
         }
     }
 
-    private void saveAssetToDatabase(Asset assetToSave) {
+    private void saveAssetToDatabase(Asset assetToSave, Uri imageUri) {
         try {
             if (asset == null) {
                 // New asset
-                viewModel.addAssetWithValidation(assetToSave);
+                viewModel.addAssetWithValidation(assetToSave, imageUri);
             } else {
                 // Update existing asset
-                viewModel.updateAssetWithValidation(assetToSave);
+                viewModel.updateAssetWithValidation(assetToSave, imageUri);
             }
 
             // Navigate back to asset list
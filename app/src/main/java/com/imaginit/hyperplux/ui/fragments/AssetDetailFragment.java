@@ -26,6 +26,8 @@ import com.imaginit.hyperplux.databinding.FragmentAssetDetailBinding;
 import com.imaginit.hyperplux.models.Asset;
 import com.imaginit.hyperplux.repositories.AssetRepository;
 import com.imaginit.hyperplux.repositories.UserRepository;
+import com.imaginit.hyperplux.ui.adapters.RelatedAssetAdapter;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
 import com.imaginit.hyperplux.viewmodels.AssetViewModel;
 import com.imaginit.hyperplux.viewmodels.UserViewModel;
 import com.imaginit.hyperplux.viewmodels.ViewModelFactory;
@@ -41,6 +43,8 @@ public class AssetDetailFragment extends Fragment {
     private UserViewModel userViewModel;
     private Asset asset;
     private int assetId;
+    private String listingId; // Set when opened from the marketplace
+    private RelatedAssetAdapter relatedAssetAdapter;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
@@ -54,6 +58,7 @@ public class AssetDetailFragment extends Fragment {
                 if (getArguments().containsKey("assetId")) {
                     assetId = getArguments().getInt("assetId", -1);
                 }
+                listingId = getArguments().getString("listingId");
             } catch (Exception e) {
                 // Fallback if Safe Args fails
                 assetId = -1;
@@ -83,14 +88,35 @@ public class AssetDetailFragment extends Fragment {
             assetViewModel = new ViewModelProvider(this, factory).get(AssetViewModel.class);
             userViewModel = new ViewModelProvider(this, factory).get(UserViewModel.class);
 
-            // Check if we have a valid asset ID
-            if (assetId > 0) {
+            if (listingId != null) {
+                // Another user's asset; it only exists in the marketplace cache
+                assetViewModel.getMarketplaceAsset(listingId).observe(getViewLifecycleOwner(), retrievedAsset -> {
+                    if (retrievedAsset != null) {
+                        boolean firstLoad = this.asset == null;
+                        this.asset = retrievedAsset;
+                        updateUI(retrievedAsset);
+                        if (firstLoad) {
+                            assetViewModel.viewAsset(retrievedAsset); // Track view
+                        }
+                    } else {
+                        Toast.makeText(requireContext(), R.string.asset_not_found, Toast.LENGTH_SHORT).show();
+                        Navigation.findNavController(requireView()).popBackStack();
+                    }
+                });
+            } else if (assetId > 0) {
+                setupRelatedAssets();
+                setupImageUploadStatus();
+
                 // Observe the selected asset
                 assetViewModel.getAssetById(assetId).observe(getViewLifecycleOwner(), retrievedAsset -> {
                     if (retrievedAsset != null) {
+                        // Re-emissions (e.g. after the view count changes) are not new views
+                        boolean firstLoad = this.asset == null;
                         this.asset = retrievedAsset;
                         updateUI(retrievedAsset);
-                        assetViewModel.viewAsset(retrievedAsset); // Track view
+                        if (firstLoad) {
+                            assetViewModel.viewAsset(retrievedAsset); // Track view
+                        }
                     } else {
                         Toast.makeText(requireContext(), R.string.asset_not_found, Toast.LENGTH_SHORT).show();
                         Navigation.findNavController(requireView()).popBackStack();
@@ -109,6 +135,40 @@ public class AssetDetailFragment extends Fragment {
         setupActionButtons();
     }
 
+    // Images picked in the editor upload in the background; show how far along they are
+    private void setupImageUploadStatus() {
+        binding.imageUploadStatus.setOnClickListener(v -> assetViewModel.retryImageUpload(assetId));
+        assetViewModel.getImageUploadProgress(assetId).observe(getViewLifecycleOwner(), progress -> {
+            if (progress.isUploading()) {
+                binding.imageUploadStatus.setText(getString(R.string.image_uploading, progress.getPercent()));
+                binding.imageUploadStatus.setClickable(false);
+                binding.imageUploadStatus.setVisibility(View.VISIBLE);
+            } else if (progress.hasFailed()) {
+                binding.imageUploadStatus.setText(R.string.image_upload_failed_retry);
+                binding.imageUploadStatus.setClickable(true);
+                binding.imageUploadStatus.setVisibility(View.VISIBLE);
+            } else {
+                binding.imageUploadStatus.setVisibility(View.GONE);
+            }
+        });
+    }
+
+    private void setupRelatedAssets() {
+        relatedAssetAdapter = new RelatedAssetAdapter(related -> {
+            Bundle args = new Bundle();
+            args.putInt("assetId", related.getId());
+            Navigation.findNavController(requireView()).navigate(R.id.assetDetailFragment, args);
+        });
+        binding.relatedAssetsRecyclerView.setAdapter(relatedAssetAdapter);
+
+        assetViewModel.getRelatedAssets(assetId).observe(getViewLifecycleOwner(), related -> {
+            boolean hasRelated = related != null && !related.isEmpty();
+            binding.relatedAssetsTitle.setVisibility(hasRelated ? View.VISIBLE : View.GONE);
+            binding.relatedAssetsRecyclerView.setVisibility(hasRelated ? View.VISIBLE : View.GONE);
+            relatedAssetAdapter.submitList(related);
+        });
+    }
+
     private void updateUI(Asset asset) {
         try {
             // Load asset image with error handling
@@ -118,6 +178,7 @@ public class AssetDetailFragment extends Fragment {
                         .apply(new RequestOptions()
                                 .placeholder(R.drawable.ic_image_placeholder)
                                 .error(R.drawable.ic_image_placeholder))
+                        .apply(ImageCacheManager.decodeOptions(ImageCacheManager.ImageUse.DETAIL))
                         .diskCacheStrategy(DiskCacheStrategy.ALL)
                         .centerCrop()
                         .into(binding.assetImage);
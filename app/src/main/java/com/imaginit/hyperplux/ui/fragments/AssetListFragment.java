@@ -34,6 +34,7 @@ import java.util.List;
 
 public class AssetListFragment extends Fragment {
     private static final String TAG = "AssetListFragment";
+    private static final int PRELOAD_AHEAD = 6;
 
     private FragmentAssetListBinding binding;
     private AssetViewModel viewModel;
@@ -184,6 +185,7 @@ public class AssetListFragment extends Fragment {
 
         binding.assetRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
         binding.assetRecyclerView.setAdapter(adapter);
+        adapter.attachPreloader(binding.assetRecyclerView, PRELOAD_AHEAD);
 
         // Initially submit empty list
         adapter.submitList(new ArrayList<>());
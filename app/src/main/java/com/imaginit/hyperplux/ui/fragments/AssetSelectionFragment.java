@@ -24,6 +24,8 @@ import com.imaginit.hyperplux.repositories.AssetRepository;
 import com.imaginit.hyperplux.ui.adapters.AssetGridAdapter;
 import com.imaginit.hyperplux.utils.AnalyticsTracker;
 import com.imaginit.hyperplux.utils.HapticFeedbackManager;
+import com.imaginit.hyperplux.utils.ImageCacheManager;
+import com.imaginit.hyperplux.utils.ImageVariants;
 import com.imaginit.hyperplux.viewmodels.AssetViewModel;
 import com.imaginit.hyperplux.viewmodels.ChatViewModel;
 import com.imaginit.hyperplux.viewmodels.ViewModelFactory;
@@ -167,13 +169,15 @@ public class AssetSelectionFragment extends Fragment {
             binding.assetNameText.setText(asset.getName() != null ? asset.getName() : "");
 
             // Load asset image
-            String imageUri = asset.getImageUri();
+            String imageUri = ImageVariants.pick(ImageVariants.targetSize(binding.assetImage),
+                    asset.getImageThumbUri(), asset.getImageMediumUri(), asset.getImageUri());
             if (imageUri != null && !imageUri.isEmpty()) {
                 Glide.with(requireContext())
                         .load(imageUri)
                         .apply(new RequestOptions()
                                 .placeholder(R.drawable.ic_image_placeholder)
                                 .error(R.drawable.ic_image_placeholder))
+                        .apply(ImageCacheManager.decodeOptions(ImageCacheManager.ImageUse.THUMBNAIL))
                         .into(binding.assetImage);
             } else {
                 binding.assetImage.setImageResource(R.drawable.ic_image_placeholder);
@@ -19,6 +19,7 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.request.RequestOptions;
@@ -28,9 +29,11 @@ import com.imaginit.hyperplux.R;
 import com.imaginit.hyperplux.databinding.FragmentChatBinding;
 import com.imaginit.hyperplux.models.ChatMessage;
 import com.imaginit.hyperplux.models.ChatRoom;
+import com.imaginit.hyperplux.models.Result;
 import com.imaginit.hyperplux.ui.adapters.ChatMessageAdapter;
 import com.imaginit.hyperplux.utils.AnalyticsTracker;
 import com.imaginit.hyperplux.utils.NetworkMonitor;
+import com.imaginit.hyperplux.utils.UploadQueue;
 import com.imaginit.hyperplux.viewmodels.ChatViewModel;
 
 import java.io.File;
@@ -51,6 +54,9 @@ public class ChatFragment extends Fragment {
     private static final int REQUEST_GALLERY_IMAGE = 2;
     private static final int CAMERA_PERMISSION_CODE = 100;
     private static final int STORAGE_PERMISSION_CODE = 101;
+    private static final int PRELOAD_AHEAD = 5;
+    // Fetch older history when the first visible message is this close to the top
+    private static final int LOAD_OLDER_THRESHOLD = 10;
 
     private FragmentChatBinding binding;
     private ChatViewModel viewModel;
@@ -59,6 +65,7 @@ public class ChatFragment extends Fragment {
     private AnalyticsTracker analyticsTracker;
     private ChatRoom chatRoom;
     private String currentUserId;
+    private String newestMessageId;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -155,15 +162,30 @@ public class ChatFragment extends Fragment {
 
             // Set up message list
             adapter = new ChatMessageAdapter(currentUserId, chatRoom.getId(), viewModel, getViewLifecycleOwner());
-            binding.messagesRecyclerView.setLayoutManager(new LinearLayoutManager(requireContext()));
+            LinearLayoutManager layoutManager = new LinearLayoutManager(requireContext());
+            binding.messagesRecyclerView.setLayoutManager(layoutManager);
             binding.messagesRecyclerView.setAdapter(adapter);
+            adapter.attachPreloader(binding.messagesRecyclerView, PRELOAD_AHEAD);
+            binding.messagesRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    if (dy < 0 && layoutManager.findFirstVisibleItemPosition() <= LOAD_OLDER_THRESHOLD) {
+                        viewModel.loadOlderMessages(chatRoom.getId());
+                    }
+                }
+            });
 
             // Load messages
             viewModel.getMessages(chatRoom.getId()).observe(getViewLifecycleOwner(), messages -> {
                 if (messages != null) {
                     adapter.submitList(messages);
                     if (!messages.isEmpty()) {
-                        binding.messagesRecyclerView.scrollToPosition(messages.size() - 1);
+                        // Follow new messages, but stay put when older history is merged in
+                        String newestId = messages.get(messages.size() - 1).getId();
+                        if (!newestId.equals(newestMessageId)) {
+                            newestMessageId = newestId;
+                            binding.messagesRecyclerView.scrollToPosition(messages.size() - 1);
+                        }
                         binding.emptyStateContainer.setVisibility(View.GONE);
                     } else {
                         binding.emptyStateContainer.setVisibility(View.VISIBLE);
@@ -175,6 +197,12 @@ public class ChatFragment extends Fragment {
                 }
             });
 
+            // Queued image uploads for this room
+            viewModel.getImageUploadProgress(requireContext(), chatRoom.getId())
+                    .observe(getViewLifecycleOwner(), this::showUploadProgress);
+            binding.uploadStatus.setOnClickListener(v ->
+                    viewModel.retryImageUpload(requireContext(), chatRoom.getId()));
+
             // Set up message input
             binding.messageInput.addTextChangedListener(new TextWatcher() {
                 @Override
@@ -406,11 +434,12 @@ public class ChatFragment extends Fragment {
             binding.progressOverlay.setVisibility(View.VISIBLE);
 
             // Upload image and send message directly
-            viewModel.uploadImageAndSendMessage(chatRoom.getId(), imageUri)
-                    .observe(getViewLifecycleOwner(), message -> {
+            // Only compression blocks the screen; the upload is shown in uploadStatus
+            viewModel.uploadImageAndSendMessage(requireContext(), chatRoom.getId(), imageUri)
+                    .observe(getViewLifecycleOwner(), result -> {
                         binding.progressOverlay.setVisibility(View.GONE);
 
-                        if (message != null) {
+                        if (result instanceof Result.Success) {
                             performHapticFeedback(binding.getRoot());
                         } else {
                             Toast.makeText(requireContext(), "Error sending image", Toast.LENGTH_SHORT).show();
@@ -423,6 +452,23 @@ public class ChatFragment extends Fragment {
         }
     }
 
+    private void showUploadProgress(UploadQueue.UploadProgress progress) {
+        if (binding == null) {
+            return;
+        }
+        if (progress.isUploading()) {
+            binding.uploadStatus.setText(getString(R.string.image_uploading, progress.getPercent()));
+            binding.uploadStatus.setClickable(false);
+            binding.uploadStatus.setVisibility(View.VISIBLE);
+        } else if (progress.hasFailed()) {
+            binding.uploadStatus.setText(R.string.image_upload_failed_retry);
+            binding.uploadStatus.setClickable(true);
+            binding.uploadStatus.setVisibility(View.VISIBLE);
+        } else {
+            binding.uploadStatus.setVisibility(View.GONE);
+        }
+    }
+
     private void initiateCall(boolean isVideoCall) {
         try {
             NetworkMonitor networkMonitor = NetworkMonitor.getInstance(requireContext());
@@ -501,5 +547,7 @@ public class ChatFragment extends Fragment {
     public void onDestroyView() {
         super.onDestroyView();
         binding = null;
+        // The new view gets a fresh list, so its first page must scroll too
+        newestMessageId = null;
     }
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import android.widget.Toast;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.widget.NestedScrollView;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.Navigation;
@@ -24,6 +25,8 @@ import com.imaginit.hyperplux.models.User;
 import com.imaginit.hyperplux.repositories.AssetRepository;
 import com.imaginit.hyperplux.repositories.UserRepository;
 import com.imaginit.hyperplux.ui.adapters.AssetAdapter;
+import com.imaginit.hyperplux.ui.adapters.RelatedAssetAdapter;
+import com.imaginit.hyperplux.utils.ImpressionTracker;
 import com.imaginit.hyperplux.viewmodels.AssetViewModel;
 import com.imaginit.hyperplux.viewmodels.UserViewModel;
 import com.imaginit.hyperplux.viewmodels.ViewModelFactory;
@@ -38,6 +41,8 @@ public class HomeFragment extends Fragment {
     private AssetViewModel assetViewModel;
     private UserViewModel userViewModel;
     private AssetAdapter adapter;
+    private RelatedAssetAdapter trendingAdapter;
+    private ImpressionTracker.Viewport feedImpressions;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -56,6 +61,9 @@ public class HomeFragment extends Fragment {
             // Set up the RecyclerView
             setupRecyclerView();
 
+            // Set up the trending strip
+            setupTrending();
+
             // Set up FAB for adding new assets
             binding.addAssetFab.setOnClickListener(v -> {
                 try {
@@ -120,20 +128,7 @@ public class HomeFragment extends Fragment {
         try {
             adapter = new AssetAdapter(
                     // Asset click
-                    asset -> {
-                        try {
-                            if (asset != null) {
-                                // Navigate to asset detail
-                                Bundle args = new Bundle();
-                                args.putInt("assetId", asset.getId());
-                                Navigation.findNavController(requireView())
-                                        .navigate(R.id.action_homeFragment_to_assetDetailFragment, args);
-                            }
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error navigating to asset detail: " + e.getMessage());
-                            Toast.makeText(requireContext(), "Error opening asset details", Toast.LENGTH_SHORT).show();
-                        }
-                    },
+                    this::openAsset,
                     // Like click
                     asset -> {
                         if (asset != null) {
@@ -151,6 +146,20 @@ public class HomeFragment extends Fragment {
             binding.assetsRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
             binding.assetsRecyclerView.setAdapter(adapter);
 
+            // Count feed views from what actually stays on screen
+            feedImpressions = ImpressionTracker.getInstance(requireContext())
+                    .watch(binding.assetsRecyclerView, this::feedAssetAt);
+
+            // The list sits in a NestedScrollView, so page in more of the
+            // feed when the scroll view is within a screen of the bottom
+            binding.homeScrollView.setOnScrollChangeListener((NestedScrollView.OnScrollChangeListener)
+                    (v, scrollX, scrollY, oldScrollX, oldScrollY) -> {
+                        int remaining = v.getChildAt(0).getMeasuredHeight() - (scrollY + v.getMeasuredHeight());
+                        if (scrollY > oldScrollY && remaining < v.getMeasuredHeight()) {
+                            assetViewModel.loadMoreFeed();
+                        }
+                    });
+
             // Initially submit empty list
             adapter.submitList(new ArrayList<>());
         } catch (Exception e) {
@@ -159,6 +168,49 @@ public class HomeFragment extends Fragment {
         }
     }
 
+    private void setupTrending() {
+        trendingAdapter = new RelatedAssetAdapter(this::openAsset);
+        binding.trendingRecyclerView.setAdapter(trendingAdapter);
+
+        assetViewModel.getTrendingAssets().observe(getViewLifecycleOwner(), trending -> {
+            boolean hasTrending = trending != null && !trending.isEmpty();
+            binding.trendingTitle.setVisibility(hasTrending ? View.VISIBLE : View.GONE);
+            binding.trendingRecyclerView.setVisibility(hasTrending ? View.VISIBLE : View.GONE);
+            trendingAdapter.submitList(trending);
+        });
+    }
+
+    private Asset feedAssetAt(int position) {
+        List<Asset> assets = adapter.getCurrentList();
+        return position < assets.size() ? assets.get(position) : null;
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        // Trending shifts minute to minute, so recompute on every return
+        assetViewModel.loadTrendingAssets();
+    }
+
+    private void openAsset(Asset asset) {
+        try {
+            if (asset != null) {
+                // Feed items are marketplace listings, opened by document ID
+                Bundle args = new Bundle();
+                if (asset.getListingId() != null) {
+                    args.putString("listingId", asset.getListingId());
+                } else {
+                    args.putInt("assetId", asset.getId());
+                }
+                Navigation.findNavController(requireView())
+                        .navigate(R.id.action_homeFragment_to_assetDetailFragment, args);
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error navigating to asset detail: " + e.getMessage());
+            Toast.makeText(requireContext(), "Error opening asset details", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void handleAssetList(List<Asset> assets) {
         try {
             if (assets != null && !assets.isEmpty()) {
@@ -214,9 +266,19 @@ public class HomeFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        ImpressionTracker.getInstance(requireContext()).flush();
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (feedImpressions != null) {
+            feedImpressions.stop();
+            feedImpressions = null;
+        }
         binding = null;
     }
 }
\ No newline at end of file
@@ -13,6 +13,7 @@ import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.navigation.Navigation;
 import androidx.recyclerview.widget.GridLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 import androidx.swiperefreshlayout.widget.SwipeRefreshLayout;
 
 import com.imaginit.hyperplux.R;
@@ -22,6 +23,7 @@ import com.imaginit.hyperplux.models.Asset;
 import com.imaginit.hyperplux.repositories.AssetRepository;
 import com.imaginit.hyperplux.ui.adapters.AssetAdapter;
 import com.imaginit.hyperplux.utils.AnalyticsTracker;
+import com.imaginit.hyperplux.utils.ImpressionTracker;
 import com.imaginit.hyperplux.utils.NetworkMonitor;
 import com.imaginit.hyperplux.viewmodels.AssetViewModel;
 import com.imaginit.hyperplux.viewmodels.ViewModelFactory;
@@ -31,11 +33,14 @@ import java.util.List;
 
 public class MarketplaceFragment extends Fragment {
     private static final String TAG = "MarketplaceFragment";
+    // Two rows of the grid past the visible ones
+    private static final int PRELOAD_AHEAD = 4;
 
     private FragmentMarketplaceBinding binding;
     private AssetViewModel assetViewModel;
     private AssetAdapter adapter;
     private AnalyticsTracker analyticsTracker;
+    private ImpressionTracker.Viewport impressions;
 
     @Override
     public View onCreateView(@NonNull LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
@@ -132,9 +137,9 @@ public class MarketplaceFragment extends Fragment {
                     asset -> {
                         try {
                             if (asset != null) {
-                                // Navigate to asset detail
+                                // Listings are other users' assets, so open them by document ID
                                 Bundle args = new Bundle();
-                                args.putInt("assetId", asset.getId());
+                                args.putString("listingId", asset.getListingId());
                                 Navigation.findNavController(requireView())
                                         .navigate(R.id.action_marketplaceFragment_to_assetDetailFragment, args);
                             }
@@ -162,6 +167,25 @@ public class MarketplaceFragment extends Fragment {
             GridLayoutManager layoutManager = new GridLayoutManager(requireContext(), spanCount);
             binding.assetsRecyclerView.setLayoutManager(layoutManager);
             binding.assetsRecyclerView.setAdapter(adapter);
+            adapter.attachPreloader(binding.assetsRecyclerView, PRELOAD_AHEAD);
+
+            // Count views from what actually stays on screen
+            impressions = ImpressionTracker.getInstance(requireContext())
+                    .watch(binding.assetsRecyclerView, position -> {
+                        List<Asset> assets = adapter.getCurrentList();
+                        return position < assets.size() ? assets.get(position) : null;
+                    });
+
+            // Extend the page window when within two rows of the end
+            binding.assetsRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    if (dy > 0 && layoutManager.findLastVisibleItemPosition()
+                            >= adapter.getItemCount() - spanCount * 2) {
+                        assetViewModel.loadMoreMarketplace();
+                    }
+                }
+            });
 
             // Initially submit empty list
             adapter.submitList(new ArrayList<>());
@@ -258,9 +282,19 @@ public class MarketplaceFragment extends Fragment {
         }
     }
 
+    @Override
+    public void onPause() {
+        super.onPause();
+        ImpressionTracker.getInstance(requireContext()).flush();
+    }
+
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        if (impressions != null) {
+            impressions.stop();
+            impressions = null;
+        }
         binding = null;
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.Data;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+import com.imaginit.hyperplux.database.AppDatabase;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Background worker for Firestore backup and restore, enqueued through
+ * DatabaseBackupUtility. Both operations checkpoint as they go, so a rerun
+ * after process death, a lost network or a cancel only transfers what is
+ * left.
+ */
+public class BackupWorker extends Worker {
+    private static final String TAG = "BackupWorker";
+
+    static final String KEY_OPERATION = "operation";
+    static final String KEY_USER_ID = "userId";
+    static final String OPERATION_BACKUP = "backup";
+    static final String OPERATION_RESTORE = "restore";
+
+    // Progress data
+    public static final String KEY_PROGRESS = "progress";
+    public static final String KEY_TOTAL = "total";
+    // Output data on failure
+    public static final String KEY_ERROR = "error";
+
+    private static final int MAX_ATTEMPTS = 5;
+
+    public BackupWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        String userId = getInputData().getString(KEY_USER_ID);
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        if (user == null) {
+            return Result.failure(error("User not logged in"));
+        }
+        if (userId == null || !userId.equals(user.getUid())) {
+            // Enqueued by another account; running it now would mix their data
+            return Result.failure(error("Signed-in user changed"));
+        }
+
+        Context context = getApplicationContext();
+        DatabaseBackupUtility utility = new DatabaseBackupUtility(context, AppDatabase.getDatabase(context));
+        DatabaseBackupUtility.ProgressListener listener = (progress, total) ->
+                setProgressAsync(new Data.Builder().putInt(KEY_PROGRESS, progress).putInt(KEY_TOTAL, total).build());
+        try {
+            Map<String, Object> stats = OPERATION_RESTORE.equals(getInputData().getString(KEY_OPERATION))
+                    ? utility.runRestore(userId, this::isStopped, listener)
+                    : utility.runBackup(userId, this::isStopped, listener);
+            return Result.success(new Data.Builder().putAll(stats).build());
+        } catch (CancellationException e) {
+            // Stopped by WorkManager; the result is ignored and the checkpoints are kept
+            return Result.retry();
+        } catch (Exception e) {
+            Log.e(TAG, "Backup job failed", e);
+            return getRunAttemptCount() + 1 < MAX_ATTEMPTS ? Result.retry() : Result.failure(error(e.getMessage()));
+        }
+    }
+
+    private static Data error(String message) {
+        return new Data.Builder().putString(KEY_ERROR, message).build();
+    }
+}
@@ -0,0 +1,219 @@
+package com.imaginit.hyperplux.utils;
+
+/**
+ * BlurHash encoder and decoder (https://blurha.sh). A hash is a short
+ * string, around 30 characters for 4x3 components, describing a blurred
+ * version of an image. It is stored next to the image URLs so lists can draw
+ * an instant placeholder without any extra request.
+ * <p>
+ * Works on ARGB pixel arrays so it has no Android dependencies; alpha is
+ * ignored.
+ */
+public final class BlurHash {
+    public static final int DEFAULT_COMPONENTS_X = 4;
+    public static final int DEFAULT_COMPONENTS_Y = 3;
+
+    private static final String CHARS =
+            "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz#$%*+,-.:;=?@[]^_{|}~";
+
+    private static final float[] SRGB_TO_LINEAR = new float[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            double c = v / 255.0;
+            SRGB_TO_LINEAR[v] = (float) (c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4));
+        }
+    }
+
+    private BlurHash() {
+    }
+
+    /**
+     * Encode an image.
+     * @param pixels ARGB pixels, row by row
+     * @param width Image width
+     * @param height Image height
+     * @param componentsX Horizontal detail, 1 to 9
+     * @param componentsY Vertical detail, 1 to 9
+     * @return The hash
+     */
+    public static String encode(int[] pixels, int width, int height, int componentsX, int componentsY) {
+        if (componentsX < 1 || componentsX > 9 || componentsY < 1 || componentsY > 9) {
+            throw new IllegalArgumentException("Components must be between 1 and 9");
+        }
+        if (width <= 0 || height <= 0 || pixels.length < width * height) {
+            throw new IllegalArgumentException("Pixel array does not match " + width + "x" + height);
+        }
+
+        // Linear-light channels, converted once rather than once per component
+        float[] linear = new float[width * height * 3];
+        for (int p = 0; p < width * height; p++) {
+            int pixel = pixels[p];
+            linear[p * 3] = SRGB_TO_LINEAR[(pixel >> 16) & 0xFF];
+            linear[p * 3 + 1] = SRGB_TO_LINEAR[(pixel >> 8) & 0xFF];
+            linear[p * 3 + 2] = SRGB_TO_LINEAR[pixel & 0xFF];
+        }
+
+        double[][] factors = new double[componentsX * componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            double[] cosY = cosines(j, height);
+            for (int i = 0; i < componentsX; i++) {
+                double[] cosX = cosines(i, width);
+                double r = 0, g = 0, b = 0;
+                for (int y = 0; y < height; y++) {
+                    for (int x = 0; x < width; x++) {
+                        double basis = cosX[x] * cosY[y];
+                        int p = (y * width + x) * 3;
+                        r += basis * linear[p];
+                        g += basis * linear[p + 1];
+                        b += basis * linear[p + 2];
+                    }
+                }
+                double scale = (i == 0 && j == 0 ? 1.0 : 2.0) / (width * height);
+                factors[j * componentsX + i] = new double[]{r * scale, g * scale, b * scale};
+            }
+        }
+
+        StringBuilder hash = new StringBuilder();
+        encode83(hash, (componentsX - 1) + (componentsY - 1) * 9, 1);
+
+        double maxValue;
+        if (factors.length > 1) {
+            double actualMax = 0;
+            for (int f = 1; f < factors.length; f++) {
+                for (double component : factors[f]) {
+                    actualMax = Math.max(actualMax, Math.abs(component));
+                }
+            }
+            int quantisedMax = (int) Math.max(0, Math.min(82, Math.floor(actualMax * 166 - 0.5)));
+            maxValue = (quantisedMax + 1) / 166.0;
+            encode83(hash, quantisedMax, 1);
+        } else {
+            maxValue = 1;
+            encode83(hash, 0, 1);
+        }
+
+        double[] dc = factors[0];
+        encode83(hash, (linearToSrgb(dc[0]) << 16) + (linearToSrgb(dc[1]) << 8) + linearToSrgb(dc[2]), 4);
+        for (int f = 1; f < factors.length; f++) {
+            double[] ac = factors[f];
+            encode83(hash, quantiseAc(ac[0], maxValue) * 19 * 19
+                    + quantiseAc(ac[1], maxValue) * 19
+                    + quantiseAc(ac[2], maxValue), 2);
+        }
+        return hash.toString();
+    }
+
+    /**
+     * Decode a hash into opaque ARGB pixels.
+     * @param hash Hash from encode()
+     * @param width Output width; small sizes such as 32 are enough for a blur
+     * @param height Output height
+     * @return Pixels row by row, or null if the hash is malformed
+     */
+    public static int[] decode(String hash, int width, int height) {
+        if (hash == null || hash.length() < 6 || width <= 0 || height <= 0) {
+            return null;
+        }
+        int sizeFlag = decode83(hash, 0, 1);
+        if (sizeFlag < 0) {
+            return null;
+        }
+        int componentsX = sizeFlag % 9 + 1;
+        int componentsY = sizeFlag / 9 + 1;
+        if (hash.length() != 4 + 2 * componentsX * componentsY) {
+            return null;
+        }
+
+        int quantisedMax = decode83(hash, 1, 2);
+        int dc = decode83(hash, 2, 6);
+        if (quantisedMax < 0 || dc < 0) {
+            return null;
+        }
+        double maxValue = (quantisedMax + 1) / 166.0;
+
+        double[][] colors = new double[componentsX * componentsY][];
+        colors[0] = new double[]{
+                SRGB_TO_LINEAR[(dc >> 16) & 0xFF], SRGB_TO_LINEAR[(dc >> 8) & 0xFF], SRGB_TO_LINEAR[dc & 0xFF]};
+        for (int c = 1; c < colors.length; c++) {
+            int ac = decode83(hash, 4 + c * 2, 6 + c * 2);
+            if (ac < 0) {
+                return null;
+            }
+            colors[c] = new double[]{
+                    signPow((ac / (19 * 19) - 9) / 9.0, 2) * maxValue,
+                    signPow((ac / 19 % 19 - 9) / 9.0, 2) * maxValue,
+                    signPow((ac % 19 - 9) / 9.0, 2) * maxValue};
+        }
+
+        double[][] cosX = new double[componentsX][];
+        for (int i = 0; i < componentsX; i++) {
+            cosX[i] = cosines(i, width);
+        }
+        double[][] cosY = new double[componentsY][];
+        for (int j = 0; j < componentsY; j++) {
+            cosY[j] = cosines(j, height);
+        }
+
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double r = 0, g = 0, b = 0;
+                for (int j = 0; j < componentsY; j++) {
+                    for (int i = 0; i < componentsX; i++) {
+                        double basis = cosX[i][x] * cosY[j][y];
+                        double[] color = colors[j * componentsX + i];
+                        r += color[0] * basis;
+                        g += color[1] * basis;
+                        b += color[2] * basis;
+                    }
+                }
+                pixels[y * width + x] = 0xFF000000
+                        | (linearToSrgb(r) << 16) | (linearToSrgb(g) << 8) | linearToSrgb(b);
+            }
+        }
+        return pixels;
+    }
+
+    private static int linearToSrgb(double value) {
+        double c = Math.max(0, Math.min(1, value));
+        double srgb = c <= 0.0031308 ? c * 12.92 : 1.055 * Math.pow(c, 1 / 2.4) - 0.055;
+        return (int) (srgb * 255 + 0.5);
+    }
+
+    private static double[] cosines(int component, int size) {
+        double[] values = new double[size];
+        for (int n = 0; n < size; n++) {
+            values[n] = Math.cos(Math.PI * component * n / size);
+        }
+        return values;
+    }
+
+    private static int quantiseAc(double value, double maxValue) {
+        return (int) Math.max(0, Math.min(18, Math.floor(signPow(value / maxValue, 0.5) * 9 + 9.5)));
+    }
+
+    private static double signPow(double value, double exponent) {
+        return Math.copySign(Math.pow(Math.abs(value), exponent), value);
+    }
+
+    private static void encode83(StringBuilder out, int value, int length) {
+        for (int i = 1; i <= length; i++) {
+            int digit = (value / (int) Math.pow(83, length - i)) % 83;
+            out.append(CHARS.charAt(digit));
+        }
+    }
+
+    // Returns -1 for characters outside the alphabet
+    private static int decode83(String hash, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = CHARS.indexOf(hash.charAt(i));
+            if (digit < 0) {
+                return -1;
+            }
+            value = value * 83 + digit;
+        }
+        return value;
+    }
+}
@@ -6,6 +6,8 @@ import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.firestore.DocumentReference;
@@ -15,6 +17,7 @@ import com.google.firebase.firestore.FirebaseFirestore;
 import com.google.firebase.firestore.ListenerRegistration;
 import com.google.firebase.firestore.Query;
 import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.WriteBatch;
 import com.imaginit.hyperplux.models.ChatMessage;
 import com.imaginit.hyperplux.models.ChatRoom;
 import com.imaginit.hyperplux.models.Result;
@@ -22,6 +25,8 @@ import com.imaginit.hyperplux.models.User;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -36,12 +41,17 @@ public class ChatManager {
     private static final String MESSAGES_COLLECTION = "messages";
     private static final String USERS_COLLECTION = "users";
 
+    // Newest messages kept under a live listener, and the page size for older history
+    private static final int MESSAGE_WINDOW = 50;
+    private static final int HISTORY_PAGE_SIZE = 50;
+
     private final FirebaseFirestore firestore;
     private final FirebaseAuth auth;
     private final AnalyticsTracker analyticsTracker;
 
     private final Map<String, ListenerRegistration> messageListeners = new HashMap<>();
     private final Map<String, ListenerRegistration> roomListeners = new HashMap<>();
+    private final Map<String, MessageWindow> messageWindows = new HashMap<>();
 
     // Singleton instance
     private static ChatManager instance;
@@ -244,7 +254,9 @@ public class ChatManager {
     }
 
     /**
-     * Get messages for a specific chat room
+     * Get messages for a specific chat room. Only the newest MESSAGE_WINDOW
+     * messages are listened to; older history is fetched a page at a time
+     * by loadOlderMessages. Both feed one list, oldest first.
      * @param chatRoomId The ID of the chat room
      * @return LiveData with the result containing a list of messages
      */
@@ -266,11 +278,11 @@ public class ChatManager {
         // Mark messages as read
         markMessagesAsRead(chatRoomId);
 
-        // Query for messages in this chat room
-        Query query = firestore.collection(CHAT_ROOMS_COLLECTION)
-                .document(chatRoomId)
-                .collection(MESSAGES_COLLECTION)
-                .orderBy("timestamp", Query.Direction.ASCENDING);
+        MessageWindow window = new MessageWindow(resultLiveData);
+        messageWindows.put(chatRoomId, window);
+
+        // Live window: the newest messages only
+        Query query = messagesQuery(chatRoomId).limit(MESSAGE_WINDOW);
 
         ListenerRegistration listener = query.addSnapshotListener((snapshots, e) -> {
             if (e != null) {
@@ -280,24 +292,131 @@ public class ChatManager {
             }
 
             if (snapshots == null) {
-                resultLiveData.setValue(new Result.Success<>(new ArrayList<>()));
+                window.publish();
                 return;
             }
 
-            List<ChatMessage> messages = new ArrayList<>();
+            // Messages that slide out of the window stay in the list as history
             for (QueryDocumentSnapshot document : snapshots) {
-                ChatMessage message = document.toObject(ChatMessage.class);
-                message.setId(document.getId());
-                messages.add(message);
+                window.put(document);
             }
 
-            resultLiveData.setValue(new Result.Success<>(messages));
+            // Until history is paged in, it starts below the oldest message the server sent.
+            // A cached snapshot can skip messages, so it does not move the cursor.
+            if (!window.pagedHistory && !snapshots.getMetadata().isFromCache()) {
+                List<DocumentSnapshot> documents = snapshots.getDocuments();
+                window.historyEnd = documents.size() < MESSAGE_WINDOW;
+                if (!documents.isEmpty()) {
+                    window.oldest = documents.get(documents.size() - 1);
+                }
+            }
+
+            window.publish();
         });
 
         messageListeners.put(chatRoomId, listener);
         return resultLiveData;
     }
 
+    /**
+     * Fetch the page of messages before the oldest one loaded, merging it
+     * into the list from getMessages. Does nothing while a page is loading,
+     * once the start of the conversation is reached, or before the live
+     * window has heard from the server.
+     * @param chatRoomId The ID of the chat room
+     * @return Whether a page was requested
+     */
+    public boolean loadOlderMessages(String chatRoomId) {
+        MessageWindow window = messageWindows.get(chatRoomId);
+        if (window == null || window.loadingOlder || window.historyEnd || window.oldest == null) {
+            return false;
+        }
+
+        window.loadingOlder = true;
+        messagesQuery(chatRoomId)
+                .startAfter(window.oldest)
+                .limit(HISTORY_PAGE_SIZE)
+                .get()
+                .addOnSuccessListener(snapshots -> {
+                    window.loadingOlder = false;
+                    // Stale if getMessages was called again meanwhile
+                    if (messageWindows.get(chatRoomId) != window) {
+                        return;
+                    }
+                    for (QueryDocumentSnapshot document : snapshots) {
+                        window.put(document);
+                    }
+                    List<DocumentSnapshot> documents = snapshots.getDocuments();
+                    window.pagedHistory = true;
+                    window.historyEnd = documents.size() < HISTORY_PAGE_SIZE;
+                    if (!documents.isEmpty()) {
+                        window.oldest = documents.get(documents.size() - 1);
+                    }
+                    window.publish();
+                })
+                .addOnFailureListener(e -> {
+                    window.loadingOlder = false;
+                    Log.e(TAG, "Error loading older messages", e);
+                });
+        return true;
+    }
+
+    // Messages of a chat room, newest first
+    private Query messagesQuery(String chatRoomId) {
+        return firestore.collection(CHAT_ROOMS_COLLECTION)
+                .document(chatRoomId)
+                .collection(MESSAGES_COLLECTION)
+                .orderBy("timestamp", Query.Direction.DESCENDING);
+    }
+
+    /**
+     * Messages loaded for one chat room, from the live window and from
+     * history pages, keyed by ID so the two can overlap. Touched only on
+     * the main thread, where Firestore delivers results.
+     */
+    private static final class MessageWindow {
+        private final MutableLiveData<Result<List<ChatMessage>>> liveData;
+        private final Map<String, ChatMessage> messages = new HashMap<>();
+        DocumentSnapshot oldest; // history cursor, null until known
+        boolean pagedHistory;
+        boolean historyEnd;
+        boolean loadingOlder;
+
+        MessageWindow(MutableLiveData<Result<List<ChatMessage>>> liveData) {
+            this.liveData = liveData;
+        }
+
+        void put(DocumentSnapshot document) {
+            ChatMessage message = document.toObject(ChatMessage.class);
+            if (message != null) {
+                message.setId(document.getId());
+                messages.put(document.getId(), message);
+            }
+        }
+
+        void publish() {
+            List<ChatMessage> sorted = new ArrayList<>(messages.values());
+            Collections.sort(sorted, MESSAGE_ORDER);
+            liveData.setValue(new Result.Success<>(sorted));
+        }
+    }
+
+    // Oldest first; ID breaks ties so the order is stable
+    private static final Comparator<ChatMessage> MESSAGE_ORDER = (a, b) -> {
+        Date ta = a.getTimestamp();
+        Date tb = b.getTimestamp();
+        if (ta != null && tb != null && !ta.equals(tb)) {
+            return ta.compareTo(tb);
+        }
+        if (ta == null && tb != null) {
+            return 1;
+        }
+        if (ta != null && tb == null) {
+            return -1;
+        }
+        return a.getId().compareTo(b.getId());
+    };
+
     /**
      * Send a text message
      * @param chatRoomId The ID of the chat room
@@ -389,6 +508,16 @@ public class ChatManager {
      * @return LiveData with the result containing the sent message
      */
     public LiveData<Result<ChatMessage>> sendImageMessage(String chatRoomId, String imageUrl) {
+        return sendImageMessage(chatRoomId, new ImageVariants(null, null, imageUrl));
+    }
+
+    /**
+     * Send an image message with thumb and medium variants alongside the full image
+     * @param chatRoomId The ID of the chat room
+     * @param images Download URLs of the uploaded variants
+     * @return LiveData with the result containing the sent message
+     */
+    public LiveData<Result<ChatMessage>> sendImageMessage(String chatRoomId, ImageVariants images) {
         MutableLiveData<Result<ChatMessage>> resultLiveData = new MutableLiveData<>();
         String userId = getCurrentUserId();
 
@@ -397,73 +526,113 @@ public class ChatManager {
             return resultLiveData;
         }
 
+        String messageId = firestore.collection(CHAT_ROOMS_COLLECTION).document(chatRoomId)
+                .collection(MESSAGES_COLLECTION).document().getId();
+        postImageMessage(chatRoomId, messageId, userId, images)
+                .addOnSuccessListener(message -> resultLiveData.setValue(new Result.Success<>(message)))
+                .addOnFailureListener(e -> resultLiveData.setValue(new Result.Error<>(e)));
+
+        return resultLiveData;
+    }
+
+    /**
+     * Send an image message on behalf of the user who queued it. Fails
+     * while anyone else, or no one, is signed in, so a queued image is
+     * never sent from the wrong account.
+     * @param senderId The user who queued the image
+     * @param chatRoomId The ID of the chat room
+     * @param messageId Message ID chosen by the caller, so a retried send
+     *                  rewrites the same message instead of adding another
+     * @param images Download URLs of the uploaded variants
+     * @return Task with the sent message
+     */
+    public Task<ChatMessage> sendImageMessageAs(String senderId, String chatRoomId, String messageId,
+                                                ImageVariants images) {
+        if (senderId == null || !senderId.equals(getCurrentUserId())) {
+            return Tasks.forException(new IllegalStateException("Sender is not signed in"));
+        }
+        return postImageMessage(chatRoomId, messageId, senderId, images);
+    }
+
+    /**
+     * Point an image message sent with a smaller variant at the full image
+     * once that is uploaded; pinned to the sender like sendImageMessageAs
+     * @param senderId The user who sent the message
+     * @param chatRoomId The ID of the chat room
+     * @param messageId The ID of the message
+     * @param imageUrl Download URL of the full image
+     */
+    public Task<Void> updateImageMessageAs(String senderId, String chatRoomId, String messageId, String imageUrl) {
+        if (senderId == null || !senderId.equals(getCurrentUserId())) {
+            return Tasks.forException(new IllegalStateException("Sender is not signed in"));
+        }
+        return firestore.collection(CHAT_ROOMS_COLLECTION).document(chatRoomId)
+                .collection(MESSAGES_COLLECTION).document(messageId)
+                .update("imageUrl", imageUrl);
+    }
+
+    // Write the message and the chat room's last message and unread counts in one batch
+    private Task<ChatMessage> postImageMessage(String chatRoomId, String messageId, String userId,
+                                               ImageVariants images) {
+        String imageUrl = images.getFull();
         if (imageUrl == null || imageUrl.trim().isEmpty()) {
-            resultLiveData.setValue(new Result.Error<>(new Exception("Image URL cannot be empty")));
-            return resultLiveData;
+            return Tasks.forException(new Exception("Image URL cannot be empty"));
         }
 
         // Reference to the chat room
         DocumentReference chatRoomRef = firestore.collection(CHAT_ROOMS_COLLECTION).document(chatRoomId);
 
         // Get the chat room to find other participants
-        chatRoomRef.get().addOnSuccessListener(documentSnapshot -> {
-            ChatRoom chatRoom = documentSnapshot.toObject(ChatRoom.class);
+        return chatRoomRef.get().continueWithTask(roomTask -> {
+            if (!roomTask.isSuccessful()) {
+                Log.e(TAG, "Error getting chat room", roomTask.getException());
+                throw roomTask.getException();
+            }
+            ChatRoom chatRoom = roomTask.getResult().toObject(ChatRoom.class);
             if (chatRoom == null) {
-                resultLiveData.setValue(new Result.Error<>(new Exception("Chat room not found")));
-                return;
+                throw new Exception("Chat room not found");
             }
 
             // Create the message
             ChatMessage message = new ChatMessage();
+            message.setId(messageId);
             message.setSenderId(userId);
             message.setImageUrl(imageUrl);
+            message.setImageMediumUrl(images.getMedium());
+            message.setImageThumbUrl(images.getThumb());
+            message.setImageBlurHash(images.getBlurHash());
             message.setType(ChatMessage.TYPE_IMAGE);
             message.setTimestamp(new Date());
             message.setRead(false);
 
-            // Add the message to the chat room's messages collection
-            chatRoomRef.collection(MESSAGES_COLLECTION)
-                    .add(message)
-                    .addOnSuccessListener(documentReference -> {
-                        String messageId = documentReference.getId();
-                        message.setId(messageId);
-
-                        // Update the chat room's last message and time
-                        Map<String, Object> updates = new HashMap<>();
-                        updates.put("lastMessage", "📷 Image");
-                        updates.put("lastMessageTime", message.getTimestamp());
+            // Update the chat room's last message and time
+            Map<String, Object> updates = new HashMap<>();
+            updates.put("lastMessage", "📷 Image");
+            updates.put("lastMessageTime", message.getTimestamp());
 
-                        // Increment unread counts for other participants
-                        for (String participantId : chatRoom.getParticipantIds()) {
-                            if (!participantId.equals(userId)) {
-                                updates.put("unreadCounts." + participantId, FieldValue.increment(1));
-                            }
-                        }
-
-                        chatRoomRef.update(updates)
-                                .addOnSuccessListener(aVoid -> {
-                                    resultLiveData.setValue(new Result.Success<>(message));
+            // Increment unread counts for other participants
+            for (String participantId : chatRoom.getParticipantIds()) {
+                if (!participantId.equals(userId)) {
+                    updates.put("unreadCounts." + participantId, FieldValue.increment(1));
+                }
+            }
 
-                                    // Log message sent event
-                                    Map<String, Object> params = new HashMap<>();
-                                    params.put("message_type", "image");
-                                    analyticsTracker.logEvent("chat_message_sent", params);
-                                })
-                                .addOnFailureListener(e -> {
-                                    Log.e(TAG, "Error updating chat room", e);
-                                    resultLiveData.setValue(new Result.Error<>(e));
-                                });
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error sending message", e);
-                        resultLiveData.setValue(new Result.Error<>(e));
-                    });
-        }).addOnFailureListener(e -> {
-            Log.e(TAG, "Error getting chat room", e);
-            resultLiveData.setValue(new Result.Error<>(e));
+            WriteBatch batch = firestore.batch();
+            batch.set(chatRoomRef.collection(MESSAGES_COLLECTION).document(messageId), message);
+            batch.update(chatRoomRef, updates);
+            return batch.commit().continueWith(commitTask -> {
+                if (!commitTask.isSuccessful()) {
+                    Log.e(TAG, "Error sending message", commitTask.getException());
+                    throw commitTask.getException();
+                }
+
+                // Log message sent event
+                Map<String, Object> params = new HashMap<>();
+                params.put("message_type", "image");
+                analyticsTracker.logEvent("chat_message_sent", params);
+                return message;
+            });
         });
-
-        return resultLiveData;
     }
 
     /**
@@ -534,6 +703,7 @@ public class ChatManager {
             listener.remove();
         }
         messageListeners.clear();
+        messageWindows.clear();
 
         for (ListenerRegistration listener : roomListeners.values()) {
             listener.remove();
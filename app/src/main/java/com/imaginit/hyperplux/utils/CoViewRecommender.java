@@ -0,0 +1,158 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.CoViewDao;
+import com.imaginit.hyperplux.models.Asset;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device "viewed together" model behind related assets.
+ * <p>
+ * Assets viewed in the same session become co-view pairs. Each new view adds
+ * one pair per asset already in the session, so an update costs
+ * O(session length). The session window is capped, each asset keeps only its
+ * strongest MAX_RELATED_PER_ASSET pairs, and a daily prune decays weights and
+ * drops weak pairs, so the table stays bounded. A new pair always enters a
+ * full list by evicting the weakest one, and stays if it is seen again
+ * before something newer displaces it.
+ */
+public class CoViewRecommender {
+    private static final String TAG = "CoViewRecommender";
+    private static final String PREFS_NAME = "coview_prefs";
+    private static final String KEY_LAST_PRUNE = "last_prune";
+
+    // Session
+    private static final long SESSION_TIMEOUT_MS = 30 * 60 * 1000;
+    // At most MAX_RELATED_PER_ASSET, so every pair from one view fits
+    private static final int MAX_SESSION_ITEMS = 20;
+
+    // Model bounds
+    private static final int MAX_RELATED_PER_ASSET = 20;
+    private static final long PRUNE_INTERVAL_MS = 24 * 60 * 60 * 1000;
+    private static final double DECAY_FACTOR = 0.8;
+    private static final double MIN_WEIGHT = 0.5;
+
+    private static volatile CoViewRecommender instance;
+
+    private final CoViewDao coViewDao;
+    private final SharedPreferences preferences;
+    // Single writer keeps pair updates in view order
+    private final ExecutorService writeExecutor = Executors.newSingleThreadExecutor();
+
+    private final ArrayDeque<Integer> session = new ArrayDeque<>();
+    private long lastViewAt;
+
+    public static CoViewRecommender getInstance(Context context) {
+        if (instance == null) {
+            synchronized (CoViewRecommender.class) {
+                if (instance == null) {
+                    instance = new CoViewRecommender(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private CoViewRecommender(Context context) {
+        this.coViewDao = AppDatabase.getDatabase(context).coViewDao();
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Record that the user opened an asset
+     * @param assetId Viewed asset ID
+     */
+    public void recordView(int assetId) {
+        long now = System.currentTimeMillis();
+        List<Integer> coViewed;
+        synchronized (session) {
+            // A long pause starts a new session
+            if (now - lastViewAt > SESSION_TIMEOUT_MS) {
+                session.clear();
+            }
+            lastViewAt = now;
+
+            // Re-opening an asset in the same session adds nothing
+            if (session.contains(assetId)) {
+                return;
+            }
+            coViewed = new ArrayList<>(session);
+            session.addLast(assetId);
+            if (session.size() > MAX_SESSION_ITEMS) {
+                session.removeFirst();
+            }
+        }
+
+        writeExecutor.execute(() -> {
+            try {
+                if (!coViewed.isEmpty()) {
+                    coViewDao.recordPairs(assetId, coViewed, MAX_RELATED_PER_ASSET, now);
+                }
+                pruneIfDue(now);
+            } catch (Exception e) {
+                Log.e(TAG, "Error recording co-view: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Assets most often viewed together with the given one
+     * @param assetId Asset ID
+     * @param recentAssetIds The user's recently viewed assets, newest first; co-views
+     *                       with them lift related assets that fit the current session
+     * @param limit Maximum number of results
+     */
+    public LiveData<List<Asset>> getRelatedAssets(int assetId, List<Integer> recentAssetIds, int limit) {
+        List<Integer> session = new ArrayList<>();
+        session.add(assetId);
+        for (int recentId : recentAssetIds) {
+            if (recentId != assetId) {
+                session.add(recentId);
+            }
+        }
+        return coViewDao.getRelatedAssets(assetId, session, limit);
+    }
+
+    /**
+     * Assets viewed together with any of the user's recent views, for
+     * recommendations. Must be called off the main thread.
+     * @param recentAssetIds Recently viewed asset IDs
+     * @param limit Maximum number of results
+     */
+    public List<Asset> getRelatedToRecentSync(List<Integer> recentAssetIds, int limit) {
+        if (recentAssetIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return coViewDao.getRelatedToAnySync(recentAssetIds, limit);
+    }
+
+    /**
+     * Forget an asset, e.g. after it is deleted
+     */
+    public void removeAsset(int assetId) {
+        writeExecutor.execute(() -> coViewDao.deleteForAsset(assetId));
+    }
+
+    private void pruneIfDue(long now) {
+        long lastPrune = preferences.getLong(KEY_LAST_PRUNE, 0);
+        if (lastPrune == 0) {
+            // Start the clock on first use
+            preferences.edit().putLong(KEY_LAST_PRUNE, now).apply();
+        } else if (now - lastPrune >= PRUNE_INTERVAL_MS) {
+            coViewDao.prune(DECAY_FACTOR, MIN_WEIGHT);
+            preferences.edit().putLong(KEY_LAST_PRUNE, now).apply();
+            Log.d(TAG, "Pruned co-view model");
+        }
+    }
+}
@@ -1,37 +1,84 @@
 package com.imaginit.hyperplux.utils;
 
 import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
 import android.net.Uri;
 import android.util.Log;
 
+import androidx.lifecycle.LiveData;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkInfo;
+import androidx.work.WorkManager;
+
+import com.google.android.gms.tasks.Tasks;
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
+import com.google.firebase.firestore.AggregateSource;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Filter;
 import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 import com.imaginit.hyperplux.BuildConfig;
 import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.AssetChangeDao;
 import com.imaginit.hyperplux.database.AssetDao;
 import com.imaginit.hyperplux.database.AssetTransactionDao;
+import com.imaginit.hyperplux.database.RemoteKeyDao;
 import com.imaginit.hyperplux.database.UserDao;
 import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.AssetChange;
 import com.imaginit.hyperplux.models.AssetTransaction;
+import com.imaginit.hyperplux.models.RemoteKey;
 import com.imaginit.hyperplux.models.User;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Utility for database backup and restore operations
@@ -49,20 +96,58 @@ public class DatabaseBackupUtility {
     private static final String USERS_COLLECTION = "users";
     private static final String TRANSACTIONS_COLLECTION = "transactions";
 
+    // File export and import
+    private static final String BACKUP_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSSZ";
+    private static final int EXPORT_PAGE_SIZE = 200;
+    private static final int IMPORT_CHUNK_SIZE = 200;
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    // Incremental cloud backup
+    private static final String PREFS_NAME = "backup_prefs";
+    private static final String KEY_ASSET_CHECKPOINT = "asset_checkpoint_";
+    private static final String KEY_RESTORE_IN_SYNC = "restore_in_sync_";
+    // A write batch holds at most 500 operations
+    private static final int MAX_BATCH_WRITES = 500;
+
+    // Snapshot export and import
+    private static final long SNAPSHOT_MAGIC = 0x4850585F534E4150L; // "HPX_SNAP"
+    private static final int SHA256_LENGTH = 32;
+    private static final int SNAPSHOT_ATTEMPTS = 3;
+
+    // Firestore restore
+    private static final int RESTORE_PAGE_SIZE = 300;
+    private static final int RESTORE_QUEUE_DEPTH = 2;
+    // remote_keys labels for resuming a restore, followed by the user ID
+    private static final String RESTORE_ASSETS_LABEL = "restore_assets:";
+    private static final String RESTORE_TRANSACTIONS_LABEL = "restore_transactions:";
+
+    // Background jobs
+    private static final String WORK_BACKUP = "cloud_backup";
+    private static final String WORK_RESTORE = "cloud_restore";
+    private static final long BACKOFF_SECONDS = 30;
+
     private final Context context;
     private final FirebaseFirestore firestore;
     private final AssetDao assetDao;
     private final UserDao userDao;
     private final AssetTransactionDao transactionDao;
+    private final AssetChangeDao assetChangeDao;
+    private final RemoteKeyDao remoteKeyDao;
     private final AnalyticsTracker analyticsTracker;
 
+    /**
+     * Progress of a running operation
+     */
+    public interface ProgressListener {
+        void onProgress(int progress, int total);
+    }
+
     /**
      * Backup callback interface
      */
-    public interface BackupCallback {
+    public interface BackupCallback extends ProgressListener {
         void onSuccess();
         void onFailure(String errorMessage);
-        void onProgress(int progress, int total);
     }
 
     /**
@@ -83,11 +168,19 @@ public class DatabaseBackupUtility {
         this.assetDao = database.assetDao();
         this.userDao = database.userDao();
         this.transactionDao = database.assetTransactionDao();
+        this.assetChangeDao = database.assetChangeDao();
+        this.remoteKeyDao = database.remoteKeyDao();
         this.analyticsTracker = AnalyticsTracker.getInstance(context);
     }
 
     /**
-     * Backup user data to Firestore
+     * Backup user data to Firestore. Assets are backed up incrementally: the
+     * asset_changes log is read past the last checkpoint and written in
+     * batches of up to 500 sets and deletes, and the checkpoint moves after
+     * each committed batch. An unchanged inventory costs one write.
+     * <p>
+     * Runs in this process only; enqueueBackup runs the same backup as a
+     * job that survives process death.
      * @param callback Backup callback
      */
     public void backupToFirestore(BackupCallback callback) {
@@ -113,123 +206,14 @@ public class DatabaseBackupUtility {
             String userId = currentUser.getUid();
 
             // Create executor to run in background
-            AppExecutors.getInstance().diskIO().execute(() -> {
+            AppExecutors.getInstance().networkIO().execute(() -> {
                 try {
-                    // Backup user data
-                    User user = userDao.getUserByIdSync(userId);
-                    if (user != null) {
-                        firestore.collection(USERS_COLLECTION)
-                                .document(userId)
-                                .set(user)
-                                .addOnSuccessListener(aVoid -> {
-                                    Log.d(TAG, "User backup successful");
-
-                                    // Track successful user backup
-                                    if (analyticsTracker != null) {
-                                        Map<String, Object> params = new HashMap<>();
-                                        params.put("backup_type", "user");
-                                        analyticsTracker.trackEvent("backup_success", params);
-                                    }
-                                })
-                                .addOnFailureListener(e -> {
-                                    Log.e(TAG, "User backup failed", e);
-
-                                    // Track failed user backup
-                                    if (analyticsTracker != null) {
-                                        Map<String, Object> params = new HashMap<>();
-                                        params.put("backup_type", "user");
-                                        params.put("error", e.getMessage());
-                                        analyticsTracker.trackEvent("backup_failure", params);
-                                    }
-                                });
-                    }
-
-                    // Backup user's assets
-                    List<Asset> assets = assetDao.getAllAssetsByUserSync(userId);
-                    if (assets != null && !assets.isEmpty()) {
-                        // Track progress
-                        AtomicInteger progress = new AtomicInteger(0);
-                        int total = assets.size();
-
-                        // Report initial progress
-                        AppExecutors.getInstance().mainThread().execute(() ->
-                                callback.onProgress(0, total));
-
-                        // Batch commits for better performance
-                        int batchSize = 20;
-                        for (int i = 0; i < assets.size(); i += batchSize) {
-                            int end = Math.min(i + batchSize, assets.size());
-                            List<Asset> batch = assets.subList(i, end);
-
-                            for (Asset asset : batch) {
-                                if (asset == null) continue;
-
-                                firestore.collection(ASSETS_COLLECTION)
-                                        .document(String.valueOf(asset.getId()))
-                                        .set(asset)
-                                        .addOnSuccessListener(aVoid -> {
-                                            int current = progress.incrementAndGet();
-
-                                            // Report progress on main thread
-                                            AppExecutors.getInstance().mainThread().execute(() ->
-                                                    callback.onProgress(current, total));
-
-                                            if (current == total) {
-                                                // Report success on main thread
-                                                AppExecutors.getInstance().mainThread().execute(
-                                                        callback::onSuccess);
-
-                                                // Track successful asset backup
-                                                if (analyticsTracker != null) {
-                                                    Map<String, Object> params = new HashMap<>();
-                                                    params.put("backup_type", "assets");
-                                                    params.put("count", total);
-                                                    analyticsTracker.trackEvent("backup_success", params);
-                                                }
-                                            }
-                                        })
-                                        .addOnFailureListener(e -> {
-                                            Log.e(TAG, "Asset backup failed", e);
-
-                                            // Report failure on main thread
-                                            AppExecutors.getInstance().mainThread().execute(() ->
-                                                    callback.onFailure("Asset backup failed: " + e.getMessage()));
-
-                                            // Track failed asset backup
-                                            if (analyticsTracker != null) {
-                                                Map<String, Object> params = new HashMap<>();
-                                                params.put("backup_type", "assets");
-                                                params.put("error", e.getMessage());
-                                                analyticsTracker.trackEvent("backup_failure", params);
-                                            }
-                                        });
-                            }
-                        }
-                    } else {
-                        // No assets to backup, report success
-                        AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
-
-                        // Track empty assets backup
-                        if (analyticsTracker != null) {
-                            Map<String, Object> params = new HashMap<>();
-                            params.put("backup_type", "assets");
-                            params.put("count", 0);
-                            analyticsTracker.trackEvent("backup_success", params);
-                        }
-                    }
+                    runBackup(userId, () -> false, onMainThread(callback));
+                    AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
                 } catch (Exception e) {
-                    Log.e(TAG, "Backup to Firestore failed", e);
-
                     // Report failure on main thread
                     AppExecutors.getInstance().mainThread().execute(() ->
                             callback.onFailure("Backup failed: " + e.getMessage()));
-
-                    // Track backup error
-                    if (analyticsTracker != null) {
-                        Map<String, Object> params = new HashMap<>();
-                        params.put("error", e.getMessage());
-                        analyticsTracker.trackEvent("backup_error", params);
-                    }
                 }
             });
         } catch (Exception e) {
@@ -239,7 +223,14 @@ public class DatabaseBackupUtility {
     }
 
     /**
-     * Restore data from Firestore
+     * Restore data from Firestore. Assets and transactions are paged with
+     * cursor queries ordered by id. The download stage fetches the next page
+     * while the insert stage, on the disk thread, bulk-inserts the previous
+     * one. At most RESTORE_QUEUE_DEPTH downloaded pages wait for insertion,
+     * so memory stays flat however large the inventory is.
+     * <p>
+     * Runs in this process only; enqueueRestore runs the same restore as a
+     * job that survives process death.
      * @param callback Backup callback
      */
     public void restoreFromFirestore(BackupCallback callback) {
@@ -264,83 +255,14 @@ public class DatabaseBackupUtility {
 
             String userId = currentUser.getUid();
 
-            // Create executor to run in background
-            AppExecutors.getInstance().diskIO().execute(() -> {
+            // Not on the disk thread, which the insert stage needs
+            AppExecutors.getInstance().networkIO().execute(() -> {
                 try {
-                    // Step 1: Restore user data
-                    firestore.collection(USERS_COLLECTION)
-                            .document(userId)
-                            .get()
-                            .addOnSuccessListener(documentSnapshot -> {
-                                if (documentSnapshot.exists()) {
-                                    try {
-                                        User user = documentSnapshot.toObject(User.class);
-                                        if (user != null) {
-                                            userDao.insert(user);
-
-                                            // Track successful user restore
-                                            if (analyticsTracker != null) {
-                                                Map<String, Object> params = new HashMap<>();
-                                                params.put("restore_type", "user");
-                                                analyticsTracker.trackEvent("restore_success", params);
-                                            }
-
-                                            // Step 2: Restore assets
-                                            restoreAssets(userId, callback);
-                                        } else {
-                                            AppExecutors.getInstance().mainThread().execute(() ->
-                                                    callback.onFailure("User data is corrupted"));
-
-                                            // Track failure
-                                            if (analyticsTracker != null) {
-                                                Map<String, Object> params = new HashMap<>();
-                                                params.put("restore_type", "user");
-                                                params.put("error", "Data corruption");
-                                                analyticsTracker.trackEvent("restore_failure", params);
-                                            }
-                                        }
-                                    } catch (Exception e) {
-                                        Log.e(TAG, "Error processing user data", e);
-                                        AppExecutors.getInstance().mainThread().execute(() ->
-                                                callback.onFailure("Error processing user data: " + e.getMessage()));
-                                    }
-                                } else {
-                                    AppExecutors.getInstance().mainThread().execute(() ->
-                                            callback.onFailure("No user data found in Firestore"));
-
-                                    // Track failure
-                                    if (analyticsTracker != null) {
-                                        Map<String, Object> params = new HashMap<>();
-                                        params.put("restore_type", "user");
-                                        params.put("error", "No data found");
-                                        analyticsTracker.trackEvent("restore_failure", params);
-                                    }
-                                }
-                            })
-                            .addOnFailureListener(e -> {
-                                Log.e(TAG, "User restore failed", e);
-                                AppExecutors.getInstance().mainThread().execute(() ->
-                                        callback.onFailure("User restore failed: " + e.getMessage()));
-
-                                // Track failure
-                                if (analyticsTracker != null) {
-                                    Map<String, Object> params = new HashMap<>();
-                                    params.put("restore_type", "user");
-                                    params.put("error", e.getMessage());
-                                    analyticsTracker.trackEvent("restore_failure", params);
-                                }
-                            });
+                    runRestore(userId, () -> false, onMainThread(callback));
+                    AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
                 } catch (Exception e) {
-                    Log.e(TAG, "Restore from Firestore failed", e);
                     AppExecutors.getInstance().mainThread().execute(() ->
                             callback.onFailure("Restore failed: " + e.getMessage()));
-
-                    // Track restore error
-                    if (analyticsTracker != null) {
-                        Map<String, Object> params = new HashMap<>();
-                        params.put("error", e.getMessage());
-                        analyticsTracker.trackEvent("restore_error", params);
-                    }
                 }
             });
         } catch (Exception e) {
@@ -350,100 +272,334 @@ public class DatabaseBackupUtility {
     }
 
     /**
-     * Restore assets for user
-     * @param userId User ID
-     * @param callback Backup callback
+     * Run a Firestore backup as a WorkManager job. It waits for a network,
+     * survives process death and retries with backoff; a retry starts from
+     * the last committed batch. While a backup job is queued or running,
+     * this returns a handle to that job instead of starting another. The job
+     * belongs to the signed-in user and fails if a different user is signed
+     * in by the time it runs.
+     * @return Handle to observe or cancel the job, or null when nobody is
+     * signed in
+     */
+    public BackupJob enqueueBackup() {
+        return enqueue(WORK_BACKUP, BackupWorker.OPERATION_BACKUP);
+    }
+
+    /**
+     * Run a Firestore restore as a WorkManager job. Each collection's cursor
+     * is saved after every inserted page, so a stopped or cancelled restore
+     * picks up from there the next time one is enqueued. Like enqueueBackup,
+     * the job is pinned to the signed-in user.
+     * @return Handle to observe or cancel the job, or null when nobody is
+     * signed in
      */
-    private void restoreAssets(String userId, BackupCallback callback) {
+    public BackupJob enqueueRestore() {
+        return enqueue(WORK_RESTORE, BackupWorker.OPERATION_RESTORE);
+    }
+
+    private BackupJob enqueue(String workName, String operation) {
+        FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+        if (currentUser == null) {
+            Log.e(TAG, "Cannot enqueue " + operation + ": user not logged in");
+            return null;
+        }
+        String userId = currentUser.getUid();
+
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(BackupWorker.class)
+                .setInputData(new Data.Builder()
+                        .putString(BackupWorker.KEY_OPERATION, operation)
+                        .putString(BackupWorker.KEY_USER_ID, userId)
+                        .build())
+                .setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        // Per user, so another account's queued job is never joined
+        String uniqueName = workName + "_" + userId;
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueueUniqueWork(uniqueName, ExistingWorkPolicy.KEEP, request);
+        return new BackupJob(workManager, uniqueName);
+    }
+
+    /**
+     * Upload the user document and every asset changed since the last
+     * checkpoint. Blocks, so call it off the main thread.
+     * @param isStopped Checked between batches; the backup stops with a
+     *                  CancellationException, keeping what was committed
+     * @param listener Progress in assets, called on the calling thread
+     * @return Counts and throughput
+     */
+    Map<String, Object> runBackup(String userId, BooleanSupplier isStopped, ProgressListener listener)
+            throws Exception {
+        long startNanos = System.nanoTime();
+        long uploadNanos = 0;
+        int uploaded = 0;
+        int deleted = 0;
         try {
-            firestore.collection(ASSETS_COLLECTION)
-                    .whereEqualTo("userId", userId)
-                    .get()
-                    .addOnSuccessListener(queryDocumentSnapshots -> {
-                        try {
-                            List<Asset> assets = new ArrayList<>();
-                            for (QueryDocumentSnapshot document : queryDocumentSnapshots) {
-                                Asset asset = document.toObject(Asset.class);
-                                if (asset != null) {
-                                    assets.add(asset);
-                                }
-                            }
+            // Backup user data
+            User user = userDao.getUserByIdSync(userId);
+            if (user != null) {
+                // Counts already include the sharded counters, so they are not written back
+                Tasks.await(firestore.collection(USERS_COLLECTION).document(userId)
+                        .set(user, ShardedCounter.mergeExcept(User.class, ShardedCounter.USER_COUNTER_FIELDS)));
+            }
 
-                            // Report progress
-                            final int total = assets.size();
-                            AppExecutors.getInstance().mainThread().execute(() ->
-                                    callback.onProgress(0, total));
-
-                            // Insert assets in batches
-                            AppExecutors.getInstance().diskIO().execute(() -> {
-                                try {
-                                    int count = 0;
-                                    if (!assets.isEmpty()) {
-                                        for (Asset asset : assets) {
-                                            assetDao.insert(asset);
-                                            count++;
-
-                                            // Report progress every 10 assets
-                                            final int currentCount = count;
-                                            if (count % 10 == 0 || count == total) {
-                                                AppExecutors.getInstance().mainThread().execute(() ->
-                                                        callback.onProgress(currentCount, total));
-                                            }
-                                        }
-
-                                        // Track successful asset restore
-                                        if (analyticsTracker != null) {
-                                            Map<String, Object> params = new HashMap<>();
-                                            params.put("restore_type", "assets");
-                                            params.put("count", count);
-                                            analyticsTracker.trackEvent("restore_success", params);
-                                        }
-                                    }
-
-                                    // Report success on main thread
-                                    AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
-                                } catch (Exception e) {
-                                    Log.e(TAG, "Error inserting assets", e);
-                                    AppExecutors.getInstance().mainThread().execute(() ->
-                                            callback.onFailure("Error inserting assets: " + e.getMessage()));
-
-                                    // Track failure
-                                    if (analyticsTracker != null) {
-                                        Map<String, Object> params = new HashMap<>();
-                                        params.put("restore_type", "assets");
-                                        params.put("error", e.getMessage());
-                                        analyticsTracker.trackEvent("restore_failure", params);
-                                    }
-                                }
-                            });
-                        } catch (Exception e) {
-                            Log.e(TAG, "Error processing assets", e);
-                            AppExecutors.getInstance().mainThread().execute(() ->
-                                    callback.onFailure("Error processing assets: " + e.getMessage()));
-                        }
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Assets restore failed", e);
-                        AppExecutors.getInstance().mainThread().execute(() ->
-                                callback.onFailure("Assets restore failed: " + e.getMessage()));
-
-                        // Track failure
-                        if (analyticsTracker != null) {
-                            Map<String, Object> params = new HashMap<>();
-                            params.put("restore_type", "assets");
-                            params.put("error", e.getMessage());
-                            analyticsTracker.trackEvent("restore_failure", params);
-                        }
-                    });
+            // Only assets changed since the last successful backup go up
+            long checkpoint = getAssetCheckpoint(userId);
+            int total = assetChangeDao.countChangesSinceSync(userId, checkpoint);
+            listener.onProgress(0, total);
+
+            SetOptions assetOptions = ShardedCounter.mergeExcept(Asset.class, ShardedCounter.ASSET_COUNTER_FIELDS);
+            List<AssetChange> changes;
+            do {
+                if (isStopped.getAsBoolean()) {
+                    throw new CancellationException("Backup stopped");
+                }
+                changes = assetChangeDao.getChangesSinceSync(userId, checkpoint, MAX_BATCH_WRITES);
+                if (changes.isEmpty()) {
+                    break;
+                }
+
+                List<Integer> ids = new ArrayList<>();
+                for (AssetChange change : changes) {
+                    if (!change.isDeleted()) {
+                        ids.add(change.getAssetId());
+                    }
+                }
+                Map<Integer, Asset> assets = new HashMap<>();
+                if (!ids.isEmpty()) {
+                    for (Asset asset : assetDao.getAssetsByIdsForBackupSync(ids)) {
+                        assets.put(asset.getId(), asset);
+                    }
+                }
+
+                WriteBatch batch = firestore.batch();
+                for (AssetChange change : changes) {
+                    DocumentReference document = firestore.collection(ASSETS_COLLECTION)
+                            .document(String.valueOf(change.getAssetId()));
+                    Asset asset = assets.get(change.getAssetId());
+                    // Missing means deleted after the change was read
+                    if (asset != null) {
+                        batch.set(document, asset, assetOptions);
+                        uploaded++;
+                    } else {
+                        batch.delete(document);
+                        deleted++;
+                    }
+                }
+                long commitStart = System.nanoTime();
+                Tasks.await(batch.commit());
+                uploadNanos += System.nanoTime() - commitStart;
+
+                // Committed, so a failure in a later batch does not resend this one
+                checkpoint = changes.get(changes.size() - 1).getSeq();
+                saveAssetCheckpoint(userId, checkpoint);
+                listener.onProgress(uploaded + deleted, total);
+            } while (changes.size() == MAX_BATCH_WRITES);
+
+            assetChangeDao.pruneDeletedSync(userId, checkpoint);
+
+            Map<String, Object> params = new HashMap<>();
+            params.put("backup_type", "assets");
+            params.put("count", uploaded);
+            params.put("deleted", deleted);
+            params.put("duration_ms", (System.nanoTime() - startNanos) / 1_000_000);
+            params.put("upload_docs_per_sec", perSecond(uploaded + deleted, uploadNanos));
+            Log.d(TAG, "Backup to Firestore completed: " + params);
+            if (analyticsTracker != null) {
+                analyticsTracker.trackEvent("backup_success", params);
+            }
+            return params;
+        } catch (CancellationException e) {
+            Log.d(TAG, "Backup to Firestore stopped after " + (uploaded + deleted) + " assets");
+            throw e;
         } catch (Exception e) {
-            Log.e(TAG, "Error restoring assets", e);
-            AppExecutors.getInstance().mainThread().execute(() ->
-                    callback.onFailure("Error restoring assets: " + e.getMessage()));
+            Log.e(TAG, "Backup to Firestore failed", e);
+
+            // Track backup error
+            if (analyticsTracker != null) {
+                Map<String, Object> params = new HashMap<>();
+                params.put("error", e.getMessage());
+                analyticsTracker.trackEvent("backup_error", params);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Restore the user document, assets and transactions. Blocks until the
+     * last page is inserted, so call it off the main thread and off the
+     * disk thread. Resumes from the cursors a stopped or failed run left in
+     * remote_keys, and clears them once everything is in.
+     * @param isStopped Checked between pages; the restore stops with a
+     *                  CancellationException, keeping what was inserted
+     * @param listener Progress in documents, called on the disk thread
+     * @return Counts and per-stage throughput
+     */
+    Map<String, Object> runRestore(String userId, BooleanSupplier isStopped, ProgressListener listener)
+            throws Exception {
+        RestorePipeline pipeline = new RestorePipeline(listener);
+        String assetsLabel = RESTORE_ASSETS_LABEL + userId;
+        String transactionsLabel = RESTORE_TRANSACTIONS_LABEL + userId;
+        try {
+            DocumentSnapshot userSnapshot = Tasks.await(
+                    firestore.collection(USERS_COLLECTION).document(userId).get());
+            if (!userSnapshot.exists()) {
+                throw new IOException("No user data found in Firestore");
+            }
+            User user = userSnapshot.toObject(User.class);
+            if (user == null) {
+                throw new IOException("User data is corrupted");
+            }
+
+            RemoteKey assetsKey = remoteKeyDao.getKeySync(assetsLabel);
+            RemoteKey transactionsKey = remoteKeyDao.getKeySync(transactionsLabel);
+            boolean resuming = assetsKey != null || transactionsKey != null;
+
+            Query assets = firestore.collection(ASSETS_COLLECTION)
+                    .whereEqualTo("userId", userId);
+            Query transactions = firestore.collection(TRANSACTIONS_COLLECTION)
+                    .where(Filter.or(Filter.equalTo("fromUserId", userId),
+                            Filter.equalTo("toUserId", userId)));
+            // What is left to fetch; aggregations cost one read per thousand documents
+            pipeline.total = (int) (remaining(assets, assetsKey) + remaining(transactions, transactionsKey));
+
+            pipeline.submit(0, () -> {
+                // With nothing waiting to go up, the restored rows match the cloud.
+                // Decided once, before the first restored row changes the answer.
+                if (!resuming) {
+                    saveRestoreInSync(userId, assetChangeDao.countChangesSinceSync(
+                            userId, getAssetCheckpoint(userId)) == 0);
+                }
+                userDao.insert(user);
+            });
+            downloadPages(assets, assetsKey, assetsLabel, Asset.class, pipeline, isStopped,
+                    assetDao::insertAll);
+            downloadPages(transactions, transactionsKey, transactionsLabel, AssetTransaction.class, pipeline,
+                    isStopped, transactionDao::insertAll);
+        } catch (Exception e) {
+            pipeline.fail(e);
+        }
+
+        // Queued behind every insert, so it sees the final outcome
+        AppExecutors.getInstance().diskIO().execute(() -> finishRestore(userId, pipeline));
+        pipeline.finished.await();
+
+        Map<String, Object> params = pipeline.toEventParams();
+        params.put("restore_type", "firestore");
+        Exception failure = pipeline.failure;
+        if (failure == null) {
+            Log.d(TAG, "Restore from Firestore completed: " + params);
+            if (analyticsTracker != null) {
+                analyticsTracker.trackEvent("restore_success", params);
+            }
+            return params;
+        }
+        if (failure instanceof CancellationException) {
+            Log.d(TAG, "Restore from Firestore stopped: " + params);
+        } else {
+            Log.e(TAG, "Restore from Firestore failed", failure);
+            if (analyticsTracker != null) {
+                params.put("error", failure.getMessage());
+                analyticsTracker.trackEvent("restore_failure", params);
+            }
+        }
+        throw failure;
+    }
+
+    // Documents after the saved cursor, or none if the collection is done
+    private static long remaining(Query query, RemoteKey key) throws Exception {
+        if (key != null && key.isEndReached()) {
+            return 0;
+        }
+        if (key != null && key.getCursorId() != null) {
+            query = query.whereGreaterThan("id", Long.parseLong(key.getCursorId()));
+        }
+        return Tasks.await(query.count().get(AggregateSource.SERVER)).getCount();
+    }
+
+    /**
+     * Page through one collection by id and hand each page to the insert
+     * stage, which saves the cursor once the page is in. Blocks while the
+     * pipeline is full.
+     */
+    private <T> void downloadPages(Query query, RemoteKey key, String label, Class<T> type,
+                                   RestorePipeline pipeline, BooleanSupplier isStopped,
+                                   Consumer<List<T>> insert) throws Exception {
+        if (key != null && key.isEndReached()) {
+            return;
         }
+        Object cursor = key != null && key.getCursorId() != null ? Long.parseLong(key.getCursorId()) : null;
+        int fetched;
+        do {
+            if (isStopped.getAsBoolean()) {
+                throw new CancellationException("Restore stopped");
+            }
+            Query page = query.orderBy("id").limit(RESTORE_PAGE_SIZE);
+            if (cursor != null) {
+                page = page.startAfter(cursor);
+            }
+
+            long start = System.nanoTime();
+            QuerySnapshot snapshot = Tasks.await(page.get());
+            List<DocumentSnapshot> documents = snapshot.getDocuments();
+            List<T> items = new ArrayList<>(documents.size());
+            for (DocumentSnapshot document : documents) {
+                T item = document.toObject(type);
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+            pipeline.downloaded(items.size(), System.nanoTime() - start);
+
+            fetched = documents.size();
+            if (fetched > 0) {
+                cursor = documents.get(fetched - 1).get("id");
+            }
+            String cursorId = cursor != null ? String.valueOf(cursor) : null;
+            boolean endReached = fetched < RESTORE_PAGE_SIZE;
+            pipeline.submit(items.size(), () -> {
+                // Room runs a list @Insert as one transaction
+                if (!items.isEmpty()) {
+                    insert.accept(items);
+                }
+                remoteKeyDao.insert(new RemoteKey(label, null, cursorId, endReached, System.currentTimeMillis()));
+            });
+        } while (fetched == RESTORE_PAGE_SIZE);
+    }
+
+    // Runs on the disk thread after every insert
+    private void finishRestore(String userId, RestorePipeline pipeline) {
+        try {
+            if (pipeline.failure == null) {
+                if (isRestoreInSync(userId)) {
+                    saveAssetCheckpoint(userId, assetChangeDao.getMaxSeqSync());
+                }
+                remoteKeyDao.delete(RESTORE_ASSETS_LABEL + userId);
+                remoteKeyDao.delete(RESTORE_TRANSACTIONS_LABEL + userId);
+                clearRestoreInSync(userId);
+            }
+        } catch (Exception e) {
+            pipeline.fail(e);
+        } finally {
+            pipeline.finished.countDown();
+        }
+    }
+
+    private static long perSecond(int count, long nanos) {
+        return nanos == 0 ? 0 : count * 1_000_000_000L / nanos;
+    }
+
+    // Progress listener that reports on the main thread
+    private static ProgressListener onMainThread(ProgressListener listener) {
+        return (progress, total) -> AppExecutors.getInstance().mainThread().execute(() ->
+                listener.onProgress(progress, total));
     }
 
     /**
-     * Export data to device storage
+     * Export data to device storage. Entities are read a page at a time and
+     * streamed straight into the file, so memory use does not grow with the
+     * size of the backup. Metadata goes first so an import can check the
+     * owner and totals before it reads any data.
      * @param uri Export file Uri
      * @param callback Backup callback
      */
@@ -469,71 +625,79 @@ public class DatabaseBackupUtility {
 
             // Create executor to run in background
             AppExecutors.getInstance().diskIO().execute(() -> {
-                OutputStreamWriter writer = null;
                 try {
-                    // Report progress
+                    int assetTotal = assetDao.getAssetCount(userId);
+                    int transactionTotal = transactionDao.getTransactionCountForUser(userId);
+                    int total = assetTotal + transactionTotal;
                     AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(0, 4)); // 4 steps: user, assets, transactions, write
+                            callback.onProgress(0, total));
 
-                    // Create backup map
-                    Map<String, Object> backupData = new HashMap<>();
-
-                    // Add user data
-                    User user = userDao.getUserByIdSync(userId);
-                    if (user != null) {
-                        backupData.put("user", user);
+                    OutputStream outputStream = context.getContentResolver().openOutputStream(uri);
+                    if (outputStream == null) {
+                        throw new IOException("Cannot open output stream");
                     }
 
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(1, 4));
-
-                    // Add assets
-                    List<Asset> assets = assetDao.getAllAssetsByUserSync(userId);
-                    if (assets != null && !assets.isEmpty()) {
-                        backupData.put("assets", assets);
-                    }
+                    Gson gson = createBackupGson();
+                    int assetCount = 0;
+                    int transactionCount = 0;
+                    try (JsonWriter json = new JsonWriter(new BufferedWriter(
+                            new OutputStreamWriter(outputStream, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE))) {
+                        json.setSerializeNulls(true);
+                        json.beginObject();
+
+                        json.name("metadata").beginObject();
+                        json.name("timestamp").value(new Date().getTime());
+                        json.name("version").value(BuildConfig.VERSION_CODE);
+                        json.name("userId").value(userId);
+                        json.name("assetCount").value(assetTotal);
+                        json.name("transactionCount").value(transactionTotal);
+                        json.endObject();
+
+                        User user = userDao.getUserByIdSync(userId);
+                        json.name("user");
+                        if (user != null) {
+                            gson.toJson(user, User.class, json);
+                        } else {
+                            json.nullValue();
+                        }
 
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(2, 4));
+                        // Keyset paging keeps each read to one page
+                        json.name("assets").beginArray();
+                        List<Asset> assets;
+                        int lastAssetId = 0;
+                        do {
+                            assets = assetDao.getAssetsByUserPageSync(userId, lastAssetId, EXPORT_PAGE_SIZE);
+                            for (Asset asset : assets) {
+                                gson.toJson(asset, Asset.class, json);
+                                lastAssetId = asset.getId();
+                            }
+                            assetCount += assets.size();
+                            final int done = assetCount;
+                            AppExecutors.getInstance().mainThread().execute(() ->
+                                    callback.onProgress(done, total));
+                        } while (assets.size() == EXPORT_PAGE_SIZE);
+                        json.endArray();
+
+                        json.name("transactions").beginArray();
+                        List<AssetTransaction> transactions;
+                        int lastTransactionId = 0;
+                        do {
+                            transactions = transactionDao.getTransactionsForUserPageSync(
+                                    userId, lastTransactionId, EXPORT_PAGE_SIZE);
+                            for (AssetTransaction transaction : transactions) {
+                                gson.toJson(transaction, AssetTransaction.class, json);
+                                lastTransactionId = transaction.getId();
+                            }
+                            transactionCount += transactions.size();
+                            final int done = assetCount + transactionCount;
+                            AppExecutors.getInstance().mainThread().execute(() ->
+                                    callback.onProgress(done, total));
+                        } while (transactions.size() == EXPORT_PAGE_SIZE);
+                        json.endArray();
 
-                    // Add transactions
-                    List<AssetTransaction> transactions = transactionDao.getAllTransactionsForUserSync(userId);
-                    if (transactions != null && !transactions.isEmpty()) {
-                        backupData.put("transactions", transactions);
+                        json.endObject();
                     }
 
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(3, 4));
-
-                    // Add metadata
-                    Map<String, Object> metadata = new HashMap<>();
-                    metadata.put("timestamp", new Date().getTime());
-                    metadata.put("version", BuildConfig.VERSION_CODE);
-                    metadata.put("userId", userId);
-                    backupData.put("metadata", metadata);
-
-                    // Convert to JSON
-                    Gson gson = new GsonBuilder()
-                            .setPrettyPrinting()
-                            .serializeNulls()
-                            .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ")
-                            .create();
-                    String json = gson.toJson(backupData);
-
-                    // Write to file
-                    writer = new OutputStreamWriter(
-                            context.getContentResolver().openOutputStream(uri));
-                    writer.write(json);
-                    writer.close();
-                    writer = null;
-
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(4, 4));
-
                     // Report success
                     AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
 
@@ -541,8 +705,8 @@ public class DatabaseBackupUtility {
                     if (analyticsTracker != null) {
                         Map<String, Object> params = new HashMap<>();
                         params.put("export_type", "file");
-                        params.put("asset_count", assets != null ? assets.size() : 0);
-                        params.put("transaction_count", transactions != null ? transactions.size() : 0);
+                        params.put("asset_count", assetCount);
+                        params.put("transaction_count", transactionCount);
                         analyticsTracker.trackEvent("export_success", params);
                     }
                 } catch (Exception e) {
@@ -557,15 +721,6 @@ public class DatabaseBackupUtility {
                         params.put("error", e.getMessage());
                         analyticsTracker.trackEvent("export_failure", params);
                     }
-                } finally {
-                    // Ensure writer is closed
-                    if (writer != null) {
-                        try {
-                            writer.close();
-                        } catch (IOException e) {
-                            Log.e(TAG, "Error closing writer", e);
-                        }
-                    }
                 }
             });
         } catch (Exception e) {
@@ -575,7 +730,11 @@ public class DatabaseBackupUtility {
     }
 
     /**
-     * Import data from file
+     * Import data from file. The file is parsed as a stream and entities are
+     * inserted in chunks, each chunk in one database transaction, so memory
+     * use stays flat however large the file is. Every entity must belong to
+     * the current user; this also covers older exports that put the metadata
+     * after the data.
      * @param uri Import file Uri
      * @param callback Backup callback
      */
@@ -601,68 +760,45 @@ public class DatabaseBackupUtility {
 
             // Create executor to run in background
             AppExecutors.getInstance().diskIO().execute(() -> {
-                InputStream inputStream = null;
-                BufferedReader reader = null;
                 try {
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(0, 4)); // 4 steps: read, validate, import, finalize
-
-                    // Read file content
-                    inputStream = context.getContentResolver().openInputStream(uri);
+                    InputStream inputStream = context.getContentResolver().openInputStream(uri);
                     if (inputStream == null) {
                         throw new IOException("Cannot open input stream");
                     }
 
-                    reader = new BufferedReader(new InputStreamReader(inputStream));
-                    StringBuilder stringBuilder = new StringBuilder();
-                    String line;
-                    while ((line = reader.readLine()) != null) {
-                        stringBuilder.append(line);
+                    Gson gson = createBackupGson();
+                    ImportProgress progress = new ImportProgress(callback);
+                    boolean sawMetadata = false;
+                    try (JsonReader json = new JsonReader(new BufferedReader(
+                            new InputStreamReader(inputStream, StandardCharsets.UTF_8), STREAM_BUFFER_SIZE))) {
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            switch (json.nextName()) {
+                                case "metadata":
+                                    readMetadata(json, gson, userId, progress);
+                                    sawMetadata = true;
+                                    break;
+                                case "user":
+                                    importUser(json, gson, userId);
+                                    break;
+                                case "assets":
+                                    importAssets(json, gson, userId, progress);
+                                    break;
+                                case "transactions":
+                                    importTransactions(json, gson, userId, progress);
+                                    break;
+                                default:
+                                    json.skipValue();
+                                    break;
+                            }
+                        }
+                        json.endObject();
                     }
-                    reader.close();
-                    reader = null;
-                    inputStream.close();
-                    inputStream = null;
 
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(1, 4));
-
-                    // Parse JSON
-                    Gson gson = new GsonBuilder()
-                            .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ")
-                            .create();
-                    Type mapType = new TypeToken<Map<String, Object>>(){}.getType();
-                    Map<String, Object> backupData = gson.fromJson(stringBuilder.toString(), mapType);
-
-                    // Verify metadata
-                    Map<String, Object> metadata = (Map<String, Object>) backupData.get("metadata");
-                    if (metadata == null) {
+                    if (!sawMetadata) {
                         throw new IOException("Invalid backup file: missing metadata");
                     }
 
-                    // Check user ID match
-                    String backupUserId = (String) metadata.get("userId");
-                    if (!userId.equals(backupUserId)) {
-                        throw new IOException("This backup belongs to a different user");
-                    }
-
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(2, 4));
-
-                    // Import data - this would need to be implemented with proper deserializing
-                    // For now, we'll just report progress
-
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(3, 4));
-
-                    // Report progress
-                    AppExecutors.getInstance().mainThread().execute(() ->
-                            callback.onProgress(4, 4));
-
                     // Report success
                     AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
 
@@ -670,6 +806,8 @@ public class DatabaseBackupUtility {
                     if (analyticsTracker != null) {
                         Map<String, Object> params = new HashMap<>();
                         params.put("import_type", "file");
+                        params.put("asset_count", progress.assets);
+                        params.put("transaction_count", progress.transactions);
                         analyticsTracker.trackEvent("import_success", params);
                     }
                 } catch (Exception e) {
@@ -684,27 +822,575 @@ public class DatabaseBackupUtility {
                         params.put("error", e.getMessage());
                         analyticsTracker.trackEvent("import_failure", params);
                     }
-                } finally {
-                    // Ensure resources are closed
-                    if (reader != null) {
-                        try {
-                            reader.close();
-                        } catch (IOException e) {
-                            Log.e(TAG, "Error closing reader", e);
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing import from file", e);
+            callback.onFailure("Error initializing import: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Export a snapshot of the whole database file. The file is copied while
+     * writers are held off, then gzipped into the file at the URI behind a
+     * small header and followed by the SHA-256 of the database bytes. Much
+     * faster and smaller than the JSON export, but only readable by
+     * importSnapshotFromFile.
+     * @param uri File URI to export to
+     * @param callback Backup callback; progress is in KB of the database
+     */
+    public void exportSnapshotToFile(Uri uri, BackupCallback callback) {
+        if (callback == null) {
+            Log.e(TAG, "Export callback cannot be null");
+            return;
+        }
+
+        if (uri == null) {
+            callback.onFailure("Export file URI cannot be null");
+            return;
+        }
+
+        try {
+            FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+            if (currentUser == null) {
+                callback.onFailure("User not logged in");
+                return;
+            }
+
+            String userId = currentUser.getUid();
+
+            // Create executor to run in background
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                File copy = null;
+                try {
+                    long start = System.nanoTime();
+                    copy = File.createTempFile("snapshot", ".db", context.getCacheDir());
+                    int schemaVersion = copyDatabaseFile(copy);
+                    long length = copy.length();
+                    int totalKb = (int) (length / 1024);
+                    AppExecutors.getInstance().mainThread().execute(() -> callback.onProgress(0, totalKb));
+
+                    OutputStream outputStream = context.getContentResolver().openOutputStream(uri);
+                    if (outputStream == null) {
+                        throw new IOException("Cannot open output stream");
+                    }
+
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    try (InputStream in = new FileInputStream(copy);
+                         DataOutputStream out = new DataOutputStream(new GZIPOutputStream(outputStream, STREAM_BUFFER_SIZE) {
+                             {
+                                 // Speed over ratio; a database still shrinks several times
+                                 def.setLevel(Deflater.BEST_SPEED);
+                             }
+                         })) {
+                        out.writeLong(SNAPSHOT_MAGIC);
+                        out.writeInt(schemaVersion);
+                        out.writeUTF(userId);
+                        out.writeLong(length);
+
+                        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                        long written = 0;
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            digest.update(buffer, 0, read);
+                            out.write(buffer, 0, read);
+                            written += read;
+                            int doneKb = (int) (written / 1024);
+                            AppExecutors.getInstance().mainThread().execute(() -> callback.onProgress(doneKb, totalKb));
                         }
+                        out.write(digest.digest());
+                    }
+
+                    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                    AppExecutors.getInstance().mainThread().execute(callback::onSuccess);
+
+                    if (analyticsTracker != null) {
+                        Map<String, Object> params = new HashMap<>();
+                        params.put("export_type", "snapshot");
+                        params.put("size_kb", totalKb);
+                        params.put("duration_ms", elapsedMs);
+                        analyticsTracker.trackEvent("export_success", params);
+                    }
+                } catch (Exception e) {
+                    Log.e(TAG, "Snapshot export failed", e);
+                    AppExecutors.getInstance().mainThread().execute(() ->
+                            callback.onFailure("Export failed: " + e.getMessage()));
+
+                    if (analyticsTracker != null) {
+                        Map<String, Object> params = new HashMap<>();
+                        params.put("export_type", "snapshot");
+                        params.put("error", e.getMessage());
+                        analyticsTracker.trackEvent("export_failure", params);
                     }
-                    if (inputStream != null) {
-                        try {
-                            inputStream.close();
-                        } catch (IOException e) {
-                            Log.e(TAG, "Error closing input stream", e);
+                } finally {
+                    if (copy != null && !copy.delete()) {
+                        Log.w(TAG, "Could not delete snapshot copy");
+                    }
+                }
+            });
+        } catch (Exception e) {
+            Log.e(TAG, "Error initializing snapshot export", e);
+            callback.onFailure("Error initializing export: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the database with a snapshot from exportSnapshotToFile. The
+     * snapshot is unpacked next to the database and its checksum verified
+     * before anything is touched; then AppDatabase is closed, the file
+     * swapped in and the database reopened, running migrations if the
+     * snapshot came from an older version. Snapshots older than the first
+     * version with a migration are rejected, since Room would wipe them.
+     * <p>
+     * Repositories, ViewModels and singletons such as UploadQueue and
+     * FeedMaterializer hold DAOs of the closed instance, so after onSuccess
+     * the app restarts in a fresh process.
+     * @param uri File URI to import from
+     * @param callback Backup callback; progress is in KB of the database
+     */
+    public void importSnapshotFromFile(Uri uri, BackupCallback callback) {
+        if (callback == null) {
+            Log.e(TAG, "Import callback cannot be null");
+            return;
+        }
+
+        if (uri == null) {
+            callback.onFailure("Import file URI cannot be null");
+            return;
+        }
+
+        try {
+            FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
+            if (currentUser == null) {
+                callback.onFailure("User not logged in");
+                return;
+            }
+
+            String userId = currentUser.getUid();
+
+            // Create executor to run in background
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                File dbFile = context.getDatabasePath(AppDatabase.DATABASE_NAME);
+                File incoming = new File(dbFile.getParentFile(), AppDatabase.DATABASE_NAME + ".restore");
+                try {
+                    long start = System.nanoTime();
+                    InputStream inputStream = context.getContentResolver().openInputStream(uri);
+                    if (inputStream == null) {
+                        throw new IOException("Cannot open input stream");
+                    }
+
+                    MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                    int totalKb;
+                    try (DataInputStream in = new DataInputStream(new GZIPInputStream(inputStream, STREAM_BUFFER_SIZE));
+                         OutputStream out = new FileOutputStream(incoming)) {
+                        if (in.readLong() != SNAPSHOT_MAGIC) {
+                            throw new IOException("Not a snapshot backup");
+                        }
+                        int schemaVersion = in.readInt();
+                        if (schemaVersion > AppDatabase.getDatabase(context).getOpenHelper().getReadableDatabase().getVersion()) {
+                            throw new IOException("Snapshot is from a newer version of the app");
+                        }
+                        if (schemaVersion < AppDatabase.getOldestMigratableVersion()) {
+                            throw new IOException("Snapshot is too old to restore");
+                        }
+                        if (!userId.equals(in.readUTF())) {
+                            throw new IOException("Snapshot belongs to a different user");
+                        }
+                        long length = in.readLong();
+                        totalKb = (int) (length / 1024);
+
+                        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                        long remaining = length;
+                        while (remaining > 0) {
+                            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                            if (read == -1) {
+                                throw new IOException("Snapshot is truncated");
+                            }
+                            digest.update(buffer, 0, read);
+                            out.write(buffer, 0, read);
+                            remaining -= read;
+                            int doneKb = (int) ((length - remaining) / 1024);
+                            AppExecutors.getInstance().mainThread().execute(() -> callback.onProgress(doneKb, totalKb));
+                        }
+
+                        byte[] expected = new byte[SHA256_LENGTH];
+                        in.readFully(expected);
+                        if (!MessageDigest.isEqual(expected, digest.digest())) {
+                            throw new IOException("Snapshot checksum does not match");
                         }
                     }
+
+                    // Nothing has been changed up to here; swap the file in
+                    AppDatabase.closeDatabase();
+                    deleteIfExists(new File(dbFile.getPath() + "-wal"));
+                    deleteIfExists(new File(dbFile.getPath() + "-shm"));
+                    deleteIfExists(new File(dbFile.getPath() + "-journal"));
+                    if (!incoming.renameTo(dbFile)) {
+                        throw new IOException("Could not replace database file");
+                    }
+                    AppDatabase.getDatabase(context).getOpenHelper().getWritableDatabase();
+
+                    // The restored rows may differ from the cloud copy, so the next backup sends them all
+                    saveAssetCheckpoint(userId, 0);
+
+                    long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+                    if (analyticsTracker != null) {
+                        Map<String, Object> params = new HashMap<>();
+                        params.put("import_type", "snapshot");
+                        params.put("size_kb", totalKb);
+                        params.put("duration_ms", elapsedMs);
+                        analyticsTracker.trackEvent("import_success", params);
+                    }
+
+                    // Tracked first, since the restart ends this process
+                    AppExecutors.getInstance().mainThread().execute(() -> {
+                        callback.onSuccess();
+                        restartApp();
+                    });
+                } catch (Exception e) {
+                    Log.e(TAG, "Snapshot import failed", e);
+                    deleteIfExists(incoming);
+                    AppExecutors.getInstance().mainThread().execute(() ->
+                            callback.onFailure("Import failed: " + e.getMessage()));
+
+                    if (analyticsTracker != null) {
+                        Map<String, Object> params = new HashMap<>();
+                        params.put("import_type", "snapshot");
+                        params.put("error", e.getMessage());
+                        analyticsTracker.trackEvent("import_failure", params);
+                    }
                 }
             });
         } catch (Exception e) {
-            Log.e(TAG, "Error initializing import from file", e);
+            Log.e(TAG, "Error initializing snapshot import", e);
             callback.onFailure("Error initializing import: " + e.getMessage());
         }
     }
+
+    // Relaunch into a new process, so nothing keeps using DAOs of the replaced database
+    private void restartApp() {
+        Intent intent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+        if (intent != null) {
+            intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+            context.startActivity(intent);
+        }
+        Runtime.getRuntime().exit(0);
+    }
+
+    /**
+     * Copy the database file while no one can write to it. The WAL is
+     * checkpointed into the main file first, then an exclusive transaction
+     * holds writers off while the file is copied; if a write slipped in
+     * between the two, the WAL is not empty and we go round again. Readers
+     * carry on throughout.
+     * @return Schema version of the copy
+     */
+    private int copyDatabaseFile(File target) throws IOException {
+        // The current instance, which is not this utility's after a snapshot import
+        SupportSQLiteDatabase db = AppDatabase.getDatabase(context).getOpenHelper().getWritableDatabase();
+        File dbFile = new File(db.getPath());
+        File walFile = new File(db.getPath() + "-wal");
+        for (int attempt = 0; attempt < SNAPSHOT_ATTEMPTS; attempt++) {
+            try (Cursor cursor = db.query("PRAGMA wal_checkpoint(TRUNCATE)")) {
+                cursor.moveToFirst();
+            }
+            db.beginTransaction();
+            try {
+                if (walFile.length() == 0) {
+                    try (InputStream in = new FileInputStream(dbFile);
+                         OutputStream out = new FileOutputStream(target)) {
+                        byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, read);
+                        }
+                    }
+                    return db.getVersion();
+                }
+            } finally {
+                db.endTransaction();
+            }
+        }
+        throw new IOException("Database is busy, try again");
+    }
+
+    private static void deleteIfExists(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file.getName());
+        }
+    }
+
+    // Last asset_changes seq uploaded for the user, 0 before the first backup
+    private long getAssetCheckpoint(String userId) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getLong(KEY_ASSET_CHECKPOINT + userId, 0);
+    }
+
+    private void saveAssetCheckpoint(String userId, long seq) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putLong(KEY_ASSET_CHECKPOINT + userId, seq)
+                .apply();
+    }
+
+    // Whether an interrupted restore started with nothing waiting to be backed up
+    private boolean isRestoreInSync(String userId) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .getBoolean(KEY_RESTORE_IN_SYNC + userId, false);
+    }
+
+    private void saveRestoreInSync(String userId, boolean inSync) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putBoolean(KEY_RESTORE_IN_SYNC + userId, inSync)
+                .apply();
+    }
+
+    private void clearRestoreInSync(String userId) {
+        context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .remove(KEY_RESTORE_IN_SYNC + userId)
+                .apply();
+    }
+
+    private static Gson createBackupGson() {
+        return new GsonBuilder()
+                .serializeNulls()
+                .setDateFormat(BACKUP_DATE_FORMAT)
+                .create();
+    }
+
+    private void readMetadata(JsonReader json, Gson gson, String userId, ImportProgress progress)
+            throws IOException {
+        Type mapType = new TypeToken<Map<String, Object>>(){}.getType();
+        Map<String, Object> metadata = gson.fromJson(json, mapType);
+        if (metadata == null) {
+            throw new IOException("Invalid backup file: missing metadata");
+        }
+
+        // Check user ID match
+        if (!userId.equals(metadata.get("userId"))) {
+            throw new IOException("This backup belongs to a different user");
+        }
+
+        // Totals are only in exports that write metadata first
+        Object assetCount = metadata.get("assetCount");
+        Object transactionCount = metadata.get("transactionCount");
+        if (assetCount instanceof Number && transactionCount instanceof Number) {
+            progress.total = ((Number) assetCount).intValue() + ((Number) transactionCount).intValue();
+        }
+    }
+
+    private void importUser(JsonReader json, Gson gson, String userId) throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return;
+        }
+        User user = gson.fromJson(json, User.class);
+        if (user == null || !userId.equals(user.getUid())) {
+            throw new IOException("This backup belongs to a different user");
+        }
+        userDao.insert(user);
+    }
+
+    private void importAssets(JsonReader json, Gson gson, String userId, ImportProgress progress)
+            throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return;
+        }
+        List<Asset> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        json.beginArray();
+        while (json.hasNext()) {
+            Asset asset = gson.fromJson(json, Asset.class);
+            if (asset == null) {
+                continue;
+            }
+            if (!userId.equals(asset.getUserId())) {
+                throw new IOException("This backup belongs to a different user");
+            }
+            chunk.add(asset);
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                insertAssets(chunk, progress);
+            }
+        }
+        json.endArray();
+        insertAssets(chunk, progress);
+    }
+
+    private void insertAssets(List<Asset> chunk, ImportProgress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        // Room runs a list @Insert as one transaction
+        assetDao.insertAll(chunk);
+        progress.assets += chunk.size();
+        progress.report();
+        chunk.clear();
+    }
+
+    private void importTransactions(JsonReader json, Gson gson, String userId, ImportProgress progress)
+            throws IOException {
+        if (json.peek() == JsonToken.NULL) {
+            json.nextNull();
+            return;
+        }
+        List<AssetTransaction> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+        json.beginArray();
+        while (json.hasNext()) {
+            AssetTransaction transaction = gson.fromJson(json, AssetTransaction.class);
+            if (transaction == null) {
+                continue;
+            }
+            if (!userId.equals(transaction.getFromUserId()) && !userId.equals(transaction.getToUserId())) {
+                throw new IOException("This backup belongs to a different user");
+            }
+            chunk.add(transaction);
+            if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                insertTransactions(chunk, progress);
+            }
+        }
+        json.endArray();
+        insertTransactions(chunk, progress);
+    }
+
+    private void insertTransactions(List<AssetTransaction> chunk, ImportProgress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        transactionDao.insertAll(chunk);
+        progress.transactions += chunk.size();
+        progress.report();
+        chunk.clear();
+    }
+
+    /**
+     * Hand-off between the download and insert stages of a Firestore
+     * restore, with per-stage timings. Inserts run in order on the single
+     * disk thread; the semaphore caps how many downloaded pages wait there.
+     */
+    private static final class RestorePipeline {
+        private final ProgressListener listener;
+        private final Semaphore slots = new Semaphore(RESTORE_QUEUE_DEPTH);
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicInteger downloadedCount = new AtomicInteger();
+        private final AtomicLong downloadNanos = new AtomicLong();
+        private final AtomicInteger insertedCount = new AtomicInteger();
+        private final AtomicLong insertNanos = new AtomicLong();
+        final CountDownLatch finished = new CountDownLatch(1);
+        volatile int total;
+        volatile Exception failure;
+
+        RestorePipeline(ProgressListener listener) {
+            this.listener = listener;
+        }
+
+        void downloaded(int count, long nanos) {
+            pages.incrementAndGet();
+            downloadedCount.addAndGet(count);
+            downloadNanos.addAndGet(nanos);
+        }
+
+        /**
+         * Queue insert work, waiting for a free slot first. Throws the
+         * insert stage's failure so the download stage stops fetching.
+         */
+        void submit(int count, Runnable insert) throws Exception {
+            while (!slots.tryAcquire(1, TimeUnit.SECONDS)) {
+                throwIfFailed();
+            }
+            throwIfFailed();
+            AppExecutors.getInstance().diskIO().execute(() -> {
+                try {
+                    if (failure == null) {
+                        long start = System.nanoTime();
+                        insert.run();
+                        insertNanos.addAndGet(System.nanoTime() - start);
+                        int done = insertedCount.addAndGet(count);
+                        listener.onProgress(done, Math.max(total, done));
+                    }
+                } catch (Exception e) {
+                    fail(e);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+
+        void fail(Exception e) {
+            if (failure == null) {
+                failure = e;
+            }
+        }
+
+        private void throwIfFailed() throws Exception {
+            Exception e = failure;
+            if (e != null) {
+                throw e;
+            }
+        }
+
+        Map<String, Object> toEventParams() {
+            Map<String, Object> params = new HashMap<>();
+            params.put("count", insertedCount.get());
+            params.put("pages", pages.get());
+            params.put("duration_ms", (System.nanoTime() - startNanos) / 1_000_000);
+            params.put("download_docs_per_sec", perSecond(downloadedCount.get(), downloadNanos.get()));
+            params.put("insert_docs_per_sec", perSecond(insertedCount.get(), insertNanos.get()));
+            return params;
+        }
+    }
+
+    /**
+     * Handle to a backup or restore job. There is at most one of each, so
+     * the handle follows the job by its unique work name.
+     */
+    public static final class BackupJob {
+        private final WorkManager workManager;
+        private final String workName;
+
+        BackupJob(WorkManager workManager, String workName) {
+            this.workManager = workManager;
+            this.workName = workName;
+        }
+
+        /**
+         * State of the job. While it runs, getProgress() carries
+         * BackupWorker.KEY_PROGRESS and KEY_TOTAL; once it succeeds,
+         * getOutputData() carries the counts and throughput.
+         */
+        public LiveData<List<WorkInfo>> getWorkInfo() {
+            return workManager.getWorkInfosForUniqueWorkLiveData(workName);
+        }
+
+        /**
+         * Stop the job. Work already committed is kept, and the next
+         * enqueue of the same kind carries on from there.
+         */
+        public void cancel() {
+            workManager.cancelUniqueWork(workName);
+        }
+    }
+
+    /**
+     * Running import counts, reported to the callback after each chunk
+     */
+    private static final class ImportProgress {
+        private final BackupCallback callback;
+        int total; // 0 if the file does not say
+        int assets;
+        int transactions;
+
+        ImportProgress(BackupCallback callback) {
+            this.callback = callback;
+        }
+
+        void report() {
+            int done = assets + transactions;
+            int reportedTotal = Math.max(total, done);
+            AppExecutors.getInstance().mainThread().execute(() ->
+                    callback.onProgress(done, reportedTotal));
+        }
+    }
 }
\ No newline at end of file
@@ -1,13 +1,17 @@
 package com.imaginit.hyperplux.utils;
 
 import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.User;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * Algorithm for generating personalized content feeds and recommendations
@@ -28,6 +32,18 @@ public class EngagementAlgorithm {
 
     // Interest match parameters
     private static final double INTEREST_MATCH_BOOST = 1.5;
+    private static final double FOLLOWING_BOOST = 1.3; // 30% boost for following
+
+    // Owner authority weights
+    private static final double FOLLOWER_AUTHORITY_WEIGHT = 0.01;
+    private static final double ENGAGEMENT_AUTHORITY_WEIGHT = 0.05;
+    private static final double TRANSACTION_AUTHORITY_WEIGHT = 0.01;
+    private static final int MAX_COUNTED_TRANSACTIONS = 50;
+
+    // Parallel scoring: below the threshold, fork/join overhead outweighs the gain
+    private static final int PARALLEL_THRESHOLD = 4096;
+    private static final int CHUNK_SIZE = 2048;
+    private static volatile ForkJoinPool scoringPool;
 
     /**
      * Calculate engagement score for a single asset
@@ -52,79 +68,173 @@ public class EngagementAlgorithm {
 
     /**
      * Generate personalized feed for a user based on their interests and social connections
+     * @param ownerAuthority Authority multiplier by owner ID, e.g. from OwnerAuthorityCache.prefetch
+     * @param limit Number of assets wanted, e.g. one page
      */
-    public static List<Asset> generatePersonalizedFeed(List<Asset> availableAssets, User currentUser) {
+    public static List<Asset> generatePersonalizedFeed(List<Asset> availableAssets, User currentUser,
+                                                       Map<String, Double> ownerAuthority, int limit) {
         if (availableAssets == null || availableAssets.isEmpty() || currentUser == null) {
             return availableAssets;
         }
 
-        List<Asset> result = new ArrayList<>(availableAssets);
-        Map<String, Double> userScores = new HashMap<>();
+        return toAssets(rankPersonalizedFeed(availableAssets, currentUser, ownerAuthority, limit));
+    }
 
-        // Calculate personalized score for each asset
-        for (Asset asset : result) {
-            double baseScore = asset.getEngagementScore();
-            double personalizedScore = baseScore;
+    /**
+     * Score candidates for a user's feed and keep the best k
+     * @param candidates Candidate assets (not modified)
+     * @param currentUser User the feed is for
+     * @param ownerAuthority Authority multiplier by owner ID
+     * @param k Number of results wanted
+     * @return Up to k scored assets, best first
+     */
+    public static List<ScoredAsset> rankPersonalizedFeed(List<Asset> candidates, User currentUser,
+                                                         Map<String, Double> ownerAuthority, int k) {
+        return rank(candidates, k, getScoringPool(), (asset, scratch) -> {
+            double score = asset.getEngagementScore();
 
-            // Boost for interest match
-            if (currentUser.getInterests() != null) {
-                for (String interest : currentUser.getInterests()) {
-                    if (asset.getCategory() != null && asset.getCategory().equalsIgnoreCase(interest)) {
-                        personalizedScore *= INTEREST_MATCH_BOOST;
-                        break;
-                    }
+            String category = asset.getCategory();
+            if (category != null) {
+                Double boost = scratch.categoryBoost.get(category);
+                if (boost == null) {
+                    boost = interestBoost(category, currentUser);
+                    scratch.categoryBoost.put(category, boost);
                 }
+                score *= boost;
             }
 
-            // Boost for social connection
             String assetOwnerId = asset.getUserId();
             if (assetOwnerId != null) {
-                // Check if user follows the asset owner
-                if (currentUser.getFollowing() != null && currentUser.getFollowing().contains(assetOwnerId)) {
-                    personalizedScore *= 1.3; // 30% boost for following
+                Double boost = scratch.ownerBoost.get(assetOwnerId);
+                if (boost == null) {
+                    boost = ownerBoost(assetOwnerId, currentUser, ownerAuthority);
+                    scratch.ownerBoost.put(assetOwnerId, boost);
                 }
+                score *= boost;
+            }
+            return score;
+        });
+    }
 
-                // Apply user authority score (cached)
-                Double userScore = userScores.get(assetOwnerId);
-                if (userScore == null) {
-                    // Calculate user influence score based on followers
-                    User assetOwner = getUserById(assetOwnerId); // This would be replaced with actual repository call
-                    if (assetOwner != null) {
-                        userScore = 1.0 + (assetOwner.getFollowers().size() * 0.01);
-                        userScores.put(assetOwnerId, userScore);
-                    } else {
-                        userScore = 1.0;
-                    }
-                }
+    /**
+     * Personalized score for one asset, without modifying the asset
+     * @param asset Candidate asset
+     * @param currentUser User the feed is for
+     * @param ownerAuthority Authority multiplier by owner ID; missing owners count as 1.0
+     * @return Personalized score
+     */
+    public static double calculatePersonalizedScore(Asset asset, User currentUser,
+                                                    Map<String, Double> ownerAuthority) {
+        double personalizedScore = asset.getEngagementScore();
+        if (asset.getCategory() != null) {
+            personalizedScore *= interestBoost(asset.getCategory(), currentUser);
+        }
+        if (asset.getUserId() != null) {
+            personalizedScore *= ownerBoost(asset.getUserId(), currentUser, ownerAuthority);
+        }
+        return personalizedScore;
+    }
 
-                personalizedScore *= userScore;
+    // Boost for interest match
+    private static double interestBoost(String category, User currentUser) {
+        if (currentUser.getInterests() != null) {
+            for (String interest : currentUser.getInterests()) {
+                if (category.equalsIgnoreCase(interest)) {
+                    return INTEREST_MATCH_BOOST;
+                }
             }
+        }
+        return 1.0;
+    }
 
-            // Store the personalized score temporarily
-            asset.setEngagementScore(personalizedScore);
+    // Boost for social connection: following plus owner authority
+    private static double ownerBoost(String assetOwnerId, User currentUser, Map<String, Double> ownerAuthority) {
+        double boost = 1.0;
+
+        // Check if user follows the asset owner
+        if (currentUser.getFollowing() != null && currentUser.getFollowing().contains(assetOwnerId)) {
+            boost *= FOLLOWING_BOOST;
         }
 
-        // Sort by personalized score
-        Collections.sort(result, new Comparator<Asset>() {
-            @Override
-            public int compare(Asset a1, Asset a2) {
-                return Double.compare(a2.getEngagementScore(), a1.getEngagementScore());
-            }
-        });
+        // Apply user authority score
+        Double authority = ownerAuthority != null ? ownerAuthority.get(assetOwnerId) : null;
+        if (authority != null) {
+            boost *= authority;
+        }
+        return boost;
+    }
 
-        return result;
+    /**
+     * User influence multiplier from followers, engagement and completed trades
+     * @param followerCount Number of followers
+     * @param engagementScore Owner's overall engagement score
+     * @param completedTransactions Completed transactions as buyer or seller
+     * @return Multiplier, 1.0 for an owner with no history
+     */
+    public static double calculateOwnerAuthority(int followerCount, double engagementScore,
+                                                 int completedTransactions) {
+        return 1.0
+                + (followerCount * FOLLOWER_AUTHORITY_WEIGHT)
+                // Log scale so a few viral assets don't dominate
+                + (Math.log1p(Math.max(0, engagementScore)) * ENGAGEMENT_AUTHORITY_WEIGHT)
+                + (Math.min(completedTransactions, MAX_COUNTED_TRANSACTIONS) * TRANSACTION_AUTHORITY_WEIGHT);
     }
 
     /**
      * Get asset recommendations based on user's recent activity and interests
+     * @param limit Number of assets wanted, e.g. one page
      */
     public static List<Asset> getRecommendations(List<Asset> availableAssets,
                                                  List<Asset> recentlyViewedAssets,
-                                                 User currentUser) {
+                                                 User currentUser, int limit) {
         if (availableAssets == null || availableAssets.isEmpty()) {
             return availableAssets;
         }
 
+        return toAssets(rankRecommendations(availableAssets, recentlyViewedAssets, currentUser, limit));
+    }
+
+    /**
+     * Score recommendation candidates and keep the best k
+     * @param candidates Candidate assets (not modified)
+     * @param recentlyViewedAssets Assets the user viewed recently, may be null
+     * @param currentUser Current user, may be null
+     * @param k Number of results wanted
+     * @return Up to k scored assets, best first
+     */
+    public static List<ScoredAsset> rankRecommendations(List<Asset> candidates,
+                                                        List<Asset> recentlyViewedAssets,
+                                                        User currentUser, int k) {
+        return rankRecommendations(candidates, recentlyViewedAssets, currentUser, k, getScoringPool());
+    }
+
+    /**
+     * Same as rankRecommendations, scoring large pools on the given pool
+     */
+    public static List<ScoredAsset> rankRecommendations(List<Asset> candidates,
+                                                        List<Asset> recentlyViewedAssets,
+                                                        User currentUser, int k, ForkJoinPool pool) {
+        Map<String, Integer> categoryInterestScore = buildCategoryInterest(recentlyViewedAssets, currentUser);
+
+        return rank(candidates, k, pool, (asset, scratch) -> {
+            String category = asset.getCategory();
+            if (category == null) {
+                return asset.getEngagementScore();
+            }
+            Double boost = scratch.categoryBoost.get(category);
+            if (boost == null) {
+                Integer categoryScore = categoryInterestScore.get(category);
+                boost = categoryScore != null ? 1.0 + (categoryScore * 0.2) : 1.0; // Boost by 20% per occurrence
+                scratch.categoryBoost.put(category, boost);
+            }
+            return asset.getEngagementScore() * boost;
+        });
+    }
+
+    /**
+     * Weight categories by recent views and explicit interests
+     */
+    private static Map<String, Integer> buildCategoryInterest(List<Asset> recentlyViewedAssets, User currentUser) {
         // Extract categories from recently viewed assets
         Map<String, Integer> categoryInterestScore = new HashMap<>();
         if (recentlyViewedAssets != null) {
@@ -144,35 +254,152 @@ public class EngagementAlgorithm {
                 categoryInterestScore.put(interest, count + 2); // Higher weight for explicit interests
             }
         }
+        return categoryInterestScore;
+    }
 
-        // Score assets based on category matches
-        List<Asset> result = new ArrayList<>(availableAssets);
-        for (Asset asset : result) {
-            double score = asset.getEngagementScore();
+    /**
+     * Score candidates and keep the best k. Pools up to PARALLEL_THRESHOLD are
+     * scored on the calling thread; larger ones are split into chunks scored
+     * on the fork/join pool, each keeping its own top k, and the chunk results
+     * are merged. Ties rank by asset ID, so the result is the same whatever
+     * the split or thread count.
+     */
+    private static List<ScoredAsset> rank(List<Asset> candidates, int k, ForkJoinPool pool, Scorer scorer) {
+        if (!(candidates instanceof RandomAccess)) {
+            candidates = new ArrayList<>(candidates);
+        }
+        if (candidates.size() <= PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            return scoreChunk(candidates, k, scorer);
+        }
+        return pool.invoke(new TopKTask(candidates, 0, candidates.size(), k, scorer));
+    }
 
-            String category = asset.getCategory();
-            if (category != null && categoryInterestScore.containsKey(category)) {
-                int categoryScore = categoryInterestScore.get(category);
-                score *= (1.0 + (categoryScore * 0.2)); // Boost by 20% per occurrence
+    private static List<ScoredAsset> scoreChunk(List<Asset> chunk, int k, Scorer scorer) {
+        // Scratch memo is private to this chunk, so no locking is needed
+        Scratch scratch = new Scratch();
+        double[] scores = new double[chunk.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = scorer.score(chunk.get(i), scratch);
+        }
+        return selectTopK(chunk, scores, k);
+    }
+
+    /**
+     * Merge two lists already in RANK_ORDER, keeping the first k
+     */
+    private static List<ScoredAsset> mergeTopK(List<ScoredAsset> left, List<ScoredAsset> right, int k) {
+        List<ScoredAsset> merged = new ArrayList<>(Math.min(k, left.size() + right.size()));
+        int l = 0;
+        int r = 0;
+        while (merged.size() < k && (l < left.size() || r < right.size())) {
+            if (r >= right.size()
+                    || (l < left.size() && ScoredAsset.RANK_ORDER.compare(left.get(l), right.get(r)) <= 0)) {
+                merged.add(left.get(l++));
+            } else {
+                merged.add(right.get(r++));
             }
+        }
+        return merged;
+    }
 
-            asset.setEngagementScore(score);
+    private static ForkJoinPool getScoringPool() {
+        if (scoringPool == null) {
+            synchronized (EngagementAlgorithm.class) {
+                if (scoringPool == null) {
+                    scoringPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+                }
+            }
         }
+        return scoringPool;
+    }
 
-        // Sort by score
-        Collections.sort(result, new Comparator<Asset>() {
-            @Override
-            public int compare(Asset a1, Asset a2) {
-                return Double.compare(a2.getEngagementScore(), a1.getEngagementScore());
+    /**
+     * Scores one asset; memoized lookups go in the per-chunk scratch
+     */
+    private interface Scorer {
+        double score(Asset asset, Scratch scratch);
+    }
+
+    // Per-chunk memo of boosts, keyed by category and by owner ID
+    private static final class Scratch {
+        final Map<String, Double> categoryBoost = new HashMap<>();
+        final Map<String, Double> ownerBoost = new HashMap<>();
+    }
+
+    private static final class TopKTask extends RecursiveTask<List<ScoredAsset>> {
+        private final List<Asset> candidates;
+        private final int from;
+        private final int to;
+        private final int k;
+        private final Scorer scorer;
+
+        TopKTask(List<Asset> candidates, int from, int to, int k, Scorer scorer) {
+            this.candidates = candidates;
+            this.from = from;
+            this.to = to;
+            this.k = k;
+            this.scorer = scorer;
+        }
+
+        @Override
+        protected List<ScoredAsset> compute() {
+            if (to - from <= CHUNK_SIZE) {
+                return scoreChunk(candidates.subList(from, to), k, scorer);
             }
-        });
+            int mid = (from + to) >>> 1;
+            TopKTask left = new TopKTask(candidates, from, mid, k, scorer);
+            left.fork();
+            List<ScoredAsset> right = new TopKTask(candidates, mid, to, k, scorer).compute();
+            return mergeTopK(left.join(), right, k);
+        }
+    }
 
+    /**
+     * Pick the k best candidates with a bounded min-heap: O(n log k) instead
+     * of sorting all n, and only the survivors get a ScoredAsset.
+     * @param candidates Candidate assets
+     * @param scores Score of each candidate, by index
+     * @param k Number of results wanted
+     * @return Up to k scored assets in ScoredAsset.RANK_ORDER
+     */
+    public static List<ScoredAsset> selectTopK(List<Asset> candidates, double[] scores, int k) {
+        int n = Math.min(candidates.size(), scores.length);
+        if (k <= 0 || n == 0) {
+            return new ArrayList<>();
+        }
+
+        // Head of the heap is the worst result kept so far
+        PriorityQueue<ScoredAsset> heap = new PriorityQueue<>(Math.min(k, n) + 1,
+                Collections.reverseOrder(ScoredAsset.RANK_ORDER));
+        for (int i = 0; i < n; i++) {
+            Asset asset = candidates.get(i);
+            if (heap.size() < k) {
+                heap.add(new ScoredAsset(asset, scores[i]));
+            } else if (outranks(scores[i], asset.getId(), heap.peek())) {
+                heap.poll();
+                heap.add(new ScoredAsset(asset, scores[i]));
+            }
+        }
+
+        List<ScoredAsset> result = new ArrayList<>(heap);
+        Collections.sort(result, ScoredAsset.RANK_ORDER);
         return result;
     }
 
-    // This would be replaced with a real repository call in production
-    private static User getUserById(String userId) {
-        // Placeholder - in real app, this would fetch from repository
-        return null;
+    // Same ordering as ScoredAsset.RANK_ORDER, without allocating a wrapper
+    private static boolean outranks(double score, int assetId, ScoredAsset other) {
+        int byScore = Double.compare(score, other.getScore());
+        return byScore > 0 || (byScore == 0 && assetId < other.getAsset().getId());
+    }
+
+    /**
+     * Unwrap ranked results
+     */
+    public static List<Asset> toAssets(List<ScoredAsset> ranked) {
+        List<Asset> assets = new ArrayList<>(ranked.size());
+        for (ScoredAsset scored : ranked) {
+            assets.add(scored.getAsset());
+        }
+        return assets;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,395 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.AssetDao;
+import com.imaginit.hyperplux.database.FeedDao;
+import com.imaginit.hyperplux.database.MarketplaceListingDao;
+import com.imaginit.hyperplux.database.UserDao;
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.FeedItem;
+import com.imaginit.hyperplux.models.MarketplaceListing;
+import com.imaginit.hyperplux.models.User;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Builds each user's home feed in the background and stores it ranked in
+ * the feed_items table, so opening the feed is a single indexed read.
+ * <p>
+ * Candidates are other users' assets from the cached marketplace listings
+ * (the local assets table only holds the user's own). They are picked by
+ * owner followed, interest category, categories viewed together with the
+ * user's recent views, nearness, and top engagement. A full rebuild runs
+ * every few hours; in between, only listings fetched since the last run are
+ * rescored, or dropped if they are hidden or no longer picked by any source,
+ * and rows whose listing left the cache are removed.
+ */
+public class FeedMaterializer {
+    private static final String TAG = "FeedMaterializer";
+    private static final String PREFS_NAME = "feed_materializer";
+    private static final String KEY_LAST_REBUILD = "last_rebuild_";
+    private static final String KEY_LAST_UPDATE = "last_update_";
+    private static final String KEY_LAST_UPDATE_DOC = "last_update_doc_";
+
+    // Feed sizing
+    private static final int MAX_FEED_ITEMS = 500;
+    private static final int CANDIDATES_PER_SOURCE = 200;
+    private static final int MAX_CANDIDATE_LISTINGS = 2000;
+    private static final int MAX_CHANGED_PER_RUN = 500;
+    private static final int RECENT_VIEWS_FOR_CANDIDATES = 20;
+
+    // Scheduling
+    private static final long REFRESH_INTERVAL_MINUTES = 15;
+    private static final long FULL_REBUILD_INTERVAL_MS = 6 * 60 * 60 * 1000;
+
+    // Half-width of the "nearby" box, in degrees (~50km)
+    private static final double NEARBY_RADIUS_DEGREES = 0.5;
+
+    private static volatile FeedMaterializer instance;
+
+    private final AssetDao assetDao;
+    private final UserDao userDao;
+    private final FeedDao feedDao;
+    private final MarketplaceListingDao listingDao;
+    private final MarketplaceRemoteMediator marketplaceMediator;
+    private final OwnerAuthorityCache authorityCache;
+    private final ViewHistory viewHistory;
+    private final CoViewRecommender coViewRecommender;
+    private final SharedPreferences preferences;
+
+    // Single thread, so refreshes never overlap
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> scheduledRefresh;
+    private String scheduledUserId;
+
+    public static FeedMaterializer getInstance(Context context) {
+        if (instance == null) {
+            synchronized (FeedMaterializer.class) {
+                if (instance == null) {
+                    AppDatabase database = AppDatabase.getDatabase(context);
+                    instance = new FeedMaterializer(context.getApplicationContext(), database.assetDao(),
+                            database.userDao(), database.feedDao(), database.marketplaceListingDao());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private FeedMaterializer(Context context, AssetDao assetDao, UserDao userDao, FeedDao feedDao,
+                             MarketplaceListingDao listingDao) {
+        this.assetDao = assetDao;
+        this.userDao = userDao;
+        this.feedDao = feedDao;
+        this.listingDao = listingDao;
+        this.marketplaceMediator = MarketplaceRemoteMediator.getInstance(context);
+        this.authorityCache = OwnerAuthorityCache.getInstance(context);
+        this.viewHistory = ViewHistory.getInstance(context);
+        this.coViewRecommender = CoViewRecommender.getInstance(context);
+        this.preferences = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Get the top of a user's materialized feed
+     * @param userId User ID
+     * @param limit Number of rows to load
+     */
+    public LiveData<List<Asset>> getFeed(String userId, int limit) {
+        return Transformations.map(feedDao.getFeedListings(userId, limit), MarketplaceListing::toAssets);
+    }
+
+    /**
+     * Start periodic refreshes for a user; the first one runs immediately
+     */
+    public synchronized void start(String userId) {
+        if (userId.equals(scheduledUserId) && scheduledRefresh != null && !scheduledRefresh.isDone()) {
+            return;
+        }
+        stop();
+        scheduledUserId = userId;
+        scheduledRefresh = scheduler.scheduleWithFixedDelay(
+                () -> refresh(userId), 0, REFRESH_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Stop periodic refreshes (e.g. on sign-out)
+     */
+    public synchronized void stop() {
+        if (scheduledRefresh != null) {
+            scheduledRefresh.cancel(false);
+            scheduledRefresh = null;
+        }
+        scheduledUserId = null;
+    }
+
+    /**
+     * Queue a one-off refresh, e.g. after the user follows someone
+     */
+    public void requestRefresh(String userId) {
+        scheduler.execute(() -> refresh(userId));
+    }
+
+    /**
+     * Force the next refresh to be a full rebuild
+     */
+    public void invalidate(String userId) {
+        preferences.edit().remove(KEY_LAST_REBUILD + userId).apply();
+    }
+
+    /**
+     * Stop refreshing and drop a user's feed, e.g. on sign-out or account switch
+     */
+    public synchronized void clear(String userId) {
+        if (userId.equals(scheduledUserId)) {
+            stop();
+        }
+        invalidate(userId);
+        preferences.edit()
+                .remove(KEY_LAST_UPDATE + userId)
+                .remove(KEY_LAST_UPDATE_DOC + userId)
+                .apply();
+        // Queued behind any refresh still running, so it can't write the rows back
+        scheduler.execute(() -> feedDao.deleteFeed(userId));
+    }
+
+    private void refresh(String userId) {
+        try {
+            long now = System.currentTimeMillis();
+            long lastRebuild = preferences.getLong(KEY_LAST_REBUILD + userId, 0);
+            if (now - lastRebuild >= FULL_REBUILD_INTERVAL_MS || feedDao.getFeedSize(userId) == 0) {
+                rebuild(userId, now);
+            } else {
+                applyChanges(userId, preferences.getLong(KEY_LAST_UPDATE + userId, lastRebuild),
+                        preferences.getString(KEY_LAST_UPDATE_DOC + userId, ""));
+            }
+        } catch (Exception e) {
+            // Keep the scheduled task alive; the next run retries
+            Log.e(TAG, "Error refreshing feed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gather candidates from every source, score them and replace the feed
+     */
+    private void rebuild(String userId, long now) {
+        if (listingDao.getCountSync() == 0) {
+            // Nothing cached until the marketplace is opened; fetch its first page and rebuild after
+            marketplaceMediator.loadNextPage(error -> {
+                if (error == null) {
+                    // An empty marketplace would otherwise bring us straight back here
+                    scheduler.execute(() -> {
+                        if (listingDao.getCountSync() > 0) {
+                            refresh(userId);
+                        }
+                    });
+                }
+            });
+            return;
+        }
+
+        User user = loadUser(userId);
+
+        // Keyed by listing ID so an asset found by several sources is scored once
+        Map<String, Asset> candidates = new LinkedHashMap<>();
+        Map<String, String> sources = new HashMap<>();
+        selectCandidates(userId, user, candidates, sources);
+
+        List<Asset> assets = new ArrayList<>(candidates.values());
+        Map<String, Double> ownerAuthority = loadOwnerAuthority(assets);
+
+        // Only the best rows are kept
+        List<FeedItem> items = new ArrayList<>();
+        for (ScoredAsset scored : EngagementAlgorithm.rankPersonalizedFeed(
+                assets, user, ownerAuthority, MAX_FEED_ITEMS)) {
+            String docId = scored.getAsset().getListingId();
+            items.add(new FeedItem(userId, docId, scored.getScore(), sources.get(docId), now));
+        }
+
+        feedDao.replaceFeed(userId, items);
+        preferences.edit()
+                .putLong(KEY_LAST_REBUILD + userId, now)
+                .putLong(KEY_LAST_UPDATE + userId, now)
+                .putString(KEY_LAST_UPDATE_DOC + userId, "")
+                .apply();
+        Log.d(TAG, "Rebuilt feed with " + items.size() + " of " + assets.size() + " candidates");
+    }
+
+    /**
+     * Rescore listings fetched since the last run. Candidate selection is
+     * re-run so a changed listing keeps the source that picked it, and one no
+     * source picks any more leaves the feed.
+     */
+    private void applyChanges(String userId, long sinceTime, String sinceDocId) {
+        List<MarketplaceListing> changed = listingDao.getCachedSinceSync(sinceTime, sinceDocId, MAX_CHANGED_PER_RUN);
+        if (changed.isEmpty()) {
+            // Still drop rows whose listing a refresh removed
+            feedDao.applyUpdate(userId, Collections.emptyList(), Collections.emptyList(), MAX_FEED_ITEMS);
+            return;
+        }
+
+        User user = loadUser(userId);
+        Map<String, Asset> candidates = new LinkedHashMap<>();
+        Map<String, String> sources = new HashMap<>();
+        selectCandidates(userId, user, candidates, sources);
+
+        List<Asset> rescored = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (MarketplaceListing listing : changed) {
+            Asset candidate = candidates.get(listing.getDocId());
+            if (candidate != null) {
+                rescored.add(candidate);
+            } else {
+                removed.add(listing.getDocId());
+            }
+        }
+
+        Map<String, Double> ownerAuthority = loadOwnerAuthority(rescored);
+        long now = System.currentTimeMillis();
+        List<FeedItem> upserts = new ArrayList<>(rescored.size());
+        for (Asset asset : rescored) {
+            upserts.add(new FeedItem(userId, asset.getListingId(),
+                    EngagementAlgorithm.calculatePersonalizedScore(asset, user, ownerAuthority),
+                    sources.get(asset.getListingId()), now));
+        }
+
+        feedDao.applyUpdate(userId, upserts, removed, MAX_FEED_ITEMS);
+
+        // Results are ordered by (cachedAt, docId), so the last one is the new watermark
+        MarketplaceListing last = changed.get(changed.size() - 1);
+        preferences.edit()
+                .putLong(KEY_LAST_UPDATE + userId, last.getCachedAt())
+                .putString(KEY_LAST_UPDATE_DOC + userId, last.getDocId())
+                .apply();
+        Log.d(TAG, "Rescored " + upserts.size() + " and removed " + removed.size() + " feed items");
+    }
+
+    /**
+     * Collect candidates from every source, in priority order. Only other
+     * users' visible listings are considered.
+     */
+    private void selectCandidates(String userId, User user,
+                                  Map<String, Asset> candidates, Map<String, String> sources) {
+        // Newest first, which is also the order the following source wants
+        List<Asset> pool = new ArrayList<>();
+        for (MarketplaceListing listing : listingDao.getRecentSync(MAX_CANDIDATE_LISTINGS)) {
+            Asset asset = listing.toAsset();
+            if (asset != null && !asset.isHidden() && !userId.equals(asset.getUserId())) {
+                pool.add(asset);
+            }
+        }
+        if (pool.isEmpty()) {
+            return;
+        }
+        List<Asset> byEngagement = new ArrayList<>(pool);
+        Collections.sort(byEngagement, (a, b) -> Double.compare(b.getEngagementScore(), a.getEngagementScore()));
+
+        if (user.getFollowing() != null && !user.getFollowing().isEmpty()) {
+            Set<String> following = new HashSet<>(user.getFollowing());
+            addCandidates(candidates, sources, FeedItem.SOURCE_FOLLOWING,
+                    pick(pool, asset -> following.contains(asset.getUserId())));
+        }
+        List<Integer> recentlyViewed = viewHistory.getRecentAssetIds(userId, RECENT_VIEWS_FOR_CANDIDATES);
+        if (!recentlyViewed.isEmpty()) {
+            // Co-view IDs are local, so match listings on the categories they point to
+            Set<String> relatedCategories = new HashSet<>();
+            for (Asset related : coViewRecommender.getRelatedToRecentSync(recentlyViewed, CANDIDATES_PER_SOURCE)) {
+                if (related.getCategory() != null) {
+                    relatedCategories.add(related.getCategory());
+                }
+            }
+            if (!relatedCategories.isEmpty()) {
+                addCandidates(candidates, sources, FeedItem.SOURCE_RELATED,
+                        pick(byEngagement, asset -> relatedCategories.contains(asset.getCategory())));
+            }
+        }
+        if (user.getInterests() != null && !user.getInterests().isEmpty()) {
+            Set<String> interests = new HashSet<>(user.getInterests());
+            addCandidates(candidates, sources, FeedItem.SOURCE_CATEGORY,
+                    pick(byEngagement, asset -> interests.contains(asset.getCategory())));
+        }
+        double[] center = getHomeLocation(userId);
+        if (center != null) {
+            addCandidates(candidates, sources, FeedItem.SOURCE_NEARBY,
+                    pick(byEngagement, asset ->
+                            Math.abs(asset.getLatitude() - center[0]) <= NEARBY_RADIUS_DEGREES
+                                    && Math.abs(asset.getLongitude() - center[1]) <= NEARBY_RADIUS_DEGREES));
+        }
+        addCandidates(candidates, sources, FeedItem.SOURCE_TOP, pick(byEngagement, asset -> true));
+    }
+
+    // The first CANDIDATES_PER_SOURCE assets that pass the test, in list order
+    private static List<Asset> pick(List<Asset> assets, Predicate<Asset> test) {
+        List<Asset> picked = new ArrayList<>();
+        for (Asset asset : assets) {
+            if (picked.size() >= CANDIDATES_PER_SOURCE) {
+                break;
+            }
+            if (test.test(asset)) {
+                picked.add(asset);
+            }
+        }
+        return picked;
+    }
+
+    private static void addCandidates(Map<String, Asset> candidates, Map<String, String> sources,
+                                      String source, List<Asset> assets) {
+        for (Asset asset : assets) {
+            if (!candidates.containsKey(asset.getListingId())) {
+                candidates.put(asset.getListingId(), asset);
+                sources.put(asset.getListingId(), source);
+            }
+        }
+    }
+
+    // Fall back to an empty profile so a missing row still yields a generic feed
+    private User loadUser(String userId) {
+        User user = userDao.getUserByIdSync(userId);
+        return user != null ? user : new User(userId, null);
+    }
+
+    // Batch-load owner authority so ranking does no per-owner I/O
+    private Map<String, Double> loadOwnerAuthority(List<Asset> assets) {
+        List<String> ownerIds = new ArrayList<>(assets.size());
+        for (Asset asset : assets) {
+            ownerIds.add(asset.getUserId());
+        }
+        return authorityCache.prefetch(ownerIds);
+    }
+
+    /**
+     * Users have no stored location, so use the centroid of their own
+     * located assets as "home"
+     * @return {latitude, longitude}, or null if none of their assets is located
+     */
+    private double[] getHomeLocation(String userId) {
+        double latitude = 0;
+        double longitude = 0;
+        int located = 0;
+        for (Asset asset : assetDao.getAllAssetsByUserSync(userId)) {
+            if (asset.getLatitude() != 0 || asset.getLongitude() != 0) {
+                latitude += asset.getLatitude();
+                longitude += asset.getLongitude();
+                located++;
+            }
+        }
+        return located == 0 ? null : new double[]{latitude / located, longitude / located};
+    }
+}
@@ -1,25 +1,51 @@
 package com.imaginit.hyperplux.utils;
 
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
 import android.util.Log;
+import android.util.LruCache;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.MemoryCategory;
+import com.bumptech.glide.Priority;
 import com.bumptech.glide.Registry;
 import com.bumptech.glide.annotation.GlideModule;
 import com.bumptech.glide.integration.okhttp3.OkHttpUrlLoader;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.Key;
+import com.bumptech.glide.load.Options;
+import com.bumptech.glide.load.ResourceDecoder;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.load.engine.Resource;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPoolAdapter;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
 import com.bumptech.glide.load.engine.cache.ExternalPreferredCacheDiskCacheFactory;
 import com.bumptech.glide.load.engine.cache.LruResourceCache;
 import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
 import com.bumptech.glide.load.model.GlideUrl;
+import com.bumptech.glide.load.resource.bitmap.ByteBufferBitmapDecoder;
+import com.bumptech.glide.load.resource.bitmap.Downsampler;
+import com.bumptech.glide.load.resource.bitmap.StreamBitmapDecoder;
 import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestListener;
 import com.bumptech.glide.request.RequestOptions;
+import com.bumptech.glide.request.target.Target;
 import com.imaginit.hyperplux.R;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import okhttp3.OkHttpClient;
@@ -31,19 +57,106 @@ import okhttp3.OkHttpClient;
 public class ImageCacheManager extends AppGlideModule {
     private static final String TAG = "ImageCacheManager";
     private static final int DISK_CACHE_SIZE = 250 * 1024 * 1024; // 250 MB
+    private static final int MID_DISK_CACHE_SIZE = 150 * 1024 * 1024; // 150 MB
+    private static final int LOW_RAM_DISK_CACHE_SIZE = 64 * 1024 * 1024; // 64 MB
+    // Heap limit, in MB, from which a device gets the full 3-screen budget
+    private static final int LARGE_MEMORY_CLASS_MB = 192;
     private static final int TIMEOUT_SECONDS = 30;
+    private static final int MAX_PRELOAD = 12;
+
+    // 32x32 ARGB is 4 KB, so a few screens of placeholders stay well under 1 MB
+    private static final int BLUR_PLACEHOLDER_SIZE = 32;
+    private static final LruCache<String, Bitmap> BLUR_PLACEHOLDERS = new LruCache<>(128);
+
+    private static volatile CountingMemoryCache memoryCache;
+
+    // Set by a trim, cleared when the app is back in the foreground. Main thread only.
+    private static boolean underPressure;
+
+    /**
+     * What an image is loaded for, which decides how it is decoded
+     */
+    public enum ImageUse {
+        /** List cells and other small previews */
+        THUMBNAIL,
+        /** Detail and full-screen views, where quality matters */
+        DETAIL
+    }
+
+    // Opaque JPEG thumbnails look the same in RGB_565 at half the memory;
+    // Glide still picks ARGB_8888 for images with transparency
+    private static final RequestOptions THUMBNAIL_DECODE = new RequestOptions()
+            .format(DecodeFormat.PREFER_RGB_565);
+    // Full quality; on Android O and up Glide may place these in hardware bitmaps
+    private static final RequestOptions DETAIL_DECODE = new RequestOptions()
+            .format(DecodeFormat.PREFER_ARGB_8888);
+
+    /**
+     * Decode options for a kind of image. Apply to every request of that
+     * kind, including preloads, so they share cache keys.
+     * @param use What the image is shown as
+     * @return Options to pass to RequestBuilder.apply()
+     */
+    @NonNull
+    public static RequestOptions decodeOptions(@NonNull ImageUse use) {
+        return use == ImageUse.THUMBNAIL ? THUMBNAIL_DECODE : DETAIL_DECODE;
+    }
+
+    /**
+     * Image memory figures for reporting: the load and decode counters from
+     * ImageCacheStats plus current memory cache and bitmap pool sizes.
+     * @param context Application context
+     */
+    @NonNull
+    public static Map<String, Object> bitmapMemoryReport(Context context) {
+        Map<String, Object> report = ImageCacheStats.getInstance().toEventParams();
+        CountingMemoryCache cache = memoryCache;
+        if (cache != null) {
+            report.put("memory_cache_kb", cache.getCurrentSize() / 1024);
+            report.put("memory_cache_max_kb", cache.getMaxSize() / 1024);
+        }
+        if (context != null) {
+            report.put("bitmap_pool_max_kb", Glide.get(context).getBitmapPool().getMaxSize() / 1024);
+        }
+        return report;
+    }
 
     @Override
     public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
-        // Set up memory cache
+        // Size the memory cache, bitmap pool and disk cache for this device
+        ActivityManager activityManager =
+                (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        boolean lowRam = activityManager != null && activityManager.isLowRamDevice();
+        int memoryClass = activityManager != null ? activityManager.getMemoryClass() : 0;
+
+        int screens;
+        int diskCacheSize;
+        if (lowRam) {
+            screens = 1;
+            diskCacheSize = LOW_RAM_DISK_CACHE_SIZE;
+        } else if (memoryClass < LARGE_MEMORY_CLASS_MB) {
+            screens = 2;
+            diskCacheSize = MID_DISK_CACHE_SIZE;
+        } else {
+            screens = 3; // Cache images for 3 screens worth of content
+            diskCacheSize = DISK_CACHE_SIZE;
+        }
+
         MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
-                .setMemoryCacheScreens(3) // Cache images for 3 screens worth of content
+                .setMemoryCacheScreens(screens)
+                .setBitmapPoolScreens(screens)
                 .build();
-        builder.setMemoryCache(new LruResourceCache(calculator.getMemoryCacheSize()));
+        memoryCache = new CountingMemoryCache(calculator.getMemoryCacheSize());
+        builder.setMemoryCache(memoryCache);
+        int poolSize = calculator.getBitmapPoolSize();
+        builder.setBitmapPool(poolSize > 0 ? new LruBitmapPool(poolSize) : new BitmapPoolAdapter());
+        Log.d(TAG, "Image cache budgets: memory=" + calculator.getMemoryCacheSize()
+                + " pool=" + calculator.getBitmapPoolSize() + " disk=" + diskCacheSize
+                + " (memoryClass=" + memoryClass + ", lowRam=" + lowRam + ")");
 
         // Set up disk cache
         builder.setDiskCache(new ExternalPreferredCacheDiskCacheFactory(
-                context, "image_cache", DISK_CACHE_SIZE));
+                context, "image_cache", diskCacheSize));
 
         // Set up default options
         RequestOptions requestOptions = new RequestOptions()
@@ -54,6 +167,9 @@ public class ImageCacheManager extends AppGlideModule {
 
         builder.setDefaultRequestOptions(requestOptions);
 
+        // Count where every image comes from
+        builder.addGlobalRequestListener(new StatsListener());
+
         // Set up logging for debug builds
         if (BuildConfig.DEBUG) {
             builder.setLogLevel(Log.VERBOSE);
@@ -72,24 +188,112 @@ public class ImageCacheManager extends AppGlideModule {
 
         OkHttpClient okHttpClient = clientBuilder.build();
         registry.replace(GlideUrl.class, InputStream.class, new OkHttpUrlLoader.Factory(okHttpClient));
+
+        // Time bitmap decodes. These are the decoders Glide registers by default,
+        // prepended so they run first and record how long each decode takes.
+        Downsampler downsampler = new Downsampler(registry.getImageHeaderParsers(),
+                context.getResources().getDisplayMetrics(), glide.getBitmapPool(), glide.getArrayPool());
+        registry.prepend(Registry.BUCKET_BITMAP, ByteBuffer.class, Bitmap.class,
+                new TimedDecoder<>(new ByteBufferBitmapDecoder(downsampler)));
+        registry.prepend(Registry.BUCKET_BITMAP, InputStream.class, Bitmap.class,
+                new TimedDecoder<>(new StreamBitmapDecoder(downsampler, glide.getArrayPool())));
+    }
+
+    /**
+     * Adjusts image caches to a trim level from ComponentCallbacks2.
+     * Glide already trims its caches when it gets the same callback; this
+     * also lowers the budget so they don't grow straight back while memory
+     * is still tight. Call from Application.onTrimMemory on the main thread.
+     * @param context Application context
+     * @param level Trim level passed to onTrimMemory
+     */
+    public static void onTrimMemory(Context context, int level) {
+        if (context == null) return;
+
+        try {
+            ImageCacheStats.getInstance().recordTrim();
+            Glide glide = Glide.get(context);
+            if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                // In the LRU list of cached processes: hold nothing we can refetch
+                glide.clearMemory();
+                BLUR_PLACEHOLDERS.evictAll();
+                glide.setMemoryCategory(MemoryCategory.LOW);
+                underPressure = true;
+            } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                    && level != ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+                // Still in the foreground but the system is short: run at half budget
+                glide.setMemoryCategory(MemoryCategory.LOW);
+                underPressure = true;
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error trimming image caches", e);
+        }
+    }
+
+    /**
+     * Restores the full cache budget once the app is back in the foreground
+     * after a trim. Call from the main activity's onStart.
+     * @param context Application context
+     */
+    public static void restoreCacheBudget(Context context) {
+        if (context == null || !underPressure) return;
+
+        try {
+            Glide.get(context).setMemoryCategory(MemoryCategory.NORMAL);
+            underPressure = false;
+        } catch (Exception e) {
+            Log.e(TAG, "Error restoring image cache budget", e);
+        }
     }
 
     /**
-     * Utility method to preload asset images
+     * Utility method to preload asset images. Lists should use their
+     * adapter's attachPreloader instead, which follows the scroll position;
+     * this is for a handful of images known to be needed soon.
      * @param context Application context
-     * @param imageUrls Array of image URLs to preload
+     * @param imageUrls Array of image URLs to preload; only the first few are used
      */
     public static void preloadAssetImages(Context context, String[] imageUrls) {
         if (context == null || imageUrls == null) return;
 
+        int count = 0;
         for (String url : imageUrls) {
+            if (count >= MAX_PRELOAD) break;
             if (url != null && !url.isEmpty()) {
-                Glide.with(context)
+                // Thumbnail size at low priority, so it never competes with on-screen loads
+                Glide.with(context.getApplicationContext())
                         .load(url)
                         .diskCacheStrategy(DiskCacheStrategy.DATA)
-                        .preload();
+                        .apply(decodeOptions(ImageUse.THUMBNAIL))
+                        .priority(Priority.LOW)
+                        .preload(ImageVariants.THUMB_SIZE, ImageVariants.THUMB_SIZE);
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Placeholder drawn from an image's BlurHash, so a list cell shows the
+     * image's colours straight away instead of a grey box. Decoded once to a
+     * tiny bitmap and cached; the view scales it up, which only adds to the blur.
+     * @param context Context for resources
+     * @param blurHash Hash stored with the image, or null
+     * @return Drawable to pass to placeholder(), or null if there is no usable hash
+     */
+    public static Drawable blurPlaceholder(Context context, String blurHash) {
+        if (context == null || blurHash == null || blurHash.isEmpty()) return null;
+
+        Bitmap bitmap = BLUR_PLACEHOLDERS.get(blurHash);
+        if (bitmap == null) {
+            int[] pixels = BlurHash.decode(blurHash, BLUR_PLACEHOLDER_SIZE, BLUR_PLACEHOLDER_SIZE);
+            if (pixels == null) {
+                return null;
             }
+            bitmap = Bitmap.createBitmap(pixels, BLUR_PLACEHOLDER_SIZE, BLUR_PLACEHOLDER_SIZE,
+                    Bitmap.Config.ARGB_8888);
+            BLUR_PLACEHOLDERS.put(blurHash, bitmap);
         }
+        return new BitmapDrawable(context.getResources(), bitmap);
     }
 
     /**
@@ -118,4 +322,75 @@ public class ImageCacheManager extends AppGlideModule {
             Log.e(TAG, "Error clearing memory cache", e);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Memory cache that counts evictions: images dropped to make room or by a trim
+     */
+    private static class CountingMemoryCache extends LruResourceCache {
+        CountingMemoryCache(long size) {
+            super(size);
+        }
+
+        @Override
+        protected void onItemEvicted(@NonNull Key key, @Nullable Resource<?> item) {
+            ImageCacheStats.getInstance().recordEviction();
+            super.onItemEvicted(key, item);
+        }
+    }
+
+    /**
+     * Records the data source of every finished request
+     */
+    private static class StatsListener implements RequestListener<Object> {
+        @Override
+        public boolean onLoadFailed(@Nullable GlideException e, @Nullable Object model,
+                                    @NonNull Target<Object> target, boolean isFirstResource) {
+            ImageCacheStats.getInstance().recordFailure();
+            return false;
+        }
+
+        @Override
+        public boolean onResourceReady(@NonNull Object resource, @NonNull Object model,
+                                       Target<Object> target, @NonNull DataSource dataSource,
+                                       boolean isFirstResource) {
+            ImageCacheStats stats = ImageCacheStats.getInstance();
+            stats.recordLoad(dataSource);
+            if (dataSource != DataSource.MEMORY_CACHE) {
+                if (resource instanceof Bitmap) {
+                    stats.recordBitmap((Bitmap) resource);
+                } else if (resource instanceof BitmapDrawable) {
+                    stats.recordBitmap(((BitmapDrawable) resource).getBitmap());
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Wraps a decoder to record how long each decode takes
+     */
+    private static class TimedDecoder<T, Z> implements ResourceDecoder<T, Z> {
+        private final ResourceDecoder<T, Z> decoder;
+
+        TimedDecoder(ResourceDecoder<T, Z> decoder) {
+            this.decoder = decoder;
+        }
+
+        @Override
+        public boolean handles(@NonNull T source, @NonNull Options options) throws IOException {
+            return decoder.handles(source, options);
+        }
+
+        @Nullable
+        @Override
+        public Resource<Z> decode(@NonNull T source, int width, int height,
+                                  @NonNull Options options) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return decoder.decode(source, width, height, options);
+            } finally {
+                ImageCacheStats.getInstance().recordDecode(System.nanoTime() - start);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.imaginit.hyperplux.utils;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.load.DataSource;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide counters for the image pipeline: where each image came from,
+ * how often the memory cache evicts, how often the system asked us to trim,
+ * how long bitmap decodes take and how many bytes they produce per config.
+ * ImageCacheManager feeds it; the application reports a snapshot when the
+ * UI is hidden so cache budgets can be tuned from real devices.
+ */
+public final class ImageCacheStats {
+    public static final String EVENT_IMAGE_CACHE_STATS = "image_cache_stats";
+
+    private static final ImageCacheStats INSTANCE = new ImageCacheStats();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong remoteLoads = new AtomicLong();
+    private final AtomicLong localLoads = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong trims = new AtomicLong();
+    private final AtomicLong decodes = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicLong maxDecodeNanos = new AtomicLong();
+    // Bytes of newly decoded bitmaps, by config; memory-cache hits are not counted again
+    private final AtomicLong rgb565Bytes = new AtomicLong();
+    private final AtomicLong argb8888Bytes = new AtomicLong();
+    private final AtomicLong hardwareBytes = new AtomicLong();
+    private final AtomicLong otherBytes = new AtomicLong();
+
+    private ImageCacheStats() {
+    }
+
+    public static ImageCacheStats getInstance() {
+        return INSTANCE;
+    }
+
+    public void recordLoad(DataSource source) {
+        if (source == null) {
+            return;
+        }
+        switch (source) {
+            case MEMORY_CACHE:
+                memoryHits.incrementAndGet();
+                break;
+            case DATA_DISK_CACHE:
+            case RESOURCE_DISK_CACHE:
+                diskHits.incrementAndGet();
+                break;
+            case REMOTE:
+                remoteLoads.incrementAndGet();
+                break;
+            default:
+                localLoads.incrementAndGet();
+                break;
+        }
+    }
+
+    public void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    public void recordEviction() {
+        evictions.incrementAndGet();
+    }
+
+    public void recordTrim() {
+        trims.incrementAndGet();
+    }
+
+    public void recordDecode(long nanos) {
+        decodes.incrementAndGet();
+        decodeNanos.addAndGet(nanos);
+        long max;
+        do {
+            max = maxDecodeNanos.get();
+        } while (nanos > max && !maxDecodeNanos.compareAndSet(max, nanos));
+    }
+
+    /**
+     * Account for a freshly decoded bitmap
+     */
+    public void recordBitmap(Bitmap bitmap) {
+        if (bitmap == null) {
+            return;
+        }
+        Bitmap.Config config = bitmap.getConfig();
+        if (config == Bitmap.Config.RGB_565) {
+            rgb565Bytes.addAndGet(bitmap.getAllocationByteCount());
+        } else if (config == Bitmap.Config.ARGB_8888) {
+            argb8888Bytes.addAndGet(bitmap.getAllocationByteCount());
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && config == Bitmap.Config.HARDWARE) {
+            // Lives in graphics memory; the count is what it would take on the heap
+            hardwareBytes.addAndGet(bitmap.getAllocationByteCount());
+        } else {
+            otherBytes.addAndGet(bitmap.getAllocationByteCount());
+        }
+    }
+
+    /**
+     * Share of loads answered from the memory cache, 0 to 1
+     */
+    public double getMemoryHitRate() {
+        long total = memoryHits.get() + diskHits.get() + remoteLoads.get() + localLoads.get();
+        return total == 0 ? 0 : (double) memoryHits.get() / total;
+    }
+
+    /**
+     * Share of memory-cache misses answered from the disk cache, 0 to 1.
+     * Local files and content Uris are not cached on disk, so they are left out.
+     */
+    public double getDiskHitRate() {
+        long misses = diskHits.get() + remoteLoads.get();
+        return misses == 0 ? 0 : (double) diskHits.get() / misses;
+    }
+
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    public long getAverageDecodeMillis() {
+        long count = decodes.get();
+        return count == 0 ? 0 : decodeNanos.get() / count / 1_000_000;
+    }
+
+    /**
+     * Counters as analytics event parameters
+     */
+    @NonNull
+    public Map<String, Object> toEventParams() {
+        Map<String, Object> params = new HashMap<>();
+        params.put("memory_hits", memoryHits.get());
+        params.put("disk_hits", diskHits.get());
+        params.put("remote_loads", remoteLoads.get());
+        params.put("local_loads", localLoads.get());
+        params.put("failures", failures.get());
+        params.put("memory_hit_rate", getMemoryHitRate());
+        params.put("disk_hit_rate", getDiskHitRate());
+        params.put("evictions", evictions.get());
+        params.put("trims", trims.get());
+        params.put("decodes", decodes.get());
+        params.put("avg_decode_ms", getAverageDecodeMillis());
+        params.put("max_decode_ms", maxDecodeNanos.get() / 1_000_000);
+        params.put("decoded_kb_rgb565", rgb565Bytes.get() / 1024);
+        params.put("decoded_kb_argb8888", argb8888Bytes.get() / 1024);
+        params.put("decoded_kb_hardware", hardwareBytes.get() / 1024);
+        params.put("decoded_kb_other", otherBytes.get() / 1024);
+        return params;
+    }
+
+    /**
+     * True once there is something worth reporting
+     */
+    public boolean hasData() {
+        return memoryHits.get() + diskHits.get() + remoteLoads.get() + localLoads.get()
+                + failures.get() > 0;
+    }
+
+    /**
+     * Start a new reporting window
+     */
+    public void reset() {
+        memoryHits.set(0);
+        diskHits.set(0);
+        remoteLoads.set(0);
+        localLoads.set(0);
+        failures.set(0);
+        evictions.set(0);
+        trims.set(0);
+        decodes.set(0);
+        decodeNanos.set(0);
+        maxDecodeNanos.set(0);
+        rgb565Bytes.set(0);
+        argb8888Bytes.set(0);
+        hardwareBytes.set(0);
+        otherBytes.set(0);
+    }
+}
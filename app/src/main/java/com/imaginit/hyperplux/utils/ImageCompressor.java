@@ -3,26 +3,72 @@ package com.imaginit.hyperplux.utils;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Matrix;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
 import android.media.ExifInterface;
 import android.net.Uri;
-import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
-import java.io.ByteArrayOutputStream;
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.load.resource.bitmap.TransformationUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * Utility class for image compression and processing
+ * Utility class for image compression and processing.
+ * <p>
+ * Each image is opened once: bounds and EXIF orientation are read from the
+ * buffered header, then the same stream is rewound and decoded straight to
+ * the target size (power-of-two sampling plus density scaling) into a bitmap
+ * from Glide's pool. Orientation is applied into another pooled bitmap, and
+ * JPEG bytes are streamed to the output file. Work runs on a small fixed
+ * pool so multi-image picks compress in parallel without exhausting memory.
+ * <p>
+ * For uploads, compressVariants decodes once at full size and scales the
+ * medium and thumbnail variants down from that bitmap, so the source is
+ * never read or decoded more than once. The full-size bytes are SHA-256
+ * hashed as they are written, so repeat uploads can be recognised.
  */
 public class ImageCompressor {
     private static final String TAG = "ImageCompressor";
     private static final int MAX_WIDTH = 1024;
     private static final int MAX_HEIGHT = 1024;
     private static final int QUALITY = 85;
+    private static final int BLUR_HASH_SOURCE_SIZE = 32;
+
+    // Headers and EXIF sit well inside this; past it we fall back to reopening
+    private static final int MARK_LIMIT = 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Each job holds a decoded bitmap, so keep concurrency low
+    private static final int PARALLELISM =
+            Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(PARALLELISM);
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Paint SCALE_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
 
     /**
      * Interface for compression callback
@@ -32,37 +78,101 @@ public class ImageCompressor {
         void onError(Exception e);
     }
 
+    /**
+     * Callback for image variants, as local file Uris
+     */
+    public interface VariantsCallback {
+        void onCompressed(ImageVariants variants);
+        void onError(Exception e);
+    }
+
+    /**
+     * Callback for compressing several images; results keep the input order
+     */
+    public interface MultiCompressionCallback {
+        void onCompressed(List<Uri> compressedImageUris);
+        void onError(Exception e);
+    }
+
+    /**
+     * Time spent in each stage of one compression, in milliseconds
+     */
+    public static final class StageTimings {
+        long headerMs;
+        long decodeMs;
+        long orientMs;
+        long encodeMs;
+        int streamOpens;
+
+        public long getHeaderMs() { return headerMs; }
+        public long getDecodeMs() { return decodeMs; }
+        public long getOrientMs() { return orientMs; }
+        public long getEncodeMs() { return encodeMs; }
+        public long getTotalMs() { return headerMs + decodeMs + orientMs + encodeMs; }
+
+        @Override
+        public String toString() {
+            return "header " + headerMs + "ms, decode " + decodeMs + "ms, orient " + orientMs +
+                    "ms, encode " + encodeMs + "ms, total " + getTotalMs() + "ms, opens " + streamOpens;
+        }
+    }
+
     /**
      * Compress image from Uri asynchronously
      *
      * @param context Application context
      * @param imageUri Original image Uri
-     * @param callback Callback for result
+     * @param callback Callback for result, called on the main thread
      */
     public static void compressImage(Context context, Uri imageUri, CompressionCallback callback) {
-        new AsyncTask<Void, Void, Uri>() {
-            private Exception exception;
+        Context appContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> {
+            try {
+                Uri result = compressImageSync(appContext, imageUri);
+                MAIN_HANDLER.post(() -> callback.onCompressed(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Error compressing image", e);
+                MAIN_HANDLER.post(() -> callback.onError(e));
+            }
+        });
+    }
 
-            @Override
-            protected Uri doInBackground(Void... voids) {
+    /**
+     * Compress several images in parallel, e.g. a multi-image pick
+     *
+     * @param context Application context
+     * @param imageUris Original image Uris
+     * @param callback Callback for result, called on the main thread once all are done
+     */
+    public static void compressImages(Context context, List<Uri> imageUris, MultiCompressionCallback callback) {
+        if (imageUris.isEmpty()) {
+            MAIN_HANDLER.post(() -> callback.onCompressed(new ArrayList<>()));
+            return;
+        }
+
+        Context appContext = context.getApplicationContext();
+        Uri[] results = new Uri[imageUris.size()];
+        AtomicInteger remaining = new AtomicInteger(imageUris.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+        for (int i = 0; i < imageUris.size(); i++) {
+            int index = i;
+            EXECUTOR.execute(() -> {
+                if (failed.get()) {
+                    return;
+                }
                 try {
-                    return compressImageSync(context, imageUri);
+                    results[index] = compressImageSync(appContext, imageUris.get(index));
+                    if (remaining.decrementAndGet() == 0) {
+                        MAIN_HANDLER.post(() -> callback.onCompressed(new ArrayList<>(Arrays.asList(results))));
+                    }
                 } catch (Exception e) {
-                    exception = e;
-                    Log.e(TAG, "Error compressing image", e);
-                    return null;
-                }
-            }
-
-            @Override
-            protected void onPostExecute(Uri result) {
-                if (result != null) {
-                    callback.onCompressed(result);
-                } else {
-                    callback.onError(exception);
+                    Log.e(TAG, "Error compressing image " + index, e);
+                    if (failed.compareAndSet(false, true)) {
+                        MAIN_HANDLER.post(() -> callback.onError(e));
+                    }
                 }
-            }
-        }.execute();
+            });
+        }
     }
 
     /**
@@ -74,107 +184,360 @@ public class ImageCompressor {
      * @throws IOException if compression fails
      */
     public static Uri compressImageSync(Context context, Uri imageUri) throws IOException {
-        InputStream inputStream = context.getContentResolver().openInputStream(imageUri);
-        if (inputStream == null) {
-            throw new IOException("Cannot open input stream for Uri: " + imageUri);
+        StageTimings timings = new StageTimings();
+        Uri result = compressImageSync(context, imageUri, timings);
+        Log.d(TAG, "Compressed " + imageUri + ": " + timings);
+        return result;
+    }
+
+    /**
+     * Synchronous image compression that reports per-stage timings
+     *
+     * @param context Application context
+     * @param imageUri Original image Uri
+     * @param timings Filled in with the time spent in each stage
+     * @return Uri of compressed image
+     * @throws IOException if compression fails
+     */
+    public static Uri compressImageSync(Context context, Uri imageUri, StageTimings timings) throws IOException {
+        BitmapPool pool = Glide.get(context).getBitmapPool();
+        Bitmap bitmap = decodeOriented(context, imageUri, MAX_WIDTH, MAX_HEIGHT, pool, timings);
+
+        // 4. Stream JPEG bytes straight to the file
+        long start = SystemClock.elapsedRealtime();
+        File compressedFile = newOutputFile(context);
+        try {
+            writeJpeg(bitmap, compressedFile, QUALITY);
+        } finally {
+            pool.put(bitmap);
         }
+        timings.encodeMs = SystemClock.elapsedRealtime() - start;
 
-        // Decode image dimensions
-        BitmapFactory.Options options = new BitmapFactory.Options();
-        options.inJustDecodeBounds = true;
-        BitmapFactory.decodeStream(inputStream, null, options);
-        inputStream.close();
+        return Uri.fromFile(compressedFile);
+    }
 
-        // Calculate sample size for downsampling
-        options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight);
-        options.inJustDecodeBounds = false;
+    /**
+     * Produce thumb, medium and full-size JPEGs from one decode, asynchronously
+     *
+     * @param context Application context
+     * @param imageUri Original image Uri
+     * @param callback Callback with local file Uris, called on the main thread
+     */
+    public static void compressVariants(Context context, Uri imageUri, VariantsCallback callback) {
+        Context appContext = context.getApplicationContext();
+        EXECUTOR.execute(() -> {
+            try {
+                ImageVariants result = compressVariantsSync(appContext, imageUri);
+                MAIN_HANDLER.post(() -> callback.onCompressed(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Error compressing image variants", e);
+                MAIN_HANDLER.post(() -> callback.onError(e));
+            }
+        });
+    }
+
+    /**
+     * Synchronously produce thumb, medium and full-size JPEGs. The source is
+     * decoded once at full size; each smaller variant is scaled down from
+     * the one before it.
+     *
+     * @param context Application context
+     * @param imageUri Original image Uri
+     * @return Local file Uris of the three variants, with content hash and BlurHash
+     * @throws IOException if compression fails
+     */
+    public static ImageVariants compressVariantsSync(Context context, Uri imageUri) throws IOException {
+        StageTimings timings = new StageTimings();
+        BitmapPool pool = Glide.get(context).getBitmapPool();
+        Bitmap full = decodeOriented(context, imageUri,
+                ImageVariants.FULL_SIZE, ImageVariants.FULL_SIZE, pool, timings);
+
+        long start = SystemClock.elapsedRealtime();
+        List<File> written = new ArrayList<>(3);
+        Bitmap medium = null;
+        Bitmap thumb = null;
+        String contentHash;
+        String blurHash;
+        try {
+            // Hash the full-size bytes as they are written; the same photo
+            // compresses to the same bytes, so this identifies repeat uploads
+            MessageDigest digest = sha256();
+            written.add(newOutputFile(context));
+            writeJpeg(full, written.get(0), QUALITY, digest);
+            contentHash = toHex(digest.digest());
 
-        // Decode with sample size
-        inputStream = context.getContentResolver().openInputStream(imageUri);
-        Bitmap bitmap = BitmapFactory.decodeStream(inputStream, null, options);
-        inputStream.close();
+            medium = downscale(full, ImageVariants.MEDIUM_SIZE, pool);
+            written.add(newOutputFile(context));
+            writeJpeg(medium, written.get(1), QUALITY);
 
-        if (bitmap == null) {
-            throw new IOException("Failed to decode bitmap from Uri: " + imageUri);
+            thumb = downscale(medium, ImageVariants.THUMB_SIZE, pool);
+            written.add(newOutputFile(context));
+            writeJpeg(thumb, written.get(2), QUALITY);
+
+            blurHash = blurHash(thumb, pool);
+        } catch (IOException e) {
+            for (File file : written) {
+                file.delete();
+            }
+            throw e;
+        } finally {
+            recycleAll(pool, full, medium, thumb);
         }
+        timings.encodeMs = SystemClock.elapsedRealtime() - start;
+        Log.d(TAG, "Compressed variants of " + imageUri + ": " + timings);
 
-        // Fix orientation if needed
-        bitmap = fixOrientation(context, bitmap, imageUri);
+        return new ImageVariants(Uri.fromFile(written.get(2)).toString(),
+                Uri.fromFile(written.get(1)).toString(),
+                Uri.fromFile(written.get(0)).toString(),
+                contentHash, blurHash);
+    }
 
-        // Create temp file for compressed image
-        File compressedFile = new File(context.getCacheDir(), "compressed_" + System.currentTimeMillis() + ".jpg");
-        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    // BlurHash from a tiny copy of the thumbnail; the hash keeps only the broad shapes anyway
+    private static String blurHash(Bitmap thumb, BitmapPool pool) {
+        Bitmap tiny = downscale(thumb, BLUR_HASH_SOURCE_SIZE, pool);
+        try {
+            int width = tiny.getWidth();
+            int height = tiny.getHeight();
+            int[] pixels = new int[width * height];
+            tiny.getPixels(pixels, 0, width, 0, 0, width, height);
+            return BlurHash.encode(pixels, width, height,
+                    BlurHash.DEFAULT_COMPONENTS_X, BlurHash.DEFAULT_COMPONENTS_Y);
+        } finally {
+            if (tiny != thumb) {
+                pool.put(tiny);
+            }
+        }
+    }
 
-        // Compress to JPEG
-        bitmap.compress(Bitmap.CompressFormat.JPEG, QUALITY, outputStream);
+    // Steps 1-3: read the header, decode to size and apply EXIF orientation
+    private static Bitmap decodeOriented(Context context, Uri imageUri, int maxWidth, int maxHeight,
+                                         BitmapPool pool, StageTimings timings) throws IOException {
+        Bitmap bitmap;
+        int orientation;
 
-        // Write to file
-        FileOutputStream fileOutputStream = new FileOutputStream(compressedFile);
-        fileOutputStream.write(outputStream.toByteArray());
-        fileOutputStream.close();
+        try (RewindableSource source = new RewindableSource(context, imageUri)) {
+            // 1. Bounds and EXIF from the same buffered header
+            long start = SystemClock.elapsedRealtime();
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeStream(source.stream(), null, bounds);
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                throw new IOException("Failed to read image bounds from Uri: " + imageUri);
+            }
+            source.rewind();
+            orientation = readOrientation(source.stream());
+            source.rewind();
+            timings.headerMs = SystemClock.elapsedRealtime() - start;
 
-        // Recycle bitmap to free memory
-        bitmap.recycle();
+            // 2. Decode straight to the target size
+            start = SystemClock.elapsedRealtime();
+            bitmap = decodeScaled(source, bounds.outWidth, bounds.outHeight, maxWidth, maxHeight, pool);
+            timings.decodeMs = SystemClock.elapsedRealtime() - start;
+            timings.streamOpens = source.opens;
+        }
 
-        // Return Uri for the compressed file
-        return Uri.fromFile(compressedFile);
+        // 3. Apply EXIF orientation into a pooled bitmap
+        long start = SystemClock.elapsedRealtime();
+        bitmap = orient(bitmap, orientation, pool);
+        timings.orientMs = SystemClock.elapsedRealtime() - start;
+        return bitmap;
     }
 
     /**
-     * Calculate appropriate sample size for downsampling
+     * Target size that fits within maxWidth x maxHeight, keeping aspect ratio.
+     * Never upscales.
      */
-    private static int calculateSampleSize(int width, int height) {
-        int sampleSize = 1;
+    private static int[] targetSize(int width, int height, int maxWidth, int maxHeight) {
+        double scale = Math.min(1.0, Math.min((double) maxWidth / width, (double) maxHeight / height));
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))
+        };
+    }
 
-        while (width / sampleSize > MAX_WIDTH || height / sampleSize > MAX_HEIGHT) {
+    /**
+     * Largest power-of-two sample size that keeps the image at or above the target
+     */
+    private static int calculateSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
             sampleSize *= 2;
         }
-
         return sampleSize;
     }
 
+    // Power-of-two sampling gets close cheaply; density scaling lands exactly on the target
+    private static Bitmap decodeScaled(RewindableSource source, int width, int height,
+                                       int maxWidth, int maxHeight, BitmapPool pool) throws IOException {
+        int[] target = targetSize(width, height, maxWidth, maxHeight);
+        int sampleSize = calculateSampleSize(width, height, target[0], target[1]);
+        int sampledWidth = (int) Math.ceil((double) width / sampleSize);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        if (sampledWidth != target[0]) {
+            options.inScaled = true;
+            options.inDensity = sampledWidth;
+            options.inTargetDensity = target[0];
+        }
+        // One pixel of slack for rounding in the decoder's scaled size
+        options.inMutable = true;
+        options.inBitmap = pool.getDirty(target[0] + 1, target[1] + 1, Bitmap.Config.ARGB_8888);
+
+        Bitmap bitmap;
+        try {
+            bitmap = BitmapFactory.decodeStream(source.stream(), null, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap didn't fit after all; decode into a fresh one
+            pool.put(options.inBitmap);
+            options.inBitmap = null;
+            source.rewind();
+            bitmap = BitmapFactory.decodeStream(source.stream(), null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Failed to decode bitmap");
+        }
+        return bitmap;
+    }
+
     /**
-     * Fix image orientation based on EXIF data
+     * Scale a bitmap down so its long edge fits maxSize, into a pooled bitmap.
+     * Halves at most once per draw so bilinear filtering doesn't skip pixels.
+     * Returns the input itself if it already fits; it is never recycled here.
      */
-    private static Bitmap fixOrientation(Context context, Bitmap bitmap, Uri imageUri) {
-        try {
-            InputStream inputStream = context.getContentResolver().openInputStream(imageUri);
-            if (inputStream == null) {
-                return bitmap;
+    private static Bitmap downscale(Bitmap source, int maxSize, BitmapPool pool) {
+        int[] target = targetSize(source.getWidth(), source.getHeight(), maxSize, maxSize);
+        Bitmap current = source;
+        while (current.getWidth() != target[0] || current.getHeight() != target[1]) {
+            int width = Math.max(target[0], (current.getWidth() + 1) / 2);
+            int height = Math.max(target[1], (current.getHeight() + 1) / 2);
+            Bitmap next = pool.get(width, height, Bitmap.Config.ARGB_8888);
+            Canvas canvas = new Canvas(next);
+            canvas.drawBitmap(current, null, new Rect(0, 0, width, height), SCALE_PAINT);
+            canvas.setBitmap(null);
+            if (current != source) {
+                pool.put(current);
             }
+            current = next;
+        }
+        return current;
+    }
 
-            ExifInterface exif = new ExifInterface(inputStream);
-            int orientation = exif.getAttributeInt(
-                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-
-            Matrix matrix = new Matrix();
-            switch (orientation) {
-                case ExifInterface.ORIENTATION_ROTATE_90:
-                    matrix.postRotate(90);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_180:
-                    matrix.postRotate(180);
-                    break;
-                case ExifInterface.ORIENTATION_ROTATE_270:
-                    matrix.postRotate(270);
-                    break;
-                case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
-                    matrix.preScale(-1.0f, 1.0f);
-                    break;
-                case ExifInterface.ORIENTATION_FLIP_VERTICAL:
-                    matrix.preScale(1.0f, -1.0f);
-                    break;
-                default:
-                    return bitmap;
+    // Return each distinct bitmap to the pool once
+    private static void recycleAll(BitmapPool pool, Bitmap... bitmaps) {
+        for (int i = 0; i < bitmaps.length; i++) {
+            boolean seen = bitmaps[i] == null;
+            for (int j = 0; j < i && !seen; j++) {
+                seen = bitmaps[j] == bitmaps[i];
             }
+            if (!seen) {
+                pool.put(bitmaps[i]);
+            }
+        }
+    }
 
-            inputStream.close();
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
 
-            // Create a new bitmap with the rotation applied
-            return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static File newOutputFile(Context context) {
+        return new File(context.getCacheDir(), "compressed_" + UUID.randomUUID() + ".jpg");
+    }
+
+    private static int readOrientation(InputStream in) {
+        try {
+            ExifInterface exif = new ExifInterface(in);
+            return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read EXIF orientation: " + e.getMessage());
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    // Returns the input unchanged for upright images; otherwise recycles it into the pool
+    private static Bitmap orient(Bitmap bitmap, int orientation, BitmapPool pool) {
+        Bitmap oriented = TransformationUtils.rotateImageExif(pool, bitmap, orientation);
+        if (oriented != bitmap) {
+            pool.put(bitmap);
+        }
+        return oriented;
+    }
+
+    private static void writeJpeg(Bitmap bitmap, File file, int quality) throws IOException {
+        writeJpeg(bitmap, file, quality, null);
+    }
+
+    // With a digest, the bytes are hashed on their way to the file
+    private static void writeJpeg(Bitmap bitmap, File file, int quality, MessageDigest digest) throws IOException {
+        OutputStream fileOut = new FileOutputStream(file);
+        if (digest != null) {
+            fileOut = new DigestOutputStream(fileOut, digest);
+        }
+        try (OutputStream out = new BufferedOutputStream(fileOut, BUFFER_SIZE)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, out)) {
+                throw new IOException("Failed to encode JPEG");
+            }
         } catch (IOException e) {
-            Log.e(TAG, "Error fixing image orientation", e);
-            return bitmap;
+            file.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Content stream that can be rewound to the start: uses the buffered
+     * mark while it holds, and reopens the Uri only if the mark was exceeded
+     */
+    private static final class RewindableSource implements Closeable {
+        private final Context context;
+        private final Uri uri;
+        private BufferedInputStream stream;
+        int opens;
+
+        RewindableSource(Context context, Uri uri) throws IOException {
+            this.context = context;
+            this.uri = uri;
+            open();
+        }
+
+        InputStream stream() {
+            return stream;
+        }
+
+        void rewind() throws IOException {
+            try {
+                stream.reset();
+            } catch (IOException e) {
+                stream.close();
+                open();
+            }
+        }
+
+        private void open() throws IOException {
+            InputStream raw = context.getContentResolver().openInputStream(uri);
+            if (raw == null) {
+                throw new IOException("Cannot open input stream for Uri: " + uri);
+            }
+            stream = new BufferedInputStream(raw, BUFFER_SIZE);
+            stream.mark(MARK_LIMIT);
+            opens++;
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,104 @@
+package com.imaginit.hyperplux.utils;
+
+import android.text.TextUtils;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * The three sizes an uploaded image is stored at, and the rule for picking
+ * one when loading it.
+ * <p>
+ * Holds local file Uris straight after compression and download URLs after
+ * upload. Lists load the smallest variant that still covers the view, so a
+ * thumbnail row never pulls down a full-size photo.
+ */
+public final class ImageVariants {
+    public static final int THUMB_SIZE = 256;
+    public static final int MEDIUM_SIZE = 1024;
+    // Full size is capped too, so it stays decodable on low-memory devices
+    public static final int FULL_SIZE = 2048;
+
+    private final String thumb;
+    private final String medium;
+    private final String full;
+    private final String contentHash; // SHA-256 of the full-size JPEG, or null
+    private final String blurHash; // BlurHash placeholder, or null
+
+    public ImageVariants(String thumb, String medium, String full) {
+        this(thumb, medium, full, null, null);
+    }
+
+    public ImageVariants(String thumb, String medium, String full, String contentHash) {
+        this(thumb, medium, full, contentHash, null);
+    }
+
+    public ImageVariants(String thumb, String medium, String full, String contentHash, String blurHash) {
+        this.thumb = thumb;
+        this.medium = medium;
+        this.full = full;
+        this.contentHash = contentHash;
+        this.blurHash = blurHash;
+    }
+
+    public String getThumb() { return thumb; }
+    public String getMedium() { return medium; }
+    public String getFull() { return full; }
+    public String getContentHash() { return contentHash; }
+    public String getBlurHash() { return blurHash; }
+
+    /**
+     * Smallest variant at least targetSize pixels on its long edge. Falls
+     * back to the next larger variant that exists, so images uploaded before
+     * variants were generated still load from their single URL.
+     * @param targetSize Long edge of the view in pixels, or 0 if unknown
+     * @return URL to load, or null if there are none
+     */
+    public static String pick(int targetSize, String thumb, String medium, String full) {
+        if (targetSize > 0 && targetSize <= THUMB_SIZE && !TextUtils.isEmpty(thumb)) {
+            return thumb;
+        }
+        if (targetSize > 0 && targetSize <= MEDIUM_SIZE && !TextUtils.isEmpty(medium)) {
+            return medium;
+        }
+        if (!TextUtils.isEmpty(full)) {
+            return full;
+        }
+        return !TextUtils.isEmpty(medium) ? medium : thumb;
+    }
+
+    /**
+     * Long edge a view will be drawn at, in pixels. Uses the laid-out size
+     * when there is one, then fixed layout params. Before layout, a view that
+     * matches its parent's width (e.g. an image in a fixed-width card) takes
+     * the width of the nearest ancestor with a known one; the screen width is
+     * only the last resort.
+     */
+    public static int targetSize(View view) {
+        if (view.getWidth() > 0 && view.getHeight() > 0) {
+            return Math.max(view.getWidth(), view.getHeight());
+        }
+        ViewGroup.LayoutParams params = view.getLayoutParams();
+        int width = params != null && params.width > 0 ? params.width : knownWidth(view);
+        int height = params != null && params.height > 0 ? params.height : 0;
+        return Math.max(width, height);
+    }
+
+    // Width of the first ancestor that is laid out or has a fixed width
+    private static int knownWidth(View view) {
+        View current = view;
+        while (current.getLayoutParams() != null
+                && current.getLayoutParams().width == ViewGroup.LayoutParams.MATCH_PARENT
+                && current.getParent() instanceof View) {
+            View parent = (View) current.getParent();
+            if (parent.getWidth() > 0) {
+                return parent.getWidth();
+            }
+            ViewGroup.LayoutParams parentParams = parent.getLayoutParams();
+            if (parentParams != null && parentParams.width > 0) {
+                return parentParams.width;
+            }
+            current = parent;
+        }
+        return view.getResources().getDisplayMetrics().widthPixels;
+    }
+}
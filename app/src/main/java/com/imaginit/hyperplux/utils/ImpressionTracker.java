@@ -0,0 +1,298 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.AssetDao;
+import com.imaginit.hyperplux.database.UserDao;
+import com.imaginit.hyperplux.models.Asset;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Counts asset views from what the user actually saw.
+ * <p>
+ * A list item counts as an impression once it has been at least half
+ * visible for DWELL_MS; opening an asset counts straight away. Each asset
+ * counts once per session. Impressions are buffered and flushed together:
+ * one Room transaction, one Firestore write batch of sharded counter
+ * increments, and trending updates, instead of a write per view.
+ * <p>
+ * Marketplace listings belong to other users, and their local IDs mean
+ * nothing here, so their views only go to the remote counters of the
+ * listing document and its owner.
+ */
+public class ImpressionTracker {
+    private static final String TAG = "ImpressionTracker";
+
+    // Visibility
+    private static final double MIN_VISIBLE_FRACTION = 0.5;
+    private static final long DWELL_MS = 1000;
+
+    // Session and batching
+    private static final long SESSION_TIMEOUT_MS = 30 * 60 * 1000;
+    private static final long FLUSH_DELAY_MS = 30 * 1000;
+    private static final int MAX_BUFFERED = 50;
+
+    private static volatile ImpressionTracker instance;
+
+    private final AppDatabase database;
+    private final AssetDao assetDao;
+    private final UserDao userDao;
+    private final ShardedCounter counters;
+    private final TrendingTracker trending;
+    // Single writer keeps flushes from overlapping
+    private final ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    // Guarded by this
+    private final Set<String> seenThisSession = new HashSet<>(); // views counter paths
+    private final Map<Integer, String> buffer = new LinkedHashMap<>(); // asset ID -> owner ID
+    private final Map<String, String> listingBuffer = new LinkedHashMap<>(); // listing doc ID -> owner ID
+    private long lastImpressionAt;
+    private boolean flushScheduled;
+
+    public static ImpressionTracker getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImpressionTracker.class) {
+                if (instance == null) {
+                    instance = new ImpressionTracker(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ImpressionTracker(AppDatabase database) {
+        this.database = database;
+        this.assetDao = database.assetDao();
+        this.userDao = database.userDao();
+        this.counters = ShardedCounter.getInstance();
+        this.trending = TrendingTracker.getInstance();
+    }
+
+    /**
+     * Count a view of an asset, at most once per session
+     * @param asset Asset the user saw
+     */
+    public synchronized void recordImpression(Asset asset) {
+        if (asset == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastImpressionAt > SESSION_TIMEOUT_MS) {
+            seenThisSession.clear();
+        }
+        lastImpressionAt = now;
+
+        if (!seenThisSession.add(viewsCounter(asset))) {
+            return;
+        }
+        if (asset.getListingId() != null) {
+            listingBuffer.put(asset.getListingId(), asset.getUserId());
+        } else {
+            buffer.put(asset.getId(), asset.getUserId());
+        }
+
+        if (buffer.size() + listingBuffer.size() >= MAX_BUFFERED) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            flushExecutor.schedule(this::flushNow, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Write buffered impressions now, e.g. when the screen is paused
+     */
+    public void flush() {
+        flushExecutor.execute(this::flushNow);
+    }
+
+    /**
+     * Start counting impressions for a list. Call stop() on the returned
+     * viewport when the view is destroyed.
+     * @param recyclerView List to watch
+     * @param assetAt Asset at an adapter position, or null
+     */
+    public Viewport watch(RecyclerView recyclerView, IntFunction<Asset> assetAt) {
+        return new Viewport(recyclerView, assetAt);
+    }
+
+    private void flushNow() {
+        Map<Integer, String> batch;
+        Map<String, String> listingBatch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (buffer.isEmpty() && listingBuffer.isEmpty()) {
+                return;
+            }
+            batch = new LinkedHashMap<>(buffer);
+            buffer.clear();
+            listingBatch = new LinkedHashMap<>(listingBuffer);
+            listingBuffer.clear();
+        }
+
+        List<Integer> assetIds = new ArrayList<>(batch.keySet());
+        Map<String, Integer> viewsByOwner = countByOwner(batch.values());
+
+        if (!assetIds.isEmpty()) {
+            try {
+                database.runInTransaction(() -> {
+                    assetDao.incrementViewsBatch(assetIds);
+                    for (Map.Entry<String, Integer> entry : viewsByOwner.entrySet()) {
+                        userDao.incrementViews(entry.getKey(), entry.getValue());
+                    }
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "Error saving impressions: " + e.getMessage(), e);
+            }
+        }
+
+        // Sharded counters so popular assets don't hotspot, all in one write batch
+        Map<String, Long> increments = new HashMap<>();
+        for (int assetId : assetIds) {
+            increments.put(ShardedCounter.assetCounter(assetId, "views"), 1L);
+            trending.record(assetId, TrendingTracker.VIEW_WEIGHT);
+        }
+        for (String listingId : listingBatch.keySet()) {
+            increments.put(ShardedCounter.assetCounter(listingId, "views"), 1L);
+        }
+        Map<String, Integer> remoteViewsByOwner = countByOwner(listingBatch.values());
+        for (Map.Entry<String, Integer> entry : viewsByOwner.entrySet()) {
+            Integer listingViews = remoteViewsByOwner.get(entry.getKey());
+            remoteViewsByOwner.put(entry.getKey(),
+                    entry.getValue() + (listingViews != null ? listingViews : 0));
+        }
+        for (Map.Entry<String, Integer> entry : remoteViewsByOwner.entrySet()) {
+            increments.put(ShardedCounter.userCounter(entry.getKey(), "totalViews"), (long) entry.getValue());
+        }
+        counters.incrementAll(increments);
+
+        Log.d(TAG, "Flushed " + (assetIds.size() + listingBatch.size()) + " impressions");
+    }
+
+    private static Map<String, Integer> countByOwner(Iterable<String> ownerIds) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String ownerId : ownerIds) {
+            if (ownerId != null) {
+                Integer count = counts.get(ownerId);
+                counts.put(ownerId, count != null ? count + 1 : 1);
+            }
+        }
+        return counts;
+    }
+
+    // Identifies an asset across local rows and marketplace listings
+    private static String viewsCounter(Asset asset) {
+        return asset.getListingId() != null
+                ? ShardedCounter.assetCounter(asset.getListingId(), "views")
+                : ShardedCounter.assetCounter(asset.getId(), "views");
+    }
+
+    /**
+     * Watches one RecyclerView and records items that stay in view. Checks
+     * run on any scroll or layout in the window, so lists nested in a
+     * scroll view are covered too.
+     */
+    public final class Viewport {
+        private final RecyclerView recyclerView;
+        private final IntFunction<Asset> assetAt;
+        private final Map<String, Long> visibleSince = new HashMap<>(); // views counter path -> time
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final Rect visibleRect = new Rect();
+        private final Runnable checkRunnable = this::check;
+        private final ViewTreeObserver.OnScrollChangedListener scrollListener = this::check;
+        private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = this::check;
+
+        private Viewport(RecyclerView recyclerView, IntFunction<Asset> assetAt) {
+            this.recyclerView = recyclerView;
+            this.assetAt = assetAt;
+            ViewTreeObserver observer = recyclerView.getViewTreeObserver();
+            observer.addOnScrollChangedListener(scrollListener);
+            observer.addOnGlobalLayoutListener(layoutListener);
+        }
+
+        private void check() {
+            handler.removeCallbacks(checkRunnable);
+            if (!recyclerView.isShown()) {
+                visibleSince.clear();
+                return;
+            }
+
+            long now = SystemClock.uptimeMillis();
+            Set<String> stillVisible = new HashSet<>();
+            boolean waiting = false;
+            for (int i = 0; i < recyclerView.getChildCount(); i++) {
+                View child = recyclerView.getChildAt(i);
+                int position = recyclerView.getChildAdapterPosition(child);
+                if (position == RecyclerView.NO_POSITION || !isMostlyVisible(child)) {
+                    continue;
+                }
+                Asset asset = assetAt.apply(position);
+                if (asset == null) {
+                    continue;
+                }
+
+                String key = viewsCounter(asset);
+                stillVisible.add(key);
+                Long since = visibleSince.get(key);
+                if (since == null) {
+                    visibleSince.put(key, now);
+                    waiting = true;
+                } else if (now - since >= DWELL_MS) {
+                    recordImpression(asset);
+                } else {
+                    waiting = true;
+                }
+            }
+            // Anything that left the viewport starts its dwell over
+            visibleSince.keySet().retainAll(stillVisible);
+
+            // Re-check once the dwell has passed, even if nothing scrolls
+            if (waiting) {
+                handler.postDelayed(checkRunnable, DWELL_MS);
+            }
+        }
+
+        private boolean isMostlyVisible(View child) {
+            if (!child.getGlobalVisibleRect(visibleRect)) {
+                return false;
+            }
+            long area = (long) child.getWidth() * child.getHeight();
+            long visibleArea = (long) visibleRect.width() * visibleRect.height();
+            return area > 0 && visibleArea >= area * MIN_VISIBLE_FRACTION;
+        }
+
+        /**
+         * Stop watching, e.g. in onDestroyView
+         */
+        public void stop() {
+            handler.removeCallbacks(checkRunnable);
+            ViewTreeObserver observer = recyclerView.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(scrollListener);
+                observer.removeOnGlobalLayoutListener(layoutListener);
+            }
+            visibleSince.clear();
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.MarketplaceListingDao;
+import com.imaginit.hyperplux.database.RemoteKeyDao;
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.MarketplaceListing;
+import com.imaginit.hyperplux.models.RemoteKey;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Fills the local marketplace cache with pages from Firestore.
+ * <p>
+ * The UI always pages from Room (getPage) and only
+ * asks for a network page when the local rows run out. Each request fetches
+ * PAGE_SIZE + 1 documents; the extra one tells us whether another page
+ * exists, so no second probe query is needed. The page and its cursor are
+ * written in one transaction, so paging resumes where it left off after
+ * back navigation or a restart, and cached pages scroll offline.
+ * <p>
+ * One network load runs at a time, since overlapping loads would write the
+ * same cursor. A next-page request made during a load completes with that
+ * load, whose page it would have asked for; a refresh made during a
+ * next-page load is queued and runs from the first page once it ends.
+ * <p>
+ * Listings are stored by Firestore document ID in marketplace_listings,
+ * never in the assets table: other users' local asset IDs would collide
+ * with ours, and the change log would back them up as our own.
+ */
+public class MarketplaceRemoteMediator {
+    private static final String TAG = "MarketplaceMediator";
+    public static final int PAGE_SIZE = 20;
+
+    private static volatile MarketplaceRemoteMediator instance;
+
+    private final AppDatabase database;
+    private final MarketplaceListingDao listingDao;
+    private final RemoteKeyDao remoteKeyDao;
+    private final FirebaseFirestore firestore;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Guarded by this
+    private boolean loading;
+    private boolean loadingRefresh;
+    private final List<LoadCallback> inFlight = new ArrayList<>(); // complete with the running load
+    private final List<LoadCallback> queuedRefresh = new ArrayList<>(); // complete with the refresh after it
+
+    /**
+     * Load completion; error is null on success. May be called on any thread.
+     */
+    public interface LoadCallback {
+        void onComplete(Exception error);
+    }
+
+    public static MarketplaceRemoteMediator getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MarketplaceRemoteMediator.class) {
+                if (instance == null) {
+                    instance = new MarketplaceRemoteMediator(AppDatabase.getDatabase(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MarketplaceRemoteMediator(AppDatabase database) {
+        this.database = database;
+        this.listingDao = database.marketplaceListingDao();
+        this.remoteKeyDao = database.remoteKeyDao();
+        this.firestore = FirebaseFirestore.getInstance();
+    }
+
+    /**
+     * The first limit cached marketplace assets, newest first
+     */
+    public LiveData<List<Asset>> getPage(int limit) {
+        return Transformations.map(listingDao.getPage(limit), MarketplaceListing::toAssets);
+    }
+
+    /**
+     * A cached marketplace asset by its Firestore document ID, or null
+     * once it is no longer listed
+     */
+    public LiveData<Asset> getListing(String docId) {
+        return Transformations.map(listingDao.getByDocId(docId),
+                listing -> listing != null ? listing.toAsset() : null);
+    }
+
+    /**
+     * Refetch from the first page, e.g. on pull-to-refresh
+     */
+    public void refresh(LoadCallback callback) {
+        load(true, callback);
+    }
+
+    /**
+     * Fetch the page after the stored cursor. Does nothing once the end
+     * has been reached.
+     */
+    public void loadNextPage(LoadCallback callback) {
+        load(false, callback);
+    }
+
+    private void load(boolean refresh, LoadCallback callback) {
+        synchronized (this) {
+            if (loading) {
+                if (refresh && !loadingRefresh) {
+                    // The running load continues from an old cursor; start over after it
+                    queuedRefresh.add(callback);
+                } else {
+                    inFlight.add(callback);
+                }
+                return;
+            }
+            loading = true;
+            loadingRefresh = refresh;
+            inFlight.add(callback);
+        }
+        fetch(refresh);
+    }
+
+    private void fetch(boolean refresh) {
+        executor.execute(() -> {
+            RemoteKey key = refresh ? null : remoteKeyDao.getKeySync(RemoteKey.LABEL_MARKETPLACE);
+            if (key != null && key.isEndReached()) {
+                finish(null);
+                return;
+            }
+
+            Query query = firestore.collection("assets")
+                    .whereEqualTo("forSale", true)
+                    .orderBy("lastInteractionDate", Query.Direction.DESCENDING)
+                    .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+            if (key != null && key.getCursorTime() != null) {
+                query = query.startAfter(new Date(key.getCursorTime()), key.getCursorId());
+            }
+
+            query.limit(PAGE_SIZE + 1).get()
+                    .addOnSuccessListener(snapshot -> executor.execute(() -> {
+                        try {
+                            savePage(snapshot, key, refresh);
+                            finish(null);
+                        } catch (Exception e) {
+                            Log.e(TAG, "Error saving marketplace page: " + e.getMessage(), e);
+                            finish(e);
+                        }
+                    }))
+                    .addOnFailureListener(e -> {
+                        Log.e(TAG, "Error fetching marketplace page: " + e.getMessage(), e);
+                        finish(e);
+                    });
+        });
+    }
+
+    private void savePage(QuerySnapshot snapshot, RemoteKey previous, boolean refresh) {
+        List<DocumentSnapshot> documents = snapshot.getDocuments();
+        boolean endReached = documents.size() <= PAGE_SIZE;
+        List<DocumentSnapshot> page = endReached ? documents : documents.subList(0, PAGE_SIZE);
+
+        long now = System.currentTimeMillis();
+        List<MarketplaceListing> listings = new ArrayList<>(page.size());
+        for (DocumentSnapshot document : page) {
+            Asset asset = document.toObject(Asset.class);
+            if (asset != null) {
+                Date time = document.getDate("lastInteractionDate");
+                listings.add(MarketplaceListing.fromAsset(document.getId(),
+                        time != null ? time.getTime() : 0, asset, now));
+            }
+        }
+
+        // The cursor is the last document of this page, not the look-ahead one
+        Long cursorTime = previous != null ? previous.getCursorTime() : null;
+        String cursorId = previous != null ? previous.getCursorId() : null;
+        if (!page.isEmpty()) {
+            DocumentSnapshot last = page.get(page.size() - 1);
+            Date lastTime = last.getDate("lastInteractionDate");
+            cursorTime = lastTime != null ? lastTime.getTime() : null;
+            cursorId = last.getId();
+        }
+        RemoteKey next = new RemoteKey(RemoteKey.LABEL_MARKETPLACE, cursorTime, cursorId, endReached, now);
+
+        database.runInTransaction(() -> {
+            if (refresh) {
+                // Drops listings that were sold or withdrawn since the last fetch
+                listingDao.clear();
+            }
+            listingDao.insertAll(listings);
+            remoteKeyDao.insert(next);
+        });
+        Log.d(TAG, "Cached " + listings.size() + " marketplace assets" + (endReached ? " (end)" : ""));
+    }
+
+    // Complete the callbacks of the load that ended, then start a queued refresh
+    private void finish(Exception error) {
+        List<LoadCallback> done;
+        boolean refreshNext;
+        synchronized (this) {
+            done = new ArrayList<>(inFlight);
+            inFlight.clear();
+            refreshNext = !queuedRefresh.isEmpty();
+            if (refreshNext) {
+                inFlight.addAll(queuedRefresh);
+                queuedRefresh.clear();
+                loadingRefresh = true;
+            } else {
+                loading = false;
+            }
+        }
+        for (LoadCallback callback : done) {
+            callback.onComplete(error);
+        }
+        if (refreshNext) {
+            fetch(true);
+        }
+    }
+}
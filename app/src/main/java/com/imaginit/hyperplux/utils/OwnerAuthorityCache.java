@@ -0,0 +1,203 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.OwnerAuthorityDao;
+import com.imaginit.hyperplux.models.OwnerAuthority;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owner-authority scores for feed ranking, kept in memory and in Room.
+ * <p>
+ * Call prefetch for a candidate set before ranking (off the main thread);
+ * the returned map is then read by the ranking loop without any I/O. Scores
+ * older than the TTL are still served, and a background refresh recomputes them.
+ * Scores for owners not seen in a week are pruned once a day.
+ */
+public class OwnerAuthorityCache {
+    private static final String TAG = "OwnerAuthorityCache";
+    private static final long TTL_MS = 24 * 60 * 60 * 1000;
+    private static final long PRUNE_INTERVAL_MS = TTL_MS;
+    private static final long MAX_AGE_MS = 7 * TTL_MS;
+
+    // Stay well under SQLite's 999 bound-parameter limit
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    private static volatile OwnerAuthorityCache instance;
+
+    private final OwnerAuthorityDao dao;
+    private final Map<String, OwnerAuthority> memory = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refreshExecutor = Executors.newSingleThreadExecutor();
+    private volatile long lastPrune;
+
+    public static OwnerAuthorityCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (OwnerAuthorityCache.class) {
+                if (instance == null) {
+                    instance = new OwnerAuthorityCache(AppDatabase.getDatabase(context).ownerAuthorityDao());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private OwnerAuthorityCache(OwnerAuthorityDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Load authority scores for a set of owners. Must be called off the main thread.
+     * @param ownerIds Owner user IDs
+     * @return Authority multiplier by owner ID, one entry per owner
+     */
+    public Map<String, Double> prefetch(Collection<String> ownerIds) {
+        long now = System.currentTimeMillis();
+        Map<String, Double> scores = new HashMap<>();
+        List<String> stale = new ArrayList<>();
+
+        // 1. Memory
+        List<String> notInMemory = new ArrayList<>();
+        for (String ownerId : new LinkedHashSet<>(ownerIds)) {
+            if (ownerId == null) {
+                continue;
+            }
+            OwnerAuthority cached = memory.get(ownerId);
+            if (cached != null) {
+                scores.put(ownerId, cached.getScore());
+                if (now - cached.getComputedAt() >= TTL_MS) {
+                    stale.add(ownerId);
+                }
+            } else {
+                notInMemory.add(ownerId);
+            }
+        }
+
+        // 2. Room, in batches
+        Set<String> missing = new LinkedHashSet<>(notInMemory);
+        for (List<String> batch : batches(notInMemory)) {
+            for (OwnerAuthority stored : dao.getScoresSync(batch)) {
+                memory.put(stored.getUserId(), stored);
+                scores.put(stored.getUserId(), stored.getScore());
+                missing.remove(stored.getUserId());
+                if (now - stored.getComputedAt() >= TTL_MS) {
+                    stale.add(stored.getUserId());
+                }
+            }
+        }
+
+        // 3. Never computed: compute now, it's a local query
+        if (!missing.isEmpty()) {
+            for (OwnerAuthority computed : compute(new ArrayList<>(missing), now)) {
+                scores.put(computed.getUserId(), computed.getScore());
+            }
+        }
+
+        if (!stale.isEmpty()) {
+            scheduleRefresh(stale);
+        }
+        if (now - lastPrune >= PRUNE_INTERVAL_MS) {
+            lastPrune = now;
+            refreshExecutor.execute(() -> prune(now - MAX_AGE_MS));
+        }
+        return scores;
+    }
+
+    /**
+     * Recompute an owner's score, e.g. after their follower count changes.
+     * Call after the change is written to Room.
+     */
+    public void invalidate(String ownerId) {
+        if (ownerId == null) {
+            return;
+        }
+        memory.remove(ownerId);
+        refreshExecutor.execute(() -> {
+            try {
+                compute(Collections.singletonList(ownerId), System.currentTimeMillis());
+            } catch (Exception e) {
+                Log.e(TAG, "Error recomputing owner authority: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    // Drop scores nobody has asked for since the cutoff; they are recomputed if needed again
+    private void prune(long before) {
+        try {
+            dao.deleteOlderThan(before);
+            memory.values().removeIf(authority -> authority.getComputedAt() < before);
+        } catch (Exception e) {
+            Log.e(TAG, "Error pruning owner authority: " + e.getMessage(), e);
+        }
+    }
+
+    // Recompute stale scores in the background; callers keep the stale values meanwhile
+    private void scheduleRefresh(List<String> ownerIds) {
+        List<String> toRefresh = new ArrayList<>();
+        for (String ownerId : ownerIds) {
+            if (refreshing.add(ownerId)) {
+                toRefresh.add(ownerId);
+            }
+        }
+        if (toRefresh.isEmpty()) {
+            return;
+        }
+
+        refreshExecutor.execute(() -> {
+            try {
+                compute(toRefresh, System.currentTimeMillis());
+            } catch (Exception e) {
+                Log.e(TAG, "Error refreshing owner authority: " + e.getMessage(), e);
+            } finally {
+                refreshing.removeAll(toRefresh);
+            }
+        });
+    }
+
+    /**
+     * Compute, store and cache scores for owners. Owners without a local
+     * profile get the neutral score so they aren't recomputed on every call.
+     */
+    private List<OwnerAuthority> compute(List<String> ownerIds, long now) {
+        Map<String, OwnerAuthority> computed = new HashMap<>();
+        for (String ownerId : ownerIds) {
+            computed.put(ownerId, new OwnerAuthority(ownerId, 1.0, now));
+        }
+
+        for (List<String> batch : batches(ownerIds)) {
+            for (OwnerAuthorityDao.OwnerStats stats : dao.getOwnerStatsSync(batch)) {
+                double score = EngagementAlgorithm.calculateOwnerAuthority(
+                        stats.followerCount, stats.overallEngagementScore, stats.completedTransactions);
+                computed.put(stats.userId, new OwnerAuthority(stats.userId, score, now));
+            }
+        }
+
+        List<OwnerAuthority> result = new ArrayList<>(computed.values());
+        dao.insertAll(result);
+        for (OwnerAuthority authority : result) {
+            memory.put(authority.getUserId(), authority);
+        }
+        return result;
+    }
+
+    private static List<List<String>> batches(List<String> ids) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i += QUERY_BATCH_SIZE) {
+            batches.add(ids.subList(i, Math.min(ids.size(), i + QUERY_BATCH_SIZE)));
+        }
+        return batches;
+    }
+}
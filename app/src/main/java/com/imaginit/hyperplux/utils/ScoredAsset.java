@@ -0,0 +1,31 @@
+package com.imaginit.hyperplux.utils;
+
+import com.imaginit.hyperplux.models.Asset;
+
+import java.util.Comparator;
+
+/**
+ * An asset paired with a ranking score. The score lives here rather than on
+ * the asset, so ranking never overwrites the asset's stored engagementScore.
+ */
+public final class ScoredAsset {
+    /**
+     * Best first: higher score, then lower asset ID so ties rank the same every time
+     */
+    public static final Comparator<ScoredAsset> RANK_ORDER = (a, b) -> {
+        int byScore = Double.compare(b.score, a.score);
+        return byScore != 0 ? byScore : Integer.compare(a.asset.getId(), b.asset.getId());
+    };
+
+    private final Asset asset;
+    private final double score;
+
+    public ScoredAsset(Asset asset, double score) {
+        this.asset = asset;
+        this.score = score;
+    }
+
+    public Asset getAsset() { return asset; }
+
+    public double getScore() { return score; }
+}
@@ -0,0 +1,363 @@
+package com.imaginit.hyperplux.utils;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.Exclude;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Distributed counter that spreads increments over N shard documents.
+ * <p>
+ * A single Firestore document sustains roughly one write per second, so hot
+ * totals (a popular user's likes, a trending asset's views) are split into
+ * shards at {counterPath}/shards/{0..N-1}. Each increment hits one random
+ * shard; reads sum all shards and keep the rollup cached for a short TTL.
+ * <p>
+ * Shards hold increments made since sharding was introduced. Callers add them
+ * to the value stored on the parent document, which acts as the baseline.
+ * Local copies of those fields already include the shards, so whole-document
+ * writes must leave them out; see mergeExcept.
+ */
+public class ShardedCounter {
+    public static final int DEFAULT_SHARD_COUNT = 10;
+    public static final long DEFAULT_CACHE_TTL_MS = 60 * 1000;
+
+    private static final String SHARDS_COLLECTION = "shards";
+    private static final String COUNT_FIELD = "count";
+    private static final int MAX_BATCH_WRITES = 500;
+
+    // Counter baselines on the parent documents
+    public static final List<String> ASSET_COUNTER_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("views", "likes"));
+    public static final List<String> USER_COUNTER_FIELDS =
+            Collections.unmodifiableList(Arrays.asList("totalViews", "totalLikes"));
+
+    private static final Map<Class<?>, List<String>> writableFields = new ConcurrentHashMap<>();
+
+    private static volatile ShardedCounter instance;
+
+    private final ShardStore store;
+    private final int shardCount;
+    private final long cacheTtlMs;
+    private final Random random;
+    private final LongSupplier clock;
+    private final Map<String, CachedRollup> rollups = new ConcurrentHashMap<>();
+
+    /**
+     * Backing storage for shard values. The Firestore implementation is used
+     * in the app; tests substitute an in-memory fake.
+     */
+    public interface ShardStore {
+        void increment(String shardPath, long amount);
+        void readShards(String shardsCollectionPath, Callback<List<Long>> callback);
+
+        /**
+         * Apply several shard increments; stores that can should send them together
+         */
+        default void incrementAll(Map<String, Long> amountsByShardPath) {
+            for (Map.Entry<String, Long> entry : amountsByShardPath.entrySet()) {
+                increment(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Result callback; a null result means the read failed
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static class CachedRollup {
+        final long value;
+        final long fetchedAt;
+
+        CachedRollup(long value, long fetchedAt) {
+            this.value = value;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    public static ShardedCounter getInstance() {
+        if (instance == null) {
+            synchronized (ShardedCounter.class) {
+                if (instance == null) {
+                    instance = new ShardedCounter(
+                            new FirestoreShardStore(FirebaseFirestore.getInstance()),
+                            DEFAULT_SHARD_COUNT, DEFAULT_CACHE_TTL_MS,
+                            new Random(), System::currentTimeMillis);
+                }
+            }
+        }
+        return instance;
+    }
+
+    public ShardedCounter(ShardStore store, int shardCount, long cacheTtlMs,
+                          Random random, LongSupplier clock) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("Shard count must be positive");
+        }
+        this.store = store;
+        this.shardCount = shardCount;
+        this.cacheTtlMs = cacheTtlMs;
+        this.random = random;
+        this.clock = clock;
+    }
+
+    /**
+     * Path of a counter attached to a user document
+     */
+    public static String userCounter(String userId, String field) {
+        return "users/" + userId + "/counters/" + field;
+    }
+
+    /**
+     * Path of a counter attached to an asset document
+     */
+    public static String assetCounter(int assetId, String field) {
+        return assetCounter(String.valueOf(assetId), field);
+    }
+
+    /**
+     * Path of a counter attached to an asset document, by document ID
+     */
+    public static String assetCounter(String assetDocId, String field) {
+        return "assets/" + assetDocId + "/counters/" + field;
+    }
+
+    /**
+     * Add amount to a random shard of the counter
+     * @param counterPath Counter document path
+     * @param amount Amount to add (may be negative)
+     */
+    public void increment(String counterPath, long amount) {
+        if (amount == 0) {
+            return;
+        }
+
+        int shard;
+        synchronized (random) {
+            shard = random.nextInt(shardCount);
+        }
+        store.increment(counterPath + "/" + SHARDS_COLLECTION + "/" + shard, amount);
+
+        // Keep a cached rollup consistent with our own writes
+        CachedRollup cached = rollups.get(counterPath);
+        if (cached != null) {
+            rollups.put(counterPath, new CachedRollup(cached.value + amount, cached.fetchedAt));
+        }
+    }
+
+    /**
+     * Add to several counters at once, one random shard each. Used by
+     * batched writers so a flush costs one round trip instead of one per counter.
+     * @param amountsByCounterPath Amount to add, keyed by counter document path
+     */
+    public void incrementAll(Map<String, Long> amountsByCounterPath) {
+        Map<String, Long> amountsByShardPath = new HashMap<>();
+        for (Map.Entry<String, Long> entry : amountsByCounterPath.entrySet()) {
+            long amount = entry.getValue();
+            if (amount == 0) {
+                continue;
+            }
+            String counterPath = entry.getKey();
+            int shard;
+            synchronized (random) {
+                shard = random.nextInt(shardCount);
+            }
+            amountsByShardPath.put(counterPath + "/" + SHARDS_COLLECTION + "/" + shard, amount);
+
+            CachedRollup cached = rollups.get(counterPath);
+            if (cached != null) {
+                rollups.put(counterPath, new CachedRollup(cached.value + amount, cached.fetchedAt));
+            }
+        }
+        if (!amountsByShardPath.isEmpty()) {
+            store.incrementAll(amountsByShardPath);
+        }
+    }
+
+    /**
+     * Get the summed value of all shards, served from cache while fresh
+     * @param counterPath Counter document path
+     * @param callback Callback with the total, or null if the read failed
+     */
+    public void getCount(String counterPath, Callback<Long> callback) {
+        CachedRollup cached = rollups.get(counterPath);
+        long now = clock.getAsLong();
+        if (cached != null && now - cached.fetchedAt < cacheTtlMs) {
+            callback.onResult(cached.value);
+            return;
+        }
+
+        store.readShards(counterPath + "/" + SHARDS_COLLECTION, values -> {
+            if (values == null) {
+                // Fall back to a stale rollup rather than reporting nothing
+                callback.onResult(cached != null ? cached.value : null);
+                return;
+            }
+
+            long total = 0;
+            for (Long value : values) {
+                if (value != null) {
+                    total += value;
+                }
+            }
+            rollups.put(counterPath, new CachedRollup(total, clock.getAsLong()));
+            callback.onResult(total);
+        });
+    }
+
+    /**
+     * Drop the cached rollup so the next read goes to the store
+     */
+    public void invalidate(String counterPath) {
+        rollups.remove(counterPath);
+    }
+
+    /**
+     * Get several counters at once
+     * @param counterPaths Counter document paths
+     * @param callback Callback with totals keyed by path; failed reads are omitted
+     */
+    public void getCounts(List<String> counterPaths, Callback<Map<String, Long>> callback) {
+        if (counterPaths.isEmpty()) {
+            callback.onResult(Collections.emptyMap());
+            return;
+        }
+
+        Map<String, Long> totals = new HashMap<>();
+        List<String> pending = new ArrayList<>(counterPaths);
+        for (String path : counterPaths) {
+            getCount(path, total -> {
+                boolean done;
+                synchronized (totals) {
+                    if (total != null) {
+                        totals.put(path, total);
+                    }
+                    pending.remove(path);
+                    done = pending.isEmpty();
+                }
+                if (done) {
+                    callback.onResult(totals);
+                }
+            });
+        }
+    }
+
+    /**
+     * Options for writing a whole model object to its document without its
+     * counter fields. The object's counts include the shard totals, so
+     * writing them would turn the shards into part of the baseline and the
+     * next read would add them again. Everything else is merged; a new
+     * document simply has no baseline, which reads as zero.
+     * @param model Model class of the object being written
+     * @param counterFields Counter baselines to leave untouched
+     */
+    public static SetOptions mergeExcept(Class<?> model, List<String> counterFields) {
+        return SetOptions.mergeFields(fieldsExcept(model, counterFields));
+    }
+
+    /**
+     * Firestore property names of a model, minus the given fields. Follows
+     * Firestore's own mapping: public, non-static getX/isX getters without
+     * {@link Exclude}, named with the leading capitals lowercased.
+     */
+    public static List<String> fieldsExcept(Class<?> model, List<String> excluded) {
+        List<String> fields = writableFields.computeIfAbsent(model, ShardedCounter::propertyNames);
+        List<String> result = new ArrayList<>(fields);
+        result.removeAll(excluded);
+        return result;
+    }
+
+    private static List<String> propertyNames(Class<?> model) {
+        List<String> names = new ArrayList<>();
+        for (Method method : model.getMethods()) {
+            String name = method.getName();
+            int prefix = name.startsWith("get") ? 3 : name.startsWith("is") ? 2 : 0;
+            if (prefix == 0 || name.length() == prefix
+                    || method.getDeclaringClass() == Object.class
+                    || Modifier.isStatic(method.getModifiers())
+                    || method.getParameterTypes().length != 0
+                    || method.getReturnType() == void.class
+                    || method.isBridge()
+                    || method.isAnnotationPresent(Exclude.class)) {
+                continue;
+            }
+            char[] chars = name.substring(prefix).toCharArray();
+            for (int i = 0; i < chars.length && Character.isUpperCase(chars[i]); i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+            String property = new String(chars);
+            if (!names.contains(property)) {
+                names.add(property);
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Firestore-backed shard storage. Shards are created lazily by merge writes.
+     */
+    static class FirestoreShardStore implements ShardStore {
+        private final FirebaseFirestore firestore;
+
+        FirestoreShardStore(FirebaseFirestore firestore) {
+            this.firestore = firestore;
+        }
+
+        @Override
+        public void increment(String shardPath, long amount) {
+            Map<String, Object> update = new HashMap<>();
+            update.put(COUNT_FIELD, FieldValue.increment(amount));
+            firestore.document(shardPath).set(update, SetOptions.merge());
+        }
+
+        @Override
+        public void incrementAll(Map<String, Long> amountsByShardPath) {
+            // A write batch holds at most 500 operations
+            WriteBatch batch = firestore.batch();
+            int operations = 0;
+            for (Map.Entry<String, Long> entry : amountsByShardPath.entrySet()) {
+                Map<String, Object> update = new HashMap<>();
+                update.put(COUNT_FIELD, FieldValue.increment(entry.getValue()));
+                batch.set(firestore.document(entry.getKey()), update, SetOptions.merge());
+                if (++operations == MAX_BATCH_WRITES) {
+                    batch.commit();
+                    batch = firestore.batch();
+                    operations = 0;
+                }
+            }
+            if (operations > 0) {
+                batch.commit();
+            }
+        }
+
+        @Override
+        public void readShards(String shardsCollectionPath, Callback<List<Long>> callback) {
+            firestore.collection(shardsCollectionPath).get()
+                    .addOnSuccessListener(snapshot -> {
+                        List<Long> values = new ArrayList<>();
+                        for (DocumentSnapshot shard : snapshot.getDocuments()) {
+                            values.add(shard.getLong(COUNT_FIELD));
+                        }
+                        callback.onResult(values);
+                    })
+                    .addOnFailureListener(e -> callback.onResult(null));
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.imaginit.hyperplux.utils;
+
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
+
+/**
+ * Detects assets that are trending now, in fixed memory.
+ * <p>
+ * Interactions feed two exponentially decayed windows (1h and 24h). Each
+ * window keeps its counts in a count-min sketch, so long-tail assets cost
+ * nothing extra. The 1h window also keeps an ordered set of its heaviest hitters,
+ * which are the trending candidates. A candidate trends when its hourly rate
+ * is high and above its own 24h baseline.
+ * <p>
+ * Decay uses forward decay: weights are stored scaled up by
+ * exp((t - landmark) / tau) and scaled back down on read. This means nothing
+ * has to be decayed on write, and stored values stay comparable over time.
+ * <p>
+ * The sketch only sees this device's interactions, so what is trending for
+ * everyone comes from a shared store. Interactions are buffered and flushed
+ * there about once a minute, forward-decayed against the start of the
+ * current week so every device's writes add up. getGlobalTrending ranks the
+ * store's top assets with the same rules, and falls back to the local
+ * sketch when the store can't be read.
+ */
+public class TrendingTracker {
+    // Interaction weights
+    public static final double VIEW_WEIGHT = 1.0;
+    public static final double LIKE_WEIGHT = 3.0;
+    public static final double COMMENT_WEIGHT = 4.0;
+    public static final double SHARE_WEIGHT = 5.0;
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    // Sketch size: 4 x 2048 doubles per window (~64KB each)
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 2048;
+    private static final int HEAVY_HITTERS = 100;
+
+    // Trending thresholds
+    private static final double MIN_HOURLY_RATE = 2.0;
+    private static final double BASELINE_FLOOR = 0.5; // per hour, so brand-new assets don't get infinite lift
+    private static final double MAX_LIFT = 5.0;
+
+    // Shared store: one landmark per week keeps scaled weights below ~e^168
+    private static final long EPOCH_MS = 7 * DAY_MS;
+    private static final long FLUSH_INTERVAL_MS = 60 * 1000;
+    private static final int MAX_PENDING = 400;
+    private static final long GLOBAL_CACHE_TTL_MS = 60 * 1000;
+    // Extra candidates per result, as some fall below the minimum rate or lose on lift
+    private static final int CANDIDATES_PER_RESULT = 2;
+    // After this long, last week's daily weights have decayed below 5%
+    private static final long PREVIOUS_EPOCH_MS = 3 * DAY_MS;
+
+    private static volatile TrendingTracker instance;
+
+    private final DecayedWindow hourWindow;
+    private final DecayedWindow dayWindow;
+    private final LongSupplier clock;
+    private final TrendStore store;
+
+    // Unflushed {hour, day} weights scaled to their epoch's start: epoch -> asset ID -> weights
+    private final Map<Long, Map<Integer, double[]>> pending = new HashMap<>();
+    private int pendingCount;
+    private long lastFlush;
+
+    // Last shared ranking, reused for GLOBAL_CACHE_TTL_MS
+    private List<Integer> cachedGlobal;
+    private int cachedGlobalLimit;
+    private long cachedGlobalAt;
+
+    /**
+     * Shared storage for everyone's trend weights. The Firestore
+     * implementation is used in the app; tests substitute an in-memory fake.
+     */
+    public interface TrendStore {
+        /**
+         * Add weights to an epoch
+         * @param weightsByAsset {hour, day} weights scaled to the epoch start, by asset ID
+         */
+        void add(long epoch, Map<Integer, double[]> weightsByAsset);
+
+        /**
+         * Read the assets with the largest hourly weight in an epoch
+         * @param callback {hour, day} weights by asset ID, or null if the read failed
+         */
+        void readTop(long epoch, int limit, Callback<Map<Integer, double[]>> callback);
+    }
+
+    /**
+     * Result callback
+     */
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    public static TrendingTracker getInstance() {
+        if (instance == null) {
+            synchronized (TrendingTracker.class) {
+                if (instance == null) {
+                    instance = new TrendingTracker(System::currentTimeMillis,
+                            new FirestoreTrendStore(FirebaseFirestore.getInstance()));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Local-only tracker
+     */
+    public TrendingTracker(LongSupplier clock) {
+        this(clock, null);
+    }
+
+    public TrendingTracker(LongSupplier clock, TrendStore store) {
+        this.clock = clock;
+        this.store = store;
+        long now = clock.getAsLong();
+        this.lastFlush = now;
+        // Fixed seeds so sketches hash the same way on every run
+        this.hourWindow = new DecayedWindow(HOUR_MS, HEAVY_HITTERS, new Random(1), now);
+        this.dayWindow = new DecayedWindow(DAY_MS, 0, new Random(2), now);
+    }
+
+    /**
+     * Record an interaction
+     * @param assetId Asset ID
+     * @param weight Interaction weight, e.g. VIEW_WEIGHT
+     */
+    public synchronized void record(int assetId, double weight) {
+        if (weight <= 0) {
+            return;
+        }
+        long now = clock.getAsLong();
+        hourWindow.add(assetId, weight, now);
+        dayWindow.add(assetId, weight, now);
+
+        if (store != null) {
+            long epoch = now / EPOCH_MS;
+            double sinceLandmark = now - epoch * EPOCH_MS;
+            Map<Integer, double[]> weights = pending.get(epoch);
+            if (weights == null) {
+                weights = new HashMap<>();
+                pending.put(epoch, weights);
+            }
+            double[] sum = weights.get(assetId);
+            if (sum == null) {
+                sum = new double[2];
+                weights.put(assetId, sum);
+                pendingCount++;
+            }
+            sum[0] += weight * Math.exp(sinceLandmark / HOUR_MS);
+            sum[1] += weight * Math.exp(sinceLandmark / DAY_MS);
+
+            if (pendingCount >= MAX_PENDING || now - lastFlush >= FLUSH_INTERVAL_MS) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Send buffered interactions to the shared store, e.g. when the app goes
+     * to the background
+     */
+    public synchronized void flush() {
+        lastFlush = clock.getAsLong();
+        if (store == null || pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<Long, Map<Integer, double[]>> entry : pending.entrySet()) {
+            store.add(entry.getKey(), entry.getValue());
+        }
+        pending.clear();
+        pendingCount = 0;
+    }
+
+    /**
+     * Decayed interactions per hour over the last hour or so
+     */
+    public synchronized double getHourlyRate(int assetId) {
+        return hourWindow.estimate(assetId, clock.getAsLong());
+    }
+
+    /**
+     * Decayed interactions per hour over the last day or so
+     */
+    public synchronized double getDailyRate(int assetId) {
+        return dayWindow.estimate(assetId, clock.getAsLong()) / 24.0;
+    }
+
+    /**
+     * Assets trending now
+     * @param limit Maximum number of results
+     * @return Asset IDs, most trending first
+     */
+    public synchronized List<Integer> getTrending(int limit) {
+        long now = clock.getAsLong();
+        Map<Integer, double[]> rates = new HashMap<>();
+        for (int assetId : hourWindow.heavyHitters()) {
+            rates.put(assetId, new double[]{
+                    hourWindow.estimate(assetId, now), dayWindow.estimate(assetId, now) / 24.0});
+        }
+        return rank(rates, limit);
+    }
+
+    /**
+     * Assets trending now across all users, from the shared store. Falls
+     * back to this device's interactions if the store can't be read.
+     * @param limit Maximum number of results
+     * @param callback Asset IDs, most trending first
+     */
+    public void getGlobalTrending(int limit, Callback<List<Integer>> callback) {
+        long now;
+        synchronized (this) {
+            if (store == null) {
+                callback.onResult(getTrending(limit));
+                return;
+            }
+            // Include our own interactions before reading
+            flush();
+            now = clock.getAsLong();
+            if (cachedGlobal != null && now - cachedGlobalAt < GLOBAL_CACHE_TTL_MS
+                    && cachedGlobalLimit >= limit) {
+                callback.onResult(new ArrayList<>(cachedGlobal.subList(0, Math.min(limit, cachedGlobal.size()))));
+                return;
+            }
+        }
+
+        long epoch = now / EPOCH_MS;
+        int candidates = limit * CANDIDATES_PER_RESULT;
+        store.readTop(epoch, candidates, current -> {
+            if (current == null) {
+                callback.onResult(getTrending(limit));
+                return;
+            }
+            Map<Integer, double[]> rates = new HashMap<>();
+            addDecayedRates(rates, current, epoch, now);
+            if (now - epoch * EPOCH_MS >= PREVIOUS_EPOCH_MS) {
+                callback.onResult(cacheGlobal(rank(rates, limit), limit, now));
+                return;
+            }
+            // Early in the week, last week's weights still count
+            store.readTop(epoch - 1, candidates, previous -> {
+                if (previous != null) {
+                    addDecayedRates(rates, previous, epoch - 1, now);
+                }
+                callback.onResult(cacheGlobal(rank(rates, limit), limit, now));
+            });
+        });
+    }
+
+    private synchronized List<Integer> cacheGlobal(List<Integer> trending, int limit, long now) {
+        cachedGlobal = trending;
+        cachedGlobalLimit = limit;
+        cachedGlobalAt = now;
+        return trending;
+    }
+
+    // Scale stored epoch weights down to {hourly, daily} rates at time now
+    private static void addDecayedRates(Map<Integer, double[]> rates, Map<Integer, double[]> weights,
+                                        long epoch, long now) {
+        double sinceLandmark = now - epoch * EPOCH_MS;
+        double hourDecay = Math.exp(-sinceLandmark / HOUR_MS);
+        double dayDecay = Math.exp(-sinceLandmark / DAY_MS);
+        for (Map.Entry<Integer, double[]> entry : weights.entrySet()) {
+            double[] sum = rates.get(entry.getKey());
+            if (sum == null) {
+                sum = new double[2];
+                rates.put(entry.getKey(), sum);
+            }
+            sum[0] += entry.getValue()[0] * hourDecay;
+            sum[1] += entry.getValue()[1] * dayDecay / 24.0;
+        }
+    }
+
+    /**
+     * Rank candidates by hourly rate times lift over their daily baseline
+     * @param rates {hourly, daily} rates per hour, by asset ID
+     */
+    private static List<Integer> rank(Map<Integer, double[]> rates, int limit) {
+        Map<Integer, Double> scores = new HashMap<>();
+        for (Map.Entry<Integer, double[]> entry : rates.entrySet()) {
+            double hourly = entry.getValue()[0];
+            if (hourly < MIN_HOURLY_RATE) {
+                continue;
+            }
+            double baseline = Math.max(entry.getValue()[1], BASELINE_FLOOR);
+            scores.put(entry.getKey(), hourly * Math.min(hourly / baseline, MAX_LIFT));
+        }
+
+        List<Integer> trending = new ArrayList<>(scores.keySet());
+        trending.sort((a, b) -> {
+            int byScore = Double.compare(scores.get(b), scores.get(a));
+            return byScore != 0 ? byScore : Integer.compare(a, b);
+        });
+        return trending.size() > limit ? new ArrayList<>(trending.subList(0, limit)) : trending;
+    }
+
+    /**
+     * One decay window: forward-decayed count-min sketch plus an optional
+     * heavy-hitters set
+     */
+    private static final class DecayedWindow {
+        // Rescale before exp() grows large enough to lose precision
+        private static final double MAX_EXPONENT = 30;
+        private static final long PRIME = 2147483647L; // 2^31 - 1
+
+        private final double tauMs;
+        private final double[][] cells = new double[SKETCH_DEPTH][SKETCH_WIDTH];
+        private final long[] hashA = new long[SKETCH_DEPTH];
+        private final long[] hashB = new long[SKETCH_DEPTH];
+        private long landmark;
+
+        // Heavy hitters keyed by scaled estimate; scaled values compare correctly across time
+        private final int capacity;
+        private final Map<Integer, Double> hitterScores = new HashMap<>();
+        private final TreeSet<Integer> hitters;
+
+        DecayedWindow(long tauMs, int capacity, Random seeds, long now) {
+            this.tauMs = tauMs;
+            this.capacity = capacity;
+            this.landmark = now;
+            for (int i = 0; i < SKETCH_DEPTH; i++) {
+                hashA[i] = 1 + seeds.nextInt(Integer.MAX_VALUE - 1);
+                hashB[i] = seeds.nextInt(Integer.MAX_VALUE);
+            }
+            this.hitters = new TreeSet<>((a, b) -> {
+                int byScore = Double.compare(hitterScores.get(a), hitterScores.get(b));
+                return byScore != 0 ? byScore : Integer.compare(a, b);
+            });
+        }
+
+        void add(int assetId, double weight, long now) {
+            if ((now - landmark) / tauMs > MAX_EXPONENT) {
+                rescale(now);
+            }
+
+            double scaled = weight * Math.exp((now - landmark) / tauMs);
+            double estimate = Double.MAX_VALUE;
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                int column = bucket(row, assetId);
+                cells[row][column] += scaled;
+                estimate = Math.min(estimate, cells[row][column]);
+            }
+
+            if (capacity > 0) {
+                offerHitter(assetId, estimate);
+            }
+        }
+
+        // Decayed count at time now; at a steady rate this is about rate * tau
+        double estimate(int assetId, long now) {
+            double estimate = Double.MAX_VALUE;
+            for (int row = 0; row < SKETCH_DEPTH; row++) {
+                estimate = Math.min(estimate, cells[row][bucket(row, assetId)]);
+            }
+            return estimate * Math.exp(-(now - landmark) / tauMs);
+        }
+
+        List<Integer> heavyHitters() {
+            return new ArrayList<>(hitters);
+        }
+
+        private void offerHitter(int assetId, double estimate) {
+            if (hitterScores.containsKey(assetId)) {
+                hitters.remove(assetId);
+            } else if (hitters.size() >= capacity) {
+                int weakest = hitters.first();
+                if (hitterScores.get(weakest) >= estimate) {
+                    return;
+                }
+                hitters.pollFirst();
+                hitterScores.remove(weakest);
+            }
+            hitterScores.put(assetId, estimate);
+            hitters.add(assetId);
+        }
+
+        // Move the landmark to now and scale everything down to match
+        private void rescale(long now) {
+            double factor = Math.exp(-(now - landmark) / tauMs);
+            for (double[] row : cells) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] *= factor;
+                }
+            }
+            List<Integer> ids = new ArrayList<>(hitters);
+            hitters.clear();
+            for (int id : ids) {
+                hitterScores.put(id, hitterScores.get(id) * factor);
+            }
+            hitters.addAll(ids);
+            landmark = now;
+        }
+
+        private int bucket(int row, int assetId) {
+            // Both factors are below 2^31, so the product fits in a long
+            long hash = (hashA[row] * (assetId & 0x7fffffffL) + hashB[row]) % PRIME;
+            return (int) (hash % SKETCH_WIDTH);
+        }
+    }
+
+    /**
+     * Firestore-backed trend store. Each asset's weights are split over
+     * shard documents, trending/{epoch}/assets/{assetId}_{shard}, so a hot
+     * asset doesn't exceed the per-document write rate.
+     */
+    static class FirestoreTrendStore implements TrendStore {
+        private static final int SHARD_COUNT = 4;
+        private static final int MAX_BATCH_WRITES = 500;
+
+        private final FirebaseFirestore firestore;
+        private final Random random = new Random();
+
+        FirestoreTrendStore(FirebaseFirestore firestore) {
+            this.firestore = firestore;
+        }
+
+        private String collectionPath(long epoch) {
+            return "trending/" + epoch + "/assets";
+        }
+
+        @Override
+        public void add(long epoch, Map<Integer, double[]> weightsByAsset) {
+            WriteBatch batch = firestore.batch();
+            int operations = 0;
+            for (Map.Entry<Integer, double[]> entry : weightsByAsset.entrySet()) {
+                Map<String, Object> update = new HashMap<>();
+                update.put("assetId", entry.getKey());
+                update.put("hour", FieldValue.increment(entry.getValue()[0]));
+                update.put("day", FieldValue.increment(entry.getValue()[1]));
+                String shardId = entry.getKey() + "_" + random.nextInt(SHARD_COUNT);
+                batch.set(firestore.collection(collectionPath(epoch)).document(shardId), update, SetOptions.merge());
+                if (++operations == MAX_BATCH_WRITES) {
+                    batch.commit();
+                    batch = firestore.batch();
+                    operations = 0;
+                }
+            }
+            if (operations > 0) {
+                batch.commit();
+            }
+        }
+
+        @Override
+        public void readTop(long epoch, int limit, Callback<Map<Integer, double[]>> callback) {
+            firestore.collection(collectionPath(epoch))
+                    .orderBy("hour", Query.Direction.DESCENDING)
+                    .limit((long) limit * SHARD_COUNT)
+                    .get()
+                    .addOnSuccessListener(snapshot -> {
+                        Map<Integer, double[]> weights = new HashMap<>();
+                        for (DocumentSnapshot shard : snapshot.getDocuments()) {
+                            Long assetId = shard.getLong("assetId");
+                            Double hour = shard.getDouble("hour");
+                            Double day = shard.getDouble("day");
+                            if (assetId == null) {
+                                continue;
+                            }
+                            double[] sum = weights.get(assetId.intValue());
+                            if (sum == null) {
+                                sum = new double[2];
+                                weights.put(assetId.intValue(), sum);
+                            }
+                            sum[0] += hour != null ? hour : 0;
+                            sum[1] += day != null ? day : 0;
+                        }
+                        callback.onResult(weights);
+                    })
+                    .addOnFailureListener(e -> callback.onResult(null));
+        }
+    }
+}
@@ -0,0 +1,750 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.storage.FirebaseStorage;
+import com.google.firebase.storage.StorageException;
+import com.google.firebase.storage.StorageMetadata;
+import com.google.firebase.storage.StorageReference;
+import com.google.firebase.storage.UploadTask;
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.AssetDao;
+import com.imaginit.hyperplux.database.PendingUploadDao;
+import com.imaginit.hyperplux.database.UploadedImageDao;
+import com.imaginit.hyperplux.models.PendingUpload;
+import com.imaginit.hyperplux.models.UploadedImage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Persistent queue of image uploads to Firebase Storage.
+ * <p>
+ * Each compressed variant is a row in upload_queue, with its file moved out
+ * of the cache so it can't be cleared while it waits. UploadWorker drains
+ * the queue, MAX_CONCURRENT uploads at a time, over resumable upload
+ * sessions whose URIs are saved as soon as Storage hands them out: after a
+ * dropped connection or process death an upload continues from the last
+ * committed chunk instead of from zero. On metered networks full-size
+ * variants wait for Wi-Fi for up to ORIGINALS_MAX_WAIT_MS, while thumbs and
+ * medium variants go straight away. As soon as the thumb and medium of an
+ * image are up, they are applied to the asset or sent as a chat message,
+ * with the medium standing in for the full image; the full image is
+ * patched in when it follows. Chat images are sent as the user who queued
+ * them, and wait, queued, while that user is signed out. An image with a
+ * variant that ran out of attempts stays queued, reported through its
+ * owner's UploadProgress, until the user retries it.
+ * <p>
+ * Images are keyed by the uploading user and the SHA-256 of their full-size
+ * JPEG. Before queueing, the user's finished uploads are looked up in a
+ * local table and then in a Firestore index shared by their devices, and a
+ * photo attached again reuses the existing Storage URLs (which also makes
+ * it the same Glide cache entry everywhere it appears). A photo attached
+ * again while its first upload is still queued joins that upload.
+ */
+public class UploadQueue {
+    private static final String TAG = "UploadQueue";
+
+    private static final int MAX_CONCURRENT = 3;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long ORIGINALS_MAX_WAIT_MS = 12 * 60 * 60 * 1000L;
+    // Progress is written to Room at most once per this many bytes per file
+    private static final long PROGRESS_STEP_BYTES = 256 * 1024;
+    private static final long BACKOFF_SECONDS = 30;
+    private static final long SEND_TIMEOUT_SECONDS = 30;
+
+    private static final String WORK_QUEUE = "upload_queue";
+    private static final String WORK_ORIGINALS = "upload_queue_unmetered";
+    private static final String WORK_ORIGINALS_DEADLINE = "upload_queue_originals_deadline";
+    private static final String QUEUE_DIR = "upload_queue";
+
+    private static volatile UploadQueue instance;
+
+    private final Context context;
+    private final PendingUploadDao dao;
+    private final UploadedImageDao uploadedImageDao;
+    private final AssetDao assetDao;
+    private final FirebaseStorage storage;
+    private final FirebaseFirestore firestore;
+    private final ConnectivityManager connectivityManager;
+    // Room writes from upload listeners, in order and off the main thread
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Shared by all drains, so overlapping workers still respect the limit
+    private final Semaphore slots = new Semaphore(MAX_CONCURRENT);
+    private final Set<Long> inFlight = Collections.synchronizedSet(new HashSet<>());
+
+    /**
+     * Upload progress of everything queued for one asset or chat room
+     */
+    public static final class UploadProgress {
+        private final long bytesUploaded;
+        private final long totalBytes;
+        private final int pending;
+        private final int failed;
+
+        UploadProgress(long bytesUploaded, long totalBytes, int pending, int failed) {
+            this.bytesUploaded = bytesUploaded;
+            this.totalBytes = totalBytes;
+            this.pending = pending;
+            this.failed = failed;
+        }
+
+        static UploadProgress of(List<PendingUpload> uploads) {
+            long bytes = 0;
+            long total = 0;
+            int pending = 0;
+            int failed = 0;
+            for (PendingUpload upload : uploads) {
+                // Already showing; a full image still on its way is not reported
+                if (upload.isApplied() && upload.getState() != PendingUpload.STATE_FAILED) {
+                    continue;
+                }
+                bytes += upload.getBytesUploaded();
+                total += upload.getTotalBytes();
+                if (upload.getState() == PendingUpload.STATE_PENDING) {
+                    pending++;
+                } else if (upload.getState() == PendingUpload.STATE_FAILED) {
+                    failed++;
+                }
+            }
+            return new UploadProgress(bytes, total, pending, failed);
+        }
+
+        public long getBytesUploaded() { return bytesUploaded; }
+        public long getTotalBytes() { return totalBytes; }
+        public boolean isUploading() { return pending > 0; }
+        public boolean hasFailed() { return failed > 0; }
+
+        public int getPercent() {
+            return totalBytes > 0 ? (int) (100 * bytesUploaded / totalBytes) : 0;
+        }
+    }
+
+    public static UploadQueue getInstance(Context context) {
+        if (instance == null) {
+            synchronized (UploadQueue.class) {
+                if (instance == null) {
+                    instance = new UploadQueue(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private UploadQueue(Context context) {
+        this.context = context;
+        AppDatabase database = AppDatabase.getDatabase(context);
+        this.dao = database.pendingUploadDao();
+        this.uploadedImageDao = database.uploadedImageDao();
+        this.assetDao = database.assetDao();
+        this.storage = FirebaseStorage.getInstance();
+        this.firestore = FirebaseFirestore.getInstance();
+        this.connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+    }
+
+    /**
+     * Queue an asset's image; the asset's image fields are set once the thumb and medium are up
+     * @param assetId Asset the image belongs to
+     * @param userId Owner, whose Storage folder the files go in
+     * @param files Local files from ImageCompressor.compressVariants
+     */
+    public void enqueueAssetImage(int assetId, String userId, ImageVariants files) {
+        enqueue(PendingUpload.OWNER_ASSET, String.valueOf(assetId), userId, "assets/" + userId, files);
+    }
+
+    /**
+     * Queue a chat image; the message is sent once the thumb and medium are up
+     * @param chatRoomId Chat room to send the image to
+     * @param userId Sender
+     * @param files Local files from ImageCompressor.compressVariants
+     */
+    public void enqueueChatImage(String chatRoomId, String userId, ImageVariants files) {
+        enqueue(PendingUpload.OWNER_CHAT, chatRoomId, userId, "chat_images/" + chatRoomId, files);
+    }
+
+    /**
+     * Pick up anything left waiting, such as chat images queued by a user
+     * who has just signed back in
+     */
+    public void resume() {
+        scheduleDrain();
+    }
+
+    /**
+     * Retry an asset's failed image uploads
+     */
+    public void retryAssetImages(int assetId) {
+        retryFailed(PendingUpload.OWNER_ASSET, String.valueOf(assetId));
+    }
+
+    /**
+     * Retry a chat room's failed image uploads
+     */
+    public void retryChatImages(String chatRoomId) {
+        retryFailed(PendingUpload.OWNER_CHAT, chatRoomId);
+    }
+
+    private void retryFailed(String ownerType, String ownerId) {
+        executor.execute(() -> {
+            try {
+                // A variant whose file is gone can never upload, so its image is dropped instead
+                Set<String> groupIds = new HashSet<>();
+                for (PendingUpload upload : dao.getFailedSync(ownerType, ownerId)) {
+                    groupIds.add(upload.getGroupId());
+                }
+                for (String groupId : groupIds) {
+                    List<PendingUpload> group = dao.getGroupSync(groupId);
+                    for (PendingUpload upload : group) {
+                        if (!PendingUpload.VARIANT_LINK.equals(upload.getVariant())
+                                && !new File(upload.getLocalPath()).exists()) {
+                            Log.w(TAG, "Dropping image with missing files for " + ownerType + " " + ownerId);
+                            deleteGroup(groupId, group);
+                            break;
+                        }
+                    }
+                }
+                if (dao.resetFailed(ownerType, ownerId) > 0) {
+                    scheduleDrain();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error retrying uploads: " + e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Observable upload progress for an asset's queued images
+     */
+    public LiveData<UploadProgress> getAssetProgress(int assetId) {
+        return getProgress(PendingUpload.OWNER_ASSET, String.valueOf(assetId));
+    }
+
+    /**
+     * Observable upload progress for a chat room's queued images
+     */
+    public LiveData<UploadProgress> getChatProgress(String chatRoomId) {
+        return getProgress(PendingUpload.OWNER_CHAT, chatRoomId);
+    }
+
+    private LiveData<UploadProgress> getProgress(String ownerType, String ownerId) {
+        MediatorLiveData<UploadProgress> progress = new MediatorLiveData<>();
+        progress.addSource(dao.observeOwner(ownerType, ownerId),
+                uploads -> progress.setValue(UploadProgress.of(uploads)));
+        return progress;
+    }
+
+    private void enqueue(String ownerType, String ownerId, String userId, String folder, ImageVariants files) {
+        executor.execute(() -> {
+            String hash = files.getContentHash();
+            if (hash == null || userId == null) {
+                queue(ownerType, ownerId, userId, folder, files);
+                return;
+            }
+
+            // Already uploaded by this user from this device?
+            UploadedImage known = uploadedImageDao.getSync(userId, hash);
+            if (known != null) {
+                reuse(ownerType, ownerId, userId, known.toVariants(), files);
+                return;
+            }
+
+            // Or from another of their devices?
+            remoteIndex(userId, hash).get().addOnCompleteListener(executor, task -> {
+                DocumentSnapshot doc = task.isSuccessful() ? task.getResult() : null;
+                String fullUrl = doc != null ? doc.getString("fullUrl") : null;
+                if (fullUrl == null) {
+                    queue(ownerType, ownerId, userId, folder, files);
+                    return;
+                }
+                UploadedImage image = new UploadedImage(userId, hash, doc.getString("thumbUrl"),
+                        doc.getString("mediumUrl"), fullUrl, System.currentTimeMillis());
+                uploadedImageDao.insert(image);
+                reuse(ownerType, ownerId, userId, image.toVariants(), files);
+            });
+        });
+    }
+
+    // Point the owner at an existing upload and drop the freshly compressed copies. The rows go
+    // in already done, so the image is applied, and retried if need be, like any finished upload
+    private void reuse(String ownerType, String ownerId, String userId, ImageVariants urls, ImageVariants files) {
+        Log.d(TAG, "Reusing uploaded image " + urls.getContentHash());
+        String groupId = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        String[][] variants = {
+                {PendingUpload.VARIANT_THUMB, urls.getThumb()},
+                {PendingUpload.VARIANT_MEDIUM, urls.getMedium()},
+                {PendingUpload.VARIANT_FULL, urls.getFull()}
+        };
+        List<PendingUpload> done = new ArrayList<>(variants.length);
+        for (String[] variant : variants) {
+            PendingUpload upload = new PendingUpload(groupId, ownerType, ownerId, variant[0], "", "", 0, now);
+            upload.setUserId(userId);
+            upload.setContentHash(urls.getContentHash());
+            upload.setBlurHash(files.getBlurHash());
+            upload.setState(PendingUpload.STATE_DONE);
+            upload.setDownloadUrl(variant[1]);
+            done.add(upload);
+        }
+        try {
+            dao.insertAll(done);
+            AtomicBoolean retry = new AtomicBoolean(false);
+            settleGroup(groupId, retry);
+            if (retry.get()) {
+                scheduleDrain();
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Error applying reused image: " + e.getMessage(), e);
+        }
+        deleteLocal(files);
+    }
+
+    private static void deleteLocal(ImageVariants files) {
+        for (String file : new String[]{files.getThumb(), files.getMedium(), files.getFull()}) {
+            new File(Uri.parse(file).getPath()).delete();
+        }
+    }
+
+    private void queue(String ownerType, String ownerId, String userId, String folder, ImageVariants files) {
+        long now = System.currentTimeMillis();
+        String hash = files.getContentHash();
+
+        // Runs on the executor, like every insert, so two picks of one photo can't both miss this
+        String inFlightGroup = hash != null && userId != null ? dao.getGroupIdForHashSync(userId, hash) : null;
+        if (inFlightGroup != null) {
+            Log.d(TAG, "Joining queued upload of " + hash);
+            PendingUpload link = new PendingUpload(inFlightGroup, ownerType, ownerId,
+                    PendingUpload.VARIANT_LINK, "", "", 0, now);
+            link.setUserId(userId);
+            link.setContentHash(hash);
+            link.setBlurHash(files.getBlurHash());
+            try {
+                dao.insertAll(Collections.singletonList(link));
+                // Gets the thumb and medium now if they are already up, or the failure if the
+                // image is waiting for a retry
+                AtomicBoolean retry = new AtomicBoolean(false);
+                settleGroup(inFlightGroup, retry);
+                if (retry.get()) {
+                    scheduleDrain();
+                }
+            } catch (Exception e) {
+                Log.e(TAG, "Error joining queued upload: " + e.getMessage(), e);
+            }
+            deleteLocal(files);
+            return;
+        }
+
+        String groupId = UUID.randomUUID().toString();
+        // Content-addressed names, so re-uploading the same image overwrites rather than adds
+        String baseName = hash != null ? hash : groupId;
+        File dir = new File(context.getFilesDir(), QUEUE_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            Log.w(TAG, "Could not create " + dir);
+        }
+
+        String[][] variants = {
+                {PendingUpload.VARIANT_THUMB, files.getThumb(), "_thumb.jpg"},
+                {PendingUpload.VARIANT_MEDIUM, files.getMedium(), "_medium.jpg"},
+                {PendingUpload.VARIANT_FULL, files.getFull(), ".jpg"}
+        };
+        List<PendingUpload> uploads = new ArrayList<>(variants.length);
+        for (String[] variant : variants) {
+            File file = new File(Uri.parse(variant[1]).getPath());
+            // Same volume, so this is a rename rather than a copy
+            File kept = new File(dir, groupId + variant[2]);
+            if (file.renameTo(kept)) {
+                file = kept;
+            } else {
+                Log.w(TAG, "Could not move " + file + " out of the cache");
+            }
+            PendingUpload upload = new PendingUpload(groupId, ownerType, ownerId, variant[0],
+                    file.getPath(), folder + "/" + baseName + variant[2], file.length(), now);
+            upload.setUserId(userId);
+            upload.setContentHash(files.getContentHash());
+            upload.setBlurHash(files.getBlurHash());
+            uploads.add(upload);
+        }
+
+        try {
+            dao.insertAll(uploads);
+            scheduleDrain();
+        } catch (Exception e) {
+            Log.e(TAG, "Error queueing upload: " + e.getMessage(), e);
+        }
+    }
+
+    // The user's uploads as seen by all their devices; mirrors their rows in uploaded_images
+    private DocumentReference remoteIndex(String userId, String contentHash) {
+        return firestore.collection("users").document(userId)
+                .collection("image_index").document(contentHash);
+    }
+
+    // Remember a finished upload locally and for the user's other devices
+    private void recordUploaded(String userId, String contentHash, ImageVariants urls) {
+        UploadedImage image = new UploadedImage(userId, contentHash, urls.getThumb(), urls.getMedium(),
+                urls.getFull(), System.currentTimeMillis());
+        uploadedImageDao.insert(image);
+
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("thumbUrl", image.getThumbUrl());
+        fields.put("mediumUrl", image.getMediumUrl());
+        fields.put("fullUrl", image.getFullUrl());
+        fields.put("uploadedAt", image.getUploadedAt());
+        remoteIndex(userId, contentHash).set(fields)
+                .addOnFailureListener(e -> Log.e(TAG, "Error saving image index", e));
+    }
+
+    private void scheduleDrain() {
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(UploadWorker.class)
+                .setConstraints(networkConstraint(NetworkType.CONNECTED))
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        // Append, so rows queued while a drain is finishing still get picked up
+        WorkManager.getInstance(context)
+                .enqueueUniqueWork(WORK_QUEUE, ExistingWorkPolicy.APPEND_OR_REPLACE, request);
+    }
+
+    // Full-size variants left waiting on a metered network: go on Wi-Fi, or at the deadline regardless
+    private void scheduleOriginals(long waitMs) {
+        WorkManager workManager = WorkManager.getInstance(context);
+        workManager.enqueueUniqueWork(WORK_ORIGINALS, ExistingWorkPolicy.KEEP,
+                new OneTimeWorkRequest.Builder(UploadWorker.class)
+                        .setConstraints(networkConstraint(NetworkType.UNMETERED))
+                        .build());
+        workManager.enqueueUniqueWork(WORK_ORIGINALS_DEADLINE, ExistingWorkPolicy.REPLACE,
+                new OneTimeWorkRequest.Builder(UploadWorker.class)
+                        .setConstraints(networkConstraint(NetworkType.CONNECTED))
+                        .setInitialDelay(waitMs, TimeUnit.MILLISECONDS)
+                        .build());
+    }
+
+    private static Constraints networkConstraint(NetworkType type) {
+        return new Constraints.Builder().setRequiredNetworkType(type).build();
+    }
+
+    /**
+     * Upload everything that is ready. Runs on the worker's thread and
+     * blocks until the uploads it started have finished or the worker is
+     * stopped, in which case they are paused with their sessions saved.
+     * @param isStopped Whether the worker has been stopped
+     * @return false if some uploads failed and should be retried later
+     */
+    boolean drain(BooleanSupplier isStopped) {
+        boolean metered = connectivityManager != null && connectivityManager.isActiveNetworkMetered();
+        Map<Long, UploadTask> active = new ConcurrentHashMap<>();
+        Semaphore finished = new Semaphore(0);
+        AtomicBoolean retry = new AtomicBoolean(false);
+        Set<Long> attempted = new HashSet<>();
+        long oldestDeferred = Long.MAX_VALUE;
+        int started = 0;
+
+        try {
+            // Owners an earlier drain could not apply to yet, such as a chat image whose sender was
+            // signed out; on the executor, like every other settle
+            executor.submit(() -> {
+                for (String groupId : dao.getGroupIdsWithUploadsSync()) {
+                    settleGroup(groupId, retry);
+                }
+            }).get();
+
+            // Re-query after each round, so rows queued meanwhile are picked up too
+            boolean progressed = true;
+            while (progressed && !isStopped.getAsBoolean()) {
+                progressed = false;
+                long now = System.currentTimeMillis();
+                for (PendingUpload upload : dao.getPendingSync()) {
+                    if (attempted.contains(upload.getId())) {
+                        continue;
+                    }
+                    if (metered && PendingUpload.VARIANT_FULL.equals(upload.getVariant())
+                            && now - upload.getCreatedAt() < ORIGINALS_MAX_WAIT_MS) {
+                        oldestDeferred = Math.min(oldestDeferred, upload.getCreatedAt());
+                        continue;
+                    }
+                    if (!acquireSlot(isStopped)) {
+                        break;
+                    }
+                    attempted.add(upload.getId());
+                    if (!inFlight.add(upload.getId())) {
+                        // Another drain has it
+                        slots.release();
+                        continue;
+                    }
+                    start(upload, active, retry, () -> {
+                        inFlight.remove(upload.getId());
+                        slots.release();
+                        finished.release();
+                    });
+                    started++;
+                    progressed = true;
+                }
+            }
+
+            while (!finished.tryAcquire(started, 1, TimeUnit.SECONDS)) {
+                if (isStopped.getAsBoolean()) {
+                    pauseAll(active);
+                    return false;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pauseAll(active);
+            return false;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Error settling uploads: " + e.getMessage(), e);
+            return false;
+        }
+
+        if (oldestDeferred != Long.MAX_VALUE) {
+            long waitMs = Math.max(0, oldestDeferred + ORIGINALS_MAX_WAIT_MS - System.currentTimeMillis());
+            scheduleOriginals(waitMs);
+        }
+        return !retry.get();
+    }
+
+    private boolean acquireSlot(BooleanSupplier isStopped) throws InterruptedException {
+        while (!slots.tryAcquire(1, TimeUnit.SECONDS)) {
+            if (isStopped.getAsBoolean()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Paused uploads keep their server session; the next drain resumes them from the saved URI
+    private void pauseAll(Map<Long, UploadTask> active) {
+        for (Map.Entry<Long, UploadTask> entry : active.entrySet()) {
+            if (entry.getValue().pause()) {
+                inFlight.remove(entry.getKey());
+                slots.release();
+            }
+        }
+    }
+
+    private void start(PendingUpload upload, Map<Long, UploadTask> active, AtomicBoolean retry,
+                       Runnable onFinished) {
+        long id = upload.getId();
+        File file = new File(upload.getLocalPath());
+        if (!file.exists()) {
+            executor.execute(() -> {
+                Log.e(TAG, "Queued file is gone: " + file);
+                dao.updateAttempt(id, PendingUpload.STATE_FAILED, upload.getAttempts() + 1, null);
+                settleGroup(upload.getGroupId(), retry);
+                onFinished.run();
+            });
+            return;
+        }
+
+        StorageReference ref = storage.getReference().child(upload.getStoragePath());
+        StorageMetadata metadata = new StorageMetadata.Builder().setContentType("image/jpeg").build();
+        UploadTask task = upload.getSessionUri() != null
+                ? ref.putFile(Uri.fromFile(file), metadata, Uri.parse(upload.getSessionUri()))
+                : ref.putFile(Uri.fromFile(file), metadata);
+        active.put(id, task);
+
+        // Only touched on the executor
+        String[] session = {upload.getSessionUri()};
+        long[] savedBytes = {upload.getBytesUploaded()};
+
+        task.addOnProgressListener(executor, snapshot -> {
+            Uri sessionUri = snapshot.getUploadSessionUri();
+            if (sessionUri != null && !sessionUri.toString().equals(session[0])) {
+                session[0] = sessionUri.toString();
+                dao.updateSession(id, session[0]);
+            }
+            long bytes = snapshot.getBytesTransferred();
+            if (bytes - savedBytes[0] >= PROGRESS_STEP_BYTES) {
+                savedBytes[0] = bytes;
+                dao.updateProgress(id, bytes, snapshot.getTotalByteCount());
+            }
+        });
+
+        task.continueWithTask(executor, result -> {
+                    if (!result.isSuccessful()) {
+                        throw result.getException();
+                    }
+                    return ref.getDownloadUrl();
+                })
+                .addOnCompleteListener(executor, result -> {
+                    active.remove(id);
+                    try {
+                        if (result.isSuccessful()) {
+                            dao.markDone(id, result.getResult().toString());
+                        } else {
+                            recordFailure(upload, session[0], result.getException(), retry);
+                        }
+                        settleGroup(upload.getGroupId(), retry);
+                    } catch (Exception e) {
+                        Log.e(TAG, "Error updating upload queue: " + e.getMessage(), e);
+                    } finally {
+                        onFinished.run();
+                    }
+                });
+    }
+
+    private void recordFailure(PendingUpload upload, String sessionUri, Exception e, AtomicBoolean retry) {
+        int attempts = upload.getAttempts() + 1;
+        // A session the server has given up on can't be resumed; the next attempt starts over
+        boolean recoverable = e instanceof StorageException && ((StorageException) e).getIsRecoverableException();
+        int state = attempts >= MAX_ATTEMPTS ? PendingUpload.STATE_FAILED : PendingUpload.STATE_PENDING;
+        dao.updateAttempt(upload.getId(), state, attempts, recoverable ? sessionUri : null);
+        if (state == PendingUpload.STATE_PENDING) {
+            retry.set(true);
+        }
+        Log.w(TAG, "Upload " + upload.getStoragePath() + " failed (attempt " + attempts + "): " +
+                (e != null ? e.getMessage() : "unknown error"));
+    }
+
+    // Apply an image to every owner in its group as soon as its thumb and medium are up, and the
+    // full image once that follows. The rows and files are dropped when every owner has the full
+    // image. A variant that ran out of attempts keeps them for a retry by the user; an owner that
+    // can't be applied to yet, a chat image whose sender is signed out, keeps them and sets retry
+    private void settleGroup(String groupId, AtomicBoolean retry) {
+        List<PendingUpload> group = dao.getGroupSync(groupId);
+        Map<String, String> urls = new HashMap<>();
+        PendingUpload first = null;
+        boolean pending = false;
+        boolean failed = false;
+        for (PendingUpload upload : group) {
+            if (PendingUpload.VARIANT_LINK.equals(upload.getVariant())) {
+                continue;
+            }
+            pending |= upload.getState() == PendingUpload.STATE_PENDING;
+            failed |= upload.getState() == PendingUpload.STATE_FAILED;
+            if (upload.getState() == PendingUpload.STATE_DONE) {
+                urls.put(upload.getVariant(), upload.getDownloadUrl());
+            }
+            first = upload;
+        }
+        if (first == null) {
+            return;
+        }
+
+        if (failed && !pending) {
+            Log.e(TAG, "Upload failed for " + first.getOwnerType() + " " + first.getOwnerId() +
+                    "; kept for retry");
+            // Linked owners see the failure too
+            dao.failLinks(groupId);
+        }
+
+        String thumb = urls.get(PendingUpload.VARIANT_THUMB);
+        String medium = urls.get(PendingUpload.VARIANT_MEDIUM);
+        String full = urls.get(PendingUpload.VARIANT_FULL);
+        if (thumb == null || medium == null) {
+            return;
+        }
+
+        // The full image may wait hours for Wi-Fi; the medium stands in for it until then
+        ImageVariants variants = new ImageVariants(thumb, medium, full != null ? full : medium,
+                first.getContentHash(), first.getBlurHash());
+        boolean applied = true;
+        Set<String> owners = new HashSet<>();
+        for (PendingUpload upload : group) {
+            if (owners.add(upload.getOwnerType() + "/" + upload.getOwnerId())) {
+                applied &= apply(upload, variants, full != null);
+            }
+        }
+        if (!applied) {
+            retry.set(true);
+            return;
+        }
+        if (full == null) {
+            return;
+        }
+
+        if (first.getContentHash() != null && first.getUserId() != null) {
+            recordUploaded(first.getUserId(), first.getContentHash(), variants);
+        }
+        deleteGroup(groupId, group);
+    }
+
+    private void deleteGroup(String groupId, List<PendingUpload> group) {
+        dao.deleteGroup(groupId);
+        for (PendingUpload upload : group) {
+            if (!PendingUpload.VARIANT_LINK.equals(upload.getVariant())) {
+                new File(upload.getLocalPath()).delete();
+            }
+        }
+    }
+
+    // Apply an image to one owner: all of it the first time, then only the full image once it is up.
+    // Returns false if the owner could not be updated and the group should be kept for a retry
+    private boolean apply(PendingUpload owner, ImageVariants urls, boolean complete) {
+        String ownerType = owner.getOwnerType();
+        String ownerId = owner.getOwnerId();
+        if (owner.isApplied() && !complete) {
+            return true;
+        }
+
+        if (PendingUpload.OWNER_ASSET.equals(ownerType)) {
+            int assetId = Integer.parseInt(ownerId);
+            Map<String, Object> fields = new HashMap<>();
+            if (!owner.isApplied()) {
+                assetDao.updateImages(assetId, urls.getThumb(), urls.getMedium(), urls.getFull(),
+                        urls.getBlurHash());
+                dao.markApplied(owner.getGroupId(), ownerType, ownerId);
+                fields.put("imageThumbUri", urls.getThumb());
+                fields.put("imageMediumUri", urls.getMedium());
+                fields.put("imageBlurHash", urls.getBlurHash());
+            } else {
+                assetDao.updateFullImage(assetId, urls.getFull());
+            }
+            fields.put("imageUri", urls.getFull());
+            firestore.collection("assets").document(ownerId)
+                    .update(fields)
+                    .addOnFailureListener(e -> Log.e(TAG, "Error saving asset images", e));
+            return true;
+        }
+
+        if (PendingUpload.OWNER_CHAT.equals(ownerType)) {
+            // One message ID per group and room, so a retried send rewrites the same message
+            String messageId = "img_" + owner.getGroupId();
+            ChatManager chatManager = ChatManager.getInstance();
+            try {
+                if (!owner.isApplied()) {
+                    Tasks.await(chatManager.sendImageMessageAs(owner.getUserId(), ownerId, messageId, urls),
+                            SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    dao.markApplied(owner.getGroupId(), ownerType, ownerId);
+                } else {
+                    Tasks.await(chatManager.updateImageMessageAs(owner.getUserId(), ownerId, messageId,
+                            urls.getFull()), SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                }
+                return true;
+            } catch (Exception e) {
+                Log.w(TAG, "Could not send image to chat " + ownerId + ": " + e.getMessage());
+                return false;
+            }
+        }
+        return true;
+    }
+}
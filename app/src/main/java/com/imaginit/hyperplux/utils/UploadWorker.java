@@ -0,0 +1,26 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+/**
+ * Background worker that drains the UploadQueue. WorkManager keeps it
+ * scheduled across process death and reruns it with backoff while uploads
+ * are still failing.
+ */
+public class UploadWorker extends Worker {
+
+    public UploadWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        boolean done = UploadQueue.getInstance(getApplicationContext()).drain(this::isStopped);
+        return done ? Result.success() : Result.retry();
+    }
+}
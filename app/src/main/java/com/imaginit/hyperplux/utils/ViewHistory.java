@@ -0,0 +1,211 @@
+package com.imaginit.hyperplux.utils;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+
+import com.imaginit.hyperplux.database.AppDatabase;
+import com.imaginit.hyperplux.database.ViewHistoryDao;
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.ViewHistoryEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recently-viewed history for the signed-in user, kept in Room so it
+ * survives restarts.
+ * <p>
+ * An in-memory LinkedHashMap, oldest first, fronts the table. Re-viewing an
+ * asset is a remove + put, so moving it to the front is O(1), and
+ * removeEldestEntry keeps the map capped. Views are written to Room in
+ * batches after a short delay, so a burst of views costs one transaction.
+ */
+public class ViewHistory {
+    private static final String TAG = "ViewHistory";
+
+    private static final int MAX_HISTORY = 100;
+    private static final long FLUSH_DELAY_MS = 2000;
+
+    private static volatile ViewHistory instance;
+
+    private final ViewHistoryDao dao;
+    // Single writer: warm-up and flushes never overlap
+    private final ScheduledExecutorService writeExecutor = Executors.newSingleThreadScheduledExecutor();
+
+    // Guarded by this
+    private String userId;
+    private final LinkedHashMap<Integer, Long> recent = new LinkedHashMap<Integer, Long>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Long> eldest) {
+            return size() > MAX_HISTORY;
+        }
+    };
+    private final Map<Integer, Long> pending = new LinkedHashMap<>();
+    private boolean flushScheduled;
+
+    public static ViewHistory getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ViewHistory.class) {
+                if (instance == null) {
+                    instance = new ViewHistory(AppDatabase.getDatabase(context).viewHistoryDao());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ViewHistory(ViewHistoryDao dao) {
+        this.dao = dao;
+    }
+
+    /**
+     * Record that a user opened an asset
+     * @param userId Viewer's user ID
+     * @param assetId Viewed asset ID
+     */
+    public synchronized void recordView(String userId, int assetId) {
+        switchUser(userId);
+        long now = System.currentTimeMillis();
+
+        // Re-inserting moves the asset to the newest end
+        recent.remove(assetId);
+        recent.put(assetId, now);
+
+        pending.put(assetId, now);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            writeExecutor.schedule(this::flush, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Most recently viewed asset IDs, newest first. Served from memory, so
+     * it is cheap enough for ranking code. Empty until the history has
+     * been loaded for this user.
+     * @param userId User ID
+     * @param limit Maximum number of IDs
+     */
+    public synchronized List<Integer> getRecentAssetIds(String userId, int limit) {
+        switchUser(userId);
+        List<Integer> ids = new ArrayList<>(recent.keySet());
+        Collections.reverse(ids);
+        return ids.size() > limit ? new ArrayList<>(ids.subList(0, limit)) : ids;
+    }
+
+    /**
+     * Recently viewed assets, newest first, for display. Updates once
+     * pending views have been written.
+     * @param userId User ID
+     * @param limit Maximum number of assets
+     */
+    public LiveData<List<Asset>> getRecentlyViewed(String userId, int limit) {
+        synchronized (this) {
+            switchUser(userId);
+        }
+        return dao.getRecentlyViewed(userId, limit);
+    }
+
+    /**
+     * Forget an asset, e.g. after it is deleted
+     */
+    public synchronized void removeAsset(int assetId) {
+        recent.remove(assetId);
+        pending.remove(assetId);
+        writeExecutor.execute(() -> dao.deleteForAsset(assetId));
+    }
+
+    /**
+     * Clear a user's history
+     */
+    public synchronized void clear(String userId) {
+        if (userId.equals(this.userId)) {
+            recent.clear();
+            pending.clear();
+        }
+        writeExecutor.execute(() -> dao.clearHistory(userId));
+    }
+
+    // Point the in-memory history at a user, loading theirs from Room if it changed
+    private void switchUser(String userId) {
+        if (userId.equals(this.userId)) {
+            return;
+        }
+        if (!pending.isEmpty()) {
+            // Write out the previous user's views under their own ID
+            String previousUserId = this.userId;
+            List<ViewHistoryEntry> batch = takePending();
+            writeExecutor.execute(() -> write(previousUserId, batch));
+        }
+        this.userId = userId;
+        recent.clear();
+        writeExecutor.execute(() -> load(userId));
+    }
+
+    private void load(String userId) {
+        List<ViewHistoryEntry> stored;
+        try {
+            stored = dao.getHistorySync(userId, MAX_HISTORY);
+        } catch (Exception e) {
+            Log.e(TAG, "Error loading view history: " + e.getMessage(), e);
+            return;
+        }
+
+        synchronized (this) {
+            if (!userId.equals(this.userId)) {
+                return;
+            }
+            // Stored rows are older than anything viewed since start-up,
+            // so put them at the old end and replay the newer views on top
+            Map<Integer, Long> newer = new LinkedHashMap<>(recent);
+            recent.clear();
+            for (int i = stored.size() - 1; i >= 0; i--) {
+                ViewHistoryEntry entry = stored.get(i);
+                recent.put(entry.getAssetId(), entry.getViewedAt());
+            }
+            for (Map.Entry<Integer, Long> entry : newer.entrySet()) {
+                recent.remove(entry.getKey());
+                recent.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void flush() {
+        String flushUserId;
+        List<ViewHistoryEntry> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            flushUserId = userId;
+            batch = takePending();
+        }
+        write(flushUserId, batch);
+    }
+
+    // Drain pending views into rows for the current user; caller holds the lock
+    private List<ViewHistoryEntry> takePending() {
+        List<ViewHistoryEntry> batch = new ArrayList<>(pending.size());
+        for (Map.Entry<Integer, Long> entry : pending.entrySet()) {
+            batch.add(new ViewHistoryEntry(userId, entry.getKey(), entry.getValue()));
+        }
+        pending.clear();
+        return batch;
+    }
+
+    private void write(String userId, List<ViewHistoryEntry> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            dao.recordViews(userId, batch, MAX_HISTORY);
+        } catch (Exception e) {
+            Log.e(TAG, "Error saving view history: " + e.getMessage(), e);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.imaginit.hyperplux.viewmodels;
 
 import android.app.Application;
 import android.net.Uri;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
@@ -13,15 +14,19 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.google.firebase.storage.FirebaseStorage;
 import com.google.firebase.storage.StorageReference;
-import com.google.firebase.storage.UploadTask;
 import com.imaginit.hyperplux.utils.AnalyticsTracker;
-import com.imaginit.hyperplux.utils.EngagementAlgorithm;
+import com.imaginit.hyperplux.utils.CoViewRecommender;
+import com.imaginit.hyperplux.utils.FeedMaterializer;
 import com.imaginit.hyperplux.utils.ImageCompressor;
+import com.imaginit.hyperplux.utils.ImageVariants;
+import com.imaginit.hyperplux.utils.ImpressionTracker;
+import com.imaginit.hyperplux.utils.MarketplaceRemoteMediator;
 import com.imaginit.hyperplux.utils.NetworkMonitor;
+import com.imaginit.hyperplux.utils.UploadQueue;
 import com.imaginit.hyperplux.utils.Validator;
+import com.imaginit.hyperplux.utils.ViewHistory;
 import com.imaginit.hyperplux.models.Asset;
 import com.imaginit.hyperplux.models.AssetTransaction;
-import com.imaginit.hyperplux.models.User;
 import com.imaginit.hyperplux.repositories.AssetRepository;
 
 import java.util.ArrayList;
@@ -29,25 +34,43 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 
 public class AssetViewModel extends AndroidViewModel {
     private static final String TAG = "AssetViewModel";
+    private static final int FEED_PAGE_SIZE = 20;
+    private static final int RELATED_ASSETS_LIMIT = 10;
+    private static final int TRENDING_ASSETS_LIMIT = 10;
+    private static final int RECENTLY_VIEWED_LIMIT = 10;
+    private static final int RELATED_SESSION_SIZE = 10;
 
     private AssetRepository repository;
     private FirebaseAuth auth;
     private FirebaseStorage storage;
+    private FeedMaterializer feedMaterializer;
+    private MarketplaceRemoteMediator marketplaceMediator;
+    private CoViewRecommender coViewRecommender;
+    private ViewHistory viewHistory;
+    private ImpressionTracker impressionTracker;
+    private UploadQueue uploadQueue;
 
     // LiveData
     private LiveData<List<Asset>> assets;
     private LiveData<List<Asset>> hiddenAssets;
     private LiveData<List<Asset>> assetsForSale;
-    private LiveData<List<Asset>> marketplaceAssets;
+    private MediatorLiveData<List<Asset>> marketplaceAssets = new MediatorLiveData<>();
+    private LiveData<List<Asset>> marketplaceSource;
+    private int marketplaceLimit = MarketplaceRemoteMediator.PAGE_SIZE;
     private LiveData<List<Asset>> topAssets;
     private MutableLiveData<List<Asset>> searchResults = new MutableLiveData<>();
     private MediatorLiveData<List<Asset>> personalizedFeed = new MediatorLiveData<>();
+    private LiveData<List<Asset>> feedSource;
+    private int feedLimit = FEED_PAGE_SIZE;
     private MutableLiveData<Asset> selectedAsset = new MutableLiveData<>();
-    private MutableLiveData<List<Asset>> recentlyViewedAssets = new MutableLiveData<>(new ArrayList<>());
+    private MutableLiveData<List<Asset>> trendingAssets = new MutableLiveData<>(new ArrayList<>());
+    private LiveData<List<Asset>> recentlyViewedAssets;
+    private String recentlyViewedUserId;
     private MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
     private LiveData<List<AssetTransaction>> pendingTransactions;
@@ -61,6 +84,12 @@ public class AssetViewModel extends AndroidViewModel {
         this.repository = repository;
         this.auth = FirebaseAuth.getInstance();
         this.storage = FirebaseStorage.getInstance();
+        this.feedMaterializer = FeedMaterializer.getInstance(application);
+        this.marketplaceMediator = MarketplaceRemoteMediator.getInstance(application);
+        this.coViewRecommender = CoViewRecommender.getInstance(application);
+        this.viewHistory = ViewHistory.getInstance(application);
+        this.impressionTracker = ImpressionTracker.getInstance(application);
+        this.uploadQueue = UploadQueue.getInstance(application);
 
         // Load user assets
         loadAssets();
@@ -75,7 +104,7 @@ public class AssetViewModel extends AndroidViewModel {
         hiddenAssets = repository.getHiddenAssetsByUser();
         assetsForSale = repository.getAssetsForSale();
         topAssets = repository.getTopAssets();
-        marketplaceAssets = repository.getAllAssetsForSale();
+        observeMarketplace();
         pendingTransactions = repository.getPendingIncomingTransactions();
     }
 
@@ -90,26 +119,49 @@ public class AssetViewModel extends AndroidViewModel {
         });
     }
 
-    // Set up personalized feed by combining top assets and following feed
+    // Set up personalized feed from the materialized feed table
     private void setupPersonalizedFeed() {
-        // First source: top assets
+        // Top assets stand in until the first materialized feed is written
         personalizedFeed.addSource(topAssets, assets -> {
             if (assets != null) {
-                // Apply engagement algorithm when user is available
-                FirebaseUser currentUser = auth.getCurrentUser();
-                if (currentUser != null) {
-                    // This would use the actual user object in production
-                    User user = new User(currentUser.getUid(), currentUser.getEmail());
-                    List<Asset> personalized = EngagementAlgorithm.generatePersonalizedFeed(
-                            assets, user);
-                    personalizedFeed.setValue(personalized);
-                } else {
-                    personalizedFeed.setValue(assets);
-                }
+                personalizedFeed.setValue(assets);
+            }
+        });
+
+        FirebaseUser currentUser = auth.getCurrentUser();
+        if (currentUser != null) {
+            // Scoring runs in the background; this only reads ranked rows
+            feedMaterializer.start(currentUser.getUid());
+            observeFeed(currentUser.getUid());
+        }
+    }
+
+    // (Re)attach the feed query with the current page limit
+    private void observeFeed(String userId) {
+        if (feedSource != null) {
+            personalizedFeed.removeSource(feedSource);
+        }
+        feedSource = feedMaterializer.getFeed(userId, feedLimit);
+        personalizedFeed.addSource(feedSource, assets -> {
+            if (assets != null && !assets.isEmpty()) {
+                personalizedFeed.removeSource(topAssets);
+                personalizedFeed.setValue(assets);
             }
         });
+    }
 
-        // Additional sources can be added here and combined
+    /**
+     * Extend the personalized feed by another page
+     */
+    public void loadMoreFeed() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        List<Asset> current = personalizedFeed.getValue();
+        if (currentUser == null || feedSource == null || current == null || current.size() < feedLimit) {
+            // Not on the materialized feed yet, or already at the end
+            return;
+        }
+        feedLimit += FEED_PAGE_SIZE;
+        observeFeed(currentUser.getUid());
     }
 
     // Get user's assets
@@ -161,6 +213,8 @@ public class AssetViewModel extends AndroidViewModel {
     // Delete asset
     public void deleteAsset(Asset asset) {
         repository.deleteAsset(asset);
+        coViewRecommender.removeAsset(asset.getId());
+        viewHistory.removeAsset(asset.getId());
     }
 
     // Search assets
@@ -206,24 +260,23 @@ public class AssetViewModel extends AndroidViewModel {
     // View an asset (track view and add to recently viewed)
     public void viewAsset(Asset asset) {
         if (asset != null) {
-            // Increment views
-            repository.incrementViews(asset);
-
-            // Add to recently viewed
-            List<Asset> recent = recentlyViewedAssets.getValue();
-            if (recent != null) {
-                // Add to front of list
-                if (recent.contains(asset)) {
-                    recent.remove(asset);
-                }
-                recent.add(0, asset);
+            // Count the view; batched, and once per session
+            impressionTracker.recordImpression(asset);
+
+            // The models below are keyed by local asset ID, which a
+            // marketplace listing from another user doesn't have
+            if (asset.getListingId() != null) {
+                selectedAsset.setValue(asset);
+                return;
+            }
 
-                // Limit list size
-                if (recent.size() > 10) {
-                    recent = recent.subList(0, 10);
-                }
+            // Feed the "viewed together" model
+            coViewRecommender.recordView(asset.getId());
 
-                recentlyViewedAssets.setValue(recent);
+            // Add to recently viewed
+            FirebaseUser currentUser = auth.getCurrentUser();
+            if (currentUser != null) {
+                viewHistory.recordView(currentUser.getUid(), asset.getId());
             }
 
             selectedAsset.setValue(asset);
@@ -346,8 +399,17 @@ public class AssetViewModel extends AndroidViewModel {
         selectedAsset.setValue(asset);
     }
 
-    // Get recently viewed assets
+    // Get recently viewed assets, newest first
     public LiveData<List<Asset>> getRecentlyViewedAssets() {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        String userId = currentUser != null ? currentUser.getUid() : null;
+        // Rebuilt when the account changes, so one user never sees another's history
+        if (recentlyViewedAssets == null || !Objects.equals(userId, recentlyViewedUserId)) {
+            recentlyViewedUserId = userId;
+            recentlyViewedAssets = userId != null
+                    ? viewHistory.getRecentlyViewed(userId, RECENTLY_VIEWED_LIMIT)
+                    : new MutableLiveData<>(new ArrayList<>());
+        }
         return recentlyViewedAssets;
     }
 
@@ -361,6 +423,43 @@ public class AssetViewModel extends AndroidViewModel {
         return errorMessage;
     }
 
+    /**
+     * Get assets most often viewed together with an asset
+     * @param assetId Asset ID
+     * @return LiveData containing related assets, strongest first
+     */
+    public LiveData<List<Asset>> getRelatedAssets(int assetId) {
+        FirebaseUser currentUser = auth.getCurrentUser();
+        List<Integer> recent = currentUser != null
+                ? viewHistory.getRecentAssetIds(currentUser.getUid(), RELATED_SESSION_SIZE)
+                : new ArrayList<>();
+        return coViewRecommender.getRelatedAssets(assetId, recent, RELATED_ASSETS_LIMIT);
+    }
+
+    /**
+     * Recompute the trending strip from recent interactions
+     */
+    public void loadTrendingAssets() {
+        repository.getTrendingAssets(TRENDING_ASSETS_LIMIT, trendingAssets::postValue);
+    }
+
+    /**
+     * Get assets trending now
+     * @return LiveData containing trending assets, most trending first
+     */
+    public LiveData<List<Asset>> getTrendingAssets() {
+        return trendingAssets;
+    }
+
+    /**
+     * Get another user's asset from the marketplace cache
+     * @param listingId Firestore document ID of the listing
+     * @return LiveData containing the asset, or null once it is no longer listed
+     */
+    public LiveData<Asset> getMarketplaceAsset(String listingId) {
+        return marketplaceMediator.getListing(listingId);
+    }
+
     /**
      * Get a specific asset by ID
      * @param assetId Asset ID to fetch
@@ -376,6 +475,9 @@ public class AssetViewModel extends AndroidViewModel {
         // Create temporary backing field
         LiveData<Asset> assetLiveData = repository.getAssetById(assetId);
 
+        // Pull aggregated view/like counters; Room re-emits once they land
+        repository.syncEngagementCounts(assetId);
+
         // Add assetLiveData as a source
         result.addSource(assetLiveData, asset -> {
             if (asset != null) {
@@ -393,74 +495,72 @@ public class AssetViewModel extends AndroidViewModel {
     }
 
     /**
-     * Upload asset image with compression and error handling
+     * Compress an asset's image and queue its variants for upload. The
+     * upload runs in the background and survives the app being closed; the
+     * asset's image fields are set once every variant is up.
+     * @param asset Saved asset, with its ID
      * @param imageUri Original image Uri
-     * @param callback Callback with image URL or null if error
      */
-    public void uploadAssetImageWithCompression(Uri imageUri, AssetRepository.Callback<String> callback) {
+    public void queueAssetImage(Asset asset, Uri imageUri) {
         if (imageUri == null) {
-            errorMessage.setValue("No image selected");
-            callback.onResult(null);
             return;
         }
 
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
-            errorMessage.setValue("User not logged in");
-            callback.onResult(null);
+            errorMessage.postValue("User not logged in");
             return;
         }
 
-        isLoading.setValue(true);
-
-        // Compress image before upload
-        ImageCompressor.compressImage(getApplication(), imageUri, new ImageCompressor.CompressionCallback() {
+        ImageCompressor.compressVariants(getApplication(), imageUri, new ImageCompressor.VariantsCallback() {
             @Override
-            public void onCompressed(Uri compressedImageUri) {
-                // Upload compressed image
-                StorageReference ref = storage.getReference().child(
-                        "assets/" + user.getUid() + "/" + UUID.randomUUID().toString() + ".jpg");
-
-                UploadTask uploadTask = ref.putFile(compressedImageUri);
-
-                uploadTask.addOnSuccessListener(taskSnapshot -> {
-                            ref.getDownloadUrl()
-                                    .addOnSuccessListener(uri -> {
-                                        isLoading.setValue(false);
-                                        callback.onResult(uri.toString());
-
-                                        // Track analytics
-                                        AnalyticsTracker.getInstance(getApplication())
-                                                .trackEvent("image_upload_success", null);
-                                    })
-                                    .addOnFailureListener(e -> {
-                                        isLoading.setValue(false);
-                                        FirebaseErrorHandler.handleException(e, errorMessage);
-                                        callback.onResult(null);
-                                    });
-                        })
-                        .addOnFailureListener(e -> {
-                            isLoading.setValue(false);
-                            FirebaseErrorHandler.handleException(e, errorMessage);
-                            callback.onResult(null);
-                        });
+            public void onCompressed(ImageVariants files) {
+                uploadQueue.enqueueAssetImage(asset.getId(), user.getUid(), files);
+
+                // Track analytics
+                AnalyticsTracker.getInstance(getApplication())
+                        .trackEvent("image_upload_queued", null);
             }
 
             @Override
             public void onError(Exception e) {
-                isLoading.setValue(false);
                 errorMessage.setValue("Image compression failed: " + e.getMessage());
-                callback.onResult(null);
             }
         });
     }
 
+    /**
+     * Upload progress of an asset's queued images
+     * @param assetId Asset ID
+     */
+    public LiveData<UploadQueue.UploadProgress> getImageUploadProgress(int assetId) {
+        return uploadQueue.getAssetProgress(assetId);
+    }
+
+    /**
+     * Retry an asset's failed image uploads
+     * @param assetId Asset ID
+     */
+    public void retryImageUpload(int assetId) {
+        uploadQueue.retryAssetImages(assetId);
+    }
+
     /**
      * Add asset with validation
      * @param asset Asset to add
      * @return boolean indicating success
      */
     public boolean addAssetWithValidation(Asset asset) {
+        return addAssetWithValidation(asset, null);
+    }
+
+    /**
+     * Add asset with validation, queueing an image for it once it is saved
+     * @param asset Asset to add
+     * @param imageUri Image picked for the asset, or null
+     * @return boolean indicating success
+     */
+    public boolean addAssetWithValidation(Asset asset, Uri imageUri) {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
             errorMessage.setValue("User not logged in");
@@ -492,8 +592,8 @@ public class AssetViewModel extends AndroidViewModel {
         // Ensure user ID is set
         asset.setUserId(user.getUid());
 
-        // Add asset
-        repository.addAsset(asset);
+        // Add asset; the image needs its ID, so it is queued once saved
+        repository.addAsset(asset, saved -> queueAssetImage(saved, imageUri));
 
         // Track analytics
         AnalyticsTracker tracker = AnalyticsTracker.getInstance(getApplication());
@@ -508,6 +608,16 @@ public class AssetViewModel extends AndroidViewModel {
      * @return boolean indicating success
      */
     public boolean updateAssetWithValidation(Asset asset) {
+        return updateAssetWithValidation(asset, null);
+    }
+
+    /**
+     * Update asset with validation, queueing a replacement image
+     * @param asset Asset to update
+     * @param imageUri New image for the asset, or null to keep the current one
+     * @return boolean indicating success
+     */
+    public boolean updateAssetWithValidation(Asset asset, Uri imageUri) {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
             errorMessage.setValue("User not logged in");
@@ -541,6 +651,7 @@ public class AssetViewModel extends AndroidViewModel {
 
         // Update asset
         repository.updateAsset(asset);
+        queueAssetImage(asset, imageUri);
 
         // Track analytics
         AnalyticsTracker tracker = AnalyticsTracker.getInstance(getApplication());
@@ -664,17 +775,48 @@ public class AssetViewModel extends AndroidViewModel {
             errorMessage.setValue("No internet connection. Showing cached data.");
         }
 
-        LiveData<List<Asset>> marketplaceAssetsLiveData = repository.getAllAssetsForSale();
+        // Back to the first page; cached rows show while the refresh runs
+        marketplaceLimit = MarketplaceRemoteMediator.PAGE_SIZE;
+        observeMarketplace();
+        marketplaceMediator.refresh(error -> {
+            isLoading.postValue(false);
+            if (error != null) {
+                errorMessage.postValue("Failed to load marketplace assets");
+            }
+        });
+    }
 
-        // Use mediator live data to transform the result
-        MediatorLiveData<List<Asset>> result = new MediatorLiveData<>();
-        result.addSource(marketplaceAssetsLiveData, assets -> {
-            isLoading.setValue(false);
-            if (assets != null) {
-                marketplaceAssets = marketplaceAssetsLiveData;
-                result.setValue(assets);
-            } else {
-                errorMessage.setValue("Failed to load marketplace assets");
+    /**
+     * Extend the marketplace by another page
+     */
+    public void loadMoreMarketplace() {
+        List<Asset> current = marketplaceAssets.getValue();
+        if (current == null || current.size() < marketplaceLimit) {
+            // Still waiting on the network, or at the end
+            return;
+        }
+        marketplaceLimit += MarketplaceRemoteMediator.PAGE_SIZE;
+        observeMarketplace();
+    }
+
+    // (Re)attach the local marketplace query with the current page limit
+    private void observeMarketplace() {
+        if (marketplaceSource != null) {
+            marketplaceAssets.removeSource(marketplaceSource);
+        }
+        marketplaceSource = marketplaceMediator.getPage(marketplaceLimit);
+        marketplaceAssets.addSource(marketplaceSource, assets -> {
+            if (assets == null) {
+                return;
+            }
+            marketplaceAssets.setValue(assets);
+            if (assets.size() < marketplaceLimit) {
+                // Room has run out of cached pages, so fetch the next one
+                marketplaceMediator.loadNextPage(error -> {
+                    if (error != null) {
+                        Log.w(TAG, "Could not load more marketplace assets: " + error.getMessage());
+                    }
+                });
             }
         });
     }
@@ -683,17 +825,16 @@ public class AssetViewModel extends AndroidViewModel {
      * Load personalized feed with fallback to top assets
      */
     public void loadPersonalizedFeed() {
-        isLoading.setValue(true);
-
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user == null) {
             // Fallback to top assets for non-authenticated users
+            isLoading.setValue(true);
             loadTopAssets();
             return;
         }
 
-        // Load top assets as fallback and handle in a proper lifecycle-aware way
-        loadTopAssets();
+        // The feed table is observed already; just ask for fresh scores
+        feedMaterializer.requestRefresh(user.getUid());
     }
 
     /**
@@ -1,5 +1,6 @@
 package com.imaginit.hyperplux.viewmodels;
 
+import android.content.Context;
 import android.net.Uri;
 import android.util.Log;
 
@@ -10,29 +11,27 @@ import androidx.lifecycle.ViewModel;
 
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
-import com.google.firebase.storage.FirebaseStorage;
-import com.google.firebase.storage.StorageReference;
 import com.imaginit.hyperplux.models.ChatMessage;
 import com.imaginit.hyperplux.models.ChatRoom;
 import com.imaginit.hyperplux.models.Result;
 import com.imaginit.hyperplux.utils.ChatManager;
+import com.imaginit.hyperplux.utils.ImageCompressor;
+import com.imaginit.hyperplux.utils.ImageVariants;
 import com.imaginit.hyperplux.utils.NetworkMonitor;
+import com.imaginit.hyperplux.utils.UploadQueue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
 
 /**
  * ViewModel for chat functionality
  */
 public class ChatViewModel extends ViewModel {
     private static final String TAG = "ChatViewModel";
-    private static final String CHAT_IMAGES_PATH = "chat_images";
 
     private final ChatManager chatManager;
-    private final FirebaseStorage storage;
     private final String currentUserId;
 
     // Map to keep track of observers to prevent memory leaks
@@ -40,7 +39,6 @@ public class ChatViewModel extends ViewModel {
 
     public ChatViewModel() {
         chatManager = ChatManager.getInstance();
-        storage = FirebaseStorage.getInstance();
 
         // Safely get current user ID
         FirebaseUser currentUser = FirebaseAuth.getInstance().getCurrentUser();
@@ -163,6 +161,16 @@ public class ChatViewModel extends ViewModel {
         return chatManager.getMessages(chatRoomId);
     }
 
+    /**
+     * Load the page of messages before the oldest one shown
+     */
+    public void loadOlderMessages(String chatRoomId) {
+        if (currentUserId == null || chatRoomId == null || chatRoomId.isEmpty()) {
+            return;
+        }
+        chatManager.loadOlderMessages(chatRoomId);
+    }
+
     /**
      * Send a text message
      */
@@ -197,10 +205,13 @@ public class ChatViewModel extends ViewModel {
     }
 
     /**
-     * Upload an image and send it as a message
+     * Upload an image and send it as a message. Succeeds with the compressed
+     * local files once they are queued; the message appears in the room when
+     * the upload finishes, and getImageUploadProgress reports it until then.
+     * @param context Context for reading and compressing the image
      */
-    public LiveData<Result<ChatMessage>> uploadImageAndSendMessage(String chatRoomId, Uri imageUri) {
-        MutableLiveData<Result<ChatMessage>> resultLiveData = new MutableLiveData<>();
+    public LiveData<Result<ImageVariants>> uploadImageAndSendMessage(Context context, String chatRoomId, Uri imageUri) {
+        MutableLiveData<Result<ImageVariants>> resultLiveData = new MutableLiveData<>();
 
         // Check if user is logged in
         if (currentUserId == null) {
@@ -226,39 +237,39 @@ public class ChatViewModel extends ViewModel {
             return resultLiveData;
         }
 
-        try {
-            // Generate a unique filename
-            String fileName = UUID.randomUUID().toString() + ".jpg";
-            StorageReference storageRef = storage.getReference()
-                    .child(CHAT_IMAGES_PATH)
-                    .child(chatRoomId)
-                    .child(fileName);
-
-            // Upload the image
-            storageRef.putFile(imageUri)
-                    .addOnSuccessListener(taskSnapshot -> {
-                        // Get the download URL
-                        storageRef.getDownloadUrl().addOnSuccessListener(uri -> {
-                            // Send the image message
-                            chatManager.sendImageMessage(chatRoomId, uri.toString())
-                                    .observeForever(result -> resultLiveData.setValue(result));
-                        }).addOnFailureListener(e -> {
-                            Log.e(TAG, "Error getting download URL", e);
-                            resultLiveData.setValue(new Result.Error<>(e));
-                        });
-                    })
-                    .addOnFailureListener(e -> {
-                        Log.e(TAG, "Error uploading image", e);
-                        resultLiveData.setValue(new Result.Error<>(e));
-                    });
-        } catch (Exception e) {
-            Log.e(TAG, "Exception in uploadImageAndSendMessage", e);
-            resultLiveData.setValue(new Result.Error<>(e));
-        }
+        // Compress to thumb, medium and full size in one decode, then queue the upload.
+        // The message is sent by the queue once the upload is done, even if the app closes first
+        ImageCompressor.compressVariants(context, imageUri, new ImageCompressor.VariantsCallback() {
+            @Override
+            public void onCompressed(ImageVariants files) {
+                UploadQueue.getInstance(context).enqueueChatImage(chatRoomId, currentUserId, files);
+                resultLiveData.setValue(new Result.Success<>(files));
+            }
+
+            @Override
+            public void onError(Exception e) {
+                Log.e(TAG, "Error compressing image", e);
+                resultLiveData.setValue(new Result.Error<>(e));
+            }
+        });
 
         return resultLiveData;
     }
 
+    /**
+     * Upload progress of the images queued for a chat room
+     */
+    public LiveData<UploadQueue.UploadProgress> getImageUploadProgress(Context context, String chatRoomId) {
+        return UploadQueue.getInstance(context).getChatProgress(chatRoomId);
+    }
+
+    /**
+     * Retry a chat room's failed image uploads
+     */
+    public void retryImageUpload(Context context, String chatRoomId) {
+        UploadQueue.getInstance(context).retryChatImages(chatRoomId);
+    }
+
     /**
      * Send an asset as a message
      */
@@ -8,13 +8,16 @@ import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 import com.imaginit.hyperplux.models.User;
 import com.imaginit.hyperplux.repositories.UserRepository;
+import com.imaginit.hyperplux.utils.AppExecutors;
 
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 
 public class UserViewModel extends ViewModel {
     private static final String TAG = "UserViewModel";
+    private static final int SEARCH_PAGE_SIZE = 20;
 
     private UserRepository repository;
     private FirebaseAuth auth;
@@ -25,6 +28,12 @@ public class UserViewModel extends ViewModel {
     private MutableLiveData<Boolean> isLoading = new MutableLiveData<>(false);
     private MutableLiveData<String> errorMessage = new MutableLiveData<>();
 
+    // Search paging state (main thread only)
+    private String searchQuery;
+    private int nextSearchPage;
+    private boolean searchExhausted;
+    private boolean searchPageLoading;
+
     public UserViewModel(UserRepository repository) {
         this.repository = repository;
         this.auth = FirebaseAuth.getInstance();
@@ -72,14 +81,48 @@ public class UserViewModel extends ViewModel {
         return repository.getUserById(userId);
     }
 
-    // Search users
+    // Search users, replacing any previous results with the first page
     public void searchUsers(String query) {
+        searchQuery = query;
+        nextSearchPage = 0;
+        searchExhausted = false;
+        searchResults.setValue(new ArrayList<>());
+        loadSearchPage();
+    }
+
+    // Append the next page of results for the current query (e.g. on scroll)
+    public void loadMoreSearchResults() {
+        if (searchQuery == null || searchExhausted || searchPageLoading) {
+            return;
+        }
+        loadSearchPage();
+    }
+
+    private void loadSearchPage() {
+        final String query = searchQuery;
+        final int page = nextSearchPage;
+        searchPageLoading = true;
         isLoading.setValue(true);
-        LiveData<List<User>> results = repository.searchUsers(query);
-        results.observeForever(users -> {
-            searchResults.setValue(users);
-            isLoading.setValue(false);
-        });
+
+        repository.searchUsers(query, page, SEARCH_PAGE_SIZE, users ->
+                AppExecutors.getInstance().mainThread().execute(() -> {
+                    // Drop pages for a query the user has since replaced
+                    if (!Objects.equals(query, searchQuery)) {
+                        return;
+                    }
+
+                    List<User> merged = new ArrayList<>();
+                    if (page > 0 && searchResults.getValue() != null) {
+                        merged.addAll(searchResults.getValue());
+                    }
+                    merged.addAll(users);
+
+                    nextSearchPage = page + 1;
+                    searchExhausted = users.size() < SEARCH_PAGE_SIZE;
+                    searchPageLoading = false;
+                    searchResults.setValue(merged);
+                    isLoading.setValue(false);
+                }));
     }
 
     // Get search results
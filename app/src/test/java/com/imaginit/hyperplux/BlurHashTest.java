@@ -0,0 +1,73 @@
+package com.imaginit.hyperplux;
+
+import com.imaginit.hyperplux.utils.BlurHash;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Unit tests for BlurHash encoding and decoding
+ */
+public class BlurHashTest {
+
+    private static int[] solid(int color, int width, int height) {
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, color);
+        return pixels;
+    }
+
+    @Test
+    public void testHashLengthMatchesComponents() {
+        String hash = BlurHash.encode(solid(0xFF336699, 16, 16), 16, 16, 4, 3);
+        assertEquals(4 + 2 * 4 * 3, hash.length());
+    }
+
+    @Test
+    public void testAverageColorRoundTrips() {
+        // A single component is just the average colour
+        String hash = BlurHash.encode(solid(0xFF336699, 16, 16), 16, 16, 1, 1);
+        int[] decoded = BlurHash.decode(hash, 8, 8);
+        assertNotNull(decoded);
+        for (int pixel : decoded) {
+            assertEquals(0xFF336699, pixel);
+        }
+    }
+
+    @Test
+    public void testGradientKeepsDirection() {
+        int width = 32;
+        int height = 8;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int level = x * 255 / (width - 1);
+                pixels[y * width + x] = 0xFF000000 | (level << 16) | (level << 8) | level;
+            }
+        }
+        int[] decoded = BlurHash.decode(BlurHash.encode(pixels, width, height, 4, 3), width, height);
+        assertNotNull(decoded);
+        // Left edge dark, right edge light
+        assertTrue((decoded[0] & 0xFF) < 64);
+        assertTrue((decoded[width - 1] & 0xFF) > 192);
+    }
+
+    @Test
+    public void testMalformedHashDecodesToNull() {
+        assertNull(BlurHash.decode(null, 8, 8));
+        assertNull(BlurHash.decode("LEHV6n", 8, 8)); // wrong length for its size flag
+        assertNull(BlurHash.decode("L\"HV6nWB2yk8pyo0adR*.7kCMdnj", 8, 8)); // character outside the alphabet
+    }
+
+    @Test
+    public void testRejectsTooManyComponents() {
+        try {
+            BlurHash.encode(solid(0xFF000000, 4, 4), 4, 4, 10, 3);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+    }
+}
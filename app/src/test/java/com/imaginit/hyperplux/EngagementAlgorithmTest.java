@@ -0,0 +1,254 @@
+package com.imaginit.hyperplux;
+
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.User;
+import com.imaginit.hyperplux.utils.EngagementAlgorithm;
+import com.imaginit.hyperplux.utils.ScoredAsset;
+
+/**
+ * Unit tests for EngagementAlgorithm ranking
+ */
+public class EngagementAlgorithmTest {
+    private User user;
+
+    @Before
+    public void setUp() {
+        user = new User("viewer", "viewer@example.com");
+        user.setInterests(Arrays.asList("Art"));
+        user.setFollowing(Arrays.asList("followed"));
+    }
+
+    private static Asset asset(int id, String ownerId, String category, double engagementScore) {
+        Asset asset = new Asset("Asset " + id, 1, ownerId);
+        asset.setId(id);
+        asset.setCategory(category);
+        asset.setEngagementScore(engagementScore);
+        return asset;
+    }
+
+    private static List<Asset> randomAssets(int count, long seed) {
+        Random random = new Random(seed);
+        String[] categories = {"Art", "Books", "Tools", "Music"};
+        List<Asset> assets = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            assets.add(asset(i, "owner" + random.nextInt(50),
+                    categories[random.nextInt(categories.length)],
+                    // Coarse scores so plenty of ties occur
+                    random.nextInt(1000) / 10.0));
+        }
+        return assets;
+    }
+
+    // Reference ranking: score everything and sort the whole list
+    private static List<ScoredAsset> fullSort(List<Asset> assets, double[] scores, int k) {
+        List<ScoredAsset> all = new ArrayList<>(assets.size());
+        for (int i = 0; i < assets.size(); i++) {
+            all.add(new ScoredAsset(assets.get(i), scores[i]));
+        }
+        Collections.sort(all, ScoredAsset.RANK_ORDER);
+        return new ArrayList<>(all.subList(0, Math.min(k, all.size())));
+    }
+
+    private static void assertSameRanking(List<ScoredAsset> expected, List<ScoredAsset> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getAsset().getId(), actual.get(i).getAsset().getId());
+            assertEquals(expected.get(i).getScore(), actual.get(i).getScore(), 0.0);
+        }
+    }
+
+    @Test
+    public void testRankingLeavesAssetScoresUntouched() {
+        List<Asset> assets = Arrays.asList(
+                asset(1, "followed", "Art", 10),
+                asset(2, "stranger", "Books", 15));
+
+        List<Asset> feed = EngagementAlgorithm.generatePersonalizedFeed(assets, user, new HashMap<>(), 20);
+        EngagementAlgorithm.getRecommendations(assets, null, user, 20);
+
+        assertEquals(10.0, assets.get(0).getEngagementScore(), 0.0);
+        assertEquals(15.0, assets.get(1).getEngagementScore(), 0.0);
+
+        // Interest (1.5x) and following (1.3x) boosts lift asset 1 above asset 2
+        assertEquals(1, feed.get(0).getId());
+    }
+
+    @Test
+    public void testPersonalizedScoresAndOwnerAuthority() {
+        Map<String, Double> authority = new HashMap<>();
+        authority.put("stranger", 1.5);
+        List<Asset> assets = Arrays.asList(
+                asset(1, "followed", "Art", 10),
+                asset(2, "stranger", "Books", 10));
+
+        List<ScoredAsset> ranked = EngagementAlgorithm.rankPersonalizedFeed(assets, user, authority, 2);
+
+        assertEquals(1, ranked.get(0).getAsset().getId());
+        assertEquals(10 * 1.5 * 1.3, ranked.get(0).getScore(), 1e-9);
+        assertEquals(15.0, ranked.get(1).getScore(), 1e-9);
+    }
+
+    @Test
+    public void testOwnerAuthority() {
+        // No history is neutral
+        assertEquals(1.0, EngagementAlgorithm.calculateOwnerAuthority(0, 0, 0), 0.0);
+
+        // Each signal raises authority
+        double base = EngagementAlgorithm.calculateOwnerAuthority(10, 100, 5);
+        assertTrue(EngagementAlgorithm.calculateOwnerAuthority(20, 100, 5) > base);
+        assertTrue(EngagementAlgorithm.calculateOwnerAuthority(10, 1000, 5) > base);
+        assertTrue(EngagementAlgorithm.calculateOwnerAuthority(10, 100, 6) > base);
+
+        // Transaction history is capped
+        assertEquals(EngagementAlgorithm.calculateOwnerAuthority(0, 0, 50),
+                EngagementAlgorithm.calculateOwnerAuthority(0, 0, 500), 0.0);
+    }
+
+    @Test
+    public void testTopKMatchesFullSort() {
+        List<Asset> assets = randomAssets(5000, 42);
+        double[] scores = new double[assets.size()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = assets.get(i).getEngagementScore();
+        }
+
+        for (int k : new int[]{1, 20, 100, 5000, 6000}) {
+            assertSameRanking(fullSort(assets, scores, k), EngagementAlgorithm.selectTopK(assets, scores, k));
+        }
+        assertTrue(EngagementAlgorithm.selectTopK(assets, scores, 0).isEmpty());
+    }
+
+    @Test
+    public void testTiesRankByAssetId() {
+        List<Asset> assets = Arrays.asList(
+                asset(7, "a", null, 5), asset(3, "a", null, 5), asset(9, "a", null, 5));
+
+        List<ScoredAsset> ranked = EngagementAlgorithm.rankRecommendations(assets, null, null, 2);
+
+        assertEquals(3, ranked.get(0).getAsset().getId());
+        assertEquals(7, ranked.get(1).getAsset().getId());
+    }
+
+    @Test
+    public void testParallelRankingIsDeterministic() {
+        // Large enough to take the fork/join path
+        List<Asset> assets = randomAssets(50_000, 7);
+        List<Asset> recent = Arrays.asList(asset(-1, "x", "Books", 0));
+
+        List<ScoredAsset> expected = null;
+        for (int threads : new int[]{1, 2, 3, 8}) {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                List<ScoredAsset> ranked = EngagementAlgorithm.rankRecommendations(assets, recent, user, 50, pool);
+                if (expected == null) {
+                    expected = ranked;
+                } else {
+                    assertSameRanking(expected, ranked);
+                }
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        // Matches a plain full sort as well
+        double[] scores = new double[assets.size()];
+        for (int i = 0; i < scores.length; i++) {
+            String category = assets.get(i).getCategory();
+            double boost = "Books".equals(category) ? 1.2 : "Art".equals(category) ? 1.4 : 1.0;
+            scores[i] = assets.get(i).getEngagementScore() * boost;
+        }
+        assertSameRanking(fullSort(assets, scores, 50), expected);
+    }
+
+    /**
+     * Compares the old approach (score all, sort all) with bounded-heap
+     * selection of one screen of results. Timing only; run by hand, since
+     * the numbers mean nothing on a shared CI machine.
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkTopKAgainstFullSort() {
+        final int k = 20;
+        final int rounds = 5;
+        for (int size : new int[]{1_000, 10_000, 100_000}) {
+            List<Asset> assets = randomAssets(size, size);
+            Map<String, Double> authority = new HashMap<>();
+
+            long sortNanos = Long.MAX_VALUE;
+            long heapNanos = Long.MAX_VALUE;
+            List<ScoredAsset> sorted = null;
+            List<ScoredAsset> selected = null;
+            for (int round = 0; round < rounds; round++) {
+                long start = System.nanoTime();
+                double[] scores = new double[size];
+                for (int i = 0; i < size; i++) {
+                    scores[i] = EngagementAlgorithm.calculatePersonalizedScore(assets.get(i), user, authority);
+                }
+                sorted = fullSort(assets, scores, k);
+                sortNanos = Math.min(sortNanos, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                selected = EngagementAlgorithm.rankPersonalizedFeed(assets, user, authority, k);
+                heapNanos = Math.min(heapNanos, System.nanoTime() - start);
+            }
+
+            assertSameRanking(sorted, selected);
+            System.out.println(String.format("top-%d of %,d: full sort %.2f ms, heap %.2f ms",
+                    k, size, sortNanos / 1e6, heapNanos / 1e6));
+        }
+    }
+
+    /**
+     * Single-threaded against fork/join scoring around PARALLEL_THRESHOLD (4096).
+     * Timing only; run by hand when tuning the threshold.
+     */
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkParallelScoring() {
+        final int k = 20;
+        final int rounds = 5;
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool all = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        try {
+            for (int size : new int[]{2_000, 5_000, 20_000, 100_000}) {
+                List<Asset> assets = randomAssets(size, size);
+
+                long sequentialNanos = Long.MAX_VALUE;
+                long parallelNanos = Long.MAX_VALUE;
+                List<ScoredAsset> sequential = null;
+                List<ScoredAsset> parallel = null;
+                for (int round = 0; round < rounds; round++) {
+                    long start = System.nanoTime();
+                    sequential = EngagementAlgorithm.rankRecommendations(assets, null, user, k, single);
+                    sequentialNanos = Math.min(sequentialNanos, System.nanoTime() - start);
+
+                    start = System.nanoTime();
+                    parallel = EngagementAlgorithm.rankRecommendations(assets, null, user, k, all);
+                    parallelNanos = Math.min(parallelNanos, System.nanoTime() - start);
+                }
+
+                assertSameRanking(sequential, parallel);
+                System.out.println(String.format("%,d candidates on %d threads: sequential %.2f ms, parallel %.2f ms",
+                        size, all.getParallelism(), sequentialNanos / 1e6, parallelNanos / 1e6));
+            }
+        } finally {
+            single.shutdown();
+            all.shutdown();
+        }
+    }
+}
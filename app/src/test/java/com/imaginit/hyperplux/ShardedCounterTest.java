@@ -0,0 +1,186 @@
+package com.imaginit.hyperplux;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+import com.imaginit.hyperplux.models.Asset;
+import com.imaginit.hyperplux.models.User;
+import com.imaginit.hyperplux.utils.ShardedCounter;
+
+/**
+ * Unit tests for ShardedCounter against an in-memory shard store
+ */
+public class ShardedCounterTest {
+    private static final int SHARDS = 4;
+    private static final long TTL = 1000;
+    private static final String COUNTER = ShardedCounter.assetCounter(42, "views");
+
+    private FakeShardStore store;
+    private AtomicLong now;
+    private ShardedCounter counter;
+
+    /**
+     * Local stand-in for Firestore: shard path -> value
+     */
+    private static class FakeShardStore implements ShardedCounter.ShardStore {
+        final Map<String, Long> shards = new HashMap<>();
+        int reads = 0;
+        int batches = 0;
+        boolean failReads = false;
+
+        @Override
+        public void increment(String shardPath, long amount) {
+            Long current = shards.get(shardPath);
+            shards.put(shardPath, (current != null ? current : 0) + amount);
+        }
+
+        @Override
+        public void incrementAll(Map<String, Long> amountsByShardPath) {
+            batches++;
+            ShardedCounter.ShardStore.super.incrementAll(amountsByShardPath);
+        }
+
+        @Override
+        public void readShards(String shardsCollectionPath, ShardedCounter.Callback<List<Long>> callback) {
+            reads++;
+            if (failReads) {
+                callback.onResult(null);
+                return;
+            }
+            List<Long> values = new ArrayList<>();
+            for (Map.Entry<String, Long> entry : shards.entrySet()) {
+                if (entry.getKey().startsWith(shardsCollectionPath + "/")) {
+                    values.add(entry.getValue());
+                }
+            }
+            callback.onResult(values);
+        }
+    }
+
+    @Before
+    public void setUp() {
+        store = new FakeShardStore();
+        now = new AtomicLong(0);
+        counter = new ShardedCounter(store, SHARDS, TTL, new Random(7), now::get);
+    }
+
+    private Long read(String path) {
+        AtomicReference<Long> result = new AtomicReference<>();
+        counter.getCount(path, result::set);
+        return result.get();
+    }
+
+    @Test
+    public void testIncrementsSpreadAcrossShards() {
+        for (int i = 0; i < 200; i++) {
+            counter.increment(COUNTER, 1);
+        }
+
+        // Every write lands in one of the N shards, and more than one is used
+        assertTrue(store.shards.size() > 1);
+        assertTrue(store.shards.size() <= SHARDS);
+        for (String path : store.shards.keySet()) {
+            assertTrue(path.startsWith(COUNTER + "/shards/"));
+        }
+        assertEquals(Long.valueOf(200), read(COUNTER));
+    }
+
+    @Test
+    public void testRollupIsCachedUntilTtl() {
+        counter.increment(COUNTER, 5);
+        assertEquals(Long.valueOf(5), read(COUNTER));
+        assertEquals(Long.valueOf(5), read(COUNTER));
+        assertEquals(1, store.reads);
+
+        // A write made elsewhere is only seen after the TTL expires
+        store.increment(COUNTER + "/shards/0", 10);
+        assertEquals(Long.valueOf(5), read(COUNTER));
+        now.addAndGet(TTL);
+        assertEquals(Long.valueOf(15), read(COUNTER));
+        assertEquals(2, store.reads);
+    }
+
+    @Test
+    public void testLocalIncrementUpdatesCachedRollup() {
+        assertEquals(Long.valueOf(0), read(COUNTER));
+        counter.increment(COUNTER, 3);
+        assertEquals(Long.valueOf(3), read(COUNTER));
+        assertEquals(1, store.reads);
+    }
+
+    @Test
+    public void testFailedReadFallsBackToStaleRollup() {
+        counter.increment(COUNTER, 2);
+        assertEquals(Long.valueOf(2), read(COUNTER));
+
+        now.addAndGet(TTL);
+        store.failReads = true;
+        assertEquals(Long.valueOf(2), read(COUNTER));
+
+        // Nothing cached and the read fails: report null
+        assertNull(read(ShardedCounter.userCounter("u1", "totalLikes")));
+    }
+
+    @Test
+    public void testGetCountsOmitsFailedReads() {
+        String likes = ShardedCounter.assetCounter(42, "likes");
+        counter.increment(COUNTER, 1);
+        counter.increment(likes, 4);
+
+        List<String> paths = new ArrayList<>();
+        paths.add(COUNTER);
+        paths.add(likes);
+        AtomicReference<Map<String, Long>> totals = new AtomicReference<>();
+        counter.getCounts(paths, totals::set);
+
+        assertEquals(Long.valueOf(1), totals.get().get(COUNTER));
+        assertEquals(Long.valueOf(4), totals.get().get(likes));
+    }
+
+    @Test
+    public void testIncrementAllSendsOneBatch() {
+        String likes = ShardedCounter.assetCounter(42, "likes");
+        read(COUNTER);
+
+        Map<String, Long> amounts = new HashMap<>();
+        amounts.put(COUNTER, 3L);
+        amounts.put(likes, 2L);
+        amounts.put(ShardedCounter.userCounter("u1", "totalViews"), 0L);
+        counter.incrementAll(amounts);
+
+        assertEquals(1, store.batches);
+        // Zero amounts are skipped
+        assertEquals(2, store.shards.size());
+        // The cached rollup includes our own batched write
+        assertEquals(Long.valueOf(3), read(COUNTER));
+        now.addAndGet(TTL);
+        assertEquals(Long.valueOf(2), read(likes));
+    }
+
+    @Test
+    public void testWholeDocumentWritesLeaveCountersOut() {
+        List<String> assetFields = ShardedCounter.fieldsExcept(Asset.class, ShardedCounter.ASSET_COUNTER_FIELDS);
+        assertFalse(assetFields.contains("views"));
+        assertFalse(assetFields.contains("likes"));
+        // Other fields are still written, under Firestore's property names
+        assertTrue(assetFields.contains("name"));
+        assertTrue(assetFields.contains("engagementScore"));
+        assertTrue(assetFields.contains("forSale"));
+        assertFalse(assetFields.contains("class"));
+
+        List<String> userFields = ShardedCounter.fieldsExcept(User.class, ShardedCounter.USER_COUNTER_FIELDS);
+        assertFalse(userFields.contains("totalViews"));
+        assertFalse(userFields.contains("totalLikes"));
+        assertTrue(userFields.contains("totalAssets"));
+    }
+}
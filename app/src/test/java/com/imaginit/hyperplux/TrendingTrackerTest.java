@@ -0,0 +1,214 @@
+package com.imaginit.hyperplux;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+import com.imaginit.hyperplux.utils.TrendingTracker;
+
+/**
+ * Unit tests for TrendingTracker, driven by a fake clock
+ */
+public class TrendingTrackerTest {
+    private static final long MINUTE_MS = 60 * 1000;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final double MIN_RATE = 2.0;
+
+    private long now;
+    private TrendingTracker tracker;
+
+    @Before
+    public void setUp() {
+        now = 1_000_000_000L;
+        tracker = new TrendingTracker(() -> now);
+    }
+
+    private void views(int assetId, int count) {
+        for (int i = 0; i < count; i++) {
+            tracker.record(assetId, TrendingTracker.VIEW_WEIGHT);
+        }
+    }
+
+    @Test
+    public void testBurstTrends() {
+        views(1, 30);
+        views(2, 1);
+
+        List<Integer> trending = tracker.getTrending(10);
+
+        // One view is below the minimum hourly rate
+        assertEquals(1, trending.size());
+        assertEquals(1, (int) trending.get(0));
+        assertEquals(30.0, tracker.getHourlyRate(1), 1e-6);
+    }
+
+    @Test
+    public void testRatesDecay() {
+        views(1, 30);
+
+        now += HOUR_MS;
+        assertEquals(30 / Math.E, tracker.getHourlyRate(1), 1e-6);
+
+        // A quiet afternoon and the burst is no longer trending
+        now += 5 * HOUR_MS;
+        assertTrue(tracker.getHourlyRate(1) < MIN_RATE);
+        assertTrue(tracker.getTrending(10).isEmpty());
+
+        // The daily window remembers it for much longer
+        assertTrue(tracker.getDailyRate(1) > 0.5);
+    }
+
+    @Test
+    public void testLiftOverBaseline() {
+        // Asset 1 has been steadily popular all day
+        for (int hour = 0; hour < 24; hour++) {
+            views(1, 20);
+            now += HOUR_MS;
+        }
+        // Asset 2 gets the same burst, but only just now
+        views(1, 20);
+        views(2, 20);
+
+        double steady = tracker.getHourlyRate(1);
+        double spike = tracker.getHourlyRate(2);
+        assertTrue(steady >= spike);
+
+        // The spike is further above its own baseline, so it ranks first
+        List<Integer> trending = tracker.getTrending(10);
+        assertEquals(2, (int) trending.get(0));
+        assertEquals(1, (int) trending.get(1));
+    }
+
+    @Test
+    public void testWeightsAndLimit() {
+        for (int id = 1; id <= 5; id++) {
+            for (int i = 0; i < id; i++) {
+                tracker.record(id, TrendingTracker.SHARE_WEIGHT);
+            }
+        }
+
+        List<Integer> trending = tracker.getTrending(3);
+
+        assertEquals(3, trending.size());
+        assertEquals(5, (int) trending.get(0));
+        assertEquals(4, (int) trending.get(1));
+        assertEquals(3, (int) trending.get(2));
+    }
+
+    @Test
+    public void testLongTailStaysBounded() {
+        // Many one-off assets, then a few hot ones
+        for (int id = 1000; id < 50_000; id++) {
+            tracker.record(id, TrendingTracker.VIEW_WEIGHT);
+        }
+        for (int id = 1; id <= 3; id++) {
+            views(id, 50 * id);
+        }
+
+        List<Integer> trending = tracker.getTrending(200);
+
+        // Only the heavy-hitter set is ever considered
+        assertTrue(trending.size() <= 100);
+        assertEquals(3, (int) trending.get(0));
+        assertEquals(2, (int) trending.get(1));
+        assertEquals(1, (int) trending.get(2));
+        // Count-min never underestimates
+        assertTrue(tracker.getHourlyRate(3) >= 150);
+    }
+
+    @Test
+    public void testSurvivesLongRunning() {
+        // Weeks of uptime force several landmark rescales
+        for (int day = 0; day < 30; day++) {
+            views(1, 5);
+            now += 24 * HOUR_MS;
+        }
+        views(2, 40);
+
+        assertFalse(Double.isNaN(tracker.getHourlyRate(2)));
+        assertEquals(40.0, tracker.getHourlyRate(2), 1e-6);
+        assertEquals(2, (int) tracker.getTrending(1).get(0));
+    }
+
+    /**
+     * Local stand-in for the shared store: epoch -> asset ID -> {hour, day}
+     */
+    private static class FakeTrendStore implements TrendingTracker.TrendStore {
+        final Map<Long, Map<Integer, double[]>> epochs = new HashMap<>();
+        boolean failReads = false;
+
+        @Override
+        public void add(long epoch, Map<Integer, double[]> weightsByAsset) {
+            Map<Integer, double[]> weights = epochs.computeIfAbsent(epoch, e -> new HashMap<>());
+            for (Map.Entry<Integer, double[]> entry : weightsByAsset.entrySet()) {
+                double[] sum = weights.computeIfAbsent(entry.getKey(), id -> new double[2]);
+                sum[0] += entry.getValue()[0];
+                sum[1] += entry.getValue()[1];
+            }
+        }
+
+        @Override
+        public void readTop(long epoch, int limit, TrendingTracker.Callback<Map<Integer, double[]>> callback) {
+            if (failReads) {
+                callback.onResult(null);
+                return;
+            }
+            Map<Integer, double[]> weights = epochs.get(epoch);
+            callback.onResult(weights != null ? new HashMap<>(weights) : new HashMap<>());
+        }
+    }
+
+    private static List<Integer> globalTrending(TrendingTracker tracker, int limit) {
+        AtomicReference<List<Integer>> result = new AtomicReference<>();
+        tracker.getGlobalTrending(limit, result::set);
+        return result.get();
+    }
+
+    @Test
+    public void testGlobalTrendingAddsUpDevices() {
+        FakeTrendStore store = new FakeTrendStore();
+        TrendingTracker deviceA = new TrendingTracker(() -> now, store);
+        TrendingTracker deviceB = new TrendingTracker(() -> now, store);
+
+        // Neither device alone reaches the minimum rate for asset 2
+        deviceA.record(2, TrendingTracker.VIEW_WEIGHT);
+        deviceB.record(2, TrendingTracker.VIEW_WEIGHT);
+        deviceA.record(2, TrendingTracker.VIEW_WEIGHT);
+        for (int i = 0; i < 10; i++) {
+            deviceA.record(1, TrendingTracker.VIEW_WEIGHT);
+        }
+        deviceA.flush();
+
+        // Device B never saw asset 1, but it trends for everyone
+        List<Integer> trending = globalTrending(deviceB, 10);
+        assertEquals(2, trending.size());
+        assertEquals(1, (int) trending.get(0));
+        assertEquals(2, (int) trending.get(1));
+        assertTrue(deviceB.getTrending(10).isEmpty());
+
+        // Shared weights decay like the local ones, across a week boundary too
+        now += 7 * 24 * HOUR_MS;
+        assertTrue(globalTrending(new TrendingTracker(() -> now, store), 10).isEmpty());
+    }
+
+    @Test
+    public void testGlobalTrendingFallsBackToLocal() {
+        FakeTrendStore store = new FakeTrendStore();
+        store.failReads = true;
+        TrendingTracker device = new TrendingTracker(() -> now, store);
+        views(1, 5);
+        for (int i = 0; i < 5; i++) {
+            device.record(3, TrendingTracker.VIEW_WEIGHT);
+        }
+
+        List<Integer> trending = globalTrending(device, 10);
+        assertEquals(1, trending.size());
+        assertEquals(3, (int) trending.get(0));
+    }
+}